@@ -38,10 +38,17 @@ public abstract class BaseActivityProcessorPlugin extends BaseComponentPlugin im
     ActivityProcessor {
   protected int            priority;
 
+  /** true when the output of the processor is stored with the activity */
+  protected boolean        writeTime;
+
   private static final Log LOG = ExoLogger.getLogger(BaseActivityProcessorPlugin.class);
 
   public static final String TEMPLATE_PARAM_TO_PROCESS = "registeredKeysForProcessor";
   public static final String TEMPLATE_PARAM_LIST_DELIM = "\\|";
+
+  /** Init param telling when the processor runs: "read" (default) or "write" */
+  public static final String PHASE = "phase";
+  public static final String WRITE_PHASE = "write";
   
   public BaseActivityProcessorPlugin(InitParams params) {
 
@@ -59,6 +66,12 @@ public abstract class BaseActivityProcessorPlugin extends BaseComponentPlugin im
       priority = 5; //default, it should be in range of 1-10
       LOG.warn("an <value-param> 'priority' of type int is recommanded for component " + getClass());
     }
+
+    try {
+      writeTime = WRITE_PHASE.equalsIgnoreCase(params.getValueParam(PHASE).getValue());
+    } catch (Exception e) {
+      writeTime = false;
+    }
   }
 
   public int getPriority() {
@@ -68,6 +81,22 @@ public abstract class BaseActivityProcessorPlugin extends BaseComponentPlugin im
   public void setPriority(int priority) {
     this.priority = priority;
   }
+
+  /**
+   * Tells whether the processor runs once when the activity is saved, its output being stored with
+   * the activity, or each time the activity is loaded. A write time processor must give the same
+   * result when it runs again on its own output, as the activity is processed again when it is updated.
+   *
+   * @return true for a write time processor
+   * @since 4.1.0
+   */
+  public boolean isWriteTime() {
+    return writeTime;
+  }
+
+  public void setWriteTime(boolean writeTime) {
+    this.writeTime = writeTime;
+  }
   
   /**
    * This method is helper for ActivityProcessor incase we want to get list of template params to be filter.
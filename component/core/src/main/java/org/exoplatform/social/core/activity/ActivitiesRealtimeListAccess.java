@@ -23,9 +23,11 @@ import java.util.Map;
 import org.exoplatform.social.common.RealtimeListAccess;
 import org.exoplatform.social.common.jcr.Util;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.api.ActivityStorage;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
 
 /**
  * The real time list access for activities.
@@ -153,6 +155,57 @@ public class ActivitiesRealtimeListAccess implements RealtimeListAccess<ExoSocia
     return Collections.emptyList();
   }
 
+  /**
+   * Loads the activities following the cursor, without loading the activities of the previous pages.
+   *
+   * @param cursor the cursor after the last loaded activity, null for the first page
+   * @param limit the maximum number of activities
+   * @return the activities, empty when the cursor is not supported by the activity type
+   * @see #isCursorSupported()
+   * @since 4.1.0
+   */
+  public List<ExoSocialActivity> loadAsList(ActivityStreamCursor cursor, int limit) {
+    ActivityRefType type = getRefType();
+    if (type == null) {
+      return Collections.emptyList();
+    }
+    return activityStorage.getStreamActivities(type, ownerIdentity, cursor, limit);
+  }
+
+  /**
+   * Determines whether the activities of this type can be loaded with a cursor.
+   *
+   * @return true for the activity feed, the user activities, the connections, the user spaces and the space
+   *         activities
+   * @since 4.1.0
+   */
+  public boolean isCursorSupported() {
+    return getRefType() != null;
+  }
+
+  private ActivityRefType getRefType() {
+    switch (activityType) {
+      case ACTIVITY_FEED: {
+        return ActivityRefType.FEED;
+      }
+      case USER_ACTIVITIES: {
+        return ActivityRefType.MY_ACTIVITIES;
+      }
+      case CONNECTIONS_ACTIVITIES: {
+        return ActivityRefType.CONNECTION;
+      }
+      case USER_SPACE_ACTIVITIES: {
+        return ActivityRefType.MY_SPACES;
+      }
+      case SPACE_ACTIVITIES: {
+        return ActivityRefType.SPACE_STREAM;
+      }
+      default: {
+        return null;
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
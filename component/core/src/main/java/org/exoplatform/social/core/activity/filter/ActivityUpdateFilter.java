@@ -119,6 +119,26 @@ public class ActivityUpdateFilter {
     
   }
 
+  /**
+   * Gets the view times of the given activity streams. They change when the user views one of the
+   * streams, which resets the unread counters computed from them. Only the streams whose times are
+   * set for the owner of the counter must be given, the times of the others may come from the
+   * requests of other users.
+   * 
+   * @param types the stream types the counter is computed from
+   * @return the old from, from and to since times of each given stream type
+   * @since 4.1.0
+   */
+  public long[] viewTimes(ActivityFilterType... types) {
+    long[] times = new long[types.length * 3];
+    for (int i = 0; i < types.length; ++i) {
+      times[3 * i] = types[i].oldFromSinceTime() != null ? types[i].oldFromSinceTime() : -1;
+      times[3 * i + 1] = types[i].fromSinceTime() != null ? types[i].fromSinceTime() : -1;
+      times[3 * i + 2] = types[i].toSinceTime() != null ? types[i].toSinceTime() : -1;
+    }
+    return times;
+  }
+
   /**
    * User only refresh current tab, doesn't switch other tab. 
    * @return TRUE: Refreshed, FALSE : switched new tab
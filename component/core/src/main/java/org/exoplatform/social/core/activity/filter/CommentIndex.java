@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.activity.filter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable index of the comments of an activity: the comment ids in the order of the activity
+ * with their last updated time and their hidden flag, so that the comments can be counted and
+ * paginated without loading them.
+ *
+ * @since 4.1.0
+ */
+public class CommentIndex implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final CommentIndex EMPTY = new CommentIndex(new String[0], new long[0], new boolean[0]);
+
+  private final String[] ids;
+  private final long[] updated;
+  private final boolean[] hidden;
+  private final int visibleCount;
+
+  /**
+   * @param ids the comment ids, in the order of the activity
+   * @param updated the last updated time of each comment
+   * @param hidden the hidden flag of each comment
+   */
+  public CommentIndex(String[] ids, long[] updated, boolean[] hidden) {
+    if (ids.length != updated.length || ids.length != hidden.length) {
+      throw new IllegalArgumentException("The comment index arrays must have the same length");
+    }
+    this.ids = ids;
+    this.updated = updated;
+    this.hidden = hidden;
+
+    //
+    int count = 0;
+    for (boolean h : hidden) {
+      if (!h) {
+        ++count;
+      }
+    }
+    this.visibleCount = count;
+  }
+
+  /**
+   * @return the number of comments, hidden ones included
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * @return the number of comments which are not hidden
+   */
+  public int getVisibleCount() {
+    return visibleCount;
+  }
+
+  /**
+   * @param commentId the comment id
+   * @return the position of the comment in the activity, -1 if it is not a comment of the activity
+   */
+  public int indexOf(String commentId) {
+    for (int i = 0; i < ids.length; ++i) {
+      if (ids[i].equals(commentId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the ids of the visible comments between the given positions.
+   *
+   * @param from the first position, inclusive
+   * @param to the last position, exclusive
+   * @param limit the maximum number of ids
+   * @return the comment ids
+   */
+  public List<String> getVisibleIds(int from, int to, int limit) {
+    return select(from, to, Long.MIN_VALUE, Long.MAX_VALUE, limit);
+  }
+
+  /**
+   * Counts the visible comments between the given positions.
+   *
+   * @param from the first position, inclusive
+   * @param to the last position, exclusive
+   * @return the number of comments
+   */
+  public int countVisible(int from, int to) {
+    return count(from, to, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param sinceTime the time in milliseconds
+   * @param limit the maximum number of ids
+   * @return the ids of the visible comments updated after the given time
+   */
+  public List<String> getNewerIds(long sinceTime, int limit) {
+    return select(0, ids.length, sinceTime, Long.MAX_VALUE, limit);
+  }
+
+  /**
+   * @param sinceTime the time in milliseconds
+   * @return the number of visible comments updated after the given time
+   */
+  public int countNewer(long sinceTime) {
+    return count(0, ids.length, sinceTime, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param sinceTime the time in milliseconds
+   * @param limit the maximum number of ids
+   * @return the ids of the visible comments updated before the given time
+   */
+  public List<String> getOlderIds(long sinceTime, int limit) {
+    return select(0, ids.length, Long.MIN_VALUE, sinceTime, limit);
+  }
+
+  /**
+   * @param sinceTime the time in milliseconds
+   * @return the number of visible comments updated before the given time
+   */
+  public int countOlder(long sinceTime) {
+    return count(0, ids.length, Long.MIN_VALUE, sinceTime);
+  }
+
+  private List<String> select(int from, int to, long after, long before, int limit) {
+    List<String> got = new ArrayList<String>();
+    for (int i = Math.max(0, from); i < Math.min(to, ids.length) && got.size() < limit; ++i) {
+      if (accept(i, after, before)) {
+        got.add(ids[i]);
+      }
+    }
+    return got;
+  }
+
+  private int count(int from, int to, long after, long before) {
+    if (from <= 0 && to >= ids.length && after == Long.MIN_VALUE && before == Long.MAX_VALUE) {
+      return visibleCount;
+    }
+    int count = 0;
+    for (int i = Math.max(0, from); i < Math.min(to, ids.length); ++i) {
+      if (accept(i, after, before)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private boolean accept(int i, long after, long before) {
+    return !hidden[i] && updated[i] > after && updated[i] < before;
+  }
+
+}
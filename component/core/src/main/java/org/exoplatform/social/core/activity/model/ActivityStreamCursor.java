@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.activity.model;
+
+/**
+ * Immutable position in an activity stream, after the last activity of a page.
+ *
+ * The activities of a stream are ordered by their last updated time then by their id, the most recent
+ * first. The next page starts at the first activity following the cursor, which is found from the day of
+ * its time instead of skipping all the activities of the previous pages. The cursor is exchanged with the
+ * clients as an opaque token.
+ *
+ * @since 4.1.0
+ */
+public class ActivityStreamCursor {
+
+  private static final char SEPARATOR = '.';
+
+  private final long lastUpdated;
+
+  private final String activityId;
+
+  public ActivityStreamCursor(final long lastUpdated, final String activityId) {
+    this.lastUpdated = lastUpdated;
+    this.activityId = activityId;
+  }
+
+  /**
+   * Gets the cursor following the given activity.
+   *
+   * @param activity the last activity of a page
+   * @return the cursor, null when the activity is null
+   */
+  public static ActivityStreamCursor of(final ExoSocialActivity activity) {
+    if (activity == null) {
+      return null;
+    }
+    return new ActivityStreamCursor(activity.getUpdated().getTime(), activity.getId());
+  }
+
+  /**
+   * Reads a cursor from its token.
+   *
+   * @param token the token returned by {@link #toString()}
+   * @return the cursor, null when the token is empty or invalid
+   */
+  public static ActivityStreamCursor valueOf(final String token) {
+    if (token == null) {
+      return null;
+    }
+    int index = token.indexOf(SEPARATOR);
+    if (index <= 0 || index == token.length() - 1) {
+      return null;
+    }
+    try {
+      return new ActivityStreamCursor(Long.parseLong(token.substring(0, index), Character.MAX_RADIX),
+                                      token.substring(index + 1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  public String getActivityId() {
+    return activityId;
+  }
+
+  /**
+   * Determines whether an activity follows the cursor in the stream.
+   *
+   * @param lastUpdated the last updated time of the activity
+   * @param activityId the activity id
+   * @return true when the activity is older than the cursor, or as old with a lower id
+   */
+  public boolean precedes(final long lastUpdated, final String activityId) {
+    if (lastUpdated != this.lastUpdated) {
+      return lastUpdated < this.lastUpdated;
+    }
+    return activityId.compareTo(this.activityId) < 0;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ActivityStreamCursor)) {
+      return false;
+    }
+
+    ActivityStreamCursor that = (ActivityStreamCursor) o;
+
+    return lastUpdated == that.lastUpdated && activityId.equals(that.activityId);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (int) (lastUpdated ^ (lastUpdated >>> 32)) + activityId.hashCode();
+  }
+
+  /**
+   * @return the token of the cursor
+   */
+  @Override
+  public String toString() {
+    return Long.toString(lastUpdated, Character.MAX_RADIX) + SEPARATOR + activityId;
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.activity.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Immutable reference of an activity in a stream: its id and the time it was last updated, read
+ * from the stream without loading the activity.
+ *
+ * @since 4.1.0
+ */
+public class ActivityUpdateRef implements Serializable, CompactWritable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String activityId;
+  private final long lastUpdated;
+
+  public ActivityUpdateRef(final String activityId, final long lastUpdated) {
+    this.activityId = activityId;
+    this.lastUpdated = lastUpdated;
+  }
+
+  public String getActivityId() {
+    return activityId;
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(activityId);
+    out.writeLong(lastUpdated);
+  }
+
+  public static ActivityUpdateRef readFrom(final CacheInput in) throws IOException {
+    return new ActivityUpdateRef(in.readId(), in.readLong());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+}
@@ -74,6 +74,26 @@ public abstract class ActivityRefDayEntity implements NamedEntity, IndexNumber {
   @ManyToOne
   public abstract ActivityRefMonthEntity getMonth();
 
+  /**
+   * Adds a reference before the older ones, so that the references of the day stay ordered from the
+   * newest and are read without sort. The new references are mostly the newest, added first.
+   *
+   * @param ref the reference to add
+   * @param lastUpdated the last updated time of the reference
+   * @since 4.1.0
+   */
+  public void addRef(ActivityRef ref, long lastUpdated) {
+    List<ActivityRef> refs = getActivityRefList();
+    int index = 0;
+    for (ActivityRef current : refs) {
+      if (Long.parseLong(current.getName()) <= lastUpdated) {
+        break;
+      }
+      index++;
+    }
+    refs.add(index, ref);
+  }
+
   public void inc() {
     getMonth().inc();
     setNumber(getNumber() + 1);
@@ -16,10 +16,7 @@
  */
 package org.exoplatform.social.core.chromattic.entity;
 
-import java.text.DateFormatSymbols;
-import java.util.Calendar;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -32,14 +29,13 @@ import org.chromattic.api.annotations.Path;
 import org.chromattic.api.annotations.PrimaryType;
 import org.chromattic.api.annotations.Property;
 import org.chromattic.ext.format.BaseEncodingObjectFormatter;
+import org.exoplatform.social.core.chromattic.utils.DayBucket;
 
 @PrimaryType(name = "soc:activityreflist")
 @FormattedBy(BaseEncodingObjectFormatter.class)
 @NamingPrefix("soc")
 public abstract class ActivityRefListEntity {
   
-  protected String[] MONTH_NAME = new DateFormatSymbols(Locale.ENGLISH).getMonths();
-
   @Path
   public abstract String getPath();
 
@@ -60,6 +56,16 @@ public abstract class ActivityRefListEntity {
   public abstract Long getLastMigration();
   public abstract void setLastMigration(Long number);
 
+  /**
+   * Whether the activities of the list are pulled by the streams of the connections or the members
+   * instead of being written to them, decided when the first activity of a large audience is posted.
+   * The default value is set to false.
+   */
+  @Property(name = "soc:pulled")
+  @DefaultValue({"false"})
+  public abstract Boolean getPulled();
+  public abstract void setPulled(Boolean pulled);
+
   /**
    * All the years containing activities in the list.
    */
@@ -141,14 +147,7 @@ public abstract class ActivityRefListEntity {
   }
   
   public ActivityRef getOrCreated(long lastUpdated, boolean addedHidden) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(lastUpdated);
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    ActivityRefDayEntity dayEntity = this.getYear(year).getMonth(month).getDay(day);
+    ActivityRefDayEntity dayEntity = getActivityRefDay(lastUpdated);
     
     //needs to check it existing or not in list
     ActivityRef ref = dayEntity.getActivityRefs().get("" + lastUpdated);
@@ -156,7 +155,7 @@ public abstract class ActivityRefListEntity {
     if (ref == null) {
       ref = dayEntity.createRef();
       ref.setName("" + lastUpdated);
-      dayEntity.getActivityRefList().add(ref);
+      dayEntity.addRef(ref, lastUpdated);
       if (addedHidden == false) {
         dayEntity.inc();
       }
@@ -167,41 +166,19 @@ public abstract class ActivityRefListEntity {
   }
   
   public ActivityRef get(long lastUpdated) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(lastUpdated);
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    ActivityRefDayEntity dayEntity = this.getYear(year).getMonth(month).getDay(day);
+    ActivityRefDayEntity dayEntity = getActivityRefDay(lastUpdated);
     
     //needs to check it existing or not in list
     return dayEntity.getActivityRefs().get("" + lastUpdated);
   }
   
   public ActivityRefDayEntity getActivityRefDay(long lastUpdated) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(lastUpdated);
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    return this.getYear(year).getMonth(month).getDay(day);
+    DayBucket bucket = DayBucket.of(lastUpdated);
+    return this.getYear(bucket.getYearName()).getMonth(bucket.getMonthName()).getDay(bucket.getDayName());
   }
   
-
-  
   public ActivityRef update(long oldLastUpdated, long newLastUpdated) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(oldLastUpdated);
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    ActivityRefDayEntity dayEntity = this.getYear(year).getMonth(month).getDay(day);
+    ActivityRefDayEntity dayEntity = getActivityRefDay(oldLastUpdated);
     
     //needs to check it existing or not in list
     ActivityRef ref = dayEntity.getActivityRefs().get("" + oldLastUpdated);
@@ -213,35 +190,13 @@ public abstract class ActivityRefListEntity {
   }
   
   public Map<String, ActivityRef> refs(long lastUpdated) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(lastUpdated);
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    ActivityRefDayEntity dayEntity = this.getYear(year).getMonth(month).getDay(day);
+    ActivityRefDayEntity dayEntity = getActivityRefDay(lastUpdated);
     
     return dayEntity.getActivityRefs();
   }
   
   public boolean isOnlyUpdate(long oldLastUpdated, long newLastUpdated) {
-    Calendar oldCalendar = Calendar.getInstance(Locale.ENGLISH);
-    oldCalendar.setTimeInMillis(oldLastUpdated);
-    
-    Calendar newCalendar = Calendar.getInstance(Locale.ENGLISH);
-    newCalendar.setTimeInMillis(newLastUpdated);
-
-    String oldYear = String.valueOf(oldCalendar.get(Calendar.YEAR));
-    String oldMonth = MONTH_NAME[oldCalendar.get(Calendar.MONTH)];
-    String oldDay = String.valueOf(oldCalendar.get(Calendar.DAY_OF_MONTH));
-    
-    String newYear = String.valueOf(newCalendar.get(Calendar.YEAR));
-    String newMonth = MONTH_NAME[newCalendar.get(Calendar.MONTH)];
-    String newDay = String.valueOf(newCalendar.get(Calendar.DAY_OF_MONTH));
-    
-    boolean isOnlyUpdate = oldYear.equals(newYear) && oldMonth.equals(newMonth) && oldDay.equals(newDay);
-    return isOnlyUpdate;
+    return DayBucket.of(oldLastUpdated).contains(newLastUpdated);
   }
   
   public boolean isOnlyUpdate(ActivityRef oldRef, long newLastUpdated) {
@@ -250,11 +205,10 @@ public abstract class ActivityRefListEntity {
     String oldMonth = day.getMonth().getName();
     String oldDay = day.getName();
     
-    Calendar newCalendar = Calendar.getInstance(Locale.ENGLISH);
-    newCalendar.setTimeInMillis(newLastUpdated);
-    String newYear = String.valueOf(newCalendar.get(Calendar.YEAR));
-    String newMonth = MONTH_NAME[newCalendar.get(Calendar.MONTH)];
-    String newDay = String.valueOf(newCalendar.get(Calendar.DAY_OF_MONTH));
+    DayBucket newBucket = DayBucket.of(newLastUpdated);
+    String newYear = newBucket.getYearName();
+    String newMonth = newBucket.getMonthName();
+    String newDay = newBucket.getDayName();
     
     boolean isOnlyUpdate = oldYear.equals(newYear) && oldMonth.equals(newMonth) && oldDay.equals(newDay);
     return isOnlyUpdate;
@@ -265,14 +219,7 @@ public abstract class ActivityRefListEntity {
   }
   
   public ActivityRef remove(long lastUpdated, boolean removeHidden) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(lastUpdated);
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    ActivityRefDayEntity dayEntity = this.getYear(year).getMonth(month).getDay(day);
+    ActivityRefDayEntity dayEntity = getActivityRefDay(lastUpdated);
     
     //needs to check it existing or not in list
     ActivityRef ref = dayEntity.getActivityRefs().remove("" + lastUpdated);
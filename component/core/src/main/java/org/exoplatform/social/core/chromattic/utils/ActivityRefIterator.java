@@ -16,9 +16,7 @@
  */
 package org.exoplatform.social.core.chromattic.utils;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -38,6 +36,11 @@ public class ActivityRefIterator implements Iterator<ActivityRef> {
 
   private final ActivityRefListEntity listEntity;
 
+  /**
+   * The time of the most recent returned reference
+   */
+  private final long before;
+
   //
   private Iterator<ActivityRefYearEntity> yearIterator;
   private Iterator<ActivityRefMonthEntity> monthIterator;
@@ -47,6 +50,7 @@ public class ActivityRefIterator implements Iterator<ActivityRef> {
   ActivityRefIterator(final ActivityRefListEntity listEntity) {
 
     this.listEntity = listEntity;
+    this.before = Long.MAX_VALUE;
     this.yearIterator = listEntity.getYears().values().iterator();
 
     if (yearIterator.hasNext()) {
@@ -60,64 +64,122 @@ public class ActivityRefIterator implements Iterator<ActivityRef> {
     }
 
   }
-  
-  
-  
-  private Iterator<ActivityRef> orderRefs() {
-    List<ActivityRef> got = new ArrayList<ActivityRef>(dayIterator.next().getActivityRefList());
-    
-    Collections.sort(got, new Comparator<ActivityRef>() {
-      public int compare(ActivityRef o1, ActivityRef o2) {
-        return (int) (Long.parseLong(o2.getName()) - Long.parseLong(o1.getName()));
-      }
-    });
-    return got.iterator();
-  }
 
-  public boolean hasNext() {
+  /**
+   * Creates an iterator on the references updated at or before the given time. The years, months and days
+   * more recent than the time are passed over by their names, their references are not loaded.
+   *
+   * @param listEntity the list
+   * @param before the time in milliseconds
+   * @since 4.1.0
+   */
+  ActivityRefIterator(final ActivityRefListEntity listEntity, final long before) {
 
-    boolean nothing = true;
+    this.listEntity = listEntity;
+    this.before = before;
+    this.yearIterator = listEntity.getYears().values().iterator();
+
+    DayBucket bucket = DayBucket.of(before);
+    int year = bucket.getYear();
+    int month = bucket.getMonth();
+    int day = bucket.getDay();
 
-    if (entityIterator != null && entityIterator.hasNext()) {
-      return true;
+    //
+    ActivityRefYearEntity yearEntity = seek(yearIterator, year);
+    if (yearEntity == null) {
+      return;
+    }
+    boolean sameYear = DayBucket.valueOf(yearEntity.getName()) == year;
+    this.monthIterator = yearEntity.getMonths().values().iterator();
+    ActivityRefMonthEntity monthEntity = seek(monthIterator, sameYear ? month : Integer.MAX_VALUE);
+    if (monthEntity == null) {
+      return;
+    }
+    boolean sameMonth = sameYear && DayBucket.valueOf(monthEntity.getName()) == month;
+    this.dayIterator = monthEntity.getDays().values().iterator();
+    ActivityRefDayEntity dayEntity = seek(dayIterator, sameMonth ? day : Integer.MAX_VALUE);
+    if (dayEntity != null) {
+      this.entityIterator = orderRefs(dayEntity);
     }
-    else if (dayIterator != null && dayIterator.hasNext()) {
-      entityIterator = orderRefs();
-      nothing = false;
-      if (entityIterator.hasNext()) {
-        return true;
+
+  }
+
+  /**
+   * Moves the iterator to the first entity whose name is not after the given value, the entities being
+   * ordered from the most recent.
+   */
+  private static <E extends NamedEntity> E seek(Iterator<E> it, int value) {
+    while (it.hasNext()) {
+      E entity = it.next();
+      if (DayBucket.valueOf(entity.getName()) <= value) {
+        return entity;
       }
     }
-    else if (monthIterator != null && monthIterator.hasNext()) {
-      dayIterator = monthIterator.next().getDays().values().iterator();
-      nothing = false;
-      if (dayIterator.hasNext()) {
-        entityIterator = dayIterator.next().getActivityRefs().values().iterator();
-        if (entityIterator.hasNext()) {
-          return true;
-        }
+    return null;
+  }
+
+  private Iterator<ActivityRef> orderRefs() {
+    return orderRefs(dayIterator.next());
+  }
+
+  /**
+   * Gets the references of a day from the most recent. The references added since 4.1.0 are kept in order
+   * by the day, so the order is only checked; the days written before are sorted once on their names.
+   */
+  private Iterator<ActivityRef> orderRefs(ActivityRefDayEntity day) {
+    List<ActivityRef> refs = day.getActivityRefList();
+    ActivityRef[] got = new ActivityRef[refs.size()];
+    long[] times = new long[got.length];
+    int size = 0;
+    boolean ordered = true;
+    for (ActivityRef ref : refs) {
+      long time = Long.parseLong(ref.getName());
+      if (time > before) {
+        continue;
+      }
+      if (size > 0 && time > times[size - 1]) {
+        ordered = false;
       }
+      got[size] = ref;
+      times[size++] = time;
     }
-    else if (yearIterator != null && yearIterator.hasNext()) {
-      monthIterator = yearIterator.next().getMonths().values().iterator();
-      nothing = false;
-      if (monthIterator.hasNext()) {
-        dayIterator = monthIterator.next().getDays().values().iterator();
-        if (dayIterator.hasNext()) {
-          entityIterator = orderRefs();
-          if (entityIterator.hasNext()) {
-            return true;
-          }
+
+    //
+    if (!ordered) {
+      for (int i = 1; i < size; ++i) {
+        ActivityRef ref = got[i];
+        long time = times[i];
+        int j = i - 1;
+        for (; j >= 0 && times[j] < time; --j) {
+          got[j + 1] = got[j];
+          times[j + 1] = times[j];
         }
+        got[j + 1] = ref;
+        times[j + 1] = time;
       }
     }
+    return Arrays.asList(got).subList(0, size).iterator();
+  }
 
-    if (nothing) {
-      return false;
-    }
-    else {
-      return hasNext();
+  public boolean hasNext() {
+
+    //the numbers of the buckets may not count all their references, so none is passed over
+    while (entityIterator == null || !entityIterator.hasNext()) {
+      if (dayIterator != null && dayIterator.hasNext()) {
+        entityIterator = orderRefs();
+      }
+      else if (monthIterator != null && monthIterator.hasNext()) {
+        dayIterator = monthIterator.next().getDays().values().iterator();
+      }
+      else if (yearIterator != null && yearIterator.hasNext()) {
+        monthIterator = yearIterator.next().getMonths().values().iterator();
+      }
+      else {
+        return false;
+      }
     }
+
+    return true;
   }
 
   public int moveTo(ActivityRef activityRef) {
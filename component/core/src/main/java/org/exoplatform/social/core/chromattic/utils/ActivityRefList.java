@@ -16,10 +16,7 @@
  */
 package org.exoplatform.social.core.chromattic.utils;
 
-import java.text.DateFormatSymbols;
-import java.util.Calendar;
 import java.util.Collection;
-import java.util.Locale;
 
 import org.exoplatform.social.core.chromattic.entity.ActivityRef;
 import org.exoplatform.social.core.chromattic.entity.ActivityRefDayEntity;
@@ -27,8 +24,6 @@ import org.exoplatform.social.core.chromattic.entity.ActivityRefListEntity;
 
 public class ActivityRefList implements Collection<ActivityRef> {
 
-  protected String[] MONTH_NAME = new DateFormatSymbols(Locale.ENGLISH).getMonths();
-
   private ActivityRefListEntity listEntity;
 
   public ActivityRefList(final ActivityRefListEntity listEntity) {
@@ -51,6 +46,17 @@ public class ActivityRefList implements Collection<ActivityRef> {
     return new ActivityRefIterator(listEntity);
   }
 
+  /**
+   * Gets an iterator on the references updated at or before the given time.
+   *
+   * @param before the time in milliseconds
+   * @return the iterator, the most recent reference first
+   * @since 4.1.0
+   */
+  public ActivityRefIterator iterator(long before) {
+    return new ActivityRefIterator(listEntity, before);
+  }
+
   public Object[] toArray() {
     throw new RuntimeException();
   }
@@ -60,14 +66,7 @@ public class ActivityRefList implements Collection<ActivityRef> {
   }
   
   public boolean add(final ActivityRef activityRef) {
-    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
-    calendar.setTimeInMillis(activityRef.getLastUpdated());
-
-    String year = String.valueOf(calendar.get(Calendar.YEAR));
-    String month = MONTH_NAME[calendar.get(Calendar.MONTH)];
-    String day = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
-
-    ActivityRefDayEntity dayEntity = listEntity.getYear(year).getMonth(month).getDay(day);
+    ActivityRefDayEntity dayEntity = listEntity.getActivityRefDay(activityRef.getLastUpdated());
     
     //needs to check it existing or not in list
     ActivityRef ref = dayEntity.getActivityRefs().get(activityRef.getActivityEntity().getId());
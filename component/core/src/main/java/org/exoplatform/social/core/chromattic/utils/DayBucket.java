@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.chromattic.utils;
+
+import java.text.DateFormatSymbols;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The year, month and day buckets of a time in the activity reference lists.
+ *
+ * The last bucket is kept by each thread with the range of its day: the references written or read together
+ * are mostly of the same day, so their buckets are found without calendar.
+ *
+ * @since 4.1.0
+ */
+public final class DayBucket {
+
+  private static final List<String> MONTH_NAMES = Arrays.asList(new DateFormatSymbols(Locale.ENGLISH).getMonths());
+
+  private static final ThreadLocal<DayBucket> LAST = new ThreadLocal<DayBucket>();
+
+  private final long start;
+
+  private final long end;
+
+  private final int year;
+
+  private final int month;
+
+  private final int day;
+
+  private DayBucket(long start, long end, int year, int month, int day) {
+    this.start = start;
+    this.end = end;
+    this.year = year;
+    this.month = month;
+    this.day = day;
+  }
+
+  /**
+   * Gets the bucket of a time.
+   *
+   * @param time the time in milliseconds
+   * @return the bucket of the day of the time
+   */
+  public static DayBucket of(final long time) {
+    DayBucket last = LAST.get();
+    if (last != null && last.contains(time)) {
+      return last;
+    }
+
+    //
+    Calendar calendar = Calendar.getInstance(Locale.ENGLISH);
+    calendar.setTimeInMillis(time);
+    int year = calendar.get(Calendar.YEAR);
+    int month = calendar.get(Calendar.MONTH);
+    int day = calendar.get(Calendar.DAY_OF_MONTH);
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+    long start = calendar.getTimeInMillis();
+    calendar.add(Calendar.DAY_OF_MONTH, 1);
+
+    //
+    DayBucket bucket = new DayBucket(start, calendar.getTimeInMillis(), year, month, day);
+    LAST.set(bucket);
+    return bucket;
+  }
+
+  /**
+   * Gets the value of the name of a year, a month or a day entity, the months being named in english.
+   *
+   * @param name the entity name
+   * @return the year, the month index from 0 or the day of the month
+   */
+  public static int valueOf(final String name) {
+    int month = MONTH_NAMES.indexOf(name);
+    return month >= 0 ? month : Integer.parseInt(name);
+  }
+
+  /**
+   * Checks whether a time is in the day of this bucket.
+   *
+   * @param time the time in milliseconds
+   * @return true if the time is in the day
+   */
+  public boolean contains(final long time) {
+    return time >= start && time < end;
+  }
+
+  public String getYearName() {
+    return String.valueOf(year);
+  }
+
+  public String getMonthName() {
+    return MONTH_NAMES.get(month);
+  }
+
+  public String getDayName() {
+    return String.valueOf(day);
+  }
+
+  public int getYear() {
+    return year;
+  }
+
+  public int getMonth() {
+    return month;
+  }
+
+  public int getDay() {
+    return day;
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.identity.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Light projection of an identity, with what is needed to display it in a list, read without
+ * loading the whole profile.
+ *
+ * @since 4.1.0
+ */
+public class IdentitySummary implements Serializable, CompactWritable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String id;
+
+  private final String providerId;
+
+  private final String remoteId;
+
+  private final String fullName;
+
+  private final String avatarUrl;
+
+  private final String profileUrl;
+
+  private final boolean deleted;
+
+  public IdentitySummary(String id, String providerId, String remoteId, String fullName, String avatarUrl,
+                         String profileUrl, boolean deleted) {
+    this.id = id;
+    this.providerId = providerId;
+    this.remoteId = remoteId;
+    this.fullName = fullName;
+    this.avatarUrl = avatarUrl;
+    this.profileUrl = profileUrl;
+    this.deleted = deleted;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getProviderId() {
+    return providerId;
+  }
+
+  public String getRemoteId() {
+    return remoteId;
+  }
+
+  public String getFullName() {
+    return fullName;
+  }
+
+  public String getAvatarUrl() {
+    return avatarUrl;
+  }
+
+  public String getProfileUrl() {
+    return profileUrl;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(id);
+    out.writeToken(providerId);
+    out.writeString(remoteId);
+    out.writeString(fullName);
+    out.writeString(avatarUrl);
+    out.writeString(profileUrl);
+    out.writeBoolean(deleted);
+  }
+
+  public static IdentitySummary readFrom(final CacheInput in) throws IOException {
+    return new IdentitySummary(in.readId(), in.readToken(), in.readString(), in.readString(), in.readString(),
+                               in.readString(), in.readBoolean());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof IdentitySummary)) {
+      return false;
+    }
+    return id.equals(((IdentitySummary) o).id);
+  }
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return providerId + ":" + remoteId + " (" + id + ")";
+  }
+
+}
@@ -17,6 +17,7 @@
 package org.exoplatform.social.core.manager;
 
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.social.common.RealtimeListAccess;
 import org.exoplatform.social.core.ActivityProcessor;
@@ -269,6 +270,17 @@ public interface ActivityManager {
    */
   RealtimeListAccess<ExoSocialActivity> getActivitiesByPoster(Identity posterIdentity, String ... activityTypes);
   
+  /**
+   * Gets the latest activity of each given identity, the first one returned by
+   * {@link #getActivitiesWithListAccess(Identity)}, without loading the other activities.
+   * 
+   * @param identities The activity stream owners.
+   * @return The latest activities by identity Id, without the identities having no activity.
+   * @LevelAPI Platform
+   * @since 4.1.0
+   */
+  Map<String, ExoSocialActivity> getLastActivities(List<Identity> identities);
+  
   /**
    * Adds a new activity processor.
    *
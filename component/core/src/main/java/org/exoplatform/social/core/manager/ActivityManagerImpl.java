@@ -18,7 +18,9 @@ package org.exoplatform.social.core.manager;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.Validate;
@@ -31,6 +33,7 @@ import org.exoplatform.social.core.BaseActivityProcessorPlugin;
 import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
 import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess.ActivityType;
 import org.exoplatform.social.core.activity.CommentsRealtimeListAccess;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
 import org.exoplatform.social.core.identity.model.Identity;
@@ -258,6 +261,20 @@ public class ActivityManagerImpl implements ActivityManager {
     return new ActivitiesRealtimeListAccess(activityStorage, ActivityType.POSTER_AND_TYPES_ACTIVITIES, posterIdentity, activityTypes);
   }
   
+  /**
+   * {@inheritDoc}
+   */
+  public Map<String, ExoSocialActivity> getLastActivities(List<Identity> identities) {
+    Map<String, ExoSocialActivity> got = new HashMap<String, ExoSocialActivity>();
+    for (Map.Entry<String, ActivityUpdateRef> entry : activityStorage.getLastUpdates(identities).entrySet()) {
+      ExoSocialActivity activity = activityStorage.getActivity(entry.getValue().getActivityId());
+      if (activity != null) {
+        got.put(entry.getKey(), activity);
+      }
+    }
+    return got;
+  }
+  
   /**
    * {@inheritDoc}
    */
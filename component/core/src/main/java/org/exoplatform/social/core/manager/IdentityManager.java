@@ -24,6 +24,7 @@ import org.exoplatform.social.core.identity.IdentityProviderPlugin;
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess.Type;
 import org.exoplatform.social.core.identity.model.GlobalId;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.profile.ProfileFilter;
 import org.exoplatform.social.core.profile.ProfileListener;
@@ -134,6 +135,33 @@ public interface IdentityManager {
   ListAccess<Identity> getIdentitiesByProfileFilter(String providerId, ProfileFilter profileFilter,
                                                   boolean isProfileLoaded);
   
+  /**
+   * Gets the light projections of the given identities, to render them in a list without loading
+   * their whole profile.
+   *
+   * @param identityIds The ids of the identities.
+   * @return The projections, in the order of the ids, the unknown ids being skipped.
+   * @LevelAPI Platform
+   * @since 4.1.0
+   */
+  List<IdentitySummary> getIdentitySummaries(List<String> identityIds);
+
+  /**
+   * Gets the identities having a name which starts with the given text, to suggest them while the name
+   * is typed, for example after '@'. The connections of the viewer come first.
+   *
+   * @param providerId Id of the provider.
+   * @param name The typed name.
+   * @param viewer The identity typing the name, may be null.
+   * @param excludedIdentities The identities not to suggest, may be null.
+   * @param limit The maximum number of identities.
+   * @return The light projections of the identities.
+   * @LevelAPI Platform
+   * @since 4.1.0
+   */
+  List<IdentitySummary> getIdentitySuggestions(String providerId, String name, Identity viewer,
+                                               List<Identity> excludedIdentities, int limit);
+
   /**
    * Gets a list access which contains identities matching with the Unified Search condition.
    *
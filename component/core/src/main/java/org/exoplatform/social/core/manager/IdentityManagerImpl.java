@@ -31,6 +31,7 @@ import org.exoplatform.social.core.identity.ProfileFilterListAccess;
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess;
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess.Type;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.profile.ProfileFilter;
 import org.exoplatform.social.core.profile.ProfileLifeCycle;
@@ -101,6 +102,21 @@ public class IdentityManagerImpl implements IdentityManager {
     return (new ProfileFilterListAccess(identityStorage, providerId, profileFilter, forceLoadProfile));
   }
 
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<IdentitySummary> getIdentitySummaries(List<String> identityIds) {
+    return identityStorage.getIdentitySummaries(identityIds);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<IdentitySummary> getIdentitySuggestions(String providerId, String name, Identity viewer,
+                                                      List<Identity> excludedIdentities, int limit) {
+    return identityStorage.getIdentitySuggestions(providerId, name, viewer, excludedIdentities, limit);
+  }
   
   /**
    * {@inheritDoc}
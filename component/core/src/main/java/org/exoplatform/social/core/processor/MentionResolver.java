@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.processor;
+
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.Profile;
+import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
+import org.exoplatform.social.core.manager.IdentityManager;
+import org.exoplatform.social.core.service.LinkProvider;
+import org.exoplatform.social.core.storage.cache.SocialStorageCacheService;
+import org.exoplatform.social.core.storage.cache.model.data.MentionData;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityCompositeKey;
+
+/**
+ * Resolves the mentioned user names to their identity id and profile link, through the mention cache.
+ *
+ * The cache is invalidated by the identity storage when the identity or its profile changes.
+ *
+ * @since 4.1.0
+ */
+public class MentionResolver {
+
+  private static final Log LOG = ExoLogger.getLogger(MentionResolver.class);
+
+  private final ExoCache<IdentityCompositeKey, MentionData> mentionCache;
+
+  private IdentityManager identityManager;
+
+  public MentionResolver(SocialStorageCacheService cacheService) {
+    this.mentionCache = cacheService != null ? cacheService.getMentionCache() : null;
+  }
+
+  /**
+   * Gets the resolver of the current container, or a resolver without cache when none is registered.
+   *
+   * @return the resolver
+   */
+  public static MentionResolver getInstance() {
+    PortalContainer container = PortalContainer.getInstance();
+    MentionResolver resolver = (MentionResolver) container.getComponentInstanceOfType(MentionResolver.class);
+    if (resolver == null) {
+      resolver = new MentionResolver((SocialStorageCacheService) container.getComponentInstanceOfType(SocialStorageCacheService.class));
+    }
+    return resolver;
+  }
+
+  /**
+   * @param remoteId the mentioned user name
+   * @return the identity id of the user, null if the user does not exist
+   */
+  public String getIdentityId(String remoteId) {
+    return resolve(remoteId).getIdentityId();
+  }
+
+  /**
+   * @param remoteId the mentioned user name
+   * @param portalOwner the portal owner
+   * @return the link on the user profile, null if the user does not exist
+   */
+  public String getProfileLink(String remoteId, String portalOwner) {
+    MentionData data = resolve(remoteId);
+    if (!data.exists()) {
+      return null;
+    }
+    return LinkProvider.buildProfileLink(remoteId, data.getFullName(), portalOwner);
+  }
+
+  /**
+   * Removes the resolution of the given user name.
+   *
+   * @param remoteId the user name
+   */
+  public void clear(String remoteId) {
+    if (mentionCache != null && remoteId != null) {
+      mentionCache.remove(new IdentityCompositeKey(OrganizationIdentityProvider.NAME, remoteId));
+    }
+  }
+
+  private MentionData resolve(String remoteId) {
+    if (remoteId == null) {
+      return MentionData.NULL;
+    }
+    IdentityCompositeKey key = new IdentityCompositeKey(OrganizationIdentityProvider.NAME, remoteId);
+    MentionData data = mentionCache != null ? mentionCache.get(key) : null;
+    if (data == null) {
+      data = load(remoteId);
+      if (mentionCache != null) {
+        mentionCache.put(key, data);
+      }
+    }
+    return data;
+  }
+
+  private MentionData load(String remoteId) {
+    Identity identity = null;
+    try {
+      identity = getIdentityManager().getOrCreateIdentity(OrganizationIdentityProvider.NAME, remoteId, true);
+    } catch (Exception e) {
+      LOG.debug("Failed to resolve the mention of " + remoteId, e);
+    }
+    if (identity == null) {
+      return MentionData.NULL;
+    }
+    Profile profile = identity.getProfile();
+    return new MentionData(identity.getId(), profile != null ? profile.getFullName() : remoteId);
+  }
+
+  private IdentityManager getIdentityManager() {
+    if (identityManager == null) {
+      identityManager = (IdentityManager) PortalContainer.getInstance().getComponentInstanceOfType(IdentityManager.class);
+    }
+    return identityManager;
+  }
+
+}
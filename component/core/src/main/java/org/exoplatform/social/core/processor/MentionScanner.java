@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.processor;
+
+/**
+ * Finds the @mentions of a text in one forward pass, without regular expression.
+ *
+ * A mention is a '@' followed by at least one non whitespace character, up to the next whitespace,
+ * as the former <code>@([^\s]+)</code> pattern.
+ *
+ * @since 4.1.0
+ */
+public class MentionScanner {
+
+  private final String text;
+  private int position;
+  private int start = -1;
+  private int end = -1;
+
+  public MentionScanner(String text) {
+    this.text = text != null ? text : "";
+  }
+
+  /**
+   * Moves to the next mention.
+   *
+   * @return true when a mention is found
+   */
+  public boolean find() {
+    int length = text.length();
+    while (position < length) {
+      int at = text.indexOf('@', position);
+      if (at < 0) {
+        position = length;
+        return false;
+      }
+      int i = at + 1;
+      while (i < length && !isWhitespace(text.charAt(i))) {
+        ++i;
+      }
+      if (i > at + 1) {
+        start = at;
+        end = i;
+        position = i;
+        return true;
+      }
+      position = at + 1;
+    }
+    return false;
+  }
+
+  /**
+   * @return the position of the '@' of the current mention
+   */
+  public int start() {
+    return start;
+  }
+
+  /**
+   * @return the position after the current mention
+   */
+  public int end() {
+    return end;
+  }
+
+  /**
+   * @return the mentioned name, without the '@'
+   */
+  public String getMention() {
+    return text.substring(start + 1, end);
+  }
+
+  /**
+   * Tells whether the given name can be a user name: a letter followed by at least one letter, digit,
+   * '.', '_' or '-'.
+   *
+   * @param name the name
+   * @return true for a valid user name
+   */
+  public static boolean isValidUserName(String name) {
+    if (name == null || name.length() < 2 || !Character.isLetter(name.codePointAt(0))) {
+      return false;
+    }
+    int count = 0;
+    for (int i = Character.charCount(name.codePointAt(0)); i < name.length(); ) {
+      int c = name.codePointAt(i);
+      if (!Character.isLetter(c) && c != '.' && c != '_' && c != '-' && (c < '0' || c > '9')) {
+        return false;
+      }
+      i += Character.charCount(c);
+      ++count;
+    }
+    return count > 0;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+}
@@ -18,19 +18,11 @@ package org.exoplatform.social.core.processor;
 
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.exoplatform.container.ExoContainer;
-import org.exoplatform.container.ExoContainerContext;
-import org.exoplatform.container.PortalContainer;
 import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.social.core.BaseActivityProcessorPlugin;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
-import org.exoplatform.social.core.identity.model.Identity;
-import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
-import org.exoplatform.social.core.manager.IdentityManager;
 import org.exoplatform.social.core.service.LinkProvider;
 
 /**
@@ -40,7 +32,7 @@ import org.exoplatform.social.core.service.LinkProvider;
  */
 public class MentionsProcessor extends BaseActivityProcessorPlugin {
 
-  private static final Pattern pattern = Pattern.compile("@([^\\s]+)|@([^\\s]+)$");
+  private MentionResolver mentionResolver;
 
   public MentionsProcessor(InitParams params) {
     super(params);
@@ -67,45 +59,46 @@ public class MentionsProcessor extends BaseActivityProcessorPlugin {
     if (message == null) {
       return null;
     }
-    
-    Matcher matcher = pattern.matcher(message);
 
-    // Replace all occurrences of pattern in input
-    StringBuffer buf = new StringBuffer();
-    while (matcher.find()) {
-      // Get the match result
-      String replaceStr = matcher.group().substring(1);
-
-      String portalOwner = null;
-      try{
-        portalOwner = Util.getPortalRequestContext().getPortalOwner();
-      } catch (Exception e){
-        //default value for testing and social
-        portalOwner = LinkProvider.DEFAULT_PORTAL_OWNER;
+    MentionScanner scanner = new MentionScanner(message);
+    StringBuilder buf = null;
+    int last = 0;
+    String portalOwner = null;
+    while (scanner.find()) {
+      if (portalOwner == null) {
+        try {
+          portalOwner = Util.getPortalRequestContext().getPortalOwner();
+        } catch (Exception e) {
+          //default value for testing and social
+          portalOwner = LinkProvider.DEFAULT_PORTAL_OWNER;
+        }
       }
 
-      // Convert to uppercase
-      ExoContainer container = ExoContainerContext.getCurrentContainer();
-      LinkProvider lp = (LinkProvider) container.getComponentInstanceOfType(LinkProvider.class);
-      IdentityManager identityManager = (IdentityManager) PortalContainer.getInstance()
-          .getComponentInstanceOfType(IdentityManager.class);
-      Identity identity = identityManager.getOrCreateIdentity(OrganizationIdentityProvider.NAME, replaceStr, false);
-      if (identity == null) {
+      String link = getMentionResolver().getProfileLink(scanner.getMention(), portalOwner);
+      if (link == null) {
         continue;
       }
-      
-      replaceStr = lp.getProfileLink(replaceStr, portalOwner);
 
       // Insert replacement
-      if(replaceStr != null){
-        matcher.appendReplacement(buf, replaceStr);
+      if (buf == null) {
+        buf = new StringBuilder(message.length() + 64);
       }
-
+      buf.append(message, last, scanner.start()).append(link);
+      last = scanner.end();
     }
-    matcher.appendTail(buf);
+    if (buf == null) {
+      return message;
+    }
+    buf.append(message, last, message.length());
     return buf.toString();
 
   }
 
+  private MentionResolver getMentionResolver() {
+    if (mentionResolver == null) {
+      mentionResolver = MentionResolver.getInstance();
+    }
+    return mentionResolver;
+  }
 
 }
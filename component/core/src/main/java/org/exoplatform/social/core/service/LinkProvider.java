@@ -146,8 +146,21 @@ public class LinkProvider {
   public static String getProfileLink(final String username, final String portalOwner) {
     Identity identity = getIdentityManager().getOrCreateIdentity(OrganizationIdentityProvider.NAME, username, true);
     Validate.notNull(identity, "Identity must not be null.");
-    return "<a href=\"" + buildProfileUri(identity.getRemoteId(), null, portalOwner)
-    + "\" target=\"_parent\">" + identity.getProfile().getFullName() + "</a>";
+    return buildProfileLink(identity.getRemoteId(), identity.getProfile().getFullName(), portalOwner);
+  }
+
+  /**
+   * Builds a link to the user profile on a portal, without loading the identity.
+   *
+   * @param username The name of user (remoteId).
+   * @param fullName The full name of the user, displayed by the link.
+   * @param portalOwner The portal owner (for example, classic or public).
+   * @return The link.
+   * @since 4.1.0
+   */
+  public static String buildProfileLink(final String username, final String fullName, final String portalOwner) {
+    return "<a href=\"" + buildProfileUri(username, null, portalOwner)
+    + "\" target=\"_parent\">" + fullName + "</a>";
   }
 
   /**
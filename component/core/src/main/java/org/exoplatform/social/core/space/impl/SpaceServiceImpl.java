@@ -21,8 +21,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.exoplatform.commons.utils.ListAccess;
@@ -395,22 +397,26 @@ public class SpaceServiceImpl implements SpaceService {
         PageList<User> groupMembersAccess = org.getUserHandler().findUsersByGroup(invitedGroupId);
         List<User> users = groupMembersAccess.getAll();
 
+        // Collects the users once and then sets the arrays, instead of copying them for each user.
+        Set<String> memberIds = new LinkedHashSet<String>(Arrays.asList(space.getMembers()));
+        Set<String> invitedIds = new LinkedHashSet<String>();
+        if (space.getInvitedUsers() != null) {
+          invitedIds.addAll(Arrays.asList(space.getInvitedUsers()));
+        }
         for (User user : users) {
           String userId = user.getUserName();
           if (!userId.equals(creator)) {
-            String[] invitedUsers = space.getInvitedUsers();
             if (userId.equals(getUserACL().getSuperUser())) {
-              members = space.getMembers();
-              if (!ArrayUtils.contains(members, userId)) {
-                members = (String[]) ArrayUtils.add(members, userId);
-                space.setMembers(members);
-              }
-            } else if (!ArrayUtils.contains(invitedUsers, userId)) {
-              invitedUsers = (String[]) ArrayUtils.add(invitedUsers, userId);
-              space.setInvitedUsers(invitedUsers);
+              memberIds.add(userId);
+            } else {
+              invitedIds.add(userId);
             }
           }
         }
+        space.setMembers(memberIds.toArray(new String[memberIds.size()]));
+        if (!invitedIds.isEmpty()) {
+          space.setInvitedUsers(invitedIds.toArray(new String[invitedIds.size()]));
+        }
       } catch (Exception e) {
         LOG.error("Failed to invite users from group " + invitedGroupId, e);
       }
@@ -555,11 +561,10 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void addMember(Space space, String userId) {
-    String[] members = space.getMembers();
     space = this.removeInvited(space, userId);
     space = this.removePending(space, userId);
-    if (!ArrayUtils.contains(members, userId)) {
-      members = (String[]) ArrayUtils.add(members, userId);
+    if (!space.getMembership().isMember(userId)) {
+      String[] members = (String[]) ArrayUtils.add(space.getMembers(), userId);
       space.setMembers(members);
       this.updateSpace(space);
       SpaceUtils.addUserToGroupWithMemberMembership(userId, space.getGroupId());
@@ -578,9 +583,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void removeMember(Space space, String userId) {
-    String[] members = space.getMembers();
-    if (ArrayUtils.contains(members, userId)) {
-      members = (String[]) ArrayUtils.removeElement(members, userId);
+    if (space.getMembership().isMember(userId)) {
+      String[] members = (String[]) ArrayUtils.removeElement(space.getMembers(), userId);
       space.setMembers(members);
       this.updateSpace(space);
       SpaceUtils.removeUserFromGroupWithMemberMembership(userId, space.getGroupId());
@@ -599,9 +603,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   private Space addPending(Space space, String userId) {
-    String[] pendingUsers = space.getPendingUsers();
-    if (!ArrayUtils.contains(pendingUsers, userId)) {
-      pendingUsers = (String[]) ArrayUtils.add(pendingUsers, userId);
+    if (!space.getMembership().isPending(userId)) {
+      String[] pendingUsers = (String[]) ArrayUtils.add(space.getPendingUsers(), userId);
       space.setPendingUsers(pendingUsers);
     }
     return space;
@@ -611,9 +614,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   private Space removePending(Space space, String userId) {
-    String[] pendingUsers = space.getPendingUsers();
-    if (ArrayUtils.contains(pendingUsers, userId)) {
-      pendingUsers = (String[]) ArrayUtils.removeElement(pendingUsers, userId);
+    if (space.getMembership().isPending(userId)) {
+      String[] pendingUsers = (String[]) ArrayUtils.removeElement(space.getPendingUsers(), userId);
       space.setPendingUsers(pendingUsers);
     }
     return space;
@@ -623,9 +625,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   private Space addInvited(Space space, String userId) {
-    String[] invitedUsers = space.getInvitedUsers();
-    if (!ArrayUtils.contains(invitedUsers, userId)) {
-      invitedUsers = (String[]) ArrayUtils.add(invitedUsers, userId);
+    if (!space.getMembership().isInvited(userId)) {
+      String[] invitedUsers = (String[]) ArrayUtils.add(space.getInvitedUsers(), userId);
       space.setInvitedUsers(invitedUsers);
     }
     return space;
@@ -635,9 +636,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   private Space removeInvited(Space space, String userId) {
-    String[] invitedUsers = space.getInvitedUsers();
-    if (ArrayUtils.contains(invitedUsers, userId)) {
-      invitedUsers = (String[]) ArrayUtils.removeElement(invitedUsers, userId);
+    if (space.getMembership().isInvited(userId)) {
+      String[] invitedUsers = (String[]) ArrayUtils.removeElement(space.getInvitedUsers(), userId);
       space.setInvitedUsers(invitedUsers);
     }
     return space;
@@ -653,6 +653,13 @@ public class SpaceServiceImpl implements SpaceService {
     return new ArrayList<String> ();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<String> getMembers(Space space, int offset, int limit) {
+    return space.getMembership().getMembers(offset, limit);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -712,7 +719,7 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public boolean isMember(Space space, String userId) {
-    return ArrayUtils.contains(space.getMembers(), userId);
+    return space.getMembership().isMember(userId);
   }
 
   /**
@@ -727,8 +734,8 @@ public class SpaceServiceImpl implements SpaceService {
    */
   public boolean hasAccessPermission(Space space, String userId) {
     if (userId.equals(getUserACL().getSuperUser()) 
-        || (ArrayUtils.contains(space.getMembers(), userId)) 
-        || (ArrayUtils.contains(space.getManagers(), userId))) {
+        || (space.getMembership().isMember(userId)) 
+        || (space.getMembership().isManager(userId))) {
       return true;
     }
     return false;
@@ -1197,10 +1204,10 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void addInvitedUser(Space space, String userId) {
-    if (ArrayUtils.contains(space.getInvitedUsers(), userId)) {
+    if (space.getMembership().isInvited(userId)) {
       LOG.warn("User already invited");
       return;
-    } else if (ArrayUtils.contains(space.getMembers(), userId) && !userId.equals(getUserACL().getSuperUser())) {
+    } else if (space.getMembership().isMember(userId) && !userId.equals(getUserACL().getSuperUser())) {
       LOG.warn("User already member");
       return;
     }
@@ -1217,7 +1224,7 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void addPendingUser(Space space, String userId) {
-    if (ArrayUtils.contains(space.getPendingUsers(), userId)) {
+    if (space.getMembership().isPending(userId)) {
       this.addMember(space, userId);
       space = removeInvited(space, userId);
       this.updateSpace(space);
@@ -1324,7 +1331,7 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public boolean hasSettingPermission(Space space, String userId) {
-    if (userId.equals(getUserACL().getSuperUser()) || (ArrayUtils.contains(space.getManagers(), userId))) {
+    if (userId.equals(getUserACL().getSuperUser()) || (space.getMembership().isManager(userId))) {
       return true;
     }
     return false;
@@ -1334,14 +1341,14 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public boolean isInvitedUser(Space space, String userId) {
-    return ArrayUtils.contains(space.getInvitedUsers(), userId);
+    return space.getMembership().isInvited(userId);
   }
 
   /**
    * {@inheritDoc}
    */
   public boolean isManager(Space space, String userId) {
-    return ArrayUtils.contains(space.getManagers(), userId);
+    return space.getMembership().isManager(userId);
   }
 
   /**
@@ -1358,7 +1365,7 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public boolean isPendingUser(Space space, String userId) {
-    return ArrayUtils.contains(space.getPendingUsers(), userId);
+    return space.getMembership().isPending(userId);
   }
 
   /**
@@ -1372,7 +1379,7 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void removeInvitedUser(Space space, String userId) {
-    if (ArrayUtils.contains(space.getInvitedUsers(), userId)) {
+    if (space.getMembership().isInvited(userId)) {
       space = this.removeInvited(space, userId);
       this.updateSpace(space);
     }
@@ -1382,7 +1389,7 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void removePendingUser(Space space, String userId) {
-    if (ArrayUtils.contains(space.getPendingUsers(), userId)) {
+    if (space.getMembership().isPending(userId)) {
       space = this.removePending(space, userId);
       this.updateSpace(space);
     }
@@ -1392,18 +1399,17 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void setManager(Space space, String userId, boolean isManager) {
-    String[] managers = space.getManagers();
     if (isManager) {
-      if (!ArrayUtils.contains(managers, userId)) {
-        managers = (String[]) ArrayUtils.add(managers, userId);
+      if (!space.getMembership().isManager(userId)) {
+        String[] managers = (String[]) ArrayUtils.add(space.getManagers(), userId);
         space.setManagers(managers);
         this.updateSpace(space);
         SpaceUtils.addUserToGroupWithManagerMembership(userId, space.getGroupId());
         spaceLifeCycle.grantedLead(space, userId);
       }
     } else {
-      if (ArrayUtils.contains(managers, userId)) {
-        managers = (String[]) ArrayUtils.removeElement(managers, userId);
+      if (space.getMembership().isManager(userId)) {
+        String[] managers = (String[]) ArrayUtils.removeElement(space.getManagers(), userId);
         space.setManagers(managers);
         this.updateSpace(space);
         SpaceUtils.removeUserFromGroupWithManagerMembership(userId, space.getGroupId());
@@ -126,6 +126,13 @@ public class Space {
    */
   private String[] members;
   
+  /**
+   * The hashed view of the users of a space.
+   * 
+   * @since 4.1.0
+   */
+  private SpaceMembership membership;
+  
   /** The Constant ACTIVE_STATUS. */
   public final static String ACTIVE_STATUS = "active";
 
@@ -611,6 +618,34 @@ public class Space {
     this.members = members;
   }
   
+  /**
+   * Gets the hashed view of the members, managers, invited and pending users of a space. The view
+   * follows the arrays set on the space, the arrays must not be changed in place.
+   * 
+   * @return the view
+   * @since 4.1.0
+   */
+  public SpaceMembership getMembership() {
+    SpaceMembership view = membership;
+    if (view == null) {
+      view = new SpaceMembership(members, managers, invitedUsers, pendingUsers);
+    } else {
+      view = view.viewOf(this);
+    }
+    membership = view;
+    return view;
+  }
+  
+  /**
+   * Sets the hashed view of the users of a space, shared with the other spaces having the same arrays.
+   * 
+   * @param membership the view
+   * @since 4.1.0
+   */
+  public void setMembership(SpaceMembership membership) {
+    this.membership = membership;
+  }
+  
   /**
    * Gets the last updated time in milliseconds of avatar in a space
    * @return {@link Void}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.space.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed view of the users of a space by role, over the arrays of the space. The set of a role is built
+ * on its first lookup, the small roles are scanned. The view is shared by the spaces built from the same
+ * cached data, and a role whose array did not change is kept when the view is rebuilt.
+ *
+ * The view only speeds up the lookups. The roles are still stored as arrays, so adding or removing a user
+ * copies the array of its role, hashes it again on the next lookup and rewrites the whole property.
+ *
+ * @since 4.1.0
+ */
+public final class SpaceMembership {
+
+  /** The roles up to this size are scanned instead of hashed. */
+  private static final int SCANNED_SIZE = 8;
+
+  private final Role members;
+
+  private final Role managers;
+
+  private final Role invitedUsers;
+
+  private final Role pendingUsers;
+
+  public SpaceMembership(String[] members, String[] managers, String[] invitedUsers, String[] pendingUsers) {
+    this(new Role(members), new Role(managers), new Role(invitedUsers), new Role(pendingUsers));
+  }
+
+  private SpaceMembership(Role members, Role managers, Role invitedUsers, Role pendingUsers) {
+    this.members = members;
+    this.managers = managers;
+    this.invitedUsers = invitedUsers;
+    this.pendingUsers = pendingUsers;
+  }
+
+  /**
+   * Gets the view of the current arrays of the space, this view when they did not change.
+   *
+   * @param space the space
+   * @return the view
+   */
+  SpaceMembership viewOf(Space space) {
+    if (isViewOf(space)) {
+      return this;
+    }
+    return new SpaceMembership(members.of(space.getMembers()), managers.of(space.getManagers()),
+                               invitedUsers.of(space.getInvitedUsers()), pendingUsers.of(space.getPendingUsers()));
+  }
+
+  /**
+   * Tells whether this view is over the current arrays of the space.
+   *
+   * @param space the space
+   * @return true if the arrays of the space are the ones of this view
+   */
+  public boolean isViewOf(Space space) {
+    return members.ids == space.getMembers()
+        && managers.ids == space.getManagers()
+        && invitedUsers.ids == space.getInvitedUsers()
+        && pendingUsers.ids == space.getPendingUsers();
+  }
+
+  public boolean isMember(String userId) {
+    return members.contains(userId);
+  }
+
+  public boolean isManager(String userId) {
+    return managers.contains(userId);
+  }
+
+  public boolean isInvited(String userId) {
+    return invitedUsers.contains(userId);
+  }
+
+  public boolean isPending(String userId) {
+    return pendingUsers.contains(userId);
+  }
+
+  public int getMembersCount() {
+    return members.ids != null ? members.ids.length : 0;
+  }
+
+  /**
+   * Gets a page of the members, in the order of the space.
+   *
+   * @param offset the index of the first member
+   * @param limit the maximum number of members
+   * @return the members
+   */
+  public List<String> getMembers(int offset, int limit) {
+    int size = getMembersCount();
+    if (offset < 0 || limit <= 0 || offset >= size) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<String>(Arrays.asList(members.ids).subList(offset, Math.min(size, offset + limit)));
+  }
+
+  private static final class Role {
+
+    private final String[] ids;
+
+    private volatile Set<String> set;
+
+    private Role(String[] ids) {
+      this.ids = ids;
+    }
+
+    private Role of(String[] ids) {
+      return ids == this.ids ? this : new Role(ids);
+    }
+
+    private boolean contains(String id) {
+      if (ids == null || id == null) {
+        return false;
+      }
+      if (ids.length <= SCANNED_SIZE) {
+        for (String each : ids) {
+          if (id.equals(each)) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      //
+      Set<String> got = set;
+      if (got == null) {
+        got = new HashSet<String>(Arrays.asList(ids));
+        set = got;
+      }
+      return got.contains(id);
+    }
+
+  }
+
+}
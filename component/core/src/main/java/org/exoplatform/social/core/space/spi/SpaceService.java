@@ -366,6 +366,18 @@ public interface SpaceService {
    */
   void removeMember(Space space, String userId);
 
+  /**
+   * Gets a page of the members of a given space, in the order they joined it.
+   *
+   * @param space The existing space.
+   * @param offset The index of the first member to return.
+   * @param limit The maximum number of members to return.
+   * @return The remote Ids of the members, never null.
+   * @LevelAPI Platform
+   * @since 4.1.0
+   */
+  List<String> getMembers(Space space, int offset, int limit);
+
   /**
    * Checks if a given user is member of space or not.
    *
@@ -24,10 +24,14 @@ import java.util.SortedSet;
 import org.exoplatform.social.core.ActivityProcessor;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
+import org.exoplatform.social.core.activity.filter.CommentIndex;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.ActivityStorageException;
 import org.exoplatform.social.core.storage.impl.ActivityBuilderWhere;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -65,6 +69,15 @@ public interface ActivityStorage {
    */
   public ExoSocialActivity getActivity(String activityId) throws ActivityStorageException;
 
+  /**
+   * Load the activities of the given ids in one pass.
+   *
+   * @param activityIds the ids of the activities
+   * @return the activities in the order of the ids, null for the ones which don't exist
+   * @since 4.1.0
+   */
+  public List<ExoSocialActivity> getActivities(List<String> activityIds) throws ActivityStorageException;
+
   /**
    * Gets all the activities by identity.
    *
@@ -514,6 +527,16 @@ public interface ActivityStorage {
    */
   public List<ExoSocialActivity> getComments(ExoSocialActivity existingActivity, int offset, int limit);
 
+  /**
+   * Gets the index of the comments of an activity: the comment ids with their last updated time
+   * and their hidden flag.
+   *
+   * @param activityId the id of the activity
+   * @return the comment index, empty when the activity doesn't exist
+   * @since 4.1.0
+   */
+  public CommentIndex getCommentIndex(String activityId);
+
   /**
    * Gets the number of comments of an activity.
    *
@@ -848,6 +871,27 @@ public interface ActivityStorage {
    */
   public int getNumberOfMultiUpdated(Identity owner, Map<String, Long> sinceTimes);
 
+  /**
+   * Gets the activities following the cursor in the stream of the given type.
+   * 
+   * @param type the stream type
+   * @param owner the stream owner
+   * @param cursor the cursor after the last activity of the previous page, null for the first page
+   * @param limit the maximum number of activities
+   * @return the activities, the most recent first
+   * @since 4.1.0
+   */
+  public List<ExoSocialActivity> getStreamActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit);
+
+  /**
+   * Gets the reference of the last activity in the stream of each given identity.
+   * 
+   * @param owners the stream owners
+   * @return the activity references by identity id, without the identities having no activity
+   * @since 4.1.0
+   */
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners);
+
   /**
    * Gets feed activities base on since time.
    * 
@@ -18,9 +18,12 @@ package org.exoplatform.social.core.storage.api;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.exoplatform.social.common.service.ProcessContext;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
@@ -333,6 +336,42 @@ public interface ActivityStreamStorage {
    */
   public boolean hasSizeOfMyActivities(Identity owner);
   
+  /**
+   * Gets the references of the activities updated after the given time in the stream of the given
+   * type, the most recent first. The activities are not loaded.
+   * 
+   * @param type the stream type
+   * @param owner the stream owner
+   * @param sinceTime the time in milliseconds
+   * @param limit the maximum number of references
+   * @return the activity ids with their last updated time
+   * @since 4.1.0
+   */
+  public List<ActivityUpdateRef> getNewerUpdates(ActivityRefType type, Identity owner, long sinceTime, int limit);
+  
+  /**
+   * Gets the activities following the cursor in the stream of the given type, the most recent first. The
+   * stream is read from the day of the cursor, the activities of the previous pages are not loaded.
+   * 
+   * @param type the stream type
+   * @param owner the stream owner
+   * @param cursor the cursor after the last activity of the previous page, null for the first page
+   * @param limit the maximum number of activities
+   * @return the activities
+   * @since 4.1.0
+   */
+  public List<ExoSocialActivity> getActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit);
+  
+  /**
+   * Gets the reference of the last visible activity in the own stream of each given identity, the one
+   * shown first by {@link #getMyActivities(Identity, int, int)}. The activities are not loaded.
+   * 
+   * @param owners the stream owners
+   * @return the activity references by identity id, without the identities having no activity
+   * @since 4.1.0
+   */
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners);
+  
   /**
    * Creates the ActivityRef by the given ActivityRefType
    * 
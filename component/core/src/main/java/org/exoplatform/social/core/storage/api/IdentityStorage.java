@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess.Type;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.model.Profile.AttachedActivityType;
 import org.exoplatform.social.core.profile.ProfileFilter;
@@ -162,6 +163,35 @@ public interface IdentityStorage {
                                                  long limit,
                                                  boolean forceLoadOrReloadProfile) throws IdentityStorageException;
   
+  /**
+   * Gets the light projections of the given identities, without loading their whole profile.
+   *
+   * @param identityIds The ids of the identities.
+   * @return the projections, in the order of the ids, the unknown ids being skipped
+   * @throws IdentityStorageException
+   * @since 4.1.0
+   */
+  public List<IdentitySummary> getIdentitySummaries(final List<String> identityIds) throws IdentityStorageException;
+
+  /**
+   * Gets the identities having a name which starts with the given text, to suggest them while the name
+   * is typed. The connections of the viewer come first.
+   *
+   * @param providerId Id of provider.
+   * @param name The typed name.
+   * @param viewer The identity typing the name, may be null.
+   * @param excludedIdentities The identities not to suggest, may be null.
+   * @param limit The maximum number of identities.
+   * @return the matching identities
+   * @throws IdentityStorageException
+   * @since 4.1.0
+   */
+  public List<IdentitySummary> getIdentitySuggestions(final String providerId,
+                                                      final String name,
+                                                      final Identity viewer,
+                                                      final List<Identity> excludedIdentities,
+                                                      int limit) throws IdentityStorageException;
+
   /**
    * Gets the identities for Unified Search.
    *
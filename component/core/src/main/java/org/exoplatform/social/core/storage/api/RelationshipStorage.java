@@ -115,7 +115,7 @@ public interface RelationshipStorage {
    *
    * @param identity the identity
    * @param type
-   * @param listCheckIdentity identity the checking identities
+   * @param listCheckIdentity the checking identities, all the relationships when null
    * @return the relationship
    * @throws RelationshipStorageException
    */
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.exoplatform.social.core.storage.cache.model.key.ActivityCountKey;
+import org.exoplatform.social.core.storage.cache.model.key.ListActivitiesKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+
+/**
+ * Hit, miss and eviction counters of the activity list and count caches, grouped by stream type.
+ *
+ * @since 4.1.0
+ */
+public class ActivityStreamCacheStatistics {
+
+  /** Stream name used for the keys built from a list of identities. */
+  public static final String IDENTITIES_STREAM = "IDENTITIES";
+
+  private static final int HIT = 0;
+  private static final int MISS = 1;
+  private static final int EVICTION = 2;
+
+  private final ConcurrentMap<String, AtomicLong[]> counters = new ConcurrentHashMap<String, AtomicLong[]>();
+
+  public void hit(ScopeCacheKey key) {
+    counters(streamOf(key))[HIT].incrementAndGet();
+  }
+
+  public void miss(ScopeCacheKey key) {
+    counters(streamOf(key))[MISS].incrementAndGet();
+  }
+
+  public void evict(ScopeCacheKey key) {
+    counters(streamOf(key))[EVICTION].incrementAndGet();
+  }
+
+  public long getHitCount(String stream) {
+    return get(stream, HIT);
+  }
+
+  public long getMissCount(String stream) {
+    return get(stream, MISS);
+  }
+
+  public long getEvictionCount(String stream) {
+    return get(stream, EVICTION);
+  }
+
+  public void reset() {
+    counters.clear();
+  }
+
+  /**
+   * Gets a snapshot of all the counters, as "stream=[hits, misses, evictions]" entries.
+   *
+   * @return the counters sorted by stream name
+   */
+  public Map<String, long[]> snapshot() {
+    Map<String, long[]> snapshot = new TreeMap<String, long[]>();
+    for (Map.Entry<String, AtomicLong[]> entry : counters.entrySet()) {
+      AtomicLong[] values = entry.getValue();
+      snapshot.put(entry.getKey(), new long[] {values[HIT].get(), values[MISS].get(), values[EVICTION].get()});
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets the stream type covered by a list or count key.
+   *
+   * @param key the cache key
+   * @return the stream name
+   */
+  static String streamOf(ScopeCacheKey key) {
+    ActivityCountKey countKey = null;
+    if (key instanceof ListActivitiesKey) {
+      countKey = ((ListActivitiesKey) key).getKey();
+    }
+    else if (key instanceof ActivityCountKey) {
+      countKey = (ActivityCountKey) key;
+    }
+
+    if (countKey == null || countKey.getType() == null) {
+      return IDENTITIES_STREAM;
+    }
+    return countKey.getType().name();
+  }
+
+  private long get(String stream, int index) {
+    AtomicLong[] values = counters.get(stream);
+    return values == null ? 0 : values[index].get();
+  }
+
+  private AtomicLong[] counters(String stream) {
+    AtomicLong[] values = counters.get(stream);
+    if (values == null) {
+      values = new AtomicLong[] {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+      AtomicLong[] existing = counters.putIfAbsent(stream, values);
+      if (existing != null) {
+        values = existing;
+      }
+    }
+    return values;
+  }
+
+}
@@ -19,9 +19,14 @@ package org.exoplatform.social.core.storage.cache;
 
 import org.exoplatform.services.cache.CacheService;
 import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.storage.cache.codec.CompactCodec;
 import org.exoplatform.social.core.storage.cache.loader.CacheLoader;
 import org.exoplatform.social.core.storage.cache.loader.ServiceContext;
 import org.exoplatform.social.core.storage.cache.model.key.CacheKey;
+import org.exoplatform.social.core.storage.cache.tier.OffHeapStore;
+import org.exoplatform.social.core.storage.cache.tier.TieredCache;
 
 import java.io.Serializable;
 
@@ -35,8 +40,11 @@ public enum CacheType {
   IDENTITY("IdentityCache"),
   IDENTITY_INDEX("IdentityIndexCache"),
   PROFILE("ProfileCache"),
+  MENTION("MentionCache"),
   IDENTITIES_COUNT("IdentitiesCountCache"),
   IDENTITIES("IdentitiesCache"),
+  IDENTITY_SUMMARY("IdentitySummaryCache"),
+  PROFILE_CHANGE("ProfileChangeCache"),
 
   //
   RELATIONSHIP("RelationshipCache"),
@@ -44,11 +52,17 @@ public enum CacheType {
   RELATIONSHIPS_COUNT("RelationshipsCountCache"),
   RELATIONSHIPS("RelationshipsCache"),
   SUGGESTIONS("SuggestionsCache"),
+  RELATIONSHIP_CHANGE("RelationshipChangeCache"),
 
   //
   ACTIVITY("ActivityCache"),
   ACTIVITIES_COUNT("ActivitiesCountCache"),
   ACTIVITIES("ActivitiesCache"),
+  COMMENT_INDEX("CommentIndexCache"),
+  RENDERED_ACTIVITY("RenderedActivityCache"),
+  UNREAD_COUNTER("UnreadCounterCache"),
+  LAST_ACTIVITY("LastActivityCache"),
+  PULL_SOURCES("PullSourcesCache"),
   
   //
   ACTIVITY_REF("ActivityRefCache"),
@@ -62,10 +76,14 @@ public enum CacheType {
   SPACES("SpacesCache"),
   
   //
-  SPACE_SIMPLE("SpaceSimpleCache")
+  SPACE_SIMPLE("SpaceSimpleCache"),
+  SPACE_MEMBERS("SpaceMembersCache")
 
   ;
 
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(CacheType.class);
+
   private final String name;
 
   private CacheType(final String name) {
@@ -76,6 +94,35 @@ public enum CacheType {
     return service.getCacheInstance(name);
   }
 
+  /**
+   * Gets the cache from the service, putting an off-heap store of the given capacity behind it. The values of
+   * the off-heap store expire after the live time of the cache. The caches shared by the cluster nodes are
+   * returned as is, as the off-heap store is local to the node.
+   *
+   * @param service the cache service
+   * @param offHeapCapacity the capacity of the off-heap store in bytes, the cache is returned as is when 0
+   * @return the cache
+   * @since 4.1.0
+   */
+  public <K extends CacheKey, V extends Serializable> ExoCache<K, V> getFromService(CacheService service,
+                                                                                   int offHeapCapacity) {
+    ExoCache<K, V> cache = getFromService(service);
+    if (offHeapCapacity <= 0) {
+      return cache;
+    }
+    if (cache.isDistributed() || cache.isReplicated()) {
+      // the off-heap store is local to the node, it would keep the entries changed by the other nodes
+      LOG.warn("The off-heap store of " + name + " is disabled as the cache is shared by the cluster nodes");
+      return cache;
+    }
+    OffHeapStore store = new OffHeapStore(name, offHeapCapacity, cache.getLiveTime() * 1000);
+    return TieredCache.wrap(cache, store, new CompactCodec<V>());
+  }
+
+  public String getName() {
+    return name;
+  }
+
   public <K extends CacheKey, V extends Serializable> FutureExoCache<K, V, ServiceContext<V>> createFutureCache(
       ExoCache<K, V> cache) {
 
@@ -18,22 +18,48 @@
 package org.exoplatform.social.core.storage.cache;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 
+import org.exoplatform.commons.utils.PropertyManager;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.annotations.ManagedName;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
 import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.ActivityProcessor;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
+import org.exoplatform.social.core.activity.filter.CommentIndex;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
+import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
+import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.core.storage.ActivityStorageException;
 import org.exoplatform.social.core.storage.api.ActivityStorage;
+import org.exoplatform.social.core.storage.api.IdentityStorage;
+import org.exoplatform.social.core.storage.api.RelationshipStorage;
+import org.exoplatform.social.core.storage.api.SpaceStorage;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndex;
+import org.exoplatform.social.core.storage.cache.loader.CacheLoader;
 import org.exoplatform.social.core.storage.cache.loader.ServiceContext;
 import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
+import org.exoplatform.social.core.storage.cache.model.data.CommentIndexData;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
 import org.exoplatform.social.core.storage.cache.model.data.ListActivitiesData;
 import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
@@ -43,34 +69,66 @@ import org.exoplatform.social.core.storage.cache.model.key.ActivityType;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
 import org.exoplatform.social.core.storage.cache.model.key.ListActivitiesKey;
 import org.exoplatform.social.core.storage.cache.selector.ActivityOwnerCacheSelector;
+import org.exoplatform.social.core.storage.cache.selector.ActivityStreamCacheSelector;
+import org.exoplatform.social.core.storage.cache.selector.ActivityStreamTypeSelector;
 import org.exoplatform.social.core.storage.cache.selector.ScopeCacheSelector;
 import org.exoplatform.social.core.storage.impl.ActivityBuilderWhere;
 import org.exoplatform.social.core.storage.impl.ActivityStorageImpl;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
+import org.exoplatform.social.core.storage.streams.ActivityStreamListener;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class CachedActivityStorage implements ActivityStorage {
+@Managed
+@ManagedDescription("Social activity storage cache")
+@NameTemplate({@Property(key = "service", value = "social"), @Property(key = "view", value = "ActivityStorageCache")})
+public class CachedActivityStorage implements ActivityStorage, ActivityStreamListener {
 
   /** Logger */
   private static final Log LOG = ExoLogger.getLogger(CachedActivityStorage.class);
 
+  /** Set to false to evict all the streams of the recipients of new activities instead of the pushed stream only. */
+  public static final String INCREMENTAL_STREAMS_PROPERTY = "exo.social.activity.stream.incremental";
+
+  /** Stream types whose cached pages and count are evicted alone when an activity is pushed. */
+  private static final Set<ActivityType> INCREMENTAL_TYPES =
+      Collections.unmodifiableSet(EnumSet.of(ActivityType.FEED, ActivityType.CONNECTION, ActivityType.SPACES,
+                                             ActivityType.SPACE, ActivityType.USER));
+
   private final ExoCache<ActivityKey, ActivityData> exoActivityCache;
   private final ExoCache<ActivityCountKey, IntegerData> exoActivitiesCountCache;
   private final ExoCache<ListActivitiesKey, ListActivitiesData> exoActivitiesCache;
+  private final ExoCache<ActivityKey, CommentIndexData> exoCommentIndexCache;
+
+  private final CacheKeyIndex<ActivityKey, ActivityData> activityKeys;
+  private final CacheKeyIndex<ActivityCountKey, IntegerData> activitiesCountKeys;
+  private final CacheKeyIndex<ListActivitiesKey, ListActivitiesData> activitiesKeys;
+  private final CacheKeyIndex<ActivityKey, CommentIndexData> commentIndexKeys;
 
   private final FutureExoCache<ActivityKey, ActivityData, ServiceContext<ActivityData>> activityCache;
   private final FutureExoCache<ActivityCountKey, IntegerData, ServiceContext<IntegerData>> activitiesCountCache;
   private final FutureExoCache<ListActivitiesKey, ListActivitiesData, ServiceContext<ListActivitiesData>> activitiesCache;
+  private final FutureExoCache<ActivityKey, CommentIndexData, ServiceContext<CommentIndexData>> commentIndexCache;
+
+  private final ActivityStreamCacheStatistics statistics;
 
   private final ActivityStorageImpl storage;
 
+  private IdentityStorage identityStorage;
+  private RelationshipStorage relationshipStorage;
+  private SpaceStorage spaceStorage;
+
+  private volatile boolean incrementalStreams;
+
   public void clearCache() {
 
     try {
-      exoActivitiesCache.select(new ScopeCacheSelector<ListActivitiesKey, ListActivitiesData>());
-      exoActivitiesCountCache.select(new ScopeCacheSelector<ActivityCountKey, IntegerData>());
+      activitiesKeys.select(new ScopeCacheSelector<ListActivitiesKey, ListActivitiesData>());
+      activitiesCountKeys.select(new ScopeCacheSelector<ActivityCountKey, IntegerData>());
+      commentIndexKeys.select(new ScopeCacheSelector<ActivityKey, CommentIndexData>());
     }
     catch (Exception e) {
       LOG.error(e);
@@ -78,16 +136,127 @@ public class CachedActivityStorage implements ActivityStorage {
 
   }
 
+  /**
+   * Clears the activity lists and counts of the given stream owners, and the comment lists and counts
+   * of the given activities. The other streams stay cached.
+   *
+   * @param ownerIds the identity ids of the affected stream owners
+   * @param activityIds the ids of the activities whose comments changed
+   * @since 4.1.0
+   */
+  public void clearStreamCache(Set<String> ownerIds, Set<String> activityIds) {
+    clearStreamCache(ownerIds, activityIds, null);
+  }
+
+  private void clearStreamCache(Set<String> ownerIds, Set<String> activityIds, Set<ActivityType> keptTypes) {
+
+    try {
+      ActivityStreamCacheSelector selector =
+          new ActivityStreamCacheSelector(ownerIds, activityIds, keptTypes, statistics);
+      Set<String> partitions = new HashSet<String>(ownerIds);
+      if (activityIds != null) {
+        partitions.addAll(activityIds);
+      }
+      activitiesKeys.select(selector, partitions);
+      activitiesCountKeys.select(selector, partitions);
+    }
+    catch (Exception e) {
+      LOG.error(e);
+    }
+
+    //
+    if (activityIds != null) {
+      for (String activityId : activityIds) {
+        exoCommentIndexCache.remove(new ActivityKey(activityId));
+      }
+    }
+
+  }
+
+  /**
+   * Clears the activity lists and counts of the given stream owners.
+   *
+   * @param ownerIds the identity ids of the affected stream owners
+   * @since 4.1.0
+   */
+  public void clearStreamCache(String... ownerIds) {
+    clearStreamCache(new HashSet<String>(Arrays.asList(ownerIds)), null);
+  }
+
+  /**
+   * Evicts the pages and the count of the given stream of each owner, as a new activity is pushed on top
+   * of it. The cache has no atomic replace shared by the nodes, so the cached pages are read again
+   * rather than updated in place. Without the incremental mode, all the streams of the owners are evicted.
+   *
+   * @param activityId the id of the new activity
+   * @param type the stream type
+   * @param ownerIds the identity ids of the stream owners
+   * @since 4.1.0
+   */
+  public void pushActivity(String activityId, ActivityType type, Set<String> ownerIds) {
+
+    if (ownerIds == null || ownerIds.isEmpty()) {
+      return;
+    }
+
+    if (!incrementalStreams || !INCREMENTAL_TYPES.contains(type)) {
+      clearStreamCache(ownerIds, null);
+      return;
+    }
+
+    //
+    for (String ownerId : ownerIds) {
+      ActivityCountKey countKey = new ActivityCountKey(new IdentityKey(new Identity(ownerId)), type);
+      if (exoActivitiesCountCache.remove(countKey) != null) {
+        statistics.evict(countKey);
+      }
+    }
+
+    //
+    try {
+      activitiesKeys.select(new ActivityStreamTypeSelector(ownerIds, type, statistics), ownerIds);
+    }
+    catch (Exception e) {
+      LOG.error(e);
+      clearStreamCache(ownerIds, null);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void pushed(String activityId, ActivityRefType type, Set<String> ownerIds) {
+    pushActivity(activityId, type.getCachedType(), ownerIds);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void pushFailed(ActivityRefType type, Set<String> ownerIds) {
+    clearStreamCache(ownerIds, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void lastUpdated(ActivityUpdateRef ref, Set<String> ownerIds) {
+    // The activity lists are updated by the pushes
+  }
+
   void clearOwnerCache(String ownerId) {
 
     try {
-      exoActivityCache.select(new ActivityOwnerCacheSelector(ownerId));
+      activityKeys.select(new ActivityOwnerCacheSelector(ownerId), Collections.singleton(ownerId));
     }
     catch (Exception e) {
       LOG.error(e);
     }
 
-    clearCache();
+    Set<String> owners = new HashSet<String>();
+    addRecipients(owners, getIdentityStorage().findIdentityById(ownerId));
+    owners.add(ownerId);
+    clearStreamCache(owners, null);
 
   }
 
@@ -99,10 +268,177 @@ public class CachedActivityStorage implements ActivityStorage {
    */
   public void clearActivityCached(String activityId) {
     ActivityKey key = new ActivityKey(activityId);
-    exoActivityCache.remove(key);
-    clearCache();
+    ActivityData data = exoActivityCache.remove(key);
+    
+    //
+    ExoSocialActivity activity = data != null ? data.build() : storage.getActivity(activityId);
+    Set<String> owners = new HashSet<String>();
+    addParticipants(owners, activity);
+    addRecipients(owners, getStreamOwner(activity));
+    clearStreamCache(owners, Collections.singleton(activityId));
   }
-  
+
+  /**
+   * Gets the stream owner of the given activity.
+   *
+   * @param activity the activity
+   * @return the stream owner identity or null
+   */
+  private Identity getStreamOwner(ExoSocialActivity activity) {
+    if (activity == null || activity.getStreamId() == null) {
+      return null;
+    }
+    return getIdentityStorage().findIdentityById(activity.getStreamId());
+  }
+
+  /**
+   * Adds the identities directly involved in the given activity: stream owner, poster, mentioners,
+   * commenters and likers.
+   *
+   * @param owners the set to fill
+   * @param activity the activity
+   */
+  private void addParticipants(Set<String> owners, ExoSocialActivity activity) {
+    if (activity == null) {
+      return;
+    }
+    addIds(owners, activity.getStreamId(), activity.getPosterId(), activity.getUserId());
+    addIds(owners, activity.getMentionedIds());
+    addIds(owners, activity.getCommentedIds());
+    addIds(owners, activity.getLikeIdentityIds());
+  }
+
+  /**
+   * Adds the identities receiving the activities of the given stream owner: the connections of a user,
+   * or the members of a space, as cached by the relationship and space storages.
+   *
+   * @param owners the set to fill
+   * @param streamOwner the stream owner
+   */
+  private void addRecipients(Set<String> owners, Identity streamOwner) {
+    if (streamOwner == null) {
+      return;
+    }
+    owners.add(streamOwner.getId());
+    if (OrganizationIdentityProvider.NAME.equals(streamOwner.getProviderId())) {
+      RelationshipStorage relationshipStorage = getRelationshipStorage();
+      if (relationshipStorage instanceof CachedRelationshipStorage) {
+        owners.addAll(((CachedRelationshipStorage) relationshipStorage).getConnectionIds(streamOwner));
+        return;
+      }
+      for (Identity connection : relationshipStorage.getConnections(streamOwner)) {
+        owners.add(connection.getId());
+      }
+    }
+    else if (SpaceIdentityProvider.NAME.equals(streamOwner.getProviderId())) {
+      SpaceStorage spaceStorage = getSpaceStorage();
+      Space space = spaceStorage.getSpaceByPrettyName(streamOwner.getRemoteId());
+      if (space == null || space.getMembers() == null) {
+        return;
+      }
+      if (spaceStorage instanceof CachedSpaceStorage) {
+        owners.addAll(((CachedSpaceStorage) spaceStorage).getMemberIdentityIds(space));
+        return;
+      }
+      for (String remoteId : space.getMembers()) {
+        Identity member = getIdentityStorage().findIdentity(OrganizationIdentityProvider.NAME, remoteId);
+        if (member != null) {
+          owners.add(member.getId());
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the given ids, ignoring the "@count" suffix used by the mentioners and commenters.
+   *
+   * @param owners the set to fill
+   * @param ids the ids
+   */
+  private void addIds(Set<String> owners, String... ids) {
+    if (ids == null) {
+      return;
+    }
+    for (String id : ids) {
+      if (id == null) {
+        continue;
+      }
+      int index = id.indexOf('@');
+      owners.add(index < 0 ? id : id.substring(0, index));
+    }
+  }
+
+  private IdentityStorage getIdentityStorage() {
+    if (identityStorage == null) {
+      identityStorage = (IdentityStorage) PortalContainer.getInstance().getComponentInstanceOfType(IdentityStorage.class);
+    }
+    return identityStorage;
+  }
+
+  private RelationshipStorage getRelationshipStorage() {
+    if (relationshipStorage == null) {
+      relationshipStorage = (RelationshipStorage) PortalContainer.getInstance().getComponentInstanceOfType(RelationshipStorage.class);
+    }
+    return relationshipStorage;
+  }
+
+  private SpaceStorage getSpaceStorage() {
+    if (spaceStorage == null) {
+      spaceStorage = (SpaceStorage) PortalContainer.getInstance().getComponentInstanceOfType(SpaceStorage.class);
+    }
+    return spaceStorage;
+  }
+
+  @Managed
+  @ManagedDescription("Number of cache hits of the given activity stream type (FEED, CONNECTION, SPACES, SPACE, USER, POSTER...)")
+  public long getStreamHitCount(@ManagedDescription("The stream type") @ManagedName("streamType") String streamType) {
+    return statistics.getHitCount(streamType);
+  }
+
+  @Managed
+  @ManagedDescription("Number of cache misses of the given activity stream type (FEED, CONNECTION, SPACES, SPACE, USER, POSTER...)")
+  public long getStreamMissCount(@ManagedDescription("The stream type") @ManagedName("streamType") String streamType) {
+    return statistics.getMissCount(streamType);
+  }
+
+  @Managed
+  @ManagedDescription("Number of evictions of the given activity stream type (FEED, CONNECTION, SPACES, SPACE, USER, POSTER...)")
+  public long getStreamEvictionCount(@ManagedDescription("The stream type") @ManagedName("streamType") String streamType) {
+    return statistics.getEvictionCount(streamType);
+  }
+
+  @Managed
+  @ManagedDescription("Hits, misses and evictions of all the activity stream types")
+  public String getStreamStatistics() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, long[]> entry : statistics.snapshot().entrySet()) {
+      long[] values = entry.getValue();
+      sb.append(String.format("%s: hits=%d, misses=%d, evictions=%d%n", entry.getKey(), values[0], values[1], values[2]));
+    }
+    return sb.toString();
+  }
+
+  @Managed
+  @ManagedDescription("Whether the new activities only evict the streams they are pushed to")
+  public boolean isIncrementalStreams() {
+    return incrementalStreams;
+  }
+
+  @Managed
+  public void setIncrementalStreams(boolean incrementalStreams) {
+    this.incrementalStreams = incrementalStreams;
+  }
+
+  @Managed
+  @ManagedDescription("Reset the activity stream cache statistics")
+  public void resetStreamStatistics() {
+    statistics.reset();
+  }
+
+  public ActivityStreamCacheStatistics getStatistics() {
+    return statistics;
+  }
+
   /**
    * Build the activity list from the caches Ids.
    *
@@ -111,12 +447,11 @@ public class CachedActivityStorage implements ActivityStorage {
    */
   private List<ExoSocialActivity> buildActivities(ListActivitiesData data) {
 
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+    List<String> ids = new ArrayList<String>();
     for (ActivityKey k : data.getIds()) {
-      ExoSocialActivity a = getActivity(k.getId());
-      activities.add(a);
+      ids.add(k.getId());
     }
-    return activities;
+    return getActivities(ids);
 
   }
 
@@ -138,21 +473,61 @@ public class CachedActivityStorage implements ActivityStorage {
 
   }
 
-  public CachedActivityStorage(final ActivityStorageImpl storage, final SocialStorageCacheService cacheService) {
+  public CachedActivityStorage(final ActivityStorageImpl storage, final ActivityStreamStorageImpl streamStorage,
+                               final SocialStorageCacheService cacheService) {
 
     //
     this.storage = storage;
     this.storage.setStorage(this);
+    streamStorage.addStreamListener(this);
 
     //
     this.exoActivityCache = cacheService.getActivityCache();
     this.exoActivitiesCountCache = cacheService.getActivitiesCountCache();
     this.exoActivitiesCache = cacheService.getActivitiesCache();
+    this.exoCommentIndexCache = cacheService.getCommentIndexCache();
+
+    //
+    this.activityKeys = cacheService.getKeyIndex(exoActivityCache);
+    this.activitiesCountKeys = cacheService.getKeyIndex(exoActivitiesCountCache);
+    this.activitiesKeys = cacheService.getKeyIndex(exoActivitiesCache);
+    this.commentIndexKeys = cacheService.getKeyIndex(exoCommentIndexCache);
+
+    //
+    this.statistics = new ActivityStreamCacheStatistics();
+    this.incrementalStreams = !"false".equalsIgnoreCase(PropertyManager.getProperty(INCREMENTAL_STREAMS_PROPERTY));
 
     //
     this.activityCache = CacheType.ACTIVITY.createFutureCache(exoActivityCache);
-    this.activitiesCountCache = CacheType.ACTIVITIES_COUNT.createFutureCache(exoActivitiesCountCache);
-    this.activitiesCache = CacheType.ACTIVITIES.createFutureCache(exoActivitiesCache);
+    this.commentIndexCache = CacheType.COMMENT_INDEX.createFutureCache(exoCommentIndexCache);
+    this.activitiesCountCache = new FutureExoCache<ActivityCountKey, IntegerData, ServiceContext<IntegerData>>(
+        new CacheLoader<ActivityCountKey, IntegerData>(), exoActivitiesCountCache) {
+      @Override
+      protected IntegerData get(ActivityCountKey key) {
+        IntegerData data = super.get(key);
+        if (data != null) {
+          statistics.hit(key);
+        }
+        else {
+          statistics.miss(key);
+        }
+        return data;
+      }
+    };
+    this.activitiesCache = new FutureExoCache<ListActivitiesKey, ListActivitiesData, ServiceContext<ListActivitiesData>>(
+        new CacheLoader<ListActivitiesKey, ListActivitiesData>(), exoActivitiesCache) {
+      @Override
+      protected ListActivitiesData get(ListActivitiesKey key) {
+        ListActivitiesData data = super.get(key);
+        if (data != null) {
+          statistics.hit(key);
+        }
+        else {
+          statistics.miss(key);
+        }
+        return data;
+      }
+    };
 
   }
 
@@ -188,6 +563,47 @@ public class CachedActivityStorage implements ActivityStorage {
 
   }
   
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivities(final List<String> activityIds) throws ActivityStorageException {
+
+    //
+    Map<String, ActivityData> found = new HashMap<String, ActivityData>();
+    Set<String> misses = new LinkedHashSet<String>();
+    for (String activityId : activityIds) {
+      ActivityData data = exoActivityCache.get(new ActivityKey(activityId));
+      if (data != null) {
+        found.put(activityId, data);
+      }
+      else {
+        misses.add(activityId);
+      }
+    }
+
+    //load all the misses with one storage call
+    if (!misses.isEmpty()) {
+      List<String> missIds = new ArrayList<String>(misses);
+      List<ExoSocialActivity> got = storage.getActivities(missIds);
+      Map<ActivityKey, ActivityData> loaded = new HashMap<ActivityKey, ActivityData>();
+      for (int i = 0; i < missIds.size(); ++i) {
+        ExoSocialActivity a = got.get(i);
+        ActivityData data = a != null ? new ActivityData(a) : ActivityData.NULL;
+        loaded.put(new ActivityKey(missIds.get(i)), data);
+        found.put(missIds.get(i), data);
+      }
+      exoActivityCache.putMap(loaded);
+    }
+
+    //
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>(activityIds.size());
+    for (String activityId : activityIds) {
+      activities.add(found.get(activityId).build());
+    }
+    return activities;
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -232,8 +648,16 @@ public class CachedActivityStorage implements ActivityStorage {
     exoActivityCache.put(new ActivityKey(comment.getId()), new ActivityData(getActivity(comment.getId())));
     ActivityKey activityKey = new ActivityKey(activity.getId());
     exoActivityCache.remove(activityKey);
-    exoActivityCache.put(activityKey, new ActivityData(getActivity(activity.getId())));
-    clearCache();
+    ExoSocialActivity updated = getActivity(activity.getId());
+    exoActivityCache.put(activityKey, new ActivityData(updated));
+
+    //
+    Set<String> owners = new HashSet<String>();
+    addParticipants(owners, activity);
+    addParticipants(owners, updated);
+    addIds(owners, comment.getUserId());
+    addRecipients(owners, getStreamOwner(updated != null ? updated : activity));
+    clearStreamCache(owners, Collections.singleton(activity.getId()));
   }
 
   /**
@@ -242,12 +666,22 @@ public class CachedActivityStorage implements ActivityStorage {
   public ExoSocialActivity saveActivity(final Identity owner, final ExoSocialActivity activity) throws ActivityStorageException {
 
     //
+    ExoSocialActivity old = activity.getId() != null ? getActivity(activity.getId()) : null;
     ExoSocialActivity a = storage.saveActivity(owner, activity);
 
     //
     ActivityKey key = new ActivityKey(a.getId());
     exoActivityCache.put(key, new ActivityData(getActivity(a.getId())));
-    clearCache();
+
+    //
+    Set<String> owners = new HashSet<String>();
+    addParticipants(owners, old);
+    addParticipants(owners, a);
+    addRecipients(owners, owner);
+
+    // the first pages of the streams of a new activity are evicted when its references are pushed
+    Set<ActivityType> keptTypes = old == null && incrementalStreams ? INCREMENTAL_TYPES : null;
+    clearStreamCache(owners, Collections.singleton(a.getId()), keptTypes);
 
     //
     return a;
@@ -268,12 +702,24 @@ public class CachedActivityStorage implements ActivityStorage {
 
     //
     ExoSocialActivity a = storage.getActivity(activityId);
+    ExoSocialActivity parent = a != null && a.isComment() ? storage.getParentActivity(a) : null;
     storage.deleteActivity(activityId);
 
     //
     ActivityKey key = new ActivityKey(activityId);
     exoActivityCache.remove(key);
-    clearCache();
+
+    //
+    Set<String> owners = new HashSet<String>();
+    Set<String> activityIds = new HashSet<String>();
+    activityIds.add(activityId);
+    addParticipants(owners, a);
+    if (parent != null) {
+      addParticipants(owners, parent);
+      activityIds.add(parent.getId());
+    }
+    addRecipients(owners, getStreamOwner(parent != null ? parent : a));
+    clearStreamCache(owners, activityIds);
 
   }
 
@@ -283,6 +729,8 @@ public class CachedActivityStorage implements ActivityStorage {
   public void deleteComment(final String activityId, final String commentId) throws ActivityStorageException {
     
     //
+    ExoSocialActivity before = getActivity(activityId);
+    ExoSocialActivity comment = getActivity(commentId);
     storage.deleteComment(activityId, commentId);
 
     //
@@ -291,7 +739,15 @@ public class CachedActivityStorage implements ActivityStorage {
     exoActivityCache.remove(activityKey);
     exoActivityCache.put(activityKey, new ActivityData(getActivity(activityId)));
 
-    clearActivityCached(activityId);
+    //
+    Set<String> owners = new HashSet<String>();
+    Set<String> activityIds = new HashSet<String>();
+    activityIds.add(activityId);
+    activityIds.add(commentId);
+    addParticipants(owners, before);
+    addParticipants(owners, comment);
+    addRecipients(owners, getStreamOwner(before));
+    clearStreamCache(owners, activityIds);
   }
 
   /**
@@ -885,6 +1341,25 @@ public class CachedActivityStorage implements ActivityStorage {
     return buildActivities(keys);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public CommentIndex getCommentIndex(final String activityId) {
+
+    //
+    ActivityKey key = new ActivityKey(activityId);
+
+    //
+    return commentIndexCache.get(
+        new ServiceContext<CommentIndexData>() {
+          public CommentIndexData execute() {
+            return new CommentIndexData(storage.getCommentIndex(activityId));
+          }
+        },
+        key)
+        .build();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -948,6 +1423,8 @@ public class CachedActivityStorage implements ActivityStorage {
   public void updateActivity(final ExoSocialActivity existingActivity) throws ActivityStorageException {
 
     //
+    ExoSocialActivity old = getActivity(existingActivity.getId());
+    ExoSocialActivity parent = old != null && old.isComment() ? storage.getParentActivity(old) : null;
     storage.updateActivity(existingActivity);
     
     //
@@ -955,8 +1432,16 @@ public class CachedActivityStorage implements ActivityStorage {
     exoActivityCache.remove(key);
     
     //
-    clearCache();
-    clearActivityCached(existingActivity.getId());
+    Set<String> owners = new HashSet<String>();
+    Set<String> activityIds = new HashSet<String>();
+    activityIds.add(existingActivity.getId());
+    addParticipants(owners, old);
+    addParticipants(owners, existingActivity);
+    if (parent != null) {
+      activityIds.add(parent.getId());
+    }
+    addRecipients(owners, getStreamOwner(old != null ? old : existingActivity));
+    clearStreamCache(owners, activityIds);
   }
 
   /**
@@ -1309,6 +1794,26 @@ public class CachedActivityStorage implements ActivityStorage {
   public int getNumberOfMultiUpdated(Identity owner, Map<String, Long> sinceTimes) {
     return storage.getNumberOfMultiUpdated(owner, sinceTimes);
   }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * The pages of a cursor are not cached, only their activities are.
+   */
+  @Override
+  public List<ExoSocialActivity> getStreamActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit) {
+    return buildActivities(buildIds(storage.getStreamActivities(type, owner, cursor, limit)));
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * The last activities are cached by the activity stream storage.
+   */
+  @Override
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners) {
+    return storage.getLastUpdates(owners);
+  }
   
   public List<ExoSocialActivity> getNewerFeedActivities(final Identity owner, final Long sinceTime, final int limit) {
     ActivityCountKey key = new ActivityCountKey(new IdentityKey(owner), sinceTime, ActivityType.NEWER_FEED);
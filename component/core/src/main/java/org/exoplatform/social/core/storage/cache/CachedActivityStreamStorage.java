@@ -16,23 +16,90 @@
  */
 package org.exoplatform.social.core.storage.cache;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
 import org.exoplatform.social.common.service.ProcessContext;
+import org.exoplatform.social.common.service.utils.ObjectHelper;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.api.ActivityStreamStorage;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.selector.LastActivityCacheSelector;
 import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl;
 import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
+import org.exoplatform.social.core.storage.streams.ActivityStreamListener;
+import org.exoplatform.social.core.storage.streams.StreamProcessContext;
 
-public class CachedActivityStreamStorage implements ActivityStreamStorage {
+public class CachedActivityStreamStorage implements ActivityStreamStorage, ActivityStreamListener {
+  
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(CachedActivityStreamStorage.class);
+  
+  /** The last activity cached for the identities without activity. */
+  private static final ActivityUpdateRef NO_ACTIVITY = new ActivityUpdateRef(null, 0);
   
   private final ActivityStreamStorageImpl storage;
   private final SocialStorageCacheService cacheService;
+  private final ExoCache<IdentityKey, ActivityUpdateRef> lastActivityCache;
   
   public CachedActivityStreamStorage(final ActivityStreamStorageImpl storage, final SocialStorageCacheService cacheService) {
     this.storage = storage;
     this.cacheService = cacheService;
+    this.lastActivityCache = cacheService.getLastActivityCache();
+    storage.addStreamListener(this);
+  }
+  
+  /**
+   * {@inheritDoc}
+   */
+  public void pushed(String activityId, ActivityRefType type, Set<String> ownerIds) {
+    // The last activities are moved by lastUpdated
+  }
+  
+  /**
+   * {@inheritDoc}
+   */
+  public void pushFailed(ActivityRefType type, Set<String> ownerIds) {
+    // The last activities are moved by lastUpdated, only once the references are saved
+  }
+  
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The identities whose cached last activity is older than the activity are evicted, and loaded again on
+   * their next lookup. The cache has no conditional replace, so the entry is not moved in place where a
+   * concurrent update could put back an older activity.
+   */
+  public void lastUpdated(ActivityUpdateRef ref, Set<String> identityIds) {
+    for (String identityId : identityIds) {
+      IdentityKey key = new IdentityKey(new Identity(identityId));
+      ActivityUpdateRef last = lastActivityCache.get(key);
+      if (last != null && last.getLastUpdated() <= ref.getLastUpdated()) {
+        lastActivityCache.remove(key);
+      }
+    }
+  }
+  
+  /**
+   * Evicts the identities whose cached last activity is the given activity.
+   */
+  private void clearLastActivity(String activityId) {
+    try {
+      lastActivityCache.select(new LastActivityCacheSelector(activityId));
+    }
+    catch (Exception e) {
+      LOG.error(e);
+      lastActivityCache.clearCache();
+    }
   }
 
   @Override
@@ -48,11 +115,13 @@ public class CachedActivityStreamStorage implements ActivityStreamStorage {
   @Override
   public void delete(String activityId) {
     this.storage.delete(activityId);
+    clearLastActivity(activityId);
   }
   
   @Override
   public void unLike(Identity removedLike, ExoSocialActivity activity) {
     this.storage.unLike(removedLike, activity);
+    lastActivityCache.remove(new IdentityKey(removedLike));
   }
   
   @Override
@@ -73,6 +142,7 @@ public class CachedActivityStreamStorage implements ActivityStreamStorage {
   @Override
   public void deleteComment(ProcessContext ctx) {
     this.storage.deleteComment(ctx);
+    clearLastActivity(ObjectHelper.cast(StreamProcessContext.class, ctx).getActivity().getId());
   }
   
   @Override
@@ -135,6 +205,49 @@ public class CachedActivityStreamStorage implements ActivityStreamStorage {
     return storage.getNumberOfMyActivities(owner);
   }
 
+  @Override
+  public List<ActivityUpdateRef> getNewerUpdates(ActivityRefType type, Identity owner, long sinceTime, int limit) {
+    return storage.getNewerUpdates(type, owner, sinceTime, limit);
+  }
+
+  @Override
+  public List<ExoSocialActivity> getActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit) {
+    return storage.getActivities(type, owner, cursor, limit);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * The last activities are cached by identity, only the missing ones are read from the streams.
+   */
+  @Override
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners) {
+    Map<String, ActivityUpdateRef> got = new HashMap<String, ActivityUpdateRef>();
+    List<Identity> missing = new ArrayList<Identity>();
+    for (Identity owner : owners) {
+      ActivityUpdateRef ref = lastActivityCache.get(new IdentityKey(owner));
+      if (ref == null) {
+        missing.add(owner);
+      } else if (ref.getActivityId() != null) {
+        got.put(owner.getId(), ref);
+      }
+    }
+    
+    if (missing.isEmpty()) {
+      return got;
+    }
+    
+    Map<String, ActivityUpdateRef> loaded = storage.getLastUpdates(missing);
+    for (Identity owner : missing) {
+      ActivityUpdateRef ref = loaded.get(owner.getId());
+      lastActivityCache.put(new IdentityKey(owner), ref != null ? ref : NO_ACTIVITY);
+      if (ref != null) {
+        got.put(owner.getId(), ref);
+      }
+    }
+    return got;
+  }
+
   @Override
   public void connect(Identity sender, Identity receiver) {
     this.storage.connect(sender, receiver);
@@ -151,6 +264,9 @@ public class CachedActivityStreamStorage implements ActivityStreamStorage {
                                 ActivityRefType type) {
     
     this.storage.createActivityRef(owner, activities, type);
+    if (type == ActivityRefType.MY_ACTIVITIES) {
+      lastActivityCache.remove(new IdentityKey(owner));
+    }
     
   }
 
@@ -177,6 +293,7 @@ public class CachedActivityStreamStorage implements ActivityStreamStorage {
   @Override
   public void createMyActivitiesActivityRef(Identity owner, List<ExoSocialActivity> activities) {
     this.storage.createMyActivitiesActivityRef(owner, activities);
+    lastActivityCache.remove(new IdentityKey(owner));
   }
   
   @Override
@@ -213,6 +330,12 @@ public class CachedActivityStreamStorage implements ActivityStreamStorage {
   @Override
   public void updateHidable(ProcessContext ctx) {
     storage.updateHidable(ctx);
+    
+    // the owners of the streams of a shown activity are evicted by lastUpdated
+    ExoSocialActivity activity = ObjectHelper.cast(StreamProcessContext.class, ctx).getActivity();
+    if (activity.isHidden()) {
+      clearLastActivity(activity.getId());
+    }
   }
 
  
@@ -18,13 +18,17 @@
 package org.exoplatform.social.core.storage.cache;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess.Type;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.model.Profile.AttachedActivityType;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
@@ -33,18 +37,25 @@ import org.exoplatform.social.core.profile.ProfileFilter;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.core.storage.IdentityStorageException;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndex;
 import org.exoplatform.social.core.storage.cache.loader.ServiceContext;
+import org.exoplatform.social.core.storage.cache.model.data.ChangeData;
 import org.exoplatform.social.core.storage.cache.model.data.IdentityData;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
 import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
+import org.exoplatform.social.core.storage.cache.model.data.MentionData;
 import org.exoplatform.social.core.storage.cache.model.data.ProfileData;
+import org.exoplatform.social.core.storage.cache.model.data.RenderedActivityData;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityCompositeKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityFilterKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.KeyGenerations;
 import org.exoplatform.social.core.storage.cache.model.key.ListIdentitiesKey;
 import org.exoplatform.social.core.storage.cache.model.key.ListSpaceMembersKey;
+import org.exoplatform.social.core.storage.cache.model.key.RenderedActivityKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceKey;
 import org.exoplatform.social.core.storage.cache.selector.IdentityCacheSelector;
+import org.exoplatform.social.core.storage.cache.selector.ScopeCacheSelector;
 import org.exoplatform.social.core.storage.impl.IdentityStorageImpl;
 
 /**
@@ -61,8 +72,15 @@ public class CachedIdentityStorage implements IdentityStorage {
   private final ExoCache<IdentityKey, IdentityData> exoIdentityCache;
   private final ExoCache<IdentityCompositeKey, IdentityKey> exoIdentityIndexCache;
   private final ExoCache<IdentityKey, ProfileData> exoProfileCache;
+  private final ExoCache<IdentityCompositeKey, MentionData> exoMentionCache;
   private final ExoCache<IdentityFilterKey, IntegerData> exoIdentitiesCountCache;
   private final ExoCache<ListIdentitiesKey, ListIdentitiesData> exoIdentitiesCache;
+  private final ExoCache<IdentityKey, IdentitySummary> exoIdentitySummaryCache;
+  private final ExoCache<IdentityKey, ChangeData> exoProfileChangeCache;
+
+  private final CacheKeyIndex<IdentityFilterKey, IntegerData> identitiesCountKeys;
+  private final CacheKeyIndex<ListIdentitiesKey, ListIdentitiesData> identitiesKeys;
+  private final CacheKeyIndex<RenderedActivityKey, RenderedActivityData> renderedActivityKeys;
 
   private final FutureExoCache<IdentityKey, IdentityData, ServiceContext<IdentityData>> identityCache;
   private final FutureExoCache<IdentityCompositeKey, IdentityKey, ServiceContext<IdentityKey>> identityIndexCache;
@@ -74,9 +92,14 @@ public class CachedIdentityStorage implements IdentityStorage {
 
   void clearCache() {
 
+    if (KeyGenerations.isEnabled()) {
+      KeyGenerations.next(KeyGenerations.Group.IDENTITIES, null);
+      return;
+    }
+
     try {
-      exoIdentitiesCache.select(new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
-      exoIdentitiesCountCache.select(new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
+      identitiesKeys.select(new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
+      identitiesCountKeys.select(new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -84,6 +107,36 @@ public class CachedIdentityStorage implements IdentityStorage {
 
   }
 
+  /**
+   * Removes the mention resolution of the given user identity and the processed activities which mention
+   * it, and tells the other cluster nodes that its name may have changed.
+   *
+   * @param identity the identity
+   */
+  private void clearMention(Identity identity) {
+
+    if (identity == null) {
+      return;
+    }
+    if (identity.getId() != null) {
+      exoProfileChangeCache.put(new IdentityKey(new Identity(identity.getId())), ChangeData.local());
+      clearRenderedActivities(renderedActivityKeys, identity.getId());
+    }
+    String providerId = identity.getProviderId();
+    String remoteId = identity.getRemoteId();
+    if (remoteId == null && identity.getId() != null) {
+      IdentityData data = exoIdentityCache.get(new IdentityKey(new Identity(identity.getId())));
+      if (data != null) {
+        providerId = data.getProviderId();
+        remoteId = data.getRemoteId();
+      }
+    }
+    if (remoteId != null && (providerId == null || OrganizationIdentityProvider.NAME.equals(providerId))) {
+      exoMentionCache.remove(new IdentityCompositeKey(OrganizationIdentityProvider.NAME, remoteId));
+    }
+
+  }
+
   /**
    * Build the identity list from the caches Ids.
    *
@@ -121,6 +174,24 @@ public class CachedIdentityStorage implements IdentityStorage {
 
   }
 
+  /**
+   * Removes the processed activities which mention the given identity, as they hold the links built
+   * from its profile.
+   *
+   * @param renderedActivityKeys the index of the processed activities
+   * @param identityId the changed identity
+   */
+  private static void clearRenderedActivities(CacheKeyIndex<RenderedActivityKey, RenderedActivityData> renderedActivityKeys,
+                                              String identityId) {
+    try {
+      renderedActivityKeys.selectAllScopes(new ScopeCacheSelector<RenderedActivityKey, RenderedActivityData>(),
+                                           Collections.singleton(identityId));
+    }
+    catch (Exception e) {
+      LOG.error(e);
+    }
+  }
+
   public CachedIdentityStorage(final IdentityStorageImpl storage, final SocialStorageCacheService cacheService) {
 
     //
@@ -131,8 +202,16 @@ public class CachedIdentityStorage implements IdentityStorage {
     this.exoIdentityCache = cacheService.getIdentityCache();
     this.exoIdentityIndexCache = cacheService.getIdentityIndexCache();
     this.exoProfileCache = cacheService.getProfileCache();
+    this.exoMentionCache = cacheService.getMentionCache();
     this.exoIdentitiesCountCache = cacheService.getCountIdentitiesCache();
     this.exoIdentitiesCache = cacheService.getIdentitiesCache();
+    this.exoIdentitySummaryCache = cacheService.getIdentitySummaryCache();
+    this.exoProfileChangeCache = cacheService.getProfileChangeCache();
+
+    //
+    this.identitiesCountKeys = cacheService.getKeyIndex(exoIdentitiesCountCache);
+    this.identitiesKeys = cacheService.getKeyIndex(exoIdentitiesCache);
+    this.renderedActivityKeys = cacheService.getKeyIndex(cacheService.getRenderedActivityCache());
 
     //
     this.identityCache = CacheType.IDENTITY.createFutureCache(exoIdentityCache);
@@ -141,6 +220,33 @@ public class CachedIdentityStorage implements IdentityStorage {
     this.identitiesCountCache = CacheType.IDENTITIES_COUNT.createFutureCache(exoIdentitiesCountCache);
     this.identitiesCache = CacheType.IDENTITIES.createFutureCache(exoIdentitiesCache);
 
+    //
+    this.exoProfileChangeCache.addCacheListener(new NameIndexInvalidator(storage, renderedActivityKeys));
+
+  }
+
+  /**
+   * Marks the identities whose name changed on another cluster node as stale in the name index of this node,
+   * and removes the processed activities this node indexed for them.
+   */
+  private static class NameIndexInvalidator extends IdentityChangeListener {
+
+    private final IdentityStorageImpl storage;
+
+    private final CacheKeyIndex<RenderedActivityKey, RenderedActivityData> renderedActivityKeys;
+
+    private NameIndexInvalidator(final IdentityStorageImpl storage,
+                                 final CacheKeyIndex<RenderedActivityKey, RenderedActivityData> renderedActivityKeys) {
+      this.storage = storage;
+      this.renderedActivityKeys = renderedActivityKeys;
+    }
+
+    @Override
+    protected void onChange(final String identityId) {
+      storage.invalidateIndexedName(identityId);
+      clearRenderedActivities(renderedActivityKeys, identityId);
+    }
+
   }
 
   /**
@@ -154,6 +260,8 @@ public class CachedIdentityStorage implements IdentityStorage {
     //
     IdentityKey key = new IdentityKey(new Identity(identity.getId()));
     exoIdentityCache.put(key, new IdentityData(identity));
+    exoIdentitySummaryCache.remove(key);
+    clearMention(identity);
     clearCache();
   }
 
@@ -164,7 +272,9 @@ public class CachedIdentityStorage implements IdentityStorage {
 
     //
     IdentityKey key = new IdentityKey(new Identity(identity.getId()));
+    clearMention(identity);
     exoIdentityCache.remove(key);
+    exoIdentitySummaryCache.remove(key);
     clearCache();
 
     //
@@ -214,11 +324,13 @@ public class CachedIdentityStorage implements IdentityStorage {
 
     //
     IdentityKey key = new IdentityKey(new Identity(identity.getId()));
+    clearMention(identity);
     IdentityData data = exoIdentityCache.remove(key);
     if (data != null) {
       exoIdentityIndexCache.remove(new IdentityCompositeKey(data.getProviderId(), data.getRemoteId()));
     }
     exoProfileCache.remove(key);
+    exoIdentitySummaryCache.remove(key);
     clearCache();
 
   }
@@ -233,11 +345,13 @@ public class CachedIdentityStorage implements IdentityStorage {
 
     //
     IdentityKey key = new IdentityKey(new Identity(identity.getId()));
+    clearMention(identity);
     IdentityData data = exoIdentityCache.remove(key);
     if (data != null) {
       exoIdentityIndexCache.remove(new IdentityCompositeKey(data.getProviderId(), data.getRemoteId()));
     }
     exoProfileCache.remove(key);
+    exoIdentitySummaryCache.remove(key);
     clearCache();
 
   }
@@ -273,8 +387,13 @@ public class CachedIdentityStorage implements IdentityStorage {
     IdentityData data = exoIdentityCache.remove(key);
     if (data != null) {
       exoIdentityIndexCache.remove(new IdentityCompositeKey(data.getProviderId(), oldRemoteId));
+      if (OrganizationIdentityProvider.NAME.equals(data.getProviderId())) {
+        exoMentionCache.remove(new IdentityCompositeKey(OrganizationIdentityProvider.NAME, oldRemoteId));
+      }
     }
+    clearMention(identity);
     exoProfileCache.remove(key);
+    exoIdentitySummaryCache.remove(key);
     clearCache();
   }
   
@@ -320,6 +439,8 @@ public class CachedIdentityStorage implements IdentityStorage {
     //
     IdentityKey key = new IdentityKey(new Identity(profile.getIdentity().getId()));
     exoProfileCache.remove(key);
+    exoIdentitySummaryCache.remove(key);
+    clearMention(profile.getIdentity());
 
   }
 
@@ -334,6 +455,8 @@ public class CachedIdentityStorage implements IdentityStorage {
     //
     IdentityKey key = new IdentityKey(new Identity(profile.getIdentity().getId()));
     exoProfileCache.remove(key);
+    exoIdentitySummaryCache.remove(key);
+    clearMention(profile.getIdentity());
     clearCache();
 
   }
@@ -400,6 +523,55 @@ public class CachedIdentityStorage implements IdentityStorage {
     
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<IdentitySummary> getIdentitySummaries(final List<String> identityIds) throws IdentityStorageException {
+
+    //
+    Map<String, IdentitySummary> found = new HashMap<String, IdentitySummary>();
+    List<String> missingIds = new ArrayList<String>();
+    for (String identityId : identityIds) {
+      IdentitySummary summary = exoIdentitySummaryCache.get(new IdentityKey(new Identity(identityId)));
+      if (summary != null) {
+        found.put(identityId, summary);
+      }
+      else {
+        missingIds.add(identityId);
+      }
+    }
+
+    //the missing ones are loaded at once
+    if (!missingIds.isEmpty()) {
+      for (IdentitySummary summary : storage.getIdentitySummaries(missingIds)) {
+        exoIdentitySummaryCache.put(new IdentityKey(new Identity(summary.getId())), summary);
+        found.put(summary.getId(), summary);
+      }
+    }
+
+    //
+    List<IdentitySummary> summaries = new ArrayList<IdentitySummary>(identityIds.size());
+    for (String identityId : identityIds) {
+      IdentitySummary summary = found.get(identityId);
+      if (summary != null) {
+        summaries.add(summary);
+      }
+    }
+    return summaries;
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<IdentitySummary> getIdentitySuggestions(final String providerId, final String name,
+      final Identity viewer, final List<Identity> excludedIdentities, final int limit) throws IdentityStorageException {
+
+    //served from the in-memory name index, not cached here
+    return storage.getIdentitySuggestions(providerId, name, viewer, excludedIdentities, limit);
+
+  }
+
   /**
    * {@inheritDoc}
    */
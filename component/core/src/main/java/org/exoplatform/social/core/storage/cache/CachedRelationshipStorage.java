@@ -18,10 +18,12 @@
 package org.exoplatform.social.core.storage.cache;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.services.cache.ExoCache;
@@ -33,7 +35,9 @@ import org.exoplatform.social.core.relationship.model.Relationship;
 import org.exoplatform.social.core.storage.RelationshipStorageException;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndex;
 import org.exoplatform.social.core.storage.cache.loader.ServiceContext;
+import org.exoplatform.social.core.storage.cache.model.data.ChangeData;
 import org.exoplatform.social.core.storage.cache.model.data.IdentityData;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
 import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
@@ -41,6 +45,7 @@ import org.exoplatform.social.core.storage.cache.model.data.RelationshipData;
 import org.exoplatform.social.core.storage.cache.model.data.SuggestionsData;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityFilterKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.KeyGenerations;
 import org.exoplatform.social.core.storage.cache.model.key.ListRelationshipsKey;
 import org.exoplatform.social.core.storage.cache.model.key.RelationshipCountKey;
 import org.exoplatform.social.core.storage.cache.model.key.RelationshipIdentityKey;
@@ -68,6 +73,13 @@ public class CachedRelationshipStorage implements RelationshipStorage {
   private final ExoCache<RelationshipCountKey, IntegerData> exoRelationshipCountCache;
   private final ExoCache<ListRelationshipsKey, ListIdentitiesData> exoRelationshipsCache;
   private final ExoCache<SuggestionKey, SuggestionsData> exoSuggestionCache;
+  private final ExoCache<IdentityKey, ChangeData> exoRelationshipChangeCache;
+  private final ExoCache<IdentityKey, ListIdentitiesData> exoPullSourcesCache;
+
+  //
+  private final CacheKeyIndex<RelationshipCountKey, IntegerData> relationshipCountKeys;
+  private final CacheKeyIndex<ListRelationshipsKey, ListIdentitiesData> relationshipsKeys;
+  private final CacheKeyIndex<SuggestionKey, SuggestionsData> suggestionKeys;
 
   //
   private final FutureExoCache<RelationshipKey, RelationshipData, ServiceContext<RelationshipData>> relationshipCache;
@@ -98,10 +110,26 @@ public class CachedRelationshipStorage implements RelationshipStorage {
       identities.add(r.getReceiver().getId());
     }
 
+    //the other nodes read the relationships of these identities again
+    for (String identityId : identities) {
+      IdentityKey key = new IdentityKey(new Identity(identityId));
+      exoRelationshipChangeCache.put(key, ChangeData.local());
+      exoPullSourcesCache.remove(key);
+    }
+
+    if (KeyGenerations.isEnabled()) {
+      for (String identityId : identities) {
+        KeyGenerations.next(KeyGenerations.Group.RELATIONSHIPS, identityId);
+      }
+      KeyGenerations.next(KeyGenerations.Group.RELATIONSHIPS, null);
+      KeyGenerations.next(KeyGenerations.Group.SUGGESTIONS, null);
+      return;
+    }
+
     try {
-      exoRelationshipsCache.select(new RelationshipCacheSelector(identities.toArray(new String[]{})));
-      exoRelationshipCountCache.select(new RelationshipCacheSelector(identities.toArray(new String[]{})));
-      exoSuggestionCache.select(new SuggestionCacheSelector(identities.toArray(new String[]{})));
+      relationshipsKeys.select(new RelationshipCacheSelector(identities.toArray(new String[]{})), identities);
+      relationshipCountKeys.select(new RelationshipCacheSelector(identities.toArray(new String[]{})), identities);
+      suggestionKeys.select(new SuggestionCacheSelector(identities.toArray(new String[]{})));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -198,6 +226,13 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     this.exoRelationshipCountCache = cacheService.getRelationshipsCount();
     this.exoRelationshipsCache = cacheService.getRelationshipsCache();
     this.exoSuggestionCache = cacheService.getSuggestionCache();
+    this.exoRelationshipChangeCache = cacheService.getRelationshipChangeCache();
+    this.exoPullSourcesCache = cacheService.getPullSourcesCache();
+
+    //
+    this.relationshipCountKeys = cacheService.getKeyIndex(exoRelationshipCountCache);
+    this.relationshipsKeys = cacheService.getKeyIndex(exoRelationshipsCache);
+    this.suggestionKeys = cacheService.getKeyIndex(exoSuggestionCache);
 
     //
     this.relationshipCache = CacheType.RELATIONSHIP.createFutureCache(exoRelationshipCache);
@@ -209,6 +244,28 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     //
     this.exoIdentityCache = cacheService.getIdentityCache();
 
+    //
+    this.exoRelationshipChangeCache.addCacheListener(new RelationshipGraphInvalidator(storage));
+
+  }
+
+  /**
+   * Marks the identities whose relationships changed on another cluster node as stale in the relationship
+   * graph of this node.
+   */
+  private static class RelationshipGraphInvalidator extends IdentityChangeListener {
+
+    private final RelationshipStorageImpl storage;
+
+    private RelationshipGraphInvalidator(final RelationshipStorageImpl storage) {
+      this.storage = storage;
+    }
+
+    @Override
+    protected void onChange(final String identityId) {
+      storage.invalidateRelationships(identityId);
+    }
+
   }
 
   /**
@@ -226,7 +283,7 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     exoRelationshipByIdentityCache.put(identityKey1, key);
     exoRelationshipByIdentityCache.put(identityKey2, key);
     clearCacheFor(relationship);
-    getCachedActivityStorage().clearCache();
+    getCachedActivityStorage().clearStreamCache(r.getSender().getId(), r.getReceiver().getId());
 
     return r;
 
@@ -253,7 +310,12 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     
     //
     clearCacheFor(relationship);
-    getCachedActivityStorage().clearCache();
+    if (relationship.getSender() != null && relationship.getReceiver() != null) {
+      getCachedActivityStorage().clearStreamCache(relationship.getSender().getId(), relationship.getReceiver().getId());
+    }
+    else {
+      getCachedActivityStorage().clearCache();
+    }
     
   }
 
@@ -527,6 +589,38 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     return storage.getConnections(identity);
   }
 
+  /**
+   * Gets the ids of the connections of an identity, from the cached list of all its connections.
+   *
+   * @param identity the identity
+   * @return the connection ids
+   * @throws RelationshipStorageException
+   * @since 4.1.0
+   */
+  public Set<String> getConnectionIds(final Identity identity) throws RelationshipStorageException {
+
+    //
+    IdentityKey key = new IdentityKey(identity);
+    ListRelationshipsKey<IdentityKey> listKey =
+        new ListRelationshipsKey<IdentityKey>(key, RelationshipType.CONNECTION, 0, -1);
+    ListIdentitiesData keys = relationshipsCache.get(
+        new ServiceContext<ListIdentitiesData>() {
+          public ListIdentitiesData execute() {
+            List<Identity> got = storage.getConnections(identity, 0, -1);
+            return buildIds(got);
+          }
+        },
+        listKey);
+
+    //
+    Set<String> ids = new HashSet<String>();
+    for (IdentityKey k : keys.getIds()) {
+      ids.add(k.getId());
+    }
+    return ids;
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -23,15 +23,19 @@ import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
 import org.exoplatform.social.core.space.SpaceFilter;
 import org.exoplatform.social.core.space.SpaceUtils;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.core.storage.SpaceStorageException;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndex;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
 import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
 import org.exoplatform.social.core.storage.cache.model.data.ListSpacesData;
 import org.exoplatform.social.core.storage.cache.model.data.SpaceSimpleData;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.KeyGenerations;
 import org.exoplatform.social.core.storage.cache.model.key.ListIdentitiesKey;
 import org.exoplatform.social.core.storage.cache.model.key.ListSpacesKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceFilterKey;
@@ -46,7 +50,10 @@ import org.exoplatform.social.core.storage.cache.model.key.SpaceKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceRefKey;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -63,12 +70,19 @@ public class CachedSpaceStorage implements SpaceStorage {
   private final ExoCache<SpaceFilterKey, IntegerData> exoSpacesCountCache;
   private final ExoCache<ListSpacesKey, ListSpacesData> exoSpacesCache;
   private final ExoCache<ListIdentitiesKey, ListIdentitiesData> exoIdentitiesCache;
+  private final ExoCache<IdentityKey, ListIdentitiesData> exoPullSourcesCache;
+  private final ExoCache<SpaceKey, ListIdentitiesData> exoSpaceMembersCache;
+
+  private final CacheKeyIndex<SpaceFilterKey, IntegerData> spacesCountKeys;
+  private final CacheKeyIndex<ListSpacesKey, ListSpacesData> spacesKeys;
+  private final CacheKeyIndex<ListIdentitiesKey, ListIdentitiesData> identitiesKeys;
 
   private final FutureExoCache<SpaceKey, SpaceData, ServiceContext<SpaceData>> spaceCache;
   private final FutureExoCache<SpaceKey, SpaceSimpleData, ServiceContext<SpaceSimpleData>> spaceSimpleCache;
   private final FutureExoCache<SpaceRefKey, SpaceKey, ServiceContext<SpaceKey>> spaceRefCache;
   private final FutureExoCache<SpaceFilterKey, IntegerData, ServiceContext<IntegerData>> spacesCountCache;
   private final FutureExoCache<ListSpacesKey, ListSpacesData, ServiceContext<ListSpacesData>> spacesCache;
+  private final FutureExoCache<SpaceKey, ListIdentitiesData, ServiceContext<ListIdentitiesData>> spaceMembersCache;
 
   private final SpaceStorageImpl storage;
   private CachedActivityStorage cachedActivityStorage;
@@ -183,12 +197,20 @@ public class CachedSpaceStorage implements SpaceStorage {
     this.exoSpacesCountCache = cacheService.getSpacesCountCache();
     this.exoSpacesCache = cacheService.getSpacesCache();
     this.exoIdentitiesCache = cacheService.getIdentitiesCache();
+    this.exoPullSourcesCache = cacheService.getPullSourcesCache();
+    this.exoSpaceMembersCache = cacheService.getSpaceMembersCache();
+
+    //
+    this.spacesCountKeys = cacheService.getKeyIndex(exoSpacesCountCache);
+    this.spacesKeys = cacheService.getKeyIndex(exoSpacesCache);
+    this.identitiesKeys = cacheService.getKeyIndex(exoIdentitiesCache);
 
     this.spaceCache = CacheType.SPACE.createFutureCache(exoSpaceCache);
     this.spaceSimpleCache = CacheType.SPACE_SIMPLE.createFutureCache(exoSpaceSimpleCache);
     this.spaceRefCache = CacheType.SPACE_REF.createFutureCache(exoRefSpaceCache);
     this.spacesCountCache = CacheType.SPACES_COUNT.createFutureCache(exoSpacesCountCache);
     this.spacesCache = CacheType.SPACES.createFutureCache(exoSpacesCache);
+    this.spaceMembersCache = CacheType.SPACE_MEMBERS.createFutureCache(exoSpaceMembersCache);
 
   }
 
@@ -201,8 +223,13 @@ public class CachedSpaceStorage implements SpaceStorage {
 
   void clearIdentityCache() {
 
+    if (KeyGenerations.isEnabled()) {
+      KeyGenerations.next(KeyGenerations.Group.IDENTITIES, null);
+      return;
+    }
+
     try {
-      exoIdentitiesCache.select(new IdentityCacheSelector(SpaceIdentityProvider.NAME));
+      identitiesKeys.select(new IdentityCacheSelector(SpaceIdentityProvider.NAME));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -212,9 +239,14 @@ public class CachedSpaceStorage implements SpaceStorage {
 
   void clearSpaceCache() {
 
+    if (KeyGenerations.isEnabled()) {
+      KeyGenerations.next(KeyGenerations.Group.SPACES, null);
+      return;
+    }
+
     try {
-      exoSpacesCache.select(new ScopeCacheSelector<ListSpacesKey, ListSpacesData>());
-      exoSpacesCountCache.select(new ScopeCacheSelector<SpaceFilterKey, IntegerData>());
+      spacesKeys.select(new ScopeCacheSelector<ListSpacesKey, ListSpacesData>());
+      spacesCountKeys.select(new ScopeCacheSelector<SpaceFilterKey, IntegerData>());
     }
     catch (Exception e) {
       LOG.error(e);
@@ -269,12 +301,84 @@ public class CachedSpaceStorage implements SpaceStorage {
     //
     exoSpaceSimpleCache.remove(new SpaceKey(space.getId()));
     SpaceData removed = exoSpaceCache.remove(new SpaceKey(space.getId()));
+    exoSpaceMembersCache.remove(new SpaceKey(space.getId()));
     
     clearSpaceCache();
     clearIdentityCache();
     if (removed != null) {
       cleanRef(removed);
     }
+    clearPullSources(removed, space);
+
+  }
+
+  /**
+   * Removes the pulled streams looked up for the users who joined or left the space.
+   *
+   * @param removed the cached space before the save, null when it was not cached
+   * @param space the saved space
+   */
+  private void clearPullSources(SpaceData removed, Space space) {
+    if (removed == null) {
+      exoPullSourcesCache.clearCache();
+      return;
+    }
+
+    //
+    Set<String> changed = new HashSet<String>();
+    if (removed.getMembers() != null) {
+      changed.addAll(Arrays.asList(removed.getMembers()));
+    }
+    if (space.getMembers() != null) {
+      for (String remoteId : space.getMembers()) {
+        if (!changed.remove(remoteId)) {
+          changed.add(remoteId);
+        }
+      }
+    }
+    for (String remoteId : changed) {
+      Identity identity = getCachedIdentityStorage().findIdentity(OrganizationIdentityProvider.NAME, remoteId);
+      if (identity != null) {
+        exoPullSourcesCache.remove(new IdentityKey(identity));
+      }
+    }
+  }
+
+  /**
+   * Gets the identity ids of the members of a space. The ids are looked up once per space, until the
+   * space is saved again.
+   *
+   * @param space the space
+   * @return the identity ids of the members
+   * @since 4.1.0
+   */
+  public Set<String> getMemberIdentityIds(final Space space) {
+
+    //
+    SpaceKey key = new SpaceKey(space.getId());
+    ListIdentitiesData keys = spaceMembersCache.get(
+        new ServiceContext<ListIdentitiesData>() {
+          public ListIdentitiesData execute() {
+            List<IdentityKey> data = new ArrayList<IdentityKey>();
+            if (space.getMembers() != null) {
+              for (String remoteId : space.getMembers()) {
+                Identity identity = getCachedIdentityStorage().findIdentity(OrganizationIdentityProvider.NAME, remoteId);
+                if (identity != null) {
+                  data.add(new IdentityKey(identity));
+                }
+              }
+            }
+            return new ListIdentitiesData(data);
+          }
+        },
+        key);
+
+    //
+    Set<String> ids = new HashSet<String>();
+    for (IdentityKey k : keys.getIds()) {
+      ids.add(k.getId());
+    }
+    return ids;
 
   }
 
@@ -338,10 +442,12 @@ public class CachedSpaceStorage implements SpaceStorage {
 
     //
     SpaceData removed = exoSpaceCache.remove(new SpaceKey(id));
+    exoSpaceMembersCache.remove(new SpaceKey(id));
     clearSpaceCache();
     if (removed != null) {
       cleanRef(removed);
     }
+    exoPullSourcesCache.clearCache();
 
     //
     getCachedActivityStorage().clearCache();
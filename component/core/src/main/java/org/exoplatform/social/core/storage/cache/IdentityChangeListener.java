@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache;
+
+import org.exoplatform.services.cache.CacheListener;
+import org.exoplatform.services.cache.CacheListenerContext;
+import org.exoplatform.social.core.storage.cache.model.data.ChangeData;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+
+/**
+ * Listens to the change signals of a replicated cache, and reports the identities changed on the other
+ * cluster nodes. A signal put by another node reaches this node either as a put or, when the cache
+ * replicates by invalidation, as a removal.
+ *
+ * @since 4.1.0
+ */
+public abstract class IdentityChangeListener implements CacheListener<IdentityKey, ChangeData> {
+
+  /**
+   * Called when an identity changed on another cluster node.
+   *
+   * @param identityId the changed identity
+   */
+  protected abstract void onChange(String identityId);
+
+  public void onPut(final CacheListenerContext context, final IdentityKey key, final ChangeData value) {
+    if (value == null || !value.isLocal()) {
+      onChange(key.getId());
+    }
+  }
+
+  public void onRemove(final CacheListenerContext context, final IdentityKey key, final ChangeData value) {
+    onChange(key.getId());
+  }
+
+  public void onExpire(final CacheListenerContext context, final IdentityKey key, final ChangeData value) {
+  }
+
+  public void onGet(final CacheListenerContext context, final IdentityKey key, final ChangeData value) {
+  }
+
+  public void onClearCache(final CacheListenerContext context) {
+  }
+
+}
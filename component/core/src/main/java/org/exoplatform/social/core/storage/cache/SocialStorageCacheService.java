@@ -17,24 +17,52 @@
 
 package org.exoplatform.social.core.storage.cache;
 
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.PropertiesParam;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.annotations.ManagedName;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
 import org.exoplatform.services.cache.CacheService;
 import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
+import org.exoplatform.social.core.storage.cache.index.ActivityOwnerKeyIndex;
+import org.exoplatform.social.core.storage.cache.index.ActivityStreamKeyIndex;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndex;
+import org.exoplatform.social.core.storage.cache.index.RelationshipKeyIndex;
+import org.exoplatform.social.core.storage.cache.index.RenderedActivityKeyIndex;
 import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
+import org.exoplatform.social.core.storage.cache.model.data.ChangeData;
+import org.exoplatform.social.core.storage.cache.model.data.CommentIndexData;
 import org.exoplatform.social.core.storage.cache.model.data.IdentityData;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
 import org.exoplatform.social.core.storage.cache.model.data.ListActivitiesData;
 import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
 import org.exoplatform.social.core.storage.cache.model.data.ListSpacesData;
 import org.exoplatform.social.core.storage.cache.model.data.ProfileData;
+import org.exoplatform.social.core.storage.cache.model.data.MentionData;
+import org.exoplatform.social.core.storage.cache.model.data.RenderedActivityData;
 import org.exoplatform.social.core.storage.cache.model.data.RelationshipData;
 import org.exoplatform.social.core.storage.cache.model.data.SpaceData;
 import org.exoplatform.social.core.storage.cache.model.data.SpaceSimpleData;
+import org.exoplatform.social.core.storage.cache.model.data.UnreadCounterData;
 import org.exoplatform.social.core.storage.cache.model.data.SuggestionsData;
 import org.exoplatform.social.core.storage.cache.model.key.ActivityCountKey;
+import org.exoplatform.social.core.storage.cache.model.key.CacheKey;
 import org.exoplatform.social.core.storage.cache.model.key.ActivityKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityCompositeKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityFilterKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.KeyGenerations;
 import org.exoplatform.social.core.storage.cache.model.key.ListActivitiesKey;
 import org.exoplatform.social.core.storage.cache.model.key.ListIdentitiesKey;
 import org.exoplatform.social.core.storage.cache.model.key.ListRelationshipsKey;
@@ -42,23 +70,47 @@ import org.exoplatform.social.core.storage.cache.model.key.ListSpacesKey;
 import org.exoplatform.social.core.storage.cache.model.key.RelationshipCountKey;
 import org.exoplatform.social.core.storage.cache.model.key.RelationshipIdentityKey;
 import org.exoplatform.social.core.storage.cache.model.key.RelationshipKey;
+import org.exoplatform.social.core.storage.cache.model.key.RenderedActivityKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceFilterKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceRefKey;
+import org.exoplatform.social.core.storage.cache.model.key.UnreadCounterKey;
 import org.exoplatform.social.core.storage.cache.model.key.SuggestionKey;
+import org.exoplatform.social.core.storage.cache.tier.OffHeapStore;
+import org.exoplatform.social.core.storage.cache.tier.TieredCache;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
+@Managed
+@ManagedDescription("Social storage caches")
+@NameTemplate({@Property(key = "service", value = "social"), @Property(key = "view", value = "StorageCaches")})
 public class SocialStorageCacheService {
 
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(SocialStorageCacheService.class);
+
+  /** Capacity in bytes of the off-heap tier of each cache, by cache name */
+  public static final String OFF_HEAP_CAPACITY = "off-heap-capacity";
+
+  /** Whether the list caches are invalidated by moving their keys to the next generation */
+  public static final String KEY_GENERATIONS = "key-generations";
+
+  private final Map<String, ExoCache<?, ?>> caches = new LinkedHashMap<String, ExoCache<?, ?>>();
+
+  private final Map<ExoCache<?, ?>, CacheKeyIndex<?, ?>> indexes = new IdentityHashMap<ExoCache<?, ?>, CacheKeyIndex<?, ?>>();
+
   // IdentityStorage
   private final ExoCache<IdentityKey, IdentityData> identityCache;
   private final ExoCache<IdentityCompositeKey, IdentityKey> identityIndexCache;
   private final ExoCache<IdentityKey, ProfileData> profileCache;
+  private final ExoCache<IdentityCompositeKey, MentionData> mentionCache;
   private final ExoCache<IdentityFilterKey, IntegerData> countIdentitiesCache;
   private final ExoCache<ListIdentitiesKey, ListIdentitiesData> identitiesCache;
+  private final ExoCache<IdentityKey, IdentitySummary> identitySummaryCache;
+  private final ExoCache<IdentityKey, ChangeData> profileChangeCache;
 
   // RelationshipStorage
   private final ExoCache<RelationshipKey, RelationshipData> relationshipCache;
@@ -68,11 +120,17 @@ public class SocialStorageCacheService {
   
   // Suggestion
   private final ExoCache<SuggestionKey, SuggestionsData> suggestionCache;
+  private final ExoCache<IdentityKey, ChangeData> relationshipChangeCache;
 
   // ActivityStorage
   private final ExoCache<ActivityKey, ActivityData> activityCache;
   private final ExoCache<ActivityCountKey, IntegerData> activitiesCountCache;
   private final ExoCache<ListActivitiesKey, ListActivitiesData> activitiesCache;
+  private final ExoCache<ActivityKey, CommentIndexData> commentIndexCache;
+  private final ExoCache<RenderedActivityKey, RenderedActivityData> renderedActivityCache;
+  private final ExoCache<UnreadCounterKey, UnreadCounterData> unreadCounterCache;
+  private final ExoCache<IdentityKey, ActivityUpdateRef> lastActivityCache;
+  private final ExoCache<IdentityKey, ListIdentitiesData> pullSourcesCache;
 
   // SpaceStorage
   private final ExoCache<SpaceKey, SpaceData> spaceCache;
@@ -81,32 +139,72 @@ public class SocialStorageCacheService {
   private final ExoCache<ListSpacesKey, ListSpacesData> spacesCache;
   
   private final ExoCache<SpaceKey, SpaceSimpleData> spaceSimpleCache;
+  private final ExoCache<SpaceKey, ListIdentitiesData> spaceMembersCache;
 
   public SocialStorageCacheService(CacheService cacheService) {
+    this(cacheService, null);
+  }
+
+  /**
+   * @param cacheService the cache service
+   * @param params the optional {@value #OFF_HEAP_CAPACITY} properties giving the capacity in bytes of the
+   *        off-heap tier of the caches, with a k, m or g suffix, the caches which are not listed only stay on
+   *        the heap, and the optional {@value #KEY_GENERATIONS} value, true to invalidate the list caches
+   *        through the generations of their keys when the caches are local
+   * @since 4.1.0
+   */
+  public SocialStorageCacheService(CacheService cacheService, InitParams params) {
+
+    KeyGenerations.setEnabled(isKeyGenerations(params));
+
+    this.identityCache = getCache(CacheType.IDENTITY, cacheService, params);
+    this.identityIndexCache = getCache(CacheType.IDENTITY_INDEX, cacheService, params);
+    this.profileCache = getCache(CacheType.PROFILE, cacheService, params);
+    this.mentionCache = getCache(CacheType.MENTION, cacheService, params);
+    this.countIdentitiesCache = getCache(CacheType.IDENTITIES_COUNT, cacheService, params);
+    this.identitiesCache = getCache(CacheType.IDENTITIES, cacheService, params);
+    this.identitySummaryCache = getCache(CacheType.IDENTITY_SUMMARY, cacheService, params);
+    this.profileChangeCache = getCache(CacheType.PROFILE_CHANGE, cacheService, params);
+
+    this.relationshipCache = getCache(CacheType.RELATIONSHIP, cacheService, params);
+    this.relationshipCacheByIdentity = getCache(CacheType.RELATIONSHIP_FROM_IDENTITY, cacheService, params);
+    this.relationshipsCount = getCache(CacheType.RELATIONSHIPS_COUNT, cacheService, params);
+    this.relationshipsCache = getCache(CacheType.RELATIONSHIPS, cacheService, params);
     
-    this.identityCache = CacheType.IDENTITY.getFromService(cacheService);
-    this.identityIndexCache = CacheType.IDENTITY_INDEX.getFromService(cacheService);
-    this.profileCache = CacheType.PROFILE.getFromService(cacheService);
-    this.countIdentitiesCache = CacheType.IDENTITIES_COUNT.getFromService(cacheService);
-    this.identitiesCache = CacheType.IDENTITIES.getFromService(cacheService);
-
-    this.relationshipCache = CacheType.RELATIONSHIP.getFromService(cacheService);
-    this.relationshipCacheByIdentity = CacheType.RELATIONSHIP_FROM_IDENTITY.getFromService(cacheService);
-    this.relationshipsCount = CacheType.RELATIONSHIPS_COUNT.getFromService(cacheService);
-    this.relationshipsCache = CacheType.RELATIONSHIPS.getFromService(cacheService);
-    
-    this.suggestionCache = CacheType.SUGGESTIONS.getFromService(cacheService);
+    this.suggestionCache = getCache(CacheType.SUGGESTIONS, cacheService, params);
+    this.relationshipChangeCache = getCache(CacheType.RELATIONSHIP_CHANGE, cacheService, params);
 
-    this.activityCache = CacheType.ACTIVITY.getFromService(cacheService);
-    this.activitiesCountCache = CacheType.ACTIVITIES_COUNT.getFromService(cacheService);
-    this.activitiesCache = CacheType.ACTIVITIES.getFromService(cacheService);
+    this.activityCache = getCache(CacheType.ACTIVITY, cacheService, params);
+    this.activitiesCountCache = getCache(CacheType.ACTIVITIES_COUNT, cacheService, params);
+    this.activitiesCache = getCache(CacheType.ACTIVITIES, cacheService, params);
+    this.commentIndexCache = getCache(CacheType.COMMENT_INDEX, cacheService, params);
+    this.renderedActivityCache = getCache(CacheType.RENDERED_ACTIVITY, cacheService, params);
+    this.unreadCounterCache = getCache(CacheType.UNREAD_COUNTER, cacheService, params);
+    this.lastActivityCache = getCache(CacheType.LAST_ACTIVITY, cacheService, params);
+    this.pullSourcesCache = getCache(CacheType.PULL_SOURCES, cacheService, params);
 
-    this.spaceCache = CacheType.SPACE.getFromService(cacheService);
-    this.spaceRefCache = CacheType.SPACE_REF.getFromService(cacheService);
-    this.spacesCountCache = CacheType.SPACES_COUNT.getFromService(cacheService);
-    this.spacesCache = CacheType.SPACES.getFromService(cacheService);
+    this.spaceCache = getCache(CacheType.SPACE, cacheService, params);
+    this.spaceRefCache = getCache(CacheType.SPACE_REF, cacheService, params);
+    this.spacesCountCache = getCache(CacheType.SPACES_COUNT, cacheService, params);
+    this.spacesCache = getCache(CacheType.SPACES, cacheService, params);
     
-    this.spaceSimpleCache = CacheType.SPACE_SIMPLE.getFromService(cacheService);
+    this.spaceSimpleCache = getCache(CacheType.SPACE_SIMPLE, cacheService, params);
+    this.spaceMembersCache = getCache(CacheType.SPACE_MEMBERS, cacheService, params);
+
+    // the caches invalidated by selection
+    index(new CacheKeyIndex<IdentityFilterKey, IntegerData>(countIdentitiesCache));
+    index(new CacheKeyIndex<ListIdentitiesKey, ListIdentitiesData>(identitiesCache));
+    index(new RelationshipKeyIndex<RelationshipCountKey, IntegerData>(relationshipsCount));
+    index(new RelationshipKeyIndex<ListRelationshipsKey, ListIdentitiesData>(relationshipsCache));
+    index(new CacheKeyIndex<SuggestionKey, SuggestionsData>(suggestionCache));
+    index(new ActivityOwnerKeyIndex(activityCache));
+    index(new ActivityStreamKeyIndex<ActivityCountKey, IntegerData>(activitiesCountCache));
+    index(new ActivityStreamKeyIndex<ListActivitiesKey, ListActivitiesData>(activitiesCache));
+    index(new CacheKeyIndex<ActivityKey, CommentIndexData>(commentIndexCache));
+    index(new CacheKeyIndex<UnreadCounterKey, UnreadCounterData>(unreadCounterCache));
+    index(new RenderedActivityKeyIndex(renderedActivityCache));
+    index(new CacheKeyIndex<SpaceFilterKey, IntegerData>(spacesCountCache));
+    index(new CacheKeyIndex<ListSpacesKey, ListSpacesData>(spacesCache));
 
   }
 
@@ -122,6 +220,10 @@ public class SocialStorageCacheService {
     return profileCache;
   }
 
+  public ExoCache<IdentityCompositeKey, MentionData> getMentionCache() {
+    return mentionCache;
+  }
+
   public ExoCache<IdentityFilterKey, IntegerData> getCountIdentitiesCache() {
     return countIdentitiesCache;
   }
@@ -130,6 +232,18 @@ public class SocialStorageCacheService {
     return identitiesCache;
   }
 
+  public ExoCache<IdentityKey, IdentitySummary> getIdentitySummaryCache() {
+    return identitySummaryCache;
+  }
+
+  /**
+   * @return the replicated cache signaling the identities whose name or profile changed
+   * @since 4.1.0
+   */
+  public ExoCache<IdentityKey, ChangeData> getProfileChangeCache() {
+    return profileChangeCache;
+  }
+
   public ExoCache<RelationshipKey, RelationshipData> getRelationshipCache() {
     return relationshipCache;
   }
@@ -138,6 +252,14 @@ public class SocialStorageCacheService {
     return suggestionCache;
   }
   
+  /**
+   * @return the replicated cache signaling the identities whose relationships changed
+   * @since 4.1.0
+   */
+  public ExoCache<IdentityKey, ChangeData> getRelationshipChangeCache() {
+    return relationshipChangeCache;
+  }
+
   public ExoCache<RelationshipIdentityKey, RelationshipKey> getRelationshipCacheByIdentity() {
     return relationshipCacheByIdentity;
   }
@@ -162,6 +284,30 @@ public class SocialStorageCacheService {
     return activitiesCache;
   }
 
+  public ExoCache<ActivityKey, CommentIndexData> getCommentIndexCache() {
+    return commentIndexCache;
+  }
+
+  public ExoCache<RenderedActivityKey, RenderedActivityData> getRenderedActivityCache() {
+    return renderedActivityCache;
+  }
+
+  public ExoCache<UnreadCounterKey, UnreadCounterData> getUnreadCounterCache() {
+    return unreadCounterCache;
+  }
+
+  public ExoCache<IdentityKey, ActivityUpdateRef> getLastActivityCache() {
+    return lastActivityCache;
+  }
+
+  /**
+   * @return the cache of the pulled streams read by the streams of each identity
+   * @since 4.1.0
+   */
+  public ExoCache<IdentityKey, ListIdentitiesData> getPullSourcesCache() {
+    return pullSourcesCache;
+  }
+
   public ExoCache<SpaceKey, SpaceData> getSpaceCache() {
     return spaceCache;
   }
@@ -170,6 +316,14 @@ public class SocialStorageCacheService {
     return spaceSimpleCache;
   }
 
+  /**
+   * @return the cache of the identities of the members of each space
+   * @since 4.1.0
+   */
+  public ExoCache<SpaceKey, ListIdentitiesData> getSpaceMembersCache() {
+    return spaceMembersCache;
+  }
+
   public ExoCache<SpaceRefKey, SpaceKey> getSpaceRefCache() {
     return spaceRefCache;
   }
@@ -181,4 +335,134 @@ public class SocialStorageCacheService {
   public ExoCache<ListSpacesKey, ListSpacesData> getSpacesCache() {
     return spacesCache;
   }
+
+  /**
+   * Gets the index of the keys of a cache, the selections made through the index only visit the keys of the
+   * current scope instead of the whole cache.
+   *
+   * @param cache a cache of this service
+   * @return the index of the cache keys
+   * @throws IllegalArgumentException if the cache keys are not indexed
+   * @since 4.1.0
+   */
+  @SuppressWarnings("unchecked")
+  public <K extends ScopeCacheKey, V> CacheKeyIndex<K, V> getKeyIndex(ExoCache<K, V> cache) {
+    CacheKeyIndex<K, V> index = (CacheKeyIndex<K, V>) indexes.get(cache);
+    if (index == null) {
+      throw new IllegalArgumentException("The keys of " + cache.getName() + " are not indexed");
+    }
+    return index;
+  }
+
+  @Managed
+  @ManagedDescription("Number of keys indexed for the invalidation of a cache")
+  public int getIndexedKeys(@ManagedDescription("The cache name") @ManagedName("cacheName") String cacheName) {
+    CacheKeyIndex<?, ?> index = indexes.get(caches.get(cacheName));
+    return index == null ? 0 : index.getSize();
+  }
+
+  @Managed
+  @ManagedDescription("Statistics of the on-heap and off-heap tiers of each cache")
+  public String getTierStatistics() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, ExoCache<?, ?>> entry : caches.entrySet()) {
+      ExoCache<?, ?> cache = entry.getValue();
+      OffHeapStore store = TieredCache.getStore(cache);
+      sb.append(entry.getKey())
+        .append(": heap ").append(cache.getCacheSize()).append(" entries, ")
+        .append(cache.getCacheHit()).append(" hits, ")
+        .append(cache.getCacheMiss()).append(" misses");
+      if (store != null) {
+        sb.append("; off-heap ").append(store.getSize()).append(" entries, ")
+          .append(store.getUsedBytes()).append('/').append(store.getCapacity()).append(" bytes, ")
+          .append(store.getEvictions()).append(" evictions, ")
+          .append(String.format("%.3f", store.getEvictionRate())).append(" evictions per put");
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  @Managed
+  @ManagedDescription("Number of entries kept on the heap by a cache")
+  public int getHeapSize(@ManagedDescription("The cache name") @ManagedName("cacheName") String cacheName) {
+    ExoCache<?, ?> cache = caches.get(cacheName);
+    return cache == null ? 0 : cache.getCacheSize();
+  }
+
+  @Managed
+  @ManagedDescription("Number of entries kept out of the heap by a cache")
+  public int getOffHeapSize(@ManagedDescription("The cache name") @ManagedName("cacheName") String cacheName) {
+    OffHeapStore store = getOffHeapStore(cacheName);
+    return store == null ? 0 : store.getSize();
+  }
+
+  @Managed
+  @ManagedDescription("Number of bytes used out of the heap by a cache")
+  public long getOffHeapUsedBytes(@ManagedDescription("The cache name") @ManagedName("cacheName") String cacheName) {
+    OffHeapStore store = getOffHeapStore(cacheName);
+    return store == null ? 0 : store.getUsedBytes();
+  }
+
+  @Managed
+  @ManagedDescription("Number of evictions per stored entry in the off-heap tier of a cache")
+  public double getOffHeapEvictionRate(@ManagedDescription("The cache name") @ManagedName("cacheName") String cacheName) {
+    OffHeapStore store = getOffHeapStore(cacheName);
+    return store == null ? 0 : store.getEvictionRate();
+  }
+
+  /**
+   * @param cacheName the cache name
+   * @return the off-heap tier of the cache, null when the cache only stays on the heap
+   * @since 4.1.0
+   */
+  public OffHeapStore getOffHeapStore(String cacheName) {
+    return TieredCache.getStore(caches.get(cacheName));
+  }
+
+  private <K extends CacheKey, V extends Serializable> ExoCache<K, V> getCache(CacheType type,
+                                                                              CacheService cacheService,
+                                                                              InitParams params) {
+    ExoCache<K, V> cache = type.getFromService(cacheService, getOffHeapCapacity(type, params));
+    caches.put(type.getName(), cache);
+    return cache;
+  }
+
+  private <K extends ScopeCacheKey, V> void index(CacheKeyIndex<K, V> index) {
+    indexes.put(index.register().getCache(), index);
+  }
+
+  private static boolean isKeyGenerations(InitParams params) {
+    if (params == null || params.getValueParam(KEY_GENERATIONS) == null) {
+      return false;
+    }
+    return Boolean.parseBoolean(params.getValueParam(KEY_GENERATIONS).getValue().trim());
+  }
+
+  private static int getOffHeapCapacity(CacheType type, InitParams params) {
+    if (params == null || params.getPropertiesParam(OFF_HEAP_CAPACITY) == null) {
+      return 0;
+    }
+    String value = params.getPropertiesParam(OFF_HEAP_CAPACITY).getProperty(type.getName());
+    if (value == null || value.trim().length() == 0) {
+      return 0;
+    }
+
+    //
+    value = value.trim().toLowerCase();
+    long unit = 1;
+    switch (value.charAt(value.length() - 1)) {
+      case 'k' : unit = 1L << 10; break;
+      case 'm' : unit = 1L << 20; break;
+      case 'g' : unit = 1L << 30; break;
+    }
+    try {
+      long capacity = Long.parseLong(unit == 1 ? value : value.substring(0, value.length() - 1)) * unit;
+      return (int) Math.max(0, Math.min(Integer.MAX_VALUE, capacity));
+    } catch (NumberFormatException e) {
+      LOG.warn("Invalid off-heap capacity " + value + " for " + type.getName() + ", the cache stays on the heap");
+      return 0;
+    }
+  }
+
 }
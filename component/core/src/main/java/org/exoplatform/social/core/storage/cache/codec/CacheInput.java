@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Input of the {@link CompactCodec}, reads what the {@link CacheOutput} writes.
+ *
+ * @since 4.1.0
+ */
+public class CacheInput {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final byte[] bytes;
+
+  private final int version;
+
+  private int position;
+
+  private final List<String> tokens = new ArrayList<String>();
+
+  public CacheInput(byte[] bytes, int offset, int version) {
+    this.bytes = bytes;
+    this.position = offset;
+    this.version = version;
+  }
+
+  /**
+   * @return the version of the codec which wrote the value
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  public int readByte() throws IOException {
+    if (position >= bytes.length) {
+      throw new EOFException();
+    }
+    return bytes[position++] & 0xFF;
+  }
+
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  public int readVarInt() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length int");
+  }
+
+  public long readLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 70; shift += 7) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (value >>> 1) ^ -(value & 1);
+      }
+    }
+    throw new IOException("Malformed variable length long");
+  }
+
+  public int readInt() throws IOException {
+    return (int) readLong();
+  }
+
+  public Long readNullableLong() throws IOException {
+    return readBoolean() ? readLong() : null;
+  }
+
+  public String readString() throws IOException {
+    int length = readVarInt() - 1;
+    if (length < 0) {
+      return null;
+    }
+    if (position + length > bytes.length) {
+      throw new EOFException();
+    }
+    String value = new String(bytes, position, length, CacheOutput.UTF_8);
+    position += length;
+    return value;
+  }
+
+  public String readToken() throws IOException {
+    int index = readVarInt();
+    if (index == 0) {
+      return null;
+    }
+    else if (index == 1) {
+      String value = readString();
+      tokens.add(value);
+      return value;
+    }
+    else if (index - 2 < tokens.size()) {
+      return tokens.get(index - 2);
+    }
+    throw new IOException("Unknown token " + (index - 2));
+  }
+
+  public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+    String name = readToken();
+    return name != null ? Enum.valueOf(type, name) : null;
+  }
+
+  public String readId() throws IOException {
+    switch (readByte()) {
+      case 0 :
+        return null;
+      case 1 :
+        char[] chars = new char[32];
+        for (int i = 0; i < 32; i += 2) {
+          int b = readByte();
+          chars[i] = HEX[b >> 4];
+          chars[i + 1] = HEX[b & 0x0F];
+        }
+        return new String(chars);
+      default :
+        return readString();
+    }
+  }
+
+  public String[] readIds() throws IOException {
+    int length = readVarInt() - 1;
+    if (length < 0) {
+      return null;
+    }
+    String[] ids = new String[length];
+    for (int i = 0; i < length; ++i) {
+      ids[i] = readId();
+    }
+    return ids;
+  }
+
+  public String[] readStrings() throws IOException {
+    int length = readVarInt() - 1;
+    if (length < 0) {
+      return null;
+    }
+    String[] values = new String[length];
+    for (int i = 0; i < length; ++i) {
+      values[i] = readString();
+    }
+    return values;
+  }
+
+  /**
+   * Reads a map written by {@link CacheOutput#writeMap(Map)}, in the order it was written.
+   */
+  @SuppressWarnings("unchecked")
+  public <V> LinkedHashMap<String, V> readMap() throws IOException {
+    int length = readVarInt() - 1;
+    if (length < 0) {
+      return null;
+    }
+    LinkedHashMap<String, V> map = new LinkedHashMap<String, V>();
+    for (int i = 0; i < length; ++i) {
+      map.put(readToken(), (V) readValue());
+    }
+    return map;
+  }
+
+  public Object readValue() throws IOException {
+
+    int tag = readByte();
+    switch (tag) {
+      case CompactCodec.NULL :
+        return null;
+      case CompactCodec.STRING :
+        return readString();
+      case CompactCodec.INTEGER :
+        return readInt();
+      case CompactCodec.LONG :
+        return readLong();
+      case CompactCodec.BOOLEAN :
+        return readBoolean();
+      case CompactCodec.ARRAY_LIST :
+        int length = readVarInt();
+        List<Object> list = new ArrayList<Object>(length);
+        for (int i = 0; i < length; ++i) {
+          list.add(readValue());
+        }
+        return list;
+      case CompactCodec.HASH_MAP :
+      case CompactCodec.LINKED_HASH_MAP :
+        int size = readVarInt();
+        Map<Object, Object> map = tag == CompactCodec.HASH_MAP
+            ? new HashMap<Object, Object>() : new LinkedHashMap<Object, Object>();
+        for (int i = 0; i < size; ++i) {
+          map.put(readValue(), readValue());
+        }
+        return map;
+      case CompactCodec.SERIALIZED :
+        return readSerialized();
+      default :
+        return CompactCodec.read(tag, this);
+    }
+
+  }
+
+  private Object readSerialized() throws IOException {
+    int length = readVarInt();
+    if (position + length > bytes.length) {
+      throw new EOFException();
+    }
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, position, length));
+    position += length;
+    try {
+      return in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e.getMessage());
+    } finally {
+      in.close();
+    }
+  }
+
+}
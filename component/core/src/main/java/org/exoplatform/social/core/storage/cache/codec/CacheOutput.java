@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output of the {@link CompactCodec}.
+ *
+ * Numbers are written as variable length integers, the tokens (scopes, provider ids, types...) are only written
+ * once per value and then referred to by their index, and the ids generated by the JCR are packed in 16 bytes.
+ *
+ * @since 4.1.0
+ */
+public class CacheOutput {
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private byte[] bytes = new byte[256];
+
+  private int size;
+
+  private final Map<String, Integer> tokens = new HashMap<String, Integer>();
+
+  public void writeByte(int b) {
+    ensure(1);
+    bytes[size++] = (byte) b;
+  }
+
+  public void writeBoolean(boolean b) {
+    writeByte(b ? 1 : 0);
+  }
+
+  /**
+   * Writes a positive int on 1 to 5 bytes.
+   */
+  public void writeVarInt(int value) {
+    ensure(5);
+    while ((value & ~0x7F) != 0) {
+      bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[size++] = (byte) value;
+  }
+
+  /**
+   * Writes a long on 1 to 10 bytes, small negative values stay short.
+   */
+  public void writeLong(long value) {
+    ensure(10);
+    value = (value << 1) ^ (value >> 63);
+    while ((value & ~0x7FL) != 0) {
+      bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[size++] = (byte) value;
+  }
+
+  public void writeInt(int value) {
+    writeLong(value);
+  }
+
+  public void writeNullableLong(Long value) {
+    writeBoolean(value != null);
+    if (value != null) {
+      writeLong(value);
+    }
+  }
+
+  public void writeString(String value) {
+    if (value == null) {
+      writeVarInt(0);
+      return;
+    }
+    byte[] utf = value.getBytes(UTF_8);
+    writeVarInt(utf.length + 1);
+    ensure(utf.length);
+    System.arraycopy(utf, 0, bytes, size, utf.length);
+    size += utf.length;
+  }
+
+  /**
+   * Writes a string which is likely to be repeated in the value, only its first occurrence is written.
+   */
+  public void writeToken(String value) {
+    if (value == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = tokens.get(value);
+    if (index != null) {
+      writeVarInt(index + 2);
+    }
+    else {
+      tokens.put(value, tokens.size());
+      writeVarInt(1);
+      writeString(value);
+    }
+  }
+
+  public void writeEnum(Enum<?> value) {
+    writeToken(value != null ? value.name() : null);
+  }
+
+  /**
+   * Writes an id, on 17 bytes when it is a lower case hexadecimal id of 32 characters as the JCR ones.
+   */
+  public void writeId(String id) {
+    if (id == null) {
+      writeByte(0);
+    }
+    else if (isPackable(id)) {
+      writeByte(1);
+      ensure(16);
+      for (int i = 0; i < 32; i += 2) {
+        bytes[size++] = (byte) ((Character.digit(id.charAt(i), 16) << 4) | Character.digit(id.charAt(i + 1), 16));
+      }
+    }
+    else {
+      writeByte(2);
+      writeString(id);
+    }
+  }
+
+  public void writeIds(String[] ids) {
+    if (ids == null) {
+      writeVarInt(0);
+      return;
+    }
+    writeVarInt(ids.length + 1);
+    for (String id : ids) {
+      writeId(id);
+    }
+  }
+
+  public void writeStrings(String[] values) {
+    if (values == null) {
+      writeVarInt(0);
+      return;
+    }
+    writeVarInt(values.length + 1);
+    for (String value : values) {
+      writeString(value);
+    }
+  }
+
+  /**
+   * Writes a map keyed by tokens, such as the template parameters or the profile properties.
+   */
+  public void writeMap(Map<String, ?> map) throws IOException {
+    if (map == null) {
+      writeVarInt(0);
+      return;
+    }
+    writeVarInt(map.size() + 1);
+    for (Map.Entry<String, ?> entry : map.entrySet()) {
+      writeToken(entry.getKey());
+      writeValue(entry.getValue());
+    }
+  }
+
+  /**
+   * Writes any value, the {@link CompactWritable} ones and the common Java types by hand and the other ones
+   * with the Java serialization.
+   */
+  public void writeValue(Object value) throws IOException {
+
+    if (value == null) {
+      writeByte(CompactCodec.NULL);
+      return;
+    }
+
+    //
+    Class<?> type = value.getClass();
+    Integer tag = CompactCodec.tagOf(type);
+    if (tag != null) {
+      writeByte(tag);
+      ((CompactWritable) value).writeTo(this);
+    }
+    else if (type == String.class) {
+      writeByte(CompactCodec.STRING);
+      writeString((String) value);
+    }
+    else if (type == Integer.class) {
+      writeByte(CompactCodec.INTEGER);
+      writeInt((Integer) value);
+    }
+    else if (type == Long.class) {
+      writeByte(CompactCodec.LONG);
+      writeLong((Long) value);
+    }
+    else if (type == Boolean.class) {
+      writeByte(CompactCodec.BOOLEAN);
+      writeBoolean((Boolean) value);
+    }
+    else if (type == ArrayList.class) {
+      List<?> list = (List<?>) value;
+      writeByte(CompactCodec.ARRAY_LIST);
+      writeVarInt(list.size());
+      for (Object element : list) {
+        writeValue(element);
+      }
+    }
+    else if (type == HashMap.class || type == LinkedHashMap.class) {
+      writeByte(type == HashMap.class ? CompactCodec.HASH_MAP : CompactCodec.LINKED_HASH_MAP);
+      writeVarInt(((Map<?, ?>) value).size());
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        writeValue(entry.getKey());
+        writeValue(entry.getValue());
+      }
+    }
+    else {
+      writeByte(CompactCodec.SERIALIZED);
+      writeSerialized((Serializable) value);
+    }
+
+  }
+
+  /**
+   * @return the written bytes
+   */
+  public byte[] toByteArray() {
+    byte[] copy = new byte[size];
+    System.arraycopy(bytes, 0, copy, 0, size);
+    return copy;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void writeSerialized(Serializable value) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(buffer);
+    try {
+      out.writeObject(value);
+    } finally {
+      out.close();
+    }
+    byte[] serialized = buffer.toByteArray();
+    writeVarInt(serialized.length);
+    ensure(serialized.length);
+    System.arraycopy(serialized, 0, bytes, size, serialized.length);
+    size += serialized.length;
+  }
+
+  private void ensure(int length) {
+    if (size + length > bytes.length) {
+      byte[] grown = new byte[Math.max(bytes.length * 2, size + length)];
+      System.arraycopy(bytes, 0, grown, 0, size);
+      bytes = grown;
+    }
+  }
+
+  private static boolean isPackable(String id) {
+    if (id.length() != 32) {
+      return false;
+    }
+    for (int i = 0; i < 32; ++i) {
+      char c = id.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.codec;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
+import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
+import org.exoplatform.social.core.storage.cache.model.data.CommentIndexData;
+import org.exoplatform.social.core.storage.cache.model.data.IdentityData;
+import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
+import org.exoplatform.social.core.storage.cache.model.data.ListActivitiesData;
+import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
+import org.exoplatform.social.core.storage.cache.model.data.ListRelationshipsData;
+import org.exoplatform.social.core.storage.cache.model.data.ListSpacesData;
+import org.exoplatform.social.core.storage.cache.model.data.MentionData;
+import org.exoplatform.social.core.storage.cache.model.data.ProfileData;
+import org.exoplatform.social.core.storage.cache.model.data.RelationshipData;
+import org.exoplatform.social.core.storage.cache.model.data.RenderedActivityData;
+import org.exoplatform.social.core.storage.cache.model.data.SimpleCacheData;
+import org.exoplatform.social.core.storage.cache.model.data.SpaceData;
+import org.exoplatform.social.core.storage.cache.model.data.SpaceSimpleData;
+import org.exoplatform.social.core.storage.cache.model.data.SuggestionsData;
+import org.exoplatform.social.core.storage.cache.model.data.UnreadCounterData;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityKey;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityCompositeKey;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.RelationshipIdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.RelationshipKey;
+import org.exoplatform.social.core.storage.cache.model.key.RenderedActivityKey;
+import org.exoplatform.social.core.storage.cache.model.key.SpaceKey;
+import org.exoplatform.social.core.storage.cache.model.key.SpaceRefKey;
+import org.exoplatform.social.core.storage.cache.model.key.UnreadCounterKey;
+import org.exoplatform.social.core.storage.cache.tier.CacheCodec;
+
+/**
+ * Versioned binary codec of the cached data and keys.
+ *
+ * The cached classes are written by hand, the other values are written with the Java serialization. The
+ * codec is used by the off-heap tier of the caches, and by the Java serialization of the cached classes
+ * through {@link CompactForm} when the caches are replicated.
+ *
+ * @since 4.1.0
+ */
+public class CompactCodec<T> implements CacheCodec<T> {
+
+  /** Version of the written values, to be increased when a class changes the way it is written */
+  public static final int VERSION = 1;
+
+  //
+  static final int NULL = 0;
+  static final int SERIALIZED = 1;
+  static final int STRING = 2;
+  static final int INTEGER = 3;
+  static final int LONG = 4;
+  static final int BOOLEAN = 5;
+  static final int ARRAY_LIST = 6;
+  static final int HASH_MAP = 7;
+  static final int LINKED_HASH_MAP = 8;
+
+  //
+  private static final int IDENTITY_DATA = 16;
+  private static final int PROFILE_DATA = 17;
+  private static final int ACTIVITY_DATA = 18;
+  private static final int RELATIONSHIP_DATA = 19;
+  private static final int SPACE_DATA = 20;
+  private static final int SPACE_SIMPLE_DATA = 21;
+  private static final int INTEGER_DATA = 22;
+  private static final int COMMENT_INDEX_DATA = 23;
+  private static final int SIMPLE_CACHE_DATA = 24;
+  private static final int LIST_ACTIVITIES_DATA = 25;
+  private static final int LIST_IDENTITIES_DATA = 26;
+  private static final int LIST_RELATIONSHIPS_DATA = 27;
+  private static final int LIST_SPACES_DATA = 28;
+  private static final int MENTION_DATA = 29;
+  private static final int RENDERED_ACTIVITY_DATA = 30;
+  private static final int SUGGESTIONS_DATA = 31;
+  private static final int UNREAD_COUNTER_DATA = 32;
+  private static final int IDENTITY_SUMMARY = 33;
+  private static final int ACTIVITY_UPDATE_REF = 34;
+
+  //
+  private static final int IDENTITY_KEY = 64;
+  private static final int ACTIVITY_KEY = 65;
+  private static final int SPACE_KEY = 66;
+  private static final int RELATIONSHIP_KEY = 67;
+  private static final int IDENTITY_COMPOSITE_KEY = 68;
+  private static final int RELATIONSHIP_IDENTITY_KEY = 69;
+  private static final int SPACE_REF_KEY = 70;
+  private static final int RENDERED_ACTIVITY_KEY = 71;
+  private static final int UNREAD_COUNTER_KEY = 72;
+
+  private static final Map<Class<?>, Integer> TAGS = new HashMap<Class<?>, Integer>();
+
+  static {
+    TAGS.put(IdentityData.class, IDENTITY_DATA);
+    TAGS.put(ProfileData.class, PROFILE_DATA);
+    TAGS.put(ActivityData.class, ACTIVITY_DATA);
+    TAGS.put(RelationshipData.class, RELATIONSHIP_DATA);
+    TAGS.put(SpaceData.class, SPACE_DATA);
+    TAGS.put(SpaceSimpleData.class, SPACE_SIMPLE_DATA);
+    TAGS.put(IntegerData.class, INTEGER_DATA);
+    TAGS.put(CommentIndexData.class, COMMENT_INDEX_DATA);
+    TAGS.put(SimpleCacheData.class, SIMPLE_CACHE_DATA);
+    TAGS.put(ListActivitiesData.class, LIST_ACTIVITIES_DATA);
+    TAGS.put(ListIdentitiesData.class, LIST_IDENTITIES_DATA);
+    TAGS.put(ListRelationshipsData.class, LIST_RELATIONSHIPS_DATA);
+    TAGS.put(ListSpacesData.class, LIST_SPACES_DATA);
+    TAGS.put(MentionData.class, MENTION_DATA);
+    TAGS.put(RenderedActivityData.class, RENDERED_ACTIVITY_DATA);
+    TAGS.put(SuggestionsData.class, SUGGESTIONS_DATA);
+    TAGS.put(UnreadCounterData.class, UNREAD_COUNTER_DATA);
+    TAGS.put(IdentitySummary.class, IDENTITY_SUMMARY);
+    TAGS.put(ActivityUpdateRef.class, ACTIVITY_UPDATE_REF);
+
+    //
+    TAGS.put(IdentityKey.class, IDENTITY_KEY);
+    TAGS.put(ActivityKey.class, ACTIVITY_KEY);
+    TAGS.put(SpaceKey.class, SPACE_KEY);
+    TAGS.put(RelationshipKey.class, RELATIONSHIP_KEY);
+    TAGS.put(IdentityCompositeKey.class, IDENTITY_COMPOSITE_KEY);
+    TAGS.put(RelationshipIdentityKey.class, RELATIONSHIP_IDENTITY_KEY);
+    TAGS.put(SpaceRefKey.class, SPACE_REF_KEY);
+    TAGS.put(RenderedActivityKey.class, RENDERED_ACTIVITY_KEY);
+    TAGS.put(UnreadCounterKey.class, UNREAD_COUNTER_KEY);
+  }
+
+  public byte[] encode(T value) throws IOException {
+    return write(value);
+  }
+
+  @SuppressWarnings("unchecked")
+  public T decode(byte[] bytes) throws IOException {
+    return (T) read(bytes);
+  }
+
+  /**
+   * @param value the value
+   * @return the bytes of the value, starting with the version of the codec
+   * @throws IOException when the value cannot be written
+   */
+  public static byte[] write(Object value) throws IOException {
+    CacheOutput out = new CacheOutput();
+    out.writeByte(VERSION);
+    out.writeValue(value);
+    return out.toByteArray();
+  }
+
+  /**
+   * @param bytes the bytes written by {@link #write(Object)}
+   * @return the value
+   * @throws IOException when the bytes cannot be read
+   */
+  public static Object read(byte[] bytes) throws IOException {
+    if (bytes.length == 0 || bytes[0] < 1 || bytes[0] > VERSION) {
+      throw new IOException("Unsupported cache codec version " + (bytes.length == 0 ? -1 : bytes[0]));
+    }
+    return new CacheInput(bytes, 1, bytes[0]).readValue();
+  }
+
+  static Integer tagOf(Class<?> type) {
+    return TAGS.get(type);
+  }
+
+  static Object read(int tag, CacheInput in) throws IOException {
+    switch (tag) {
+      case IDENTITY_DATA : return IdentityData.readFrom(in);
+      case PROFILE_DATA : return ProfileData.readFrom(in);
+      case ACTIVITY_DATA : return ActivityData.readFrom(in);
+      case RELATIONSHIP_DATA : return RelationshipData.readFrom(in);
+      case SPACE_DATA : return SpaceData.readFrom(in);
+      case SPACE_SIMPLE_DATA : return SpaceSimpleData.readFrom(in);
+      case INTEGER_DATA : return IntegerData.readFrom(in);
+      case COMMENT_INDEX_DATA : return CommentIndexData.readFrom(in);
+      case SIMPLE_CACHE_DATA : return SimpleCacheData.readFrom(in);
+      case LIST_ACTIVITIES_DATA : return ListActivitiesData.readFrom(in);
+      case LIST_IDENTITIES_DATA : return ListIdentitiesData.readFrom(in);
+      case LIST_RELATIONSHIPS_DATA : return ListRelationshipsData.readFrom(in);
+      case LIST_SPACES_DATA : return ListSpacesData.readFrom(in);
+      case MENTION_DATA : return MentionData.readFrom(in);
+      case RENDERED_ACTIVITY_DATA : return RenderedActivityData.readFrom(in);
+      case SUGGESTIONS_DATA : return SuggestionsData.readFrom(in);
+      case UNREAD_COUNTER_DATA : return UnreadCounterData.readFrom(in);
+      case IDENTITY_SUMMARY : return IdentitySummary.readFrom(in);
+      case ACTIVITY_UPDATE_REF : return ActivityUpdateRef.readFrom(in);
+      case IDENTITY_KEY : return IdentityKey.readFrom(in);
+      case ACTIVITY_KEY : return ActivityKey.readFrom(in);
+      case SPACE_KEY : return SpaceKey.readFrom(in);
+      case RELATIONSHIP_KEY : return RelationshipKey.readFrom(in);
+      case IDENTITY_COMPOSITE_KEY : return IdentityCompositeKey.readFrom(in);
+      case RELATIONSHIP_IDENTITY_KEY : return RelationshipIdentityKey.readFrom(in);
+      case SPACE_REF_KEY : return SpaceRefKey.readFrom(in);
+      case RENDERED_ACTIVITY_KEY : return RenderedActivityKey.readFrom(in);
+      case UNREAD_COUNTER_KEY : return UnreadCounterKey.readFrom(in);
+      default : throw new IOException("Unknown cache codec tag " + tag);
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.codec;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Serialized form of the cached classes, which replace themselves by it when they are serialized so that
+ * the replication of the caches relies on the {@link CompactCodec}.
+ *
+ * @since 4.1.0
+ */
+public class CompactForm implements Externalizable {
+
+  private static final long serialVersionUID = 1L;
+
+  private Object value;
+
+  public CompactForm() {
+  }
+
+  public CompactForm(Object value) {
+    this.value = value;
+  }
+
+  public void writeExternal(ObjectOutput out) throws IOException {
+    byte[] bytes = CompactCodec.write(value);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public void readExternal(ObjectInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    value = CompactCodec.read(bytes);
+  }
+
+  private Object readResolve() {
+    return value;
+  }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.codec;
+
+import java.io.IOException;
+
+/**
+ * Cached object written by hand by the {@link CompactCodec}. Each writable class also provides a static
+ * <code>readFrom(CacheInput)</code> method reading what it writes.
+ *
+ * @since 4.1.0
+ */
+public interface CompactWritable {
+
+  /**
+   * @param out the output
+   * @throws IOException when the object cannot be written
+   */
+  void writeTo(CacheOutput out) throws IOException;
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityCountKey;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.ListActivitiesKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+
+/**
+ * Indexes the activity lists and counts by stream owner, or by activity for the comment lists and counts.
+ *
+ * @since 4.1.0
+ */
+public class ActivityStreamKeyIndex<K extends ScopeCacheKey, V> extends CacheKeyIndex<K, V> {
+
+  public ActivityStreamKeyIndex(final ExoCache<K, V> cache) {
+    super(cache);
+  }
+
+  @Override
+  protected Collection<String> getPartitions(final K key, final V value) {
+
+    if (key instanceof ListActivitiesKey) {
+      ListActivitiesKey listKey = (ListActivitiesKey) key;
+      if (listKey.getKey() != null) {
+        return getPartitions(listKey.getKey());
+      }
+      ListIdentitiesData identities = listKey.getIdentities();
+      if (identities != null && identities.getIds() != null) {
+        List<String> ownerIds = new ArrayList<String>(identities.getIds().size());
+        for (IdentityKey identityKey : identities.getIds()) {
+          ownerIds.add(identityKey.getId());
+        }
+        return ownerIds;
+      }
+    }
+
+    if (key instanceof ActivityCountKey) {
+      return getPartitions((ActivityCountKey) key);
+    }
+
+    return super.getPartitions(key, value);
+
+  }
+
+  private Collection<String> getPartitions(final ActivityCountKey key) {
+
+    if (key.getKey() != null) {
+      return Collections.singleton(key.getKey().getId());
+    }
+
+    if (key.getActivityKey() != null) {
+      return Collections.singleton(key.getActivityKey().getId());
+    }
+
+    if (key.getBaseId() != null) {
+      return Collections.singleton(key.getBaseId());
+    }
+
+    return Collections.singleton(SHARED);
+
+  }
+
+}
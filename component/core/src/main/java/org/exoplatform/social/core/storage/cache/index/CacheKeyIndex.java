@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.index;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.exoplatform.services.cache.CacheListener;
+import org.exoplatform.services.cache.CacheListenerContext;
+import org.exoplatform.services.cache.CachedObjectSelector;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.cache.ObjectCacheInfo;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeContext;
+
+/**
+ * Secondary index of the keys of a cache, by scope and by partition.
+ *
+ * The index listens to the cache, so that it follows the puts, the removals and the evictions. A selection
+ * only visits the keys of the current scope, or the keys of the given partitions of the current scope,
+ * instead of all the entries of the cache. The selectors still decide which keys are removed, the index
+ * only narrows the keys they see. Subclasses give the partitions of a key, usually the ids of the owners
+ * it is invalidated with.
+ *
+ * @since 4.1.0
+ */
+public class CacheKeyIndex<K extends ScopeCacheKey, V> implements CacheListener<K, V> {
+
+  /** Partition of the keys which are not bound to a partition, visited by all the selections. */
+  public static final String SHARED = "";
+
+  private static final Collection<String> SHARED_ONLY = Collections.singleton(SHARED);
+
+  private final ExoCache<K, V> cache;
+
+  private final ConcurrentMap<String, ScopeIndex<K>> scopes = new ConcurrentHashMap<String, ScopeIndex<K>>();
+
+  public CacheKeyIndex(final ExoCache<K, V> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Starts to index the keys put in the cache.
+   *
+   * @return this index
+   */
+  public CacheKeyIndex<K, V> register() {
+    cache.addCacheListener(this);
+    return this;
+  }
+
+  public ExoCache<K, V> getCache() {
+    return cache;
+  }
+
+  /**
+   * Gets the partitions of a key, the key is always found by the selections of the whole scope.
+   *
+   * @param key the key
+   * @param value the cached value
+   * @return the partitions of the key, {@link #SHARED} when it does not belong to a partition
+   */
+  protected Collection<String> getPartitions(final K key, final V value) {
+    return SHARED_ONLY;
+  }
+
+  /**
+   * Selects the entries of the current scope.
+   *
+   * @param selector the selector
+   * @throws Exception any exception thrown by the selector
+   */
+  public void select(final CachedObjectSelector<? super K, ? super V> selector) throws Exception {
+    select(ScopeContext.getCurrentScope(), selector, null);
+  }
+
+  /**
+   * Selects the entries of the given partitions and of the {@link #SHARED} one in the current scope.
+   *
+   * @param selector the selector
+   * @param partitions the partitions
+   * @throws Exception any exception thrown by the selector
+   */
+  public void select(final CachedObjectSelector<? super K, ? super V> selector,
+                     final Collection<String> partitions) throws Exception {
+    select(ScopeContext.getCurrentScope(), selector, partitions);
+  }
+
+  /**
+   * Selects the entries of the given partitions and of the {@link #SHARED} one in a scope.
+   *
+   * @param scope the scope
+   * @param selector the selector
+   * @param partitions the partitions, null for all the entries of the scope
+   * @throws Exception any exception thrown by the selector
+   */
+  public void select(final String scope,
+                     final CachedObjectSelector<? super K, ? super V> selector,
+                     final Collection<String> partitions) throws Exception {
+    ScopeIndex<K> index = scopes.get(scope);
+    if (index != null) {
+      select(selector, index.getKeys(partitions));
+    }
+  }
+
+  /**
+   * Selects the entries of the given partitions and of the {@link #SHARED} one in all the scopes, for the
+   * changes signaled by another cluster node outside of a repository.
+   *
+   * @param selector the selector
+   * @param partitions the partitions
+   * @throws Exception any exception thrown by the selector
+   */
+  public void selectAllScopes(final CachedObjectSelector<? super K, ? super V> selector,
+                              final Collection<String> partitions) throws Exception {
+    for (String scope : scopes.keySet()) {
+      select(scope, selector, partitions);
+    }
+  }
+
+  /**
+   * @return the number of indexed keys
+   */
+  public int getSize() {
+    int size = 0;
+    for (ScopeIndex<K> index : scopes.values()) {
+      size += index.getSize();
+    }
+    return size;
+  }
+
+  public void onPut(final CacheListenerContext context, final K key, final V value) {
+    ScopeIndex<K> index = scopes.get(key.getScope());
+    if (index == null) {
+      ScopeIndex<K> created = new ScopeIndex<K>();
+      index = scopes.putIfAbsent(key.getScope(), created);
+      if (index == null) {
+        index = created;
+      }
+    }
+    index.add(key, getPartitions(key, value));
+  }
+
+  public void onRemove(final CacheListenerContext context, final K key, final V value) {
+    remove(key);
+  }
+
+  public void onExpire(final CacheListenerContext context, final K key, final V value) {
+    remove(key);
+  }
+
+  public void onGet(final CacheListenerContext context, final K key, final V value) {
+  }
+
+  public void onClearCache(final CacheListenerContext context) {
+    scopes.clear();
+  }
+
+  private void remove(final K key) {
+    ScopeIndex<K> index = scopes.get(key.getScope());
+    if (index != null) {
+      index.remove(key);
+    }
+  }
+
+  private void select(final CachedObjectSelector<? super K, ? super V> selector, final Set<K> keys) throws Exception {
+    for (K key : keys) {
+      ObjectCacheInfo<V> ocinfo = info(key);
+      if (selector.select(key, ocinfo)) {
+        selector.onSelect(cache, key, ocinfo);
+      }
+    }
+  }
+
+  /**
+   * Builds the cache info of an entry, its value is only read when the selector asks for it.
+   */
+  @SuppressWarnings("unchecked")
+  private ObjectCacheInfo<V> info(final K key) {
+    return (ObjectCacheInfo<V>) Proxy.newProxyInstance(ObjectCacheInfo.class.getClassLoader(),
+                                                        new Class<?>[] {ObjectCacheInfo.class},
+                                                        new InvocationHandler() {
+      public Object invoke(Object self, Method method, Object[] args) {
+        if ("get".equals(method.getName())) {
+          return cache.get(key);
+        }
+        Class<?> type = method.getReturnType();
+        if (type == long.class) {
+          return -1L;
+        }
+        else if (type == int.class) {
+          return 0;
+        }
+        else if (type == boolean.class) {
+          return false;
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * The keys of a scope by partition, and the partitions of each key.
+   */
+  private static class ScopeIndex<K> {
+
+    private final Map<String, Set<K>> partitions = new HashMap<String, Set<K>>();
+
+    private final Map<K, Collection<String>> keys = new HashMap<K, Collection<String>>();
+
+    synchronized void add(K key, Collection<String> keyPartitions) {
+      Collection<String> previous = keys.put(key, keyPartitions);
+      if (previous != null) {
+        unlink(key, previous);
+      }
+      for (String partition : keyPartitions) {
+        Set<K> partitionKeys = partitions.get(partition);
+        if (partitionKeys == null) {
+          partitionKeys = new LinkedHashSet<K>();
+          partitions.put(partition, partitionKeys);
+        }
+        partitionKeys.add(key);
+      }
+    }
+
+    synchronized void remove(K key) {
+      Collection<String> previous = keys.remove(key);
+      if (previous != null) {
+        unlink(key, previous);
+      }
+    }
+
+    /**
+     * Copies the keys of the given partitions and of the shared one, or all the keys when no partition is
+     * given.
+     */
+    synchronized Set<K> getKeys(Collection<String> selected) {
+      if (selected == null) {
+        return new LinkedHashSet<K>(keys.keySet());
+      }
+      Set<K> found = new LinkedHashSet<K>();
+      addKeys(found, SHARED);
+      for (String partition : selected) {
+        addKeys(found, partition);
+      }
+      return found;
+    }
+
+    synchronized int getSize() {
+      return keys.size();
+    }
+
+    private void addKeys(Set<K> found, String partition) {
+      Set<K> partitionKeys = partitions.get(partition);
+      if (partitionKeys != null) {
+        found.addAll(partitionKeys);
+      }
+    }
+
+    private void unlink(K key, Collection<String> keyPartitions) {
+      for (String partition : keyPartitions) {
+        Set<K> partitionKeys = partitions.get(partition);
+        if (partitionKeys != null && partitionKeys.remove(key) && partitionKeys.isEmpty()) {
+          partitions.remove(partition);
+        }
+      }
+    }
+
+  }
+
+}
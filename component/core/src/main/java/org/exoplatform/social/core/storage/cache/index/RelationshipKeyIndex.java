@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.index;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.ListRelationshipsKey;
+import org.exoplatform.social.core.storage.cache.model.key.RelationshipCountKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+
+/**
+ * Indexes the relationship lists and counts by identity.
+ *
+ * @since 4.1.0
+ */
+public class RelationshipKeyIndex<K extends ScopeCacheKey, V> extends CacheKeyIndex<K, V> {
+
+  public RelationshipKeyIndex(final ExoCache<K, V> cache) {
+    super(cache);
+  }
+
+  @Override
+  protected Collection<String> getPartitions(final K key, final V value) {
+
+    Object identityKey = null;
+    if (key instanceof ListRelationshipsKey) {
+      identityKey = ((ListRelationshipsKey<?>) key).getKey();
+    }
+    else if (key instanceof RelationshipCountKey) {
+      identityKey = ((RelationshipCountKey<?>) key).getKey();
+    }
+
+    if (identityKey instanceof IdentityKey) {
+      return Collections.singleton(((IdentityKey) identityKey).getId());
+    }
+
+    return super.getPartitions(key, value);
+
+  }
+
+}
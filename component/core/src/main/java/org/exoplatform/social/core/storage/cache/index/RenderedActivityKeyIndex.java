@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.social.core.storage.cache.model.data.RenderedActivityData;
+import org.exoplatform.social.core.storage.cache.model.key.RenderedActivityKey;
+
+/**
+ * Indexes the processed activities by mentioned identity, so that the profile changes of an identity
+ * only visit the activities which mention it.
+ *
+ * @since 4.1.0
+ */
+public class RenderedActivityKeyIndex extends CacheKeyIndex<RenderedActivityKey, RenderedActivityData> {
+
+  public RenderedActivityKeyIndex(final ExoCache<RenderedActivityKey, RenderedActivityData> cache) {
+    super(cache);
+  }
+
+  @Override
+  protected Collection<String> getPartitions(final RenderedActivityKey key, final RenderedActivityData value) {
+
+    if (value != null && value.getMentionedIds() != null) {
+      return Arrays.asList(value.getMentionedIds());
+    }
+
+    return Collections.emptySet();
+
+  }
+
+}
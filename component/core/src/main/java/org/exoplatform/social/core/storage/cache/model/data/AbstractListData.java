@@ -17,16 +17,20 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Cached data list.
  *
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class AbstractListData<T> implements Serializable {
+public class AbstractListData<T> implements Serializable, CompactWritable {
 
   private final List<T> ids;
 
@@ -37,4 +41,19 @@ public class AbstractListData<T> implements Serializable {
   public List<T> getIds() {
     return ids;
   }
+
+  /**
+   * Writes the ids, which are keys written by hand, without their type.
+   */
+  public void writeTo(final CacheOutput out) throws IOException {
+    if (ids == null) {
+      out.writeVarInt(0);
+      return;
+    }
+    out.writeVarInt(ids.size() + 1);
+    for (T id : ids) {
+      ((CompactWritable) id).writeTo(out);
+    }
+  }
+
 }
@@ -17,6 +17,7 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -25,6 +26,10 @@ import java.util.Map;
 import org.exoplatform.social.core.activity.model.ActivityStream;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
 /**
  * Immutable activity data.
@@ -32,7 +37,7 @@ import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class ActivityData implements CacheData<ExoSocialActivity> {
+public class ActivityData implements CacheData<ExoSocialActivity>, CompactWritable {
 
   public final static ActivityData NULL = new ActivityData(new ExoSocialActivityImpl());
   
@@ -104,6 +109,41 @@ public class ActivityData implements CacheData<ExoSocialActivity> {
 
   }
 
+  private ActivityData(final CacheInput in) throws IOException {
+
+    this.id = in.readId();
+    this.title = in.readString();
+    this.body = in.readString();
+    this.likes = in.readIds();
+    this.isComment = in.readBoolean();
+    this.isHidden = in.readBoolean();
+    this.isLocked = in.readBoolean();
+    this.postedTime = in.readNullableLong();
+    this.lastUpdated = in.readNullableLong();
+    this.replyIds = in.readIds();
+    this.userId = in.readId();
+    this.appId = in.readToken();
+    this.titleId = in.readToken();
+    this.bodyId = in.readToken();
+    this.type = in.readToken();
+    this.externalId = in.readString();
+    this.url = in.readString();
+    this.streamId = in.readId();
+    this.streamOwner = in.readString();
+    this.streamFaviconUrl = in.readString();
+    this.streamSourceUrl = in.readString();
+    this.streamTitle = in.readString();
+    this.streamUrl = in.readString();
+    this.mentioners = in.readIds();
+    this.commenters = in.readIds();
+    this.streamType = in.readEnum(ActivityStream.Type.class);
+    this.posterId = in.readId();
+
+    Map<String, Object> params = in.readMap();
+    this.templateParams = params != null ? Collections.unmodifiableMap(params) : Collections.emptyMap();
+
+  }
+
   public ExoSocialActivity build() {
 
     //
@@ -153,4 +193,52 @@ public class ActivityData implements CacheData<ExoSocialActivity> {
     return userId;
   }
 
+  @SuppressWarnings("unchecked")
+  public void writeTo(final CacheOutput out) throws IOException {
+
+    out.writeBoolean(this == NULL);
+    if (this == NULL) {
+      return;
+    }
+
+    //
+    out.writeId(id);
+    out.writeString(title);
+    out.writeString(body);
+    out.writeIds(likes);
+    out.writeBoolean(isComment);
+    out.writeBoolean(isHidden);
+    out.writeBoolean(isLocked);
+    out.writeNullableLong(postedTime);
+    out.writeNullableLong(lastUpdated);
+    out.writeIds(replyIds);
+    out.writeId(userId);
+    out.writeToken(appId);
+    out.writeToken(titleId);
+    out.writeToken(bodyId);
+    out.writeToken(type);
+    out.writeString(externalId);
+    out.writeString(url);
+    out.writeId(streamId);
+    out.writeString(streamOwner);
+    out.writeString(streamFaviconUrl);
+    out.writeString(streamSourceUrl);
+    out.writeString(streamTitle);
+    out.writeString(streamUrl);
+    out.writeIds(mentioners);
+    out.writeIds(commenters);
+    out.writeEnum(streamType);
+    out.writeId(posterId);
+    out.writeMap(templateParams);
+
+  }
+
+  public static ActivityData readFrom(final CacheInput in) throws IOException {
+    return in.readBoolean() ? NULL : new ActivityData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.data;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Immutable change signal, put in a replicated cache to tell the other cluster nodes that the data kept
+ * in their memory for an identity changed. It records the node it was put by, so that this node can
+ * ignore its own signals.
+ *
+ * @since 4.1.0
+ */
+public class ChangeData implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Identifies this node */
+  private static final String LOCAL_ORIGIN = UUID.randomUUID().toString();
+
+  private final String origin;
+  private final long time;
+
+  private ChangeData(final String origin, final long time) {
+    this.origin = origin;
+    this.time = time;
+  }
+
+  /**
+   * @return a signal of a change made on this node now
+   */
+  public static ChangeData local() {
+    return new ChangeData(LOCAL_ORIGIN, System.currentTimeMillis());
+  }
+
+  /**
+   * @return true when the change was made on this node
+   */
+  public boolean isLocal() {
+    return LOCAL_ORIGIN.equals(origin);
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+}
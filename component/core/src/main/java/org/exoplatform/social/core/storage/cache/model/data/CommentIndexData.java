@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache.model.data;
+
+import java.io.IOException;
+
+import org.exoplatform.social.core.activity.filter.CommentIndex;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+
+/**
+ * Immutable comment index of an activity.
+ *
+ * @since 4.1.0
+ */
+public class CommentIndexData extends SimpleCacheData<CommentIndex> {
+
+  public CommentIndexData(final CommentIndex index) {
+    super(index);
+  }
+
+  public static CommentIndexData readFrom(final CacheInput in) throws IOException {
+    return new CommentIndexData((CommentIndex) in.readValue());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+}
@@ -17,7 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
+
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
 /**
  * Immutable identity data.
@@ -25,7 +31,7 @@ import org.exoplatform.social.core.identity.model.Identity;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class IdentityData implements CacheData<Identity> {
+public class IdentityData implements CacheData<Identity>, CompactWritable {
 
   private final String id;
 
@@ -50,6 +56,13 @@ public class IdentityData implements CacheData<Identity> {
     }
   }
 
+  private IdentityData(final CacheInput in) throws IOException {
+    this.id = in.readId();
+    this.providerId = in.readToken();
+    this.remoteId = in.readString();
+    this.isDeleted = in.readBoolean();
+  }
+
   public String getId() {
     return id;
   }
@@ -75,4 +88,19 @@ public class IdentityData implements CacheData<Identity> {
     return identity;
   }
 
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(id);
+    out.writeToken(providerId);
+    out.writeString(remoteId);
+    out.writeBoolean(isDeleted);
+  }
+
+  public static IdentityData readFrom(final CacheInput in) throws IOException {
+    return new IdentityData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -17,6 +17,11 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+
 /**
  * Immutable integer.
  *
@@ -29,4 +34,12 @@ public class IntegerData extends SimpleCacheData<Integer> {
     super(integer);
   }
 
+  public static IntegerData readFrom(final CacheInput in) throws IOException {
+    return new IntegerData((Integer) in.readValue());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -18,7 +18,11 @@
 package org.exoplatform.social.core.storage.cache.model.data;
 
 import org.exoplatform.social.core.storage.cache.model.key.ActivityKey;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,5 +36,21 @@ public class ListActivitiesData extends AbstractListData<ActivityKey> {
   public ListActivitiesData(final List<ActivityKey> ids) {
     super(ids);
   }
-  
+
+  public static ListActivitiesData readFrom(final CacheInput in) throws IOException {
+    int size = in.readVarInt() - 1;
+    if (size < 0) {
+      return new ListActivitiesData(null);
+    }
+    List<ActivityKey> ids = new ArrayList<ActivityKey>(size);
+    for (int i = 0; i < size; ++i) {
+      ids.add(ActivityKey.readFrom(in));
+    }
+    return new ListActivitiesData(ids);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
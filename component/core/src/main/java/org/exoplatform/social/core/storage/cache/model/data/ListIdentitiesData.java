@@ -18,7 +18,11 @@
 package org.exoplatform.social.core.storage.cache.model.data;
 
 import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,4 +37,20 @@ public class ListIdentitiesData extends AbstractListData<IdentityKey> {
     super(ids);
   }
 
+  public static ListIdentitiesData readFrom(final CacheInput in) throws IOException {
+    int size = in.readVarInt() - 1;
+    if (size < 0) {
+      return new ListIdentitiesData(null);
+    }
+    List<IdentityKey> ids = new ArrayList<IdentityKey>(size);
+    for (int i = 0; i < size; ++i) {
+      ids.add(IdentityKey.readFrom(in));
+    }
+    return new ListIdentitiesData(ids);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
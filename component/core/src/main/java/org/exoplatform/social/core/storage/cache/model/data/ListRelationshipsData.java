@@ -18,7 +18,11 @@
 package org.exoplatform.social.core.storage.cache.model.data;
 
 import org.exoplatform.social.core.storage.cache.model.key.RelationshipKey;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,4 +37,20 @@ public class ListRelationshipsData extends AbstractListData<RelationshipKey> {
     super(ids);
   }
 
+  public static ListRelationshipsData readFrom(final CacheInput in) throws IOException {
+    int size = in.readVarInt() - 1;
+    if (size < 0) {
+      return new ListRelationshipsData(null);
+    }
+    List<RelationshipKey> ids = new ArrayList<RelationshipKey>(size);
+    for (int i = 0; i < size; ++i) {
+      ids.add(RelationshipKey.readFrom(in));
+    }
+    return new ListRelationshipsData(ids);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -18,7 +18,11 @@
 package org.exoplatform.social.core.storage.cache.model.data;
 
 import org.exoplatform.social.core.storage.cache.model.key.SpaceKey;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,5 +36,21 @@ public class ListSpacesData extends AbstractListData<SpaceKey> {
   public ListSpacesData(final List<SpaceKey> ids) {
     super(ids);
   }
-  
+
+  public static ListSpacesData readFrom(final CacheInput in) throws IOException {
+    int size = in.readVarInt() - 1;
+    if (size < 0) {
+      return new ListSpacesData(null);
+    }
+    List<SpaceKey> ids = new ArrayList<SpaceKey>(size);
+    for (int i = 0; i < size; ++i) {
+      ids.add(SpaceKey.readFrom(in));
+    }
+    return new ListSpacesData(ids);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
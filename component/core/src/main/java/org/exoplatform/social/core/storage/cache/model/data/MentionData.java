@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.data;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Immutable resolution of a mentioned user name: the identity id and the full name used to render the
+ * profile link, or nothing when the name is not a user.
+ *
+ * @since 4.1.0
+ */
+public class MentionData implements Serializable, CompactWritable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final MentionData NULL = new MentionData(null, null);
+
+  private final String identityId;
+  private final String fullName;
+
+  public MentionData(final String identityId, final String fullName) {
+    this.identityId = identityId;
+    this.fullName = fullName;
+  }
+
+  public String getIdentityId() {
+    return identityId;
+  }
+
+  public String getFullName() {
+    return fullName;
+  }
+
+  public boolean exists() {
+    return identityId != null;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(identityId);
+    out.writeString(fullName);
+  }
+
+  public static MentionData readFrom(final CacheInput in) throws IOException {
+    String identityId = in.readId();
+    String fullName = in.readString();
+    return identityId == null && fullName == null ? NULL : new MentionData(identityId, fullName);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+}
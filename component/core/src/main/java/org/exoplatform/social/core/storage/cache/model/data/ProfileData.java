@@ -19,7 +19,12 @@ package org.exoplatform.social.core.storage.cache.model.data;
 
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 
@@ -29,7 +34,7 @@ import java.util.Map;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class ProfileData implements CacheData<Profile> {
+public class ProfileData implements CacheData<Profile>, CompactWritable {
 
   private final String profileId;
 
@@ -61,6 +66,19 @@ public class ProfileData implements CacheData<Profile> {
     this.createdTime = profile.getCreatedTime();
   }
 
+  private ProfileData(final CacheInput in) throws IOException {
+    this.profileId = in.readId();
+    this.identityId = in.readId();
+    this.providerId = in.readToken();
+    this.remoteId = in.readString();
+    this.hasChanged = in.readBoolean();
+    this.url = in.readString();
+    this.avatarUrl = in.readString();
+    this.createdTime = in.readNullableLong();
+    Map<String, Object> data = in.readMap();
+    this.data = data != null ? Collections.unmodifiableMap(data) : Collections.<String, Object>emptyMap();
+  }
+
   public String getProfileId() {
     return profileId;
   }
@@ -102,4 +120,24 @@ public class ProfileData implements CacheData<Profile> {
     return profile;
   }
 
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(profileId);
+    out.writeId(identityId);
+    out.writeToken(providerId);
+    out.writeString(remoteId);
+    out.writeBoolean(hasChanged);
+    out.writeString(url);
+    out.writeString(avatarUrl);
+    out.writeNullableLong(createdTime);
+    out.writeMap(data);
+  }
+
+  public static ProfileData readFrom(final CacheInput in) throws IOException {
+    return new ProfileData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -17,7 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
+
 import org.exoplatform.social.core.relationship.model.Relationship;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
 /**
  * Immutable relationship data.
@@ -25,7 +31,7 @@ import org.exoplatform.social.core.relationship.model.Relationship;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class RelationshipData implements CacheData<Relationship> {
+public class RelationshipData implements CacheData<Relationship>, CompactWritable {
 
   private final String id;
 
@@ -41,6 +47,13 @@ public class RelationshipData implements CacheData<Relationship> {
     this.type = relationship.getStatus();
   }
 
+  private RelationshipData(final CacheInput in) throws IOException {
+    this.id = in.readId();
+    this.sender = IdentityData.readFrom(in);
+    this.receiver = IdentityData.readFrom(in);
+    this.type = in.readEnum(Relationship.Type.class);
+  }
+
   public Relationship.Type getType() {
     return type;
   }
@@ -51,4 +64,19 @@ public class RelationshipData implements CacheData<Relationship> {
     return relationship;
   }
 
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(id);
+    sender.writeTo(out);
+    receiver.writeTo(out);
+    out.writeEnum(type);
+  }
+
+  public static RelationshipData readFrom(final CacheInput in) throws IOException {
+    return new RelationshipData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache.model.data;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Immutable output of the read time processors for an activity: the processed title, body and
+ * template params, with the version of the stored content and of the processors they were computed from,
+ * and the identities mentioned by the activity, whose profile changes make the output stale.
+ *
+ * @since 4.1.0
+ */
+public class RenderedActivityData implements Serializable, CompactWritable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int version;
+  private final String title;
+  private final String body;
+  private final LinkedHashMap<String, String> templateParams;
+  private final String[] mentionedIds;
+
+  public RenderedActivityData(final int version, final ExoSocialActivity activity) {
+    this.version = version;
+    this.title = activity.getTitle();
+    this.body = activity.getBody();
+    this.templateParams = activity.getTemplateParams() != null
+        ? new LinkedHashMap<String, String>(activity.getTemplateParams()) : null;
+    this.mentionedIds = identityIds(activity.getMentionedIds());
+  }
+
+  private RenderedActivityData(final CacheInput in) throws IOException {
+    this.version = in.readInt();
+    this.title = in.readString();
+    this.body = in.readString();
+    this.templateParams = in.readMap();
+    this.mentionedIds = in.readIds();
+  }
+
+  /**
+   * Removes the "@count" suffix of the mentioned ids.
+   */
+  private static String[] identityIds(String[] ids) {
+    if (ids == null) {
+      return null;
+    }
+    String[] identityIds = new String[ids.length];
+    for (int i = 0; i < ids.length; ++i) {
+      int index = ids[i].indexOf('@');
+      identityIds[i] = index < 0 ? ids[i] : ids[i].substring(0, index);
+    }
+    return identityIds;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the ids of the identities mentioned by the activity, null when there is none
+   */
+  public String[] getMentionedIds() {
+    return mentionedIds;
+  }
+
+  /**
+   * Sets the processed content on the given activity.
+   *
+   * @param activity the activity loaded from the storage
+   */
+  public void applyTo(ExoSocialActivity activity) {
+    activity.setTitle(title);
+    activity.setBody(body);
+    if (templateParams != null) {
+      activity.setTemplateParams(new LinkedHashMap<String, String>(templateParams));
+    }
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeInt(version);
+    out.writeString(title);
+    out.writeString(body);
+    out.writeMap(templateParams);
+    out.writeIds(mentionedIds);
+  }
+
+  public static RenderedActivityData readFrom(final CacheInput in) throws IOException {
+    return new RenderedActivityData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+  /**
+   * Computes the version of the content of an activity before it is processed.
+   *
+   * @param activity the activity loaded from the storage
+   * @param processors the version of the read time processors
+   * @return the version
+   */
+  public static int version(ExoSocialActivity activity, int processors) {
+    Map<String, String> params = activity.getTemplateParams();
+    int result = processors;
+    result = 31 * result + (activity.getTitle() != null ? activity.getTitle().hashCode() : 0);
+    result = 31 * result + (activity.getBody() != null ? activity.getBody().hashCode() : 0);
+    result = 31 * result + (params != null ? params.hashCode() : 0);
+    return result;
+  }
+
+}
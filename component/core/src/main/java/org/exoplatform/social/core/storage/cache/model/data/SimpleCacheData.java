@@ -17,13 +17,20 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Immutable simple data.
  *
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class SimpleCacheData<T> implements CacheData<T> {
+public class SimpleCacheData<T> implements CacheData<T>, CompactWritable {
 
   private final T t;
 
@@ -34,4 +41,17 @@ public class SimpleCacheData<T> implements CacheData<T> {
   public T build() {
     return t;
   }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeValue(t);
+  }
+
+  public static SimpleCacheData<?> readFrom(final CacheInput in) throws IOException {
+    return new SimpleCacheData<Object>(in.readValue());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -17,7 +17,14 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
+
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
 /**
  * Immutable space data.
@@ -25,7 +32,7 @@ import org.exoplatform.social.core.space.model.Space;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class SpaceData implements CacheData<Space> {
+public class SpaceData implements CacheData<Space>, CompactWritable {
 
   private final String id;
   private final String app;
@@ -47,6 +54,9 @@ public class SpaceData implements CacheData<Space> {
   private final String[] pendingUser;
   private final String[] invitedUser;
 
+  /** The view of the users shared by the built spaces, hashed on the first lookups. */
+  private transient volatile SpaceMembership membership;
+
   public SpaceData(final Space space) {
 
     id = space.getId();
@@ -71,6 +81,27 @@ public class SpaceData implements CacheData<Space> {
 
   }
 
+  private SpaceData(final CacheInput in) throws IOException {
+    this.id = in.readId();
+    this.app = in.readString();
+    this.prettyName = in.readString();
+    this.displayName = in.readString();
+    this.registration = in.readToken();
+    this.description = in.readString();
+    this.type = in.readToken();
+    this.visibility = in.readToken();
+    this.priority = in.readToken();
+    this.avatarUrl = in.readString();
+    this.groupId = in.readString();
+    this.url = in.readString();
+    this.avatarLastUpdated = in.readNullableLong();
+    this.createdTime = in.readNullableLong();
+    this.members = in.readStrings();
+    this.managers = in.readStrings();
+    this.pendingUser = in.readStrings();
+    this.invitedUser = in.readStrings();
+  }
+
   public Space build() {
 
     Space space = new Space();
@@ -93,6 +124,7 @@ public class SpaceData implements CacheData<Space> {
     space.setPendingUsers(pendingUser);
     space.setInvitedUsers(invitedUser);
     space.setCreatedTime(createdTime);
+    space.setMembership(getMembership());
 
     return space;
 
@@ -161,4 +193,43 @@ public class SpaceData implements CacheData<Space> {
   public String[] getInvitedUser() {
     return invitedUser;
   }
+
+  public SpaceMembership getMembership() {
+    SpaceMembership view = membership;
+    if (view == null) {
+      view = new SpaceMembership(members, managers, invitedUser, pendingUser);
+      membership = view;
+    }
+    return view;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(id);
+    out.writeString(app);
+    out.writeString(prettyName);
+    out.writeString(displayName);
+    out.writeToken(registration);
+    out.writeString(description);
+    out.writeToken(type);
+    out.writeToken(visibility);
+    out.writeToken(priority);
+    out.writeString(avatarUrl);
+    out.writeString(groupId);
+    out.writeString(url);
+    out.writeNullableLong(avatarLastUpdated);
+    out.writeNullableLong(createdTime);
+    out.writeStrings(members);
+    out.writeStrings(managers);
+    out.writeStrings(pendingUser);
+    out.writeStrings(invitedUser);
+  }
+
+  public static SpaceData readFrom(final CacheInput in) throws IOException {
+    return new SpaceData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
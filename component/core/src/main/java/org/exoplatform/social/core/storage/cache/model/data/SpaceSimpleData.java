@@ -17,7 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
+
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
 /**
  * Immutable space simple data.
@@ -26,7 +32,7 @@ import org.exoplatform.social.core.space.model.Space;
  * @author <a href="mailto:thanhvc@exoplatform.com">Thanh Vu</a>
  * @version $Revision$
  */
-public class SpaceSimpleData implements CacheData<Space> {
+public class SpaceSimpleData implements CacheData<Space>, CompactWritable {
 
   private final String id;
   private final String app;
@@ -51,6 +57,18 @@ public class SpaceSimpleData implements CacheData<Space> {
     url = space.getUrl();
   }
 
+  private SpaceSimpleData(final CacheInput in) throws IOException {
+    this.id = in.readId();
+    this.app = in.readString();
+    this.prettyName = in.readString();
+    this.displayName = in.readString();
+    this.description = in.readString();
+    this.avatarUrl = in.readString();
+    this.groupId = in.readString();
+    this.url = in.readString();
+    this.avatarLastUpdated = in.readNullableLong();
+  }
+
   public Space build() {
 
     Space space = new Space();
@@ -98,4 +116,24 @@ public class SpaceSimpleData implements CacheData<Space> {
     return url;
   }
 
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeId(id);
+    out.writeString(app);
+    out.writeString(prettyName);
+    out.writeString(displayName);
+    out.writeString(description);
+    out.writeString(avatarUrl);
+    out.writeString(groupId);
+    out.writeString(url);
+    out.writeNullableLong(avatarLastUpdated);
+  }
+
+  public static SpaceSimpleData readFrom(final CacheInput in) throws IOException {
+    return new SpaceSimpleData(in);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
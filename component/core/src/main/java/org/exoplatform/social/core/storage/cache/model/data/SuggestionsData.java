@@ -16,10 +16,17 @@
  */
 package org.exoplatform.social.core.storage.cache.model.data;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-public class SuggestionsData implements Serializable {
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+public class SuggestionsData implements Serializable, CompactWritable {
   
   private final Map<String, Integer> map;
 
@@ -31,4 +38,25 @@ public class SuggestionsData implements Serializable {
     return this.map;
   }
 
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeVarInt(map.size());
+    for (Map.Entry<String, Integer> entry : map.entrySet()) {
+      out.writeId(entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+  }
+
+  public static SuggestionsData readFrom(final CacheInput in) throws IOException {
+    int size = in.readVarInt();
+    Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+    for (int i = 0; i < size; ++i) {
+      map.put(in.readId(), in.readInt());
+    }
+    return new SuggestionsData(map);
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.data;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.commons.lang.ArrayUtils;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Immutable unread counter of an activity stream: the ids of the activities updated since the stream
+ * was viewed, with the view times the counter was computed for and the ids of the activities excluded
+ * from it because they were viewed in another stream.
+ *
+ * @since 4.1.0
+ */
+public class UnreadCounterData implements Serializable, CompactWritable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long[] viewTimes;
+  private final String[] ids;
+  private final String[] excludedIds;
+
+  public UnreadCounterData(final long[] viewTimes, final Collection<String> ids, final String[] excludedIds) {
+    this(viewTimes, ids.toArray(new String[ids.size()]), excludedIds);
+  }
+
+  private UnreadCounterData(final long[] viewTimes, final String[] ids, final String[] excludedIds) {
+    this.viewTimes = viewTimes;
+    this.ids = ids;
+    this.excludedIds = excludedIds != null ? excludedIds : ArrayUtils.EMPTY_STRING_ARRAY;
+  }
+
+  /**
+   * @param viewTimes the current view times of the streams
+   * @return true when the counter was computed for the given view times
+   */
+  public boolean isViewedAt(long[] viewTimes) {
+    return Arrays.equals(this.viewTimes, viewTimes);
+  }
+
+  /**
+   * @return the number of updated activities
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * @param activityId the id of an updated activity
+   * @return true when the update leaves the counter unchanged: the activity is already counted, or it
+   *         is excluded as it was viewed in another stream
+   */
+  public boolean isCounted(String activityId) {
+    return ArrayUtils.contains(ids, activityId) || ArrayUtils.contains(excludedIds, activityId);
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeVarInt(viewTimes.length);
+    for (long viewTime : viewTimes) {
+      out.writeLong(viewTime);
+    }
+    out.writeIds(ids);
+    out.writeIds(excludedIds);
+  }
+
+  public static UnreadCounterData readFrom(final CacheInput in) throws IOException {
+    long[] viewTimes = new long[in.readVarInt()];
+    for (int i = 0; i < viewTimes.length; ++i) {
+      viewTimes[i] = in.readLong();
+    }
+    return new UnreadCounterData(viewTimes, in.readIds(), in.readIds());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+}
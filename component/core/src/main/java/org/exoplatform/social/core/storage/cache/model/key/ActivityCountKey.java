@@ -88,6 +88,29 @@ public class ActivityCountKey extends ScopeCacheKey {
     return activityKey;
   }
 
+  public IdentityKey getViewerKey() {
+    return viewerKey;
+  }
+
+  public String getBaseId() {
+    return baseId;
+  }
+
+  public ActivityType getType() {
+    return type;
+  }
+
+  /**
+   * Tells whether this key covers the whole stream of its owner, without base activity, time,
+   * viewer or activity type restriction.
+   *
+   * @return true for a whole stream key
+   */
+  public boolean isWholeStream() {
+    return key != null && viewerKey == null && activityKey == null && baseId == null && time == null
+        && activityTypes == null;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
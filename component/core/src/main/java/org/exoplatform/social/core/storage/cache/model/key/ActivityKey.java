@@ -17,13 +17,20 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Immutable activity key.
  * 
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class ActivityKey extends ScopeCacheKey {
+public class ActivityKey extends ScopeCacheKey implements CompactWritable {
 
   private final String id;
 
@@ -35,6 +42,24 @@ public class ActivityKey extends ScopeCacheKey {
     return id;
   }
 
+  private ActivityKey(final String scope, final String id) {
+    super(scope);
+    this.id = id;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeId(id);
+  }
+
+  public static ActivityKey readFrom(final CacheInput in) throws IOException {
+    return new ActivityKey(in.readToken(), in.readId());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -17,6 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Immutable identity composite key.
  * This key is used to index the identities by remoteId.
@@ -24,7 +31,7 @@ package org.exoplatform.social.core.storage.cache.model.key;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class IdentityCompositeKey extends ScopeCacheKey {
+public class IdentityCompositeKey extends ScopeCacheKey implements CompactWritable {
 
   private final String providerId;
 
@@ -43,6 +50,26 @@ public class IdentityCompositeKey extends ScopeCacheKey {
     return remoteId;
   }
 
+  private IdentityCompositeKey(final String scope, final String providerId, final String remoteId) {
+    super(scope);
+    this.providerId = providerId;
+    this.remoteId = remoteId;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeToken(providerId);
+    out.writeString(remoteId);
+  }
+
+  public static IdentityCompositeKey readFrom(final CacheInput in) throws IOException {
+    return new IdentityCompositeKey(in.readToken(), in.readToken(), in.readString());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -17,7 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
+import java.io.IOException;
+
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
 
 /**
  * Immutable identity key.
@@ -25,7 +31,7 @@ import org.exoplatform.social.core.identity.model.Identity;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class IdentityKey extends ScopeCacheKey {
+public class IdentityKey extends ScopeCacheKey implements CompactWritable {
 
   private final String id;
 
@@ -37,6 +43,24 @@ public class IdentityKey extends ScopeCacheKey {
     return id;
   }
 
+  private IdentityKey(final String scope, final String id) {
+    super(scope);
+    this.id = id;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeId(id);
+  }
+
+  public static IdentityKey readFrom(final CacheInput in) throws IOException {
+    return new IdentityKey(in.readToken(), in.readId());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
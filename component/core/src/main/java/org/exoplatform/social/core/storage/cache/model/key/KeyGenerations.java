@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.key;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generations of the cache keys, held in a striped table.
+ *
+ * The list and count keys of a group carry the generation of their group when they are created. Moving a
+ * group to its next generation makes all its cached entries unreachable at once, they then age out through
+ * the eviction of the cache instead of being removed one by one. The owners sharing a stripe move to their
+ * next generation together, which only costs them extra cache misses.
+ *
+ * The table is held in memory by each node, the generations are only enabled when the caches are local, by
+ * the key-generations parameter of the SocialStorageCacheService.
+ *
+ * @since 4.1.0
+ */
+public final class KeyGenerations {
+
+  /**
+   * The groups of keys invalidated together.
+   */
+  public enum Group {
+    IDENTITIES, SPACES, RELATIONSHIPS, SUGGESTIONS
+  }
+
+  private static final int STRIPES = 1 << 12;
+
+  private static final AtomicLongArray GENERATIONS = new AtomicLongArray(STRIPES);
+
+  private static volatile boolean enabled;
+
+  private KeyGenerations() {
+  }
+
+  /**
+   * Gets the generation of a group in a scope.
+   *
+   * @param scope the scope
+   * @param group the group
+   * @param owner the owner of the keys, null for the whole scope
+   * @return the current generation
+   */
+  public static long get(final String scope, final Group group, final String owner) {
+    return GENERATIONS.get(stripe(scope, group, owner));
+  }
+
+  /**
+   * Moves a group of the current scope to its next generation.
+   *
+   * @param group the group
+   * @param owner the owner of the keys, null for the whole scope
+   */
+  public static void next(final Group group, final String owner) {
+    next(ScopeContext.getCurrentScope(), group, owner);
+  }
+
+  /**
+   * Moves a group of a scope to its next generation.
+   *
+   * @param scope the scope
+   * @param group the group
+   * @param owner the owner of the keys, null for the whole scope
+   */
+  public static void next(final String scope, final Group group, final String owner) {
+    GENERATIONS.incrementAndGet(stripe(scope, group, owner));
+  }
+
+  /**
+   * Gets the owner of the keys built on the given key.
+   *
+   * @param key the key
+   * @return the identity id of an identity key, null for the other keys
+   */
+  public static String getOwner(final Object key) {
+    return key instanceof IdentityKey ? ((IdentityKey) key).getId() : null;
+  }
+
+  /**
+   * @return true when the invalidations move the groups to their next generation, false when they select
+   *         the entries to remove
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(final boolean enabled) {
+    KeyGenerations.enabled = enabled;
+  }
+
+  private static int stripe(final String scope, final Group group, final String owner) {
+    int hash = scope != null ? scope.hashCode() : 0;
+    hash = 31 * hash + group.ordinal();
+    hash = 31 * hash + (owner != null ? owner.hashCode() : 0);
+    hash ^= hash >>> 16;
+    return hash & (STRIPES - 1);
+  }
+
+}
@@ -47,6 +47,19 @@ public class ListActivitiesKey extends ListCacheKey {
     return key;
   }
 
+  public ListIdentitiesData getIdentities() {
+    return identities;
+  }
+
+  /**
+   * Tells whether this key is the first page of a whole stream.
+   *
+   * @return true for the first page of a whole stream
+   */
+  public boolean isStreamHead() {
+    return getOffset() == 0 && key != null && key.isWholeStream();
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -28,11 +28,13 @@ public class ListRelationshipsKey <T> extends ListCacheKey {
 
   private final T key;
   private final RelationshipType type;
+  private final long generation;
 
   public ListRelationshipsKey(final T key, final RelationshipType type, final long offset, final long limit) {
     super(offset, limit);
     this.type = type;
     this.key = key;
+    this.generation = KeyGenerations.get(getScope(), KeyGenerations.Group.RELATIONSHIPS, KeyGenerations.getOwner(key));
   }
 
   public T getKey() {
@@ -59,6 +61,9 @@ public class ListRelationshipsKey <T> extends ListCacheKey {
     if (type != that.type) {
       return false;
     }
+    if (generation != that.generation) {
+      return false;
+    }
 
     return true;
   }
@@ -68,6 +73,7 @@ public class ListRelationshipsKey <T> extends ListCacheKey {
     int result = super.hashCode();
     result = 31 * result + (key != null ? key.hashCode() : 0);
     result = 31 * result + (type != null ? type.hashCode() : 0);
+    result = 31 * result + (int) (generation ^ (generation >>> 32));
     return result;
   }
 
@@ -30,9 +30,12 @@ public class RelationshipCountKey <T> extends ScopeCacheKey {
 
   private final RelationshipType type;
 
+  private final long generation;
+
   public RelationshipCountKey(final T key, final RelationshipType type) {
     this.key = key;
     this.type = type;
+    this.generation = KeyGenerations.get(getScope(), KeyGenerations.Group.RELATIONSHIPS, KeyGenerations.getOwner(key));
   }
 
   public T getKey() {
@@ -59,6 +62,9 @@ public class RelationshipCountKey <T> extends ScopeCacheKey {
     if (type != that.type) {
       return false;
     }
+    if (generation != that.generation) {
+      return false;
+    }
 
     return true;
   }
@@ -68,6 +74,7 @@ public class RelationshipCountKey <T> extends ScopeCacheKey {
     int result = super.hashCode();
     result = 31 * result + (key != null ? key.hashCode() : 0);
     result = 31 * result + (type != null ? type.hashCode() : 0);
+    result = 31 * result + (int) (generation ^ (generation >>> 32));
     return result;
   }
 
@@ -17,6 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Immutable relationship key.
  * This key is used to cache the relationship by identity.
@@ -24,7 +31,7 @@ package org.exoplatform.social.core.storage.cache.model.key;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class RelationshipIdentityKey extends ScopeCacheKey {
+public class RelationshipIdentityKey extends ScopeCacheKey implements CompactWritable {
 
   private final String identityId1;
   private final String identityId2;
@@ -42,6 +49,26 @@ public class RelationshipIdentityKey extends ScopeCacheKey {
     return identityId2;
   }
 
+  private RelationshipIdentityKey(final String scope, final String identityId1, final String identityId2) {
+    super(scope);
+    this.identityId1 = identityId1;
+    this.identityId2 = identityId2;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeId(identityId1);
+    out.writeId(identityId2);
+  }
+
+  public static RelationshipIdentityKey readFrom(final CacheInput in) throws IOException {
+    return new RelationshipIdentityKey(in.readToken(), in.readId(), in.readId());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -17,13 +17,20 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Immutable relationship key.
  *
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class RelationshipKey extends ScopeCacheKey {
+public class RelationshipKey extends ScopeCacheKey implements CompactWritable {
 
   private final String id;
 
@@ -35,6 +42,24 @@ public class RelationshipKey extends ScopeCacheKey {
     return id;
   }
 
+  private RelationshipKey(final String scope, final String id) {
+    super(scope);
+    this.id = id;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeId(id);
+  }
+
+  public static RelationshipKey readFrom(final CacheInput in) throws IOException {
+    return new RelationshipKey(in.readToken(), in.readId());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache.model.key;
+
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Immutable key of the processed content of an activity, for one version of the activity rendered
+ * in a portal and a locale.
+ *
+ * @since 4.1.0
+ */
+public class RenderedActivityKey extends ScopeCacheKey implements CompactWritable {
+
+  private final String id;
+  private final long lastUpdated;
+  private final String portal;
+  private final String locale;
+
+  public RenderedActivityKey(final String id, final long lastUpdated, final String portal, final String locale) {
+    this.id = id;
+    this.lastUpdated = lastUpdated;
+    this.portal = portal;
+    this.locale = locale;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  public String getPortal() {
+    return portal;
+  }
+
+  public String getLocale() {
+    return locale;
+  }
+
+  private RenderedActivityKey(final String scope, final String id, final long lastUpdated, final String portal,
+                              final String locale) {
+    super(scope);
+    this.id = id;
+    this.lastUpdated = lastUpdated;
+    this.portal = portal;
+    this.locale = locale;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeId(id);
+    out.writeLong(lastUpdated);
+    out.writeToken(portal);
+    out.writeToken(locale);
+  }
+
+  public static RenderedActivityKey readFrom(final CacheInput in) throws IOException {
+    return new RenderedActivityKey(in.readToken(), in.readId(), in.readLong(), in.readToken(), in.readToken());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RenderedActivityKey)) {
+      return false;
+    }
+    if (!super.equals(o)) {
+      return false;
+    }
+
+    RenderedActivityKey that = (RenderedActivityKey) o;
+
+    if (lastUpdated != that.lastUpdated) {
+      return false;
+    }
+    if (id != null ? !id.equals(that.id) : that.id != null) {
+      return false;
+    }
+    if (portal != null ? !portal.equals(that.portal) : that.portal != null) {
+      return false;
+    }
+    if (locale != null ? !locale.equals(that.locale) : that.locale != null) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = super.hashCode();
+    result = 31 * result + (id != null ? id.hashCode() : 0);
+    result = 31 * result + (int) (lastUpdated ^ (lastUpdated >>> 32));
+    result = 31 * result + (portal != null ? portal.hashCode() : 0);
+    result = 31 * result + (locale != null ? locale.hashCode() : 0);
+    return result;
+  }
+
+}
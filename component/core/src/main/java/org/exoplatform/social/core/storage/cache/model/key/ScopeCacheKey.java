@@ -17,10 +17,8 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
-import org.exoplatform.container.PortalContainer;
-import org.exoplatform.services.jcr.RepositoryService;
-
-import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -28,10 +26,18 @@ import javax.jcr.RepositoryException;
  */
 public class ScopeCacheKey implements CacheKey {
 
-  private final String scope;
+  private String scope;
 
   public ScopeCacheKey() {
-    scope = getCurrentRepositoryName();
+    scope = ScopeContext.getCurrentScope();
+  }
+
+  /**
+   * @param scope the scope of the key, as read by the cache codec
+   * @since 4.1.0
+   */
+  protected ScopeCacheKey(final String scope) {
+    this.scope = ScopeContext.intern(scope);
   }
 
   public String getScope() {
@@ -62,14 +68,12 @@ public class ScopeCacheKey implements CacheKey {
   }
 
   public static String getCurrentRepositoryName() {
-    RepositoryService repositoryService = (RepositoryService)
-                                          PortalContainer.getInstance().getComponentInstanceOfType(RepositoryService.class);
-    try {
-      return repositoryService.getCurrentRepository().getConfiguration().getName();
-    }
-    catch (RepositoryException e) {
-      throw new RuntimeException(e);
-    }
+    return ScopeContext.getCurrentScope();
+  }
+
+  private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    scope = ScopeContext.intern(scope);
   }
 
 }
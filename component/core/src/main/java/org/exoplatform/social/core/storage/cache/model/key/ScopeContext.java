@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.key;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jcr.RepositoryException;
+
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.services.jcr.RepositoryService;
+import org.exoplatform.services.jcr.core.ManageableRepository;
+
+/**
+ * Resolves the repository scope of the cache keys.
+ * 
+ * The scope is resolved once per thread and only resolved again when the
+ * current repository of the thread changes, instead of looking up the
+ * {@link RepositoryService} and the repository configuration for each key.
+ * The returned scopes are interned tokens, so they can be compared by identity.
+ * The context of a thread only keeps weak references to the container, the
+ * service and the repository it resolved, so that the pooled threads do not
+ * hold them once they are stopped.
+ *
+ * @since 4.1.0
+ */
+public final class ScopeContext {
+
+  private static final ConcurrentMap<String, String> TOKENS = new ConcurrentHashMap<String, String>();
+
+  private static final ThreadLocal<ScopeContext> CURRENT = new ThreadLocal<ScopeContext>() {
+    @Override
+    protected ScopeContext initialValue() {
+      return new ScopeContext();
+    }
+  };
+
+  private Reference<PortalContainer> container = new WeakReference<PortalContainer>(null);
+
+  private Reference<RepositoryService> repositoryService = new WeakReference<RepositoryService>(null);
+
+  private Reference<ManageableRepository> repository = new WeakReference<ManageableRepository>(null);
+
+  private String scope;
+
+  private ScopeContext() {
+  }
+
+  /**
+   * Gets the scope of the current repository.
+   *
+   * @return the interned name of the current repository
+   */
+  public static String getCurrentScope() {
+    return CURRENT.get().resolve();
+  }
+
+  /**
+   * Gets the unique token of a scope name.
+   *
+   * @param scope the scope name
+   * @return the token equal to the scope name, shared by all the keys of this scope
+   */
+  public static String intern(final String scope) {
+    if (scope == null) {
+      return null;
+    }
+    String token = TOKENS.putIfAbsent(scope, scope);
+    return token != null ? token : scope;
+  }
+
+  private String resolve() {
+    PortalContainer current = PortalContainer.getInstance();
+    RepositoryService service = repositoryService.get();
+    if (current != container.get() || service == null) {
+      service = (RepositoryService) current.getComponentInstanceOfType(RepositoryService.class);
+      container = new WeakReference<PortalContainer>(current);
+      repositoryService = new WeakReference<RepositoryService>(service);
+      repository = new WeakReference<ManageableRepository>(null);
+    }
+
+    //
+    ManageableRepository currentRepository;
+    try {
+      currentRepository = service.getCurrentRepository();
+    }
+    catch (RepositoryException e) {
+      throw new RuntimeException(e);
+    }
+    if (currentRepository != repository.get()) {
+      scope = intern(currentRepository.getConfiguration().getName());
+      repository = new WeakReference<ManageableRepository>(currentRepository);
+    }
+    return scope;
+  }
+
+}
@@ -35,6 +35,7 @@ public class SpaceFilterKey extends ScopeCacheKey {
   private String appId;
   private SpaceType type;
   private Sorting sorting;
+  private final long generation;
 
   public SpaceFilterKey(String userId, SpaceFilter filter, SpaceType type) {
     this.userId = userId;
@@ -45,6 +46,7 @@ public class SpaceFilterKey extends ScopeCacheKey {
       this.appId = filter.getAppId();
     }
     this.type = type;
+    this.generation = KeyGenerations.get(getScope(), KeyGenerations.Group.SPACES, null);
   }
 
   @Override
@@ -65,6 +67,7 @@ public class SpaceFilterKey extends ScopeCacheKey {
       return false;
     if (type != that.type) return false;
     if (userId != null ? !userId.equals(that.userId) : that.userId != null) return false;
+    if (generation != that.generation) return false;
 
     return true;
   }
@@ -78,6 +81,7 @@ public class SpaceFilterKey extends ScopeCacheKey {
     result = 31 * result + (spaceNameSearchCondition != null ? spaceNameSearchCondition.hashCode() : 0);
     result = 31 * result + (type != null ? type.hashCode() : 0);
     result = 31 * result + (sorting != null ? sorting.hashCode() : 0);
+    result = 31 * result + (int) (generation ^ (generation >>> 32));
     return result;
   }
 
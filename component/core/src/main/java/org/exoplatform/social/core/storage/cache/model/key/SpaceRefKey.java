@@ -17,6 +17,13 @@
 
 package org.exoplatform.social.core.storage.cache.model.key;
 
+import java.io.IOException;
+
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
 /**
  * Immutable space reference key.
  * This key is used to cache space by displayName, prettyName, groupId or url.
@@ -24,7 +31,7 @@ package org.exoplatform.social.core.storage.cache.model.key;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class SpaceRefKey extends ScopeCacheKey {
+public class SpaceRefKey extends ScopeCacheKey implements CompactWritable {
 
   private final String displayName;
   private final String prettyName;
@@ -50,6 +57,30 @@ public class SpaceRefKey extends ScopeCacheKey {
     this.url = url;
   }
 
+  private SpaceRefKey(final String scope, final String displayName, final String prettyName, final String groupId, final String url) {
+    super(scope);
+    this.displayName = displayName;
+    this.prettyName = prettyName;
+    this.groupId = groupId;
+    this.url = url;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeString(displayName);
+    out.writeString(prettyName);
+    out.writeString(groupId);
+    out.writeString(url);
+  }
+
+  public static SpaceRefKey readFrom(final CacheInput in) throws IOException {
+    return new SpaceRefKey(in.readToken(), in.readString(), in.readString(), in.readString(), in.readString());
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
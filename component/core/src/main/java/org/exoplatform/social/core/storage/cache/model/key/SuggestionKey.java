@@ -20,9 +20,12 @@ public class SuggestionKey <T> extends ListCacheKey {
   
   private final T key;
 
+  private final long generation;
+
   public SuggestionKey(final T key, final long offset, final long limit) {
     super(offset, limit);
     this.key = key;
+    this.generation = KeyGenerations.get(getScope(), KeyGenerations.Group.SUGGESTIONS, null);
   }
   
   public T getKey() {
@@ -46,6 +49,9 @@ public class SuggestionKey <T> extends ListCacheKey {
     if (key != null ? !key.equals(that.key) : that.key != null) {
       return false;
     }
+    if (generation != that.generation) {
+      return false;
+    }
 
     return true;
   }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.key;
+
+import java.io.IOException;
+
+import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactForm;
+import org.exoplatform.social.core.storage.cache.codec.CompactWritable;
+
+/**
+ * Immutable key of the unread counter of an activity stream of an identity.
+ *
+ * @since 4.1.0
+ */
+public class UnreadCounterKey extends ScopeCacheKey implements CompactWritable {
+
+  private final String identityId;
+  private final ActivityFilterType type;
+
+  public UnreadCounterKey(final String identityId, final ActivityFilterType type) {
+    this.identityId = identityId;
+    this.type = type;
+  }
+
+  public String getIdentityId() {
+    return identityId;
+  }
+
+  public ActivityFilterType getType() {
+    return type;
+  }
+
+  private UnreadCounterKey(final String scope, final String identityId, final ActivityFilterType type) {
+    super(scope);
+    this.identityId = identityId;
+    this.type = type;
+  }
+
+  public void writeTo(final CacheOutput out) throws IOException {
+    out.writeToken(getScope());
+    out.writeId(identityId);
+    out.writeEnum(type);
+  }
+
+  public static UnreadCounterKey readFrom(final CacheInput in) throws IOException {
+    return new UnreadCounterKey(in.readToken(), in.readId(), in.readEnum(ActivityFilterType.class));
+  }
+
+  private Object writeReplace() {
+    return new CompactForm(this);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof UnreadCounterKey)) {
+      return false;
+    }
+    if (!super.equals(o)) {
+      return false;
+    }
+
+    UnreadCounterKey that = (UnreadCounterKey) o;
+
+    if (type != that.type) {
+      return false;
+    }
+    if (identityId != null ? !identityId.equals(that.identityId) : that.identityId != null) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = super.hashCode();
+    result = 31 * result + (identityId != null ? identityId.hashCode() : 0);
+    result = 31 * result + (type != null ? type.name().hashCode() : 0);
+    return result;
+  }
+
+}
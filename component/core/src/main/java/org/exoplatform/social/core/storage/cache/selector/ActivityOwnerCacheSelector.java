@@ -46,7 +46,7 @@ public class ActivityOwnerCacheSelector extends ScopeCacheSelector<ActivityKey,
     }
 
     ActivityData data = ocinfo.get();
-    if (ownerId.equals(data.getUserId())) {
+    if (data != null && ownerId.equals(data.getUserId())) {
       return true;
     }
 
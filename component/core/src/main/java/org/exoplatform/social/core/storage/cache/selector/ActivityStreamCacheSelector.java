@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache.selector;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.cache.ObjectCacheInfo;
+import org.exoplatform.social.core.storage.cache.ActivityStreamCacheStatistics;
+import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityCountKey;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityType;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.cache.model.key.ListActivitiesKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+
+/**
+ * Selects the activity list and count keys of the given stream owners, and the comment
+ * list and count keys of the given activities.
+ * The first page and the count of the kept stream types are left to the incremental update
+ * done when the activity references are pushed.
+ *
+ * @since 4.1.0
+ */
+public class ActivityStreamCacheSelector extends ScopeCacheSelector<ScopeCacheKey, Object> {
+
+  private final Set<String> ownerIds;
+
+  private final Set<String> activityIds;
+
+  private final Set<ActivityType> keptTypes;
+
+  private final ActivityStreamCacheStatistics statistics;
+
+  public ActivityStreamCacheSelector(final Set<String> ownerIds,
+                                     final Set<String> activityIds,
+                                     final ActivityStreamCacheStatistics statistics) {
+    this(ownerIds, activityIds, null, statistics);
+  }
+
+  public ActivityStreamCacheSelector(final Set<String> ownerIds,
+                                     final Set<String> activityIds,
+                                     final Set<ActivityType> keptTypes,
+                                     final ActivityStreamCacheStatistics statistics) {
+
+    if (ownerIds == null) {
+      throw new NullPointerException();
+    }
+
+    this.ownerIds = ownerIds;
+    this.activityIds = activityIds != null ? activityIds : Collections.<String>emptySet();
+    this.keptTypes = keptTypes != null ? keptTypes : Collections.<ActivityType>emptySet();
+    this.statistics = statistics;
+  }
+
+  @Override
+  public boolean select(final ScopeCacheKey key, final ObjectCacheInfo<? extends Object> ocinfo) {
+
+    if (!super.select(key, ocinfo)) {
+      return false;
+    }
+
+    if (key instanceof ListActivitiesKey) {
+      return select((ListActivitiesKey) key);
+    }
+
+    if (key instanceof ActivityCountKey) {
+      return select((ActivityCountKey) key);
+    }
+
+    return false;
+
+  }
+
+  @Override
+  public void onSelect(final ExoCache<? extends ScopeCacheKey, ? extends Object> exoCache,
+                       final ScopeCacheKey key,
+                       final ObjectCacheInfo<? extends Object> ocinfo) throws Exception {
+    super.onSelect(exoCache, key, ocinfo);
+    if (statistics != null) {
+      statistics.evict(key);
+    }
+  }
+
+  private boolean select(final ListActivitiesKey key) {
+
+    if (key.getKey() != null) {
+      if (key.isStreamHead() && keptTypes.contains(key.getKey().getType())) {
+        return false;
+      }
+      return matches(key.getKey());
+    }
+
+    ListIdentitiesData identities = key.getIdentities();
+    if (identities == null || identities.getIds() == null) {
+      return true;
+    }
+    for (IdentityKey identityKey : identities.getIds()) {
+      if (ownerIds.contains(identityKey.getId())) {
+        return true;
+      }
+    }
+
+    return false;
+
+  }
+
+  private boolean select(final ActivityCountKey key) {
+
+    if (key.isWholeStream() && keptTypes.contains(key.getType())) {
+      return false;
+    }
+    return matches(key);
+
+  }
+
+  private boolean matches(final ActivityCountKey key) {
+
+    if (key.getKey() != null) {
+      return ownerIds.contains(key.getKey().getId());
+    }
+
+    if (key.getActivityKey() != null) {
+      return activityIds.contains(key.getActivityKey().getId());
+    }
+
+    if (key.getBaseId() != null) {
+      return activityIds.contains(key.getBaseId());
+    }
+
+    return true;
+
+  }
+
+}
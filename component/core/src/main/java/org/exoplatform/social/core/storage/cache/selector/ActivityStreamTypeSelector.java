@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache.selector;
+
+import java.util.Set;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.cache.ObjectCacheInfo;
+import org.exoplatform.social.core.storage.cache.ActivityStreamCacheStatistics;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityType;
+import org.exoplatform.social.core.storage.cache.model.key.ListActivitiesKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+
+/**
+ * Selects the pages of a stream type for the given owners, to evict them.
+ *
+ * @since 4.1.0
+ */
+public class ActivityStreamTypeSelector extends ScopeCacheSelector<ScopeCacheKey, Object> {
+
+  private final Set<String> ownerIds;
+
+  private final ActivityType type;
+
+  private final ActivityStreamCacheStatistics statistics;
+
+  public ActivityStreamTypeSelector(final Set<String> ownerIds,
+                                    final ActivityType type,
+                                    final ActivityStreamCacheStatistics statistics) {
+
+    if (ownerIds == null || type == null) {
+      throw new NullPointerException();
+    }
+
+    this.ownerIds = ownerIds;
+    this.type = type;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public boolean select(final ScopeCacheKey key, final ObjectCacheInfo<? extends Object> ocinfo) {
+
+    if (!super.select(key, ocinfo)) {
+      return false;
+    }
+
+    if (!(key instanceof ListActivitiesKey)) {
+      return false;
+    }
+
+    ListActivitiesKey listKey = (ListActivitiesKey) key;
+    return listKey.getKey() != null
+        && listKey.getKey().isWholeStream()
+        && type == listKey.getKey().getType()
+        && ownerIds.contains(listKey.getKey().getKey().getId());
+
+  }
+
+  @Override
+  public void onSelect(final ExoCache<? extends ScopeCacheKey, ? extends Object> exoCache,
+                       final ScopeCacheKey key,
+                       final ObjectCacheInfo<? extends Object> ocinfo) throws Exception {
+
+    super.onSelect(exoCache, key, ocinfo);
+    if (statistics != null) {
+      statistics.evict(key);
+    }
+
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.selector;
+
+import org.exoplatform.services.cache.ObjectCacheInfo;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+
+/**
+ * Selects the identities whose cached last activity is the given activity.
+ *
+ * @since 4.1.0
+ */
+public class LastActivityCacheSelector extends ScopeCacheSelector<IdentityKey, ActivityUpdateRef> {
+
+  private final String activityId;
+
+  public LastActivityCacheSelector(final String activityId) {
+
+    if (activityId == null) {
+      throw new NullPointerException();
+    }
+
+    this.activityId = activityId;
+  }
+
+  @Override
+  public boolean select(final IdentityKey key, final ObjectCacheInfo<? extends ActivityUpdateRef> ocinfo) {
+
+    if (!super.select(key, ocinfo)) {
+      return false;
+    }
+
+    ActivityUpdateRef ref = ocinfo.get();
+    return ref != null && activityId.equals(ref.getActivityId());
+
+  }
+
+}
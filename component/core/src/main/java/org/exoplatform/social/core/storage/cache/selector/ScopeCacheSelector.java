@@ -21,15 +21,19 @@ import org.exoplatform.services.cache.CachedObjectSelector;
 import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.cache.ObjectCacheInfo;
 import org.exoplatform.social.core.storage.cache.model.key.ScopeCacheKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeContext;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
 public class ScopeCacheSelector<T extends ScopeCacheKey, U> implements CachedObjectSelector<T, U> {
+
+  /** The scope is resolved once for the whole scan, the keys hold interned scopes. */
+  private final String scope = ScopeContext.getCurrentScope();
   
   public boolean select(final T key, final ObjectCacheInfo<? extends U> ocinfo) {
-    return ScopeCacheKey.getCurrentRepositoryName().equals(key.getScope());
+    return scope == key.getScope();
   }
 
   public void onSelect(final ExoCache<? extends T, ? extends U> exoCache, final T key, final ObjectCacheInfo<? extends U> ocinfo) throws Exception {
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.tier;
+
+import java.io.IOException;
+
+/**
+ * Turns the cached values into bytes, so that they can be kept out of the heap.
+ *
+ * @param <T> the type of the values
+ * @since 4.1.0
+ */
+public interface CacheCodec<T> {
+
+  /**
+   * @param value the value
+   * @return the bytes of the value
+   * @throws IOException when the value cannot be written
+   */
+  byte[] encode(T value) throws IOException;
+
+  /**
+   * @param bytes the bytes written by {@link #encode(Object)}
+   * @return the value
+   * @throws IOException when the bytes cannot be read
+   */
+  T decode(byte[] bytes) throws IOException;
+
+}
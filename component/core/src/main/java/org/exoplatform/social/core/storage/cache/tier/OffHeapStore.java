@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.tier;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte store kept in a direct buffer, out of the heap.
+ *
+ * The buffer is written as a ring: the values are appended after the last written one, and the oldest values
+ * are evicted when the ring comes back on them. An entry removed in between only leaves a hole which is
+ * reused once the ring goes over it. Only the keys and the slot of each value stay on the heap. As the
+ * on-heap caches, the store can let its values expire after a live time.
+ *
+ * @since 4.1.0
+ */
+public class OffHeapStore {
+
+  private final String name;
+
+  private final ByteBuffer buffer;
+
+  private final long liveTime;
+
+  /** The slots in write order, the first one is the oldest. */
+  private final LinkedHashMap<Serializable, Slot> slots = new LinkedHashMap<Serializable, Slot>();
+
+  private int tail;
+
+  private long usedBytes;
+
+  private long puts;
+
+  private long evictions;
+
+  private long hits;
+
+  private long misses;
+
+  public OffHeapStore(String name, int capacity) {
+    this(name, capacity, -1);
+  }
+
+  /**
+   * @param name the name of the store
+   * @param capacity the capacity in bytes
+   * @param liveTime the live time of the values in milliseconds, they do not expire when not positive
+   */
+  public OffHeapStore(String name, int capacity, long liveTime) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity of " + name + " must be positive");
+    }
+    this.name = name;
+    this.buffer = ByteBuffer.allocateDirect(capacity);
+    this.liveTime = liveTime;
+  }
+
+  /**
+   * Stores the bytes of a value, evicting the oldest values when there is no room left.
+   *
+   * @param key the key
+   * @param bytes the bytes of the value
+   * @return false if the value is larger than the whole store and has not been stored
+   */
+  public synchronized boolean put(Serializable key, byte[] bytes) {
+
+    remove(key);
+    if (bytes.length > buffer.capacity()) {
+      return false;
+    }
+
+    //
+    int offset = reserve(bytes.length);
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.put(bytes);
+
+    //
+    long expireTime = liveTime > 0 ? System.currentTimeMillis() + liveTime : Long.MAX_VALUE;
+    slots.put(key, new Slot(offset, bytes.length, expireTime));
+    tail = offset + bytes.length;
+    usedBytes += bytes.length;
+    ++puts;
+    return true;
+
+  }
+
+  /**
+   * @param key the key
+   * @return a copy of the bytes stored for the key, or null
+   */
+  public synchronized byte[] get(Serializable key) {
+
+    Slot slot = slots.get(key);
+    if (slot != null && slot.expireTime < System.currentTimeMillis()) {
+      remove(key);
+      slot = null;
+    }
+    if (slot == null) {
+      ++misses;
+      return null;
+    }
+
+    //
+    byte[] bytes = new byte[slot.length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(slot.offset);
+    view.get(bytes);
+    ++hits;
+    return bytes;
+
+  }
+
+  public synchronized boolean remove(Serializable key) {
+    Slot slot = slots.remove(key);
+    if (slot == null) {
+      return false;
+    }
+    usedBytes -= slot.length;
+    return true;
+  }
+
+  public synchronized boolean contains(Serializable key) {
+    return slots.containsKey(key);
+  }
+
+  /**
+   * @return a snapshot of the stored keys, from the oldest to the newest
+   */
+  public synchronized List<Serializable> keys() {
+    return new ArrayList<Serializable>(slots.keySet());
+  }
+
+  public synchronized void clear() {
+    slots.clear();
+    tail = 0;
+    usedBytes = 0;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getLiveTime() {
+    return liveTime;
+  }
+
+  public int getCapacity() {
+    return buffer.capacity();
+  }
+
+  public synchronized int getSize() {
+    return slots.size();
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  public synchronized long getPuts() {
+    return puts;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of evictions per stored value
+   */
+  public synchronized double getEvictionRate() {
+    return puts == 0 ? 0 : (double) evictions / puts;
+  }
+
+  /**
+   * Finds room for length bytes after the tail, wrapping to the start of the buffer and evicting the oldest
+   * values as needed.
+   */
+  private int reserve(int length) {
+
+    while (true) {
+
+      if (slots.isEmpty()) {
+        tail = 0;
+        return 0;
+      }
+
+      //
+      Iterator<Map.Entry<Serializable, Slot>> it = slots.entrySet().iterator();
+      Slot oldest = it.next().getValue();
+      if (oldest.offset >= tail) {
+        // free space lies between the tail and the oldest value
+        if (oldest.offset - tail >= length) {
+          return tail;
+        }
+        it.remove();
+        usedBytes -= oldest.length;
+        ++evictions;
+      }
+      else {
+        // free space lies after the tail, then before the oldest value
+        if (buffer.capacity() - tail >= length) {
+          return tail;
+        }
+        tail = 0;
+      }
+
+    }
+
+  }
+
+  private static class Slot {
+
+    private final int offset;
+
+    private final int length;
+
+    private final long expireTime;
+
+    private Slot(int offset, int length, long expireTime) {
+      this.offset = offset;
+      this.length = length;
+      this.expireTime = expireTime;
+    }
+
+  }
+
+}
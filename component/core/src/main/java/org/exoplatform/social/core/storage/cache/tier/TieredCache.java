@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.tier;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.exoplatform.services.cache.CacheListener;
+import org.exoplatform.services.cache.CacheListenerContext;
+import org.exoplatform.services.cache.CachedObjectSelector;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.cache.ObjectCacheInfo;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+/**
+ * Two tiers cache: a small on-heap cache in front of an {@link OffHeapStore}.
+ *
+ * The writes go through both tiers, the reads missing the on-heap cache are served by the off-heap store and
+ * promoted back to the on-heap cache. The tiered cache is built as a proxy of {@link ExoCache} which handles
+ * the data methods and hands the other ones over to the on-heap cache, so that it follows the contract of
+ * the cache implementation in use.
+ *
+ * @since 4.1.0
+ */
+public class TieredCache<K extends Serializable, V> implements InvocationHandler {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(TieredCache.class);
+
+  private final ExoCache<K, V> near;
+
+  private final OffHeapStore store;
+
+  private final CacheCodec<V> codec;
+
+  private final List<CacheListener<? super K, ? super V>> listeners =
+      new CopyOnWriteArrayList<CacheListener<? super K, ? super V>>();
+
+  private ExoCache<K, V> proxy;
+
+  private TieredCache(ExoCache<K, V> near, OffHeapStore store, CacheCodec<V> codec) {
+    this.near = near;
+    this.store = store;
+    this.codec = codec;
+  }
+
+  /**
+   * Puts the off-heap store behind the given cache.
+   *
+   * @param near the on-heap cache
+   * @param store the off-heap store
+   * @param codec the codec of the values
+   * @return the tiered cache
+   */
+  @SuppressWarnings("unchecked")
+  public static <K extends Serializable, V> ExoCache<K, V> wrap(ExoCache<K, V> near,
+                                                                OffHeapStore store,
+                                                                CacheCodec<V> codec) {
+    TieredCache<K, V> handler = new TieredCache<K, V>(near, store, codec);
+    near.addCacheListener(handler.new StoreEvictionListener());
+    handler.proxy = (ExoCache<K, V>) Proxy.newProxyInstance(ExoCache.class.getClassLoader(),
+                                                             new Class<?>[] {ExoCache.class},
+                                                             handler);
+    return handler.proxy;
+  }
+
+  /**
+   * @param cache a cache
+   * @return the off-heap store of the cache when it is a tiered one, null otherwise
+   */
+  public static OffHeapStore getStore(ExoCache<?, ?> cache) {
+    if (cache != null && Proxy.isProxyClass(cache.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(cache);
+      if (handler instanceof TieredCache) {
+        return ((TieredCache<?, ?>) handler).store;
+      }
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+
+    String name = method.getName();
+    int count = args == null ? 0 : args.length;
+
+    //
+    if ("get".equals(name) && count == 1) {
+      return get((Serializable) args[0]);
+    }
+    else if ("put".equals(name) && count == 2) {
+      near.put((K) args[0], (V) args[1]);
+      store((K) args[0], (V) args[1]);
+      return null;
+    }
+    else if ("putMap".equals(name) && count == 1) {
+      Map<? extends K, ? extends V> map = (Map<? extends K, ? extends V>) args[0];
+      near.putMap(map);
+      for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+        store(entry.getKey(), entry.getValue());
+      }
+      return null;
+    }
+    else if ("remove".equals(name) && count == 1) {
+      return remove((Serializable) args[0]);
+    }
+    else if ("clearCache".equals(name) && count == 0) {
+      near.clearCache();
+      store.clear();
+      return null;
+    }
+    else if ("getCacheSize".equals(name) && count == 0) {
+      return Math.max(near.getCacheSize(), store.getSize());
+    }
+    else if ("addCacheListener".equals(name) && count == 1) {
+      addCacheListener((CacheListener<? super K, ? super V>) args[0]);
+      return null;
+    }
+    else if ("select".equals(name) && count == 1) {
+      select((CachedObjectSelector<? super K, ? super V>) args[0]);
+      return null;
+    }
+    else if ("equals".equals(name) && count == 1) {
+      return self == args[0];
+    }
+    else if ("hashCode".equals(name) && count == 0) {
+      return System.identityHashCode(self);
+    }
+    else if ("toString".equals(name) && count == 0) {
+      return "TieredCache[" + store.getName() + "]";
+    }
+
+    //
+    try {
+      return method.invoke(near, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+
+  }
+
+  @SuppressWarnings("unchecked")
+  private V get(Serializable key) {
+
+    V value = near.get(key);
+    if (value != null) {
+      return value;
+    }
+
+    //
+    value = load(key);
+    if (value != null) {
+      near.put((K) key, value);
+    }
+    return value;
+
+  }
+
+  @SuppressWarnings("unchecked")
+  private V remove(Serializable key) throws Exception {
+
+    V value = near.remove(key);
+    if (value != null) {
+      store.remove(key);
+      return value;
+    }
+
+    // the on-heap cache did not report the removal of an entry only kept out of the heap
+    value = load(key);
+    store.remove(key);
+    for (CacheListener<? super K, ? super V> listener : listeners) {
+      listener.onRemove(null, (K) key, value);
+    }
+    return value;
+
+  }
+
+  /**
+   * Registers the listener on the on-heap cache. The entries evicted from the heap are not reported as
+   * expired while the off-heap store keeps them, the removals of the off-heap entries are reported.
+   */
+  private void addCacheListener(final CacheListener<? super K, ? super V> listener) {
+
+    listeners.add(listener);
+    near.addCacheListener(new CacheListener<K, V>() {
+      public void onExpire(CacheListenerContext context, K key, V obj) throws Exception {
+        if (!store.contains(key)) {
+          listener.onExpire(context, key, obj);
+        }
+      }
+
+      public void onRemove(CacheListenerContext context, K key, V obj) throws Exception {
+        listener.onRemove(context, key, obj);
+      }
+
+      public void onPut(CacheListenerContext context, K key, V obj) throws Exception {
+        listener.onPut(context, key, obj);
+      }
+
+      public void onGet(CacheListenerContext context, K key, V obj) throws Exception {
+        listener.onGet(context, key, obj);
+      }
+
+      public void onClearCache(CacheListenerContext context) throws Exception {
+        listener.onClearCache(context);
+      }
+    });
+
+  }
+
+  /**
+   * Evicts the off-heap entries removed from the on-heap cache without going through the tiered cache, such
+   * as the invalidations of the cache implementation. The entries expired from the heap stay off the heap.
+   */
+  private class StoreEvictionListener implements CacheListener<K, V> {
+
+    public void onExpire(CacheListenerContext context, K key, V obj) throws Exception {
+    }
+
+    public void onRemove(CacheListenerContext context, K key, V obj) throws Exception {
+      store.remove(key);
+    }
+
+    public void onPut(CacheListenerContext context, K key, V obj) throws Exception {
+    }
+
+    public void onGet(CacheListenerContext context, K key, V obj) throws Exception {
+    }
+
+    public void onClearCache(CacheListenerContext context) throws Exception {
+      store.clear();
+    }
+
+  }
+
+  @SuppressWarnings("unchecked")
+  private void select(final CachedObjectSelector<? super K, ? super V> selector) throws Exception {
+
+    // the on-heap entries first, removals made by the selector apply to both tiers
+    final Set<Serializable> selected = new HashSet<Serializable>();
+    near.select(new CachedObjectSelector<K, V>() {
+      public boolean select(K key, ObjectCacheInfo<? extends V> ocinfo) {
+        selected.add(key);
+        return selector.select(key, ocinfo);
+      }
+
+      public void onSelect(ExoCache<? extends K, ? extends V> cache, K key, ObjectCacheInfo<? extends V> ocinfo)
+          throws Exception {
+        selector.onSelect(proxy, key, ocinfo);
+      }
+    });
+
+    // then the entries only kept out of the heap
+    for (Serializable key : store.keys()) {
+      if (selected.contains(key)) {
+        continue;
+      }
+      ObjectCacheInfo<V> ocinfo = info(key);
+      if (selector.select((K) key, ocinfo)) {
+        selector.onSelect(proxy, (K) key, ocinfo);
+      }
+    }
+
+  }
+
+  private void store(K key, V value) {
+    try {
+      if (value == null || !store.put(key, codec.encode(value))) {
+        store.remove(key);
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not store " + key + " out of the heap in " + store.getName(), e);
+      store.remove(key);
+    }
+  }
+
+  private V load(Serializable key) {
+    byte[] bytes = store.get(key);
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      return codec.decode(bytes);
+    } catch (IOException e) {
+      LOG.warn("Could not read " + key + " from the off-heap store " + store.getName(), e);
+      store.remove(key);
+      return null;
+    }
+  }
+
+  /**
+   * Builds the cache info of an off-heap entry, its value is only decoded when the selector asks for it.
+   */
+  @SuppressWarnings("unchecked")
+  private ObjectCacheInfo<V> info(final Serializable key) {
+    return (ObjectCacheInfo<V>) Proxy.newProxyInstance(ObjectCacheInfo.class.getClassLoader(),
+                                                        new Class<?>[] {ObjectCacheInfo.class},
+                                                        new InvocationHandler() {
+      public Object invoke(Object self, Method method, Object[] args) {
+        if ("get".equals(method.getName())) {
+          return load(key);
+        }
+        Class<?> type = method.getReturnType();
+        if (type == long.class) {
+          return -1L;
+        }
+        else if (type == int.class) {
+          return 0;
+        }
+        else if (type == boolean.class) {
+          return false;
+        }
+        return null;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,673 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.graph;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
+
+/**
+ * In-memory prefix index of the identity names, used to suggest identities while a name is typed.
+ *
+ * The names are split into lower case tokens without accents: the words of the full name, of the first
+ * and last names and of the remote id. The (token, identity) pairs are kept in a sorted array, so that
+ * the identities having a token starting with a prefix are found by binary search.
+ *
+ * The index is built from the storage on first use, without blocking the searches and the changes. Each
+ * cluster node has its own index, so the changed identities are only marked as stale, by the identity
+ * storage and by the change signals of the other nodes: the storage indexes them again from what is
+ * committed before the next search.
+ *
+ * @since 4.1.0
+ */
+@Managed
+@ManagedDescription("Social identity name index")
+@NameTemplate({@Property(key = "service", value = "social"), @Property(key = "view", value = "IdentityNameIndex")})
+public class IdentityNameIndex {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(IdentityNameIndex.class);
+
+  private static final String MEMORY_BUDGET = "memory-budget";
+
+  private static final String[] NO_TOKENS = new String[0];
+
+  /**
+   * Loads all the identities of the storage into the index.
+   */
+  public interface Loader {
+    void load(IdentityNameIndex index) throws Exception;
+  }
+
+  /** In bytes, 0 when not limited */
+  private final long memoryBudget;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Held while the index is built, so that it is built once */
+  private final ReentrantLock loadLock = new ReentrantLock();
+
+  private Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+  /** The indexed identities, null once removed */
+  private List<IdentitySummary> identities = new ArrayList<IdentitySummary>();
+
+  /** The normalized full names, to order the suggestions */
+  private List<String> names = new ArrayList<String>();
+
+  /** The sorted tokens of each identity */
+  private List<String[]> tokensOf = new ArrayList<String[]>();
+
+  /** The (token, identity) pairs, sorted by token then identity */
+  private String[] tokens = new String[16];
+
+  private int[] owners = new int[16];
+
+  private int size;
+
+  private volatile boolean loaded;
+
+  /** Whether the index is being built, the identities changed meanwhile are marked as stale */
+  private volatile boolean loading;
+
+  /** Whether the pairs are appended unsorted, while loading */
+  private boolean bulk;
+
+  private boolean overBudget;
+
+  /** The identities changed since they were indexed */
+  private final Set<String> staleIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public IdentityNameIndex(InitParams params) {
+    this(getValue(params, MEMORY_BUDGET, 0) * 1024L * 1024L);
+  }
+
+  private IdentityNameIndex(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  private static int getValue(InitParams params, String name, int defaultValue) {
+    try {
+      int value = Integer.valueOf(params.getValueParam(name).getValue());
+      return value > 0 ? value : defaultValue;
+    } catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Whether the index is loaded")
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Loads the index unless it is already loaded. The identities are loaded into a new index, which then
+   * replaces the content of this one, the identities changed meanwhile being marked as stale. The index is
+   * left empty and unloaded when the loader fails.
+   *
+   * @param loader loads the identities
+   * @throws Exception when the loader fails
+   */
+  public void load(Loader loader) throws Exception {
+    loadLock.lock();
+    try {
+      if (loaded) {
+        return;
+      }
+      loading = true;
+      IdentityNameIndex built = new IdentityNameIndex(memoryBudget);
+      built.loaded = true;
+      built.bulk = true;
+
+      boolean done = false;
+      try {
+        loader.load(built);
+        built.sortTokens();
+        built.bulk = false;
+        done = true;
+      } finally {
+        lock.writeLock().lock();
+        try {
+          reset();
+          if (done) {
+            indexes = built.indexes;
+            identities = built.identities;
+            names = built.names;
+            tokensOf = built.tokensOf;
+            tokens = built.tokens;
+            owners = built.owners;
+            size = built.size;
+            loaded = true;
+            checkBudget();
+          } else {
+            staleIds.clear();
+          }
+          loading = false;
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+    } finally {
+      loadLock.unlock();
+    }
+  }
+
+  /**
+   * Empties the index, which is loaded again on next use.
+   */
+  @Managed
+  @ManagedDescription("Empties the index, which is loaded again from the storage on next use")
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      reset();
+      loaded = false;
+      staleIds.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Marks an identity as changed, it must be indexed again from the storage. Ignored until the index is loaded.
+   *
+   * @param identityId the changed identity
+   */
+  public void invalidate(String identityId) {
+    if ((loaded || loading) && identityId != null) {
+      staleIds.add(identityId);
+    }
+  }
+
+  /**
+   * Takes the identities marked as changed since the last call.
+   *
+   * @return the ids of the identities to index again
+   */
+  public Set<String> takeStaleIds() {
+    if (staleIds.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> got = new HashSet<String>();
+    for (Iterator<String> it = staleIds.iterator(); it.hasNext();) {
+      got.add(it.next());
+      it.remove();
+    }
+    return got;
+  }
+
+  /**
+   * Adds or updates an identity. Ignored until the index is loaded.
+   *
+   * @param identity the identity
+   * @param firstName the first name, may be null
+   * @param lastName the last name, may be null
+   */
+  public void saveIdentity(IdentitySummary identity, String firstName, String lastName) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        invalidate(identity.getId());
+        return;
+      }
+      Integer index = indexes.get(identity.getId());
+      if (index == null) {
+        index = identities.size();
+        indexes.put(identity.getId(), index);
+        identities.add(null);
+        names.add(null);
+        tokensOf.add(NO_TOKENS);
+      } else if (bulk) {
+        //each identity is loaded once
+        return;
+      } else {
+        removeTokens(index);
+      }
+
+      //
+      String[] got = tokenize(identity.getFullName(), firstName, lastName, identity.getRemoteId());
+      identities.set(index, identity);
+      names.set(index, normalize(identity.getFullName()));
+      tokensOf.set(index, got);
+      for (String token : got) {
+        if (bulk) {
+          append(size, token, index);
+        } else {
+          append(position(token, index), token, index);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a deleted identity.
+   *
+   * @param identityId the deleted identity
+   */
+  public void removeIdentity(String identityId) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        invalidate(identityId);
+        return;
+      }
+      Integer index = indexes.get(identityId);
+      if (index == null || identities.get(index) == null) {
+        return;
+      }
+      removeTokens(index);
+      identities.set(index, null);
+      names.set(index, null);
+      tokensOf.set(index, NO_TOKENS);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the identities having a name which starts with the given text. When the text has several words,
+   * each word must start a token of the identity.
+   *
+   * The boosted identities come first, then the identities whose full name starts with the text, then
+   * the others, each group ordered by full name.
+   *
+   * @param providerId the provider of the identities
+   * @param text the typed text
+   * @param boostedIds the ids of the identities to suggest first, may be null
+   * @param excludedIds the ids of the identities not to suggest, may be null
+   * @param limit the maximum number of identities
+   * @return the matching identities
+   */
+  public List<IdentitySummary> search(String providerId, String text, Set<String> boostedIds,
+                                      Set<String> excludedIds, int limit) {
+    String normalized = normalize(text);
+    String[] terms = split(normalized);
+    if (terms.length == 0 || limit <= 0) {
+      return Collections.emptyList();
+    }
+
+    //the longest term has the fewest candidates
+    String first = terms[0];
+    for (String term : terms) {
+      if (term.length() > first.length()) {
+        first = term;
+      }
+    }
+
+    lock.readLock().lock();
+    try {
+      PriorityQueue<Candidate> top = new PriorityQueue<Candidate>(limit + 1, Collections.reverseOrder());
+      BitSet boosted = indexesOf(boostedIds);
+      BitSet excluded = indexesOf(excludedIds);
+      BitSet seen = new BitSet(identities.size());
+      for (int i = lowerBound(first, -1); i < size && tokens[i].startsWith(first); i++) {
+        int index = owners[i];
+        if (seen.get(index) || excluded.get(index)) {
+          continue;
+        }
+        seen.set(index);
+
+        //the rank is checked first, most candidates cannot enter the top
+        String name = names.get(index);
+        int rank = (boosted.get(index) ? 0 : 2) + (name.startsWith(normalized) ? 0 : 1);
+        if (top.size() == limit && !top.peek().isAfter(rank, name, index)) {
+          continue;
+        }
+        IdentitySummary identity = identities.get(index);
+        if ((providerId != null && !providerId.equals(identity.getProviderId()))
+            || (terms.length > 1 && !matchesAll(tokensOf.get(index), terms))) {
+          continue;
+        }
+
+        //
+        top.add(new Candidate(rank, name, index));
+        if (top.size() > limit) {
+          top.poll();
+        }
+      }
+
+      //
+      Candidate[] sorted = top.toArray(new Candidate[top.size()]);
+      Arrays.sort(sorted);
+      List<IdentitySummary> got = new ArrayList<IdentitySummary>(sorted.length);
+      for (Candidate candidate : sorted) {
+        got.add(identities.get(candidate.index));
+      }
+      return got;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private BitSet indexesOf(Set<String> identityIds) {
+    BitSet got = new BitSet();
+    if (identityIds != null) {
+      for (String identityId : identityIds) {
+        Integer index = indexes.get(identityId);
+        if (index != null) {
+          got.set(index);
+        }
+      }
+    }
+    return got;
+  }
+
+  /**
+   * Tells whether each term starts one of the sorted tokens.
+   */
+  private static boolean matchesAll(String[] sortedTokens, String[] terms) {
+    for (String term : terms) {
+      int position = Arrays.binarySearch(sortedTokens, term);
+      if (position < 0) {
+        position = -position - 1;
+        if (position == sortedTokens.length || !sortedTokens[position].startsWith(term)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Lower cases the text and removes its accents.
+   */
+  static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ENGLISH), Normalizer.Form.NFD);
+    StringBuilder sb = new StringBuilder(decomposed.length());
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.getType(c) != Character.NON_SPACING_MARK) {
+        sb.append(c);
+      }
+    }
+    return sb.toString().trim();
+  }
+
+  /**
+   * Splits a normalized text into its words.
+   */
+  private static String[] split(String normalized) {
+    List<String> got = new ArrayList<String>();
+    int start = -1;
+    for (int i = 0; i <= normalized.length(); i++) {
+      boolean word = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+      if (word && start < 0) {
+        start = i;
+      } else if (!word && start >= 0) {
+        got.add(normalized.substring(start, i));
+        start = -1;
+      }
+    }
+    return got.toArray(new String[got.size()]);
+  }
+
+  /**
+   * Gets the sorted distinct tokens of the given names.
+   */
+  static String[] tokenize(String... texts) {
+    List<String> got = new ArrayList<String>();
+    for (String text : texts) {
+      got.addAll(Arrays.asList(split(normalize(text))));
+    }
+    if (got.isEmpty()) {
+      return NO_TOKENS;
+    }
+    Collections.sort(got);
+
+    //
+    int nb = 1;
+    for (int i = 1; i < got.size(); i++) {
+      if (!got.get(i).equals(got.get(nb - 1))) {
+        got.set(nb++, got.get(i));
+      }
+    }
+    return got.subList(0, nb).toArray(new String[nb]);
+  }
+
+  private static int compare(String token1, int owner1, String token2, int owner2) {
+    int c = token1.compareTo(token2);
+    return c != 0 ? c : (owner1 < owner2 ? -1 : (owner1 == owner2 ? 0 : 1));
+  }
+
+  /**
+   * Gets the position of the first pair greater than (token, owner).
+   */
+  private int lowerBound(String token, int owner) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compare(tokens[middle], owners[middle], token, owner) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int position(String token, int owner) {
+    return lowerBound(token, owner - 1);
+  }
+
+  private void append(int position, String token, int owner) {
+    if (size == tokens.length) {
+      tokens = Arrays.copyOf(tokens, size * 2);
+      owners = Arrays.copyOf(owners, size * 2);
+    }
+    System.arraycopy(tokens, position, tokens, position + 1, size - position);
+    System.arraycopy(owners, position, owners, position + 1, size - position);
+    tokens[position] = token;
+    owners[position] = owner;
+    ++size;
+  }
+
+  private void removeTokens(int owner) {
+    for (String token : tokensOf.get(owner)) {
+      int position = position(token, owner);
+      if (position < size && owners[position] == owner && tokens[position].equals(token)) {
+        System.arraycopy(tokens, position + 1, tokens, position, size - position - 1);
+        System.arraycopy(owners, position + 1, owners, position, size - position - 1);
+        tokens[--size] = null;
+      }
+    }
+  }
+
+  /**
+   * Sorts the pairs appended while loading.
+   */
+  private void sortTokens() {
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    final String[] unsortedTokens = tokens;
+    final int[] unsortedOwners = owners;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return IdentityNameIndex.compare(unsortedTokens[i1], unsortedOwners[i1], unsortedTokens[i2], unsortedOwners[i2]);
+      }
+    });
+
+    //
+    String[] sortedTokens = new String[tokens.length];
+    int[] sortedOwners = new int[owners.length];
+    for (int i = 0; i < size; i++) {
+      sortedTokens[i] = unsortedTokens[order[i]];
+      sortedOwners[i] = unsortedOwners[order[i]];
+    }
+    tokens = sortedTokens;
+    owners = sortedOwners;
+  }
+
+  private void reset() {
+    indexes = new HashMap<String, Integer>();
+    identities = new ArrayList<IdentitySummary>();
+    names = new ArrayList<String>();
+    tokensOf = new ArrayList<String[]>();
+    tokens = new String[16];
+    owners = new int[16];
+    size = 0;
+    overBudget = false;
+  }
+
+  /**
+   * Warns once when the estimated memory goes over the budget. Checked on load and when the memory is read.
+   */
+  private void checkBudget() {
+    if (memoryBudget <= 0 || overBudget) {
+      return;
+    }
+    long memory = estimateMemory();
+    if (memory > memoryBudget) {
+      overBudget = true;
+      LOG.warn("The identity name index uses about " + memory / 1024 + " KB, over its budget of " + memoryBudget / 1024 + " KB.");
+    }
+  }
+
+  /**
+   * Estimates the memory used by the identities and the tokens, assuming 8 bytes object headers and
+   * 4 bytes references. The tokens are counted once per identity.
+   */
+  private long estimateMemory() {
+    long memory = 16 + 4L * tokens.length + 16 + 4L * owners.length;
+    for (int i = 0; i < identities.size(); i++) {
+      IdentitySummary identity = identities.get(i);
+      //the map entry, the list slots, the summary and its strings
+      memory += 32 + 12 + 32;
+      if (identity != null) {
+        memory += 5 * 40 + 2 * (identity.getId().length() + identity.getRemoteId().length() + 2 * identity.getFullName().length());
+        memory += length(identity.getAvatarUrl()) * 2;
+      }
+      for (String token : tokensOf.get(i)) {
+        memory += 40 + 2 * token.length();
+      }
+    }
+    return memory;
+  }
+
+  private static int length(String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  @Managed
+  @ManagedDescription("Number of identities in the index")
+  public int getIdentityCount() {
+    lock.readLock().lock();
+    try {
+      return identities.size() - Collections.frequency(identities, null);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Number of identities to index again")
+  public int getStaleIdentityCount() {
+    return staleIds.size();
+  }
+
+  @Managed
+  @ManagedDescription("Number of tokens in the index")
+  public int getTokenCount() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Estimated memory used by the index, in bytes")
+  public long getEstimatedMemory() {
+    lock.writeLock().lock();
+    try {
+      checkBudget();
+      return estimateMemory();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static class Candidate implements Comparable<Candidate> {
+
+    private final int rank;
+
+    private final String name;
+
+    private final int index;
+
+    private Candidate(int rank, String name, int index) {
+      this.rank = rank;
+      this.name = name;
+      this.index = index;
+    }
+
+    @Override
+    public int compareTo(Candidate o) {
+      return compare(o.rank, o.name, o.index);
+    }
+
+    /**
+     * Tells whether this candidate comes after the given one.
+     */
+    private boolean isAfter(int otherRank, String otherName, int otherIndex) {
+      return compare(otherRank, otherName, otherIndex) > 0;
+    }
+
+    private int compare(int otherRank, String otherName, int otherIndex) {
+      if (rank != otherRank) {
+        return rank < otherRank ? -1 : 1;
+      }
+      int c = name.compareTo(otherName);
+      return c != 0 ? c : (index < otherIndex ? -1 : (index == otherIndex ? 0 : 1));
+    }
+
+  }
+
+}
@@ -0,0 +1,607 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+/**
+ * In-memory adjacency index of the relationships between identities.
+ *
+ * The identity ids are mapped to int indexes. For each identity, a sorted int array keeps its related
+ * identities whatever the status of their relationship.
+ *
+ * The suggestions of an identity are the identities related to its related identities, ordered by
+ * the number of common relationships. The first ones are kept per identity until a relationship of
+ * the identity or of one of its related identities changes.
+ *
+ * The index is built from the storage on first use, without blocking the readers and the writers, and
+ * kept up to date by the relationship storage. Each change is applied at once, so that readers never see
+ * half of it. Each cluster node has its own graph, so the identities whose relationships changed on another
+ * node are marked as stale, and the storage reads their relationships again before the next use. The graph
+ * only serves the suggestions, the connections and the invitations are read from the storage.
+ *
+ * @since 4.1.0
+ */
+@Managed
+@ManagedDescription("Social relationship graph")
+@NameTemplate({@Property(key = "service", value = "social"), @Property(key = "view", value = "RelationshipGraph")})
+public class RelationshipGraph {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(RelationshipGraph.class);
+
+  private static final String SUGGESTION_SIZE = "suggestion-size";
+  private static final String MEMORY_BUDGET = "memory-budget";
+
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * Loads all the relationships of the storage into the graph.
+   */
+  public interface Loader {
+    void load(RelationshipGraph graph) throws Exception;
+  }
+
+  private final int suggestionSize;
+
+  /** In bytes, 0 when not limited */
+  private final long memoryBudget;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Held while the graph is built, so that it is built once */
+  private final ReentrantLock loadLock = new ReentrantLock();
+
+  private Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+  private List<String> ids = new ArrayList<String>();
+
+  private int[][] related = new int[16][];
+
+  private final ConcurrentMap<Integer, int[]> suggestions = new ConcurrentHashMap<Integer, int[]>();
+
+  private volatile boolean loaded;
+
+  /** Whether the graph is being built, the changes made meanwhile are marked as stale */
+  private volatile boolean loading;
+
+  private boolean overBudget;
+
+  /** The identities whose relationships changed since they were read */
+  private final Set<String> staleIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public RelationshipGraph(InitParams params) {
+    this(getValue(params, SUGGESTION_SIZE, 100), getValue(params, MEMORY_BUDGET, 0) * 1024L * 1024L);
+  }
+
+  private RelationshipGraph(int suggestionSize, long memoryBudget) {
+    this.suggestionSize = suggestionSize;
+    this.memoryBudget = memoryBudget;
+  }
+
+  private static int getValue(InitParams params, String name, int defaultValue) {
+    try {
+      int value = Integer.valueOf(params.getValueParam(name).getValue());
+      return value > 0 ? value : defaultValue;
+    } catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Whether the graph is loaded")
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Loads the graph unless it is already loaded. The relationships are loaded into a new graph, which then
+   * replaces the content of this one, the identities changed meanwhile being marked as stale. The graph is
+   * left empty and unloaded when the loader fails.
+   *
+   * @param loader loads the relationships
+   * @throws Exception when the loader fails
+   */
+  public void load(Loader loader) throws Exception {
+    loadLock.lock();
+    try {
+      if (loaded) {
+        return;
+      }
+      loading = true;
+      RelationshipGraph built = new RelationshipGraph(suggestionSize, memoryBudget);
+      built.loaded = true;
+
+      boolean done = false;
+      try {
+        loader.load(built);
+        done = true;
+      } finally {
+        lock.writeLock().lock();
+        try {
+          reset();
+          if (done) {
+            indexes = built.indexes;
+            ids = built.ids;
+            related = built.related;
+            loaded = true;
+            checkBudget();
+          } else {
+            staleIds.clear();
+          }
+          loading = false;
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+    } finally {
+      loadLock.unlock();
+    }
+  }
+
+  /**
+   * Empties the graph, which is loaded again on next use.
+   */
+  @Managed
+  @ManagedDescription("Empties the graph, which is loaded again from the storage on next use")
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      reset();
+      loaded = false;
+      staleIds.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Marks the relationships of an identity as changed, they must be read again from the storage. Ignored
+   * until the graph is loaded.
+   *
+   * @param identityId the changed identity
+   */
+  public void invalidate(String identityId) {
+    if ((loaded || loading) && identityId != null) {
+      staleIds.add(identityId);
+    }
+  }
+
+  /**
+   * Takes the identities marked as changed since the last call.
+   *
+   * @return the ids of the identities whose relationships must be read again
+   */
+  public Set<String> takeStaleIds() {
+    if (staleIds.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> got = new HashSet<String>();
+    for (Iterator<String> it = staleIds.iterator(); it.hasNext();) {
+      got.add(it.next());
+      it.remove();
+    }
+    return got;
+  }
+
+  /**
+   * Adds the relationship between two identities, whatever its status. Ignored until the graph is loaded.
+   *
+   * @param senderId the sender
+   * @param receiverId the receiver
+   */
+  public void saveRelationship(String senderId, String receiverId) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        invalidate(senderId);
+        invalidate(receiverId);
+        return;
+      }
+      if (senderId.equals(receiverId)) {
+        return;
+      }
+      int sender = indexOf(senderId);
+      int receiver = indexOf(receiverId);
+      if (link(sender, receiver) | link(receiver, sender)) {
+        invalidate(sender, receiver);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the relationship between two identities. Ignored until the graph is loaded.
+   *
+   * @param identityId1 the sender
+   * @param identityId2 the receiver
+   */
+  public void removeRelationship(String identityId1, String identityId2) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        invalidate(identityId1);
+        invalidate(identityId2);
+        return;
+      }
+      Integer index1 = indexes.get(identityId1);
+      Integer index2 = indexes.get(identityId2);
+      if (index1 == null || index2 == null) {
+        return;
+      }
+      //invalidated before the unlink to reach the identities related through this relationship
+      invalidate(index1, index2);
+      unlink(index1, index2);
+      unlink(index2, index1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes all the relationships of a deleted identity.
+   *
+   * @param identityId the deleted identity
+   */
+  public void removeIdentity(String identityId) {
+    lock.writeLock().lock();
+    try {
+      Integer index = indexes.get(identityId);
+      if (!loaded || index == null) {
+        return;
+      }
+      for (int other : relatedOf(index)) {
+        invalidate(other);
+        unlink(other, index);
+      }
+      invalidate(index);
+      related[index] = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Replaces the relationships of an identity by the ones read from the storage. Ignored until the graph
+   * is loaded.
+   *
+   * @param identityId the identity
+   * @param relatedIds the ids of all the identities it has a relationship with
+   */
+  public void setRelationships(String identityId, Collection<String> relatedIds) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        return;
+      }
+      int index = indexOf(identityId);
+      int[] updated = new int[relatedIds.size()];
+      int nb = 0;
+      for (String relatedId : relatedIds) {
+        if (!relatedId.equals(identityId)) {
+          updated[nb++] = indexOf(relatedId);
+        }
+      }
+      Arrays.sort(updated, 0, nb);
+
+      //invalidated before and after to reach the identities related through the old and the new relationships
+      invalidate(index);
+      int[] current = relatedOf(index);
+      for (int other : current) {
+        if (Arrays.binarySearch(updated, 0, nb, other) < 0) {
+          invalidate(other);
+          unlink(other, index);
+        }
+      }
+      int distinct = 0;
+      for (int i = 0; i < nb; i++) {
+        if (distinct == 0 || updated[i] != updated[distinct - 1]) {
+          updated[distinct++] = updated[i];
+        }
+      }
+      related[index] = distinct == 0 ? null : Arrays.copyOf(updated, distinct);
+      for (int other : relatedOf(index)) {
+        if (link(other, index)) {
+          invalidate(other);
+        }
+      }
+      invalidate(index);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the identities an identity has a relationship with.
+   *
+   * @param identityId the identity
+   * @return the number of related identities
+   */
+  public int getRelatedCount(String identityId) {
+    lock.readLock().lock();
+    try {
+      Integer index = indexes.get(identityId);
+      return index == null ? 0 : relatedOf(index).length;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the suggestions of an identity, with their number of common relationships.
+   *
+   * @param identityId the identity
+   * @param size the maximum number of suggestions
+   * @return the suggestion ids, the most common first
+   */
+  public Map<String, Integer> getSuggestions(String identityId, int size) {
+    lock.readLock().lock();
+    try {
+      Integer index = indexes.get(identityId);
+      if (index == null || size <= 0) {
+        return Collections.emptyMap();
+      }
+
+      //
+      int[] top = size <= suggestionSize ? suggestions.get(index) : null;
+      if (top == null) {
+        top = computeSuggestions(index, Math.max(size, suggestionSize));
+        if (size <= suggestionSize) {
+          suggestions.put(index, top);
+        }
+      }
+
+      //
+      Map<String, Integer> got = new LinkedHashMap<String, Integer>();
+      for (int i = 0; i < top.length && got.size() < size; i += 2) {
+        got.put(ids.get(top[i]), top[i + 1]);
+      }
+      return got;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the common relationships of the candidates reached through the related identities, and keeps
+   * the first ones as (index, count) pairs. Ties are ordered by index.
+   */
+  private int[] computeSuggestions(int index, int size) {
+    int[] counts = new int[ids.size()];
+    int[] mine = relatedOf(index);
+
+    //already related identities are not suggested
+    counts[index] = -1;
+    for (int other : mine) {
+      counts[other] = -1;
+    }
+
+    //
+    int[] touched = new int[16];
+    int nbTouched = 0;
+    for (int other : mine) {
+      for (int candidate : relatedOf(other)) {
+        if (counts[candidate] < 0) {
+          continue;
+        }
+        if (counts[candidate]++ == 0) {
+          if (nbTouched == touched.length) {
+            touched = Arrays.copyOf(touched, nbTouched * 2);
+          }
+          touched[nbTouched++] = candidate;
+        }
+      }
+    }
+
+    //the highest count first, then the lowest index
+    long[] keys = new long[nbTouched];
+    for (int i = 0; i < nbTouched; i++) {
+      int candidate = touched[i];
+      keys[i] = ((long) counts[candidate] << 32) | (Integer.MAX_VALUE - candidate);
+    }
+    Arrays.sort(keys);
+
+    int nb = Math.min(size, nbTouched);
+    int[] top = new int[nb * 2];
+    for (int i = 0; i < nb; i++) {
+      long key = keys[nbTouched - 1 - i];
+      top[2 * i] = Integer.MAX_VALUE - (int) (key & 0xFFFFFFFFL);
+      top[2 * i + 1] = (int) (key >>> 32);
+    }
+    return top;
+  }
+
+  private void invalidate(int index1, int index2) {
+    invalidate(index1);
+    invalidate(index2);
+  }
+
+  /**
+   * Drops the kept suggestions of an identity and of its related identities.
+   */
+  private void invalidate(int index) {
+    suggestions.remove(index);
+    for (int other : relatedOf(index)) {
+      suggestions.remove(other);
+    }
+  }
+
+  private int indexOf(String identityId) {
+    Integer index = indexes.get(identityId);
+    if (index == null) {
+      index = ids.size();
+      indexes.put(identityId, index);
+      ids.add(identityId);
+      if (index == related.length) {
+        related = Arrays.copyOf(related, index * 2);
+      }
+    }
+    return index;
+  }
+
+  private int[] relatedOf(int index) {
+    int[] got = related[index];
+    return got == null ? EMPTY : got;
+  }
+
+  private boolean link(int from, int to) {
+    int[] current = relatedOf(from);
+    int position = Arrays.binarySearch(current, to);
+    if (position >= 0) {
+      return false;
+    }
+    position = -position - 1;
+
+    int[] updated = new int[current.length + 1];
+    System.arraycopy(current, 0, updated, 0, position);
+    updated[position] = to;
+    System.arraycopy(current, position, updated, position + 1, current.length - position);
+    related[from] = updated;
+    return true;
+  }
+
+  private void unlink(int from, int to) {
+    int[] current = relatedOf(from);
+    int position = Arrays.binarySearch(current, to);
+    if (position < 0) {
+      return;
+    }
+
+    int[] updated = new int[current.length - 1];
+    System.arraycopy(current, 0, updated, 0, position);
+    System.arraycopy(current, position + 1, updated, position, current.length - position - 1);
+    related[from] = updated;
+  }
+
+  private void reset() {
+    indexes = new HashMap<String, Integer>();
+    ids = new ArrayList<String>();
+    related = new int[16][];
+    suggestions.clear();
+    overBudget = false;
+  }
+
+  /**
+   * Warns once when the estimated memory goes over the budget. Checked on load and when the memory is read.
+   */
+  private void checkBudget() {
+    if (memoryBudget <= 0 || overBudget) {
+      return;
+    }
+    long memory = estimateMemory();
+    if (memory > memoryBudget) {
+      overBudget = true;
+      LOG.warn("The relationship graph uses about " + memory / 1024 + " KB, over its budget of " + memoryBudget / 1024 + " KB.");
+    }
+  }
+
+  /**
+   * Estimates the memory used by the ids, the arrays and the kept suggestions, assuming 8 bytes object
+   * headers and 4 bytes references.
+   */
+  private long estimateMemory() {
+    long memory = 0;
+    for (String id : ids) {
+      //the id, its map entry and its list slot
+      memory += 40 + 2 * id.length() + 32 + 4;
+    }
+    memory += 16 + 4L * related.length;
+    for (int i = 0; i < ids.size(); i++) {
+      if (related[i] != null) {
+        memory += 16 + 4L * related[i].length;
+      }
+    }
+    for (int[] top : suggestions.values()) {
+      memory += 16 + 4L * top.length + 48;
+    }
+    return memory;
+  }
+
+  @Managed
+  @ManagedDescription("Number of identities in the graph")
+  public int getIdentityCount() {
+    lock.readLock().lock();
+    try {
+      return ids.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Number of relationships, whatever their status")
+  public long getRelationshipCount() {
+    lock.readLock().lock();
+    try {
+      long nb = 0;
+      for (int i = 0; i < ids.size(); i++) {
+        nb += relatedOf(i).length;
+      }
+      return nb / 2;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Number of identities with kept suggestions")
+  public int getSuggestionCount() {
+    return suggestions.size();
+  }
+
+  @Managed
+  @ManagedDescription("Estimated memory used by the graph, in bytes")
+  public long getEstimatedMemory() {
+    lock.writeLock().lock();
+    try {
+      checkBudget();
+      return estimateMemory();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Memory budget of the graph, in bytes, 0 when not limited")
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+}
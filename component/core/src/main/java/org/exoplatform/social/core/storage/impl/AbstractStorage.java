@@ -58,6 +58,7 @@ public abstract class AbstractStorage {
   //
   protected static final String SENDER = "sender";
   protected static final String RECEIVER = "receiver";
+  protected static final String RELATIONSHIP = "relationship";
 
   protected AbstractStorage() {
 
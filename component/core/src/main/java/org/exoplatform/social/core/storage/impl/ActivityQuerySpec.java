@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.chromattic.api.query.Ordering;
+import org.chromattic.api.query.QueryBuilder;
+import org.exoplatform.social.common.jcr.filter.FilterLiteral.DIRECTION;
+import org.exoplatform.social.common.jcr.filter.FilterLiteral.FilterOption;
+import org.exoplatform.social.common.jcr.filter.FilterLiteral.OrderByOption;
+import org.exoplatform.social.core.activity.filter.ActivityFilter;
+import org.exoplatform.social.core.chromattic.entity.ActivityEntity;
+import org.exoplatform.social.core.chromattic.filter.JCRFilterLiteral;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.storage.api.ActivityStorage.TimestampType;
+import org.exoplatform.social.core.storage.query.PropertyLiteralExpression;
+
+/**
+ * Immutable specification of an activity query, made by {@link ActivityBuilderWhere}.
+ * 
+ * The where clause is compiled once per shape, that is the kind of the query, the number of its
+ * identities, the criteria it has and the timestamp comparisons of the filter. The compiled template
+ * is then filled with the identity ids and the timestamps, so a spec can be compiled from any thread
+ * without lock.
+ * 
+ * A spec with many identities is {@link #split(int) split} in chunks whose results are merged by the
+ * storage, so that the size of a query does not depend on the number of connections or spaces.
+ *
+ * @since 4.1.0
+ */
+public final class ActivityQuerySpec {
+
+  /** The maximum number of identities of the query of a chunk. */
+  public static final int CHUNK_SIZE = 50;
+
+  /** Above this number of shapes, the compiled templates are dropped. */
+  private static final int MAX_TEMPLATES = 512;
+
+  private static final ConcurrentMap<Shape, ActivityQueryTemplate> TEMPLATES = new ConcurrentHashMap<Shape, ActivityQueryTemplate>();
+
+  public enum Kind {
+    SIMPLE, SPACE, UPDATED, VIEWED_RANGE, OWNER, VIEW_OWNER
+  }
+
+  private final Kind kind;
+  private final List<String> ownerIds;
+  private final List<String> posterIds;
+  private final String posterId;
+  private final String mentionerId;
+  private final boolean mentions;
+  private final String likerId;
+  private final String commenterId;
+  private final Set<String> excludedIds;
+
+  ActivityQuerySpec(Kind kind, List<Identity> owners, List<Identity> posters, Identity poster, Identity mentioner,
+                    Identity liker, Identity commenter, String[] excludedIds) {
+    this(kind, ids(owners), ids(posters), id(poster), id(mentioner), mentioner != null, id(liker), id(commenter),
+         excludedIds == null || excludedIds.length == 0 ? Collections.<String>emptySet() : Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(excludedIds))));
+  }
+
+  private ActivityQuerySpec(Kind kind, List<String> ownerIds, List<String> posterIds, String posterId, String mentionerId,
+                            boolean mentions, String likerId, String commenterId, Set<String> excludedIds) {
+    this.kind = kind;
+    this.ownerIds = ownerIds;
+    this.posterIds = posterIds;
+    this.posterId = posterId;
+    this.mentionerId = mentionerId;
+    this.mentions = mentions;
+    this.likerId = likerId;
+    this.commenterId = commenterId;
+    this.excludedIds = excludedIds;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public List<String> getOwnerIds() {
+    return ownerIds;
+  }
+
+  public List<String> getPosterIds() {
+    return posterIds;
+  }
+
+  public String getPosterId() {
+    return posterId;
+  }
+
+  public String getMentionerId() {
+    return mentionerId;
+  }
+
+  /**
+   * @return true when the activities mentioning the mentioner are part of the results
+   */
+  public boolean hasMentions() {
+    return mentions;
+  }
+
+  public String getLikerId() {
+    return likerId;
+  }
+
+  public String getCommenterId() {
+    return commenterId;
+  }
+
+  /**
+   * The excluded activities are not part of the where clause: they are skipped when the results are read.
+   * 
+   * @return the ids of the excluded activities
+   */
+  public Set<String> getExcludedIds() {
+    return excludedIds;
+  }
+
+  /**
+   * Compiles the where clause of this spec with the timestamps of the given filter.
+   * 
+   * @param filter the filter
+   * @return the where clause
+   */
+  public String compile(JCRFilterLiteral filter) {
+    TimestampType point = timestamp(filter, ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD);
+    TimestampType from = timestamp(filter, ActivityFilter.ACTIVITY_FROM_UPDATED_POINT_FIELD);
+    TimestampType to = timestamp(filter, ActivityFilter.ACTIVITY_TO_UPDATED_POINT_FIELD);
+
+    //
+    Shape shape = new Shape(this, point, from, to);
+    ActivityQueryTemplate template = TEMPLATES.get(shape);
+    if (template == null) {
+      if (TEMPLATES.size() >= MAX_TEMPLATES) {
+        TEMPLATES.clear();
+      }
+      template = ActivityQueryTemplate.compile(kind, shape.owners, shape.posters, posterId != null, mentionerId != null,
+                                               mentions, likerId != null, commenterId != null, point, from, to);
+      TEMPLATES.putIfAbsent(shape, template);
+    }
+    return template.fill(this, value(point), value(from), value(to));
+  }
+
+  /**
+   * Splits this spec in specs of at most the given number of owners and posters. The union of their
+   * results is the result of this spec: the mention, poster, liker and commenter criteria are kept
+   * by the first chunk only.
+   * 
+   * @param size the maximum number of identities of a chunk
+   * @return the chunks, this spec when it is small enough
+   */
+  public List<ActivityQuerySpec> split(int size) {
+    int owners = kind == Kind.VIEW_OWNER ? 0 : ownerIds.size();
+    int posters = kind == Kind.VIEW_OWNER || (kind == Kind.UPDATED && mentionerId != null) ? posterIds.size() : 0;
+    int count = (Math.max(owners, posters) + size - 1) / size;
+    if (count <= 1) {
+      return Collections.singletonList(this);
+    }
+
+    //
+    List<ActivityQuerySpec> chunks = new ArrayList<ActivityQuerySpec>(count);
+    for (int i = 0; i < count; ++i) {
+      List<String> chunkOwners = ownerIds.subList(Math.min(i * size, ownerIds.size()), Math.min((i + 1) * size, ownerIds.size()));
+      List<String> chunkPosters = posterIds.subList(Math.min(i * size, posterIds.size()), Math.min((i + 1) * size, posterIds.size()));
+      if (i == 0) {
+        chunks.add(new ActivityQuerySpec(kind, chunkOwners, chunkPosters, posterId, mentionerId, mentions, likerId, commenterId, excludedIds));
+      } else {
+        //the comments of the posters stay the ones made on the stream of the mentioner
+        String mentioner = kind == Kind.UPDATED ? mentionerId : null;
+        chunks.add(new ActivityQuerySpec(kind, chunkOwners, chunkPosters, null, mentioner, false, null, null, excludedIds));
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * Adds the order of the given filter to the query builder.
+   * 
+   * @param builder the query builder
+   * @param filter the filter
+   */
+  public static void orderBy(QueryBuilder<ActivityEntity> builder, JCRFilterLiteral filter) {
+    Iterator<OrderByOption<PropertyLiteralExpression<?>>> it = filter.getOrders();
+    while (it.hasNext()) {
+      OrderByOption<PropertyLiteralExpression<?>> orderBy = it.next();
+      builder.orderBy(orderBy.getLiteral().getName(), orderBy.getDirection() == DIRECTION.ASC ? Ordering.ASC : Ordering.DESC);
+    }
+  }
+
+  /**
+   * Gets the comparator which sorts the entities as the order of the given filter, to merge the
+   * results of the chunks.
+   * 
+   * @param filter the filter
+   * @return the comparator
+   */
+  public static Comparator<ActivityEntity> comparator(JCRFilterLiteral filter) {
+    final List<OrderByOption<PropertyLiteralExpression<?>>> orders = new ArrayList<OrderByOption<PropertyLiteralExpression<?>>>();
+    Iterator<OrderByOption<PropertyLiteralExpression<?>>> it = filter.getOrders();
+    while (it.hasNext()) {
+      orders.add(it.next());
+    }
+    return new Comparator<ActivityEntity>() {
+      @Override
+      public int compare(ActivityEntity o1, ActivityEntity o2) {
+        for (OrderByOption<PropertyLiteralExpression<?>> orderBy : orders) {
+          String name = orderBy.getLiteral().getName();
+          int result;
+          if (ActivityEntity.lastUpdated.getName().equals(name)) {
+            result = compareTime(o1.getLastUpdated(), o2.getLastUpdated());
+          } else if (ActivityEntity.postedTime.getName().equals(name)) {
+            result = compareTime(o1.getPostedTime(), o2.getPostedTime());
+          } else {
+            continue;
+          }
+          if (result != 0) {
+            return orderBy.getDirection() == DIRECTION.ASC ? result : -result;
+          }
+        }
+        return 0;
+      }
+    };
+  }
+
+  private static int compareTime(Long time1, Long time2) {
+    long t1 = time1 != null ? time1 : 0;
+    long t2 = time2 != null ? time2 : 0;
+    return t1 < t2 ? -1 : (t1 > t2 ? 1 : 0);
+  }
+
+  private static TimestampType timestamp(JCRFilterLiteral filter, FilterOption<PropertyLiteralExpression<?>> field) {
+    FilterOption<PropertyLiteralExpression<?>> option = filter.get(field);
+    if (option == null) {
+      return null;
+    }
+    Object value = option.getValue();
+    if (value instanceof TimestampType) {
+      TimestampType type = (TimestampType) value;
+      return type == TimestampType.NEWER || type == TimestampType.OLDER ? type : null;
+    }
+    return null;
+  }
+
+  private static Long value(TimestampType type) {
+    return type != null ? type.get() : null;
+  }
+
+  private static List<String> ids(List<Identity> identities) {
+    if (identities.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> ids = new ArrayList<String>(identities.size());
+    for (Identity identity : identities) {
+      if (identity != null) {
+        ids.add(identity.getId());
+      }
+    }
+    return Collections.unmodifiableList(ids);
+  }
+
+  private static String id(Identity identity) {
+    return identity != null ? identity.getId() : null;
+  }
+
+  /**
+   * The shape of a spec: the key of its compiled template.
+   */
+  private static final class Shape {
+
+    private final Kind kind;
+    private final int owners;
+    private final int posters;
+    private final int criteria;
+    private final TimestampType point;
+    private final TimestampType from;
+    private final TimestampType to;
+
+    private Shape(ActivityQuerySpec spec, TimestampType point, TimestampType from, TimestampType to) {
+      this.kind = spec.kind;
+      this.owners = spec.ownerIds.size();
+      this.posters = spec.posterIds.size();
+      this.criteria = (spec.posterId != null ? 1 : 0) | (spec.mentionerId != null ? 2 : 0)
+                    | (spec.likerId != null ? 4 : 0) | (spec.commenterId != null ? 8 : 0) | (spec.mentions ? 16 : 0);
+      this.point = point;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Shape)) {
+        return false;
+      }
+      Shape that = (Shape) o;
+      return kind == that.kind && owners == that.owners && posters == that.posters && criteria == that.criteria
+          && point == that.point && from == that.from && to == that.to;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = kind.hashCode();
+      result = 31 * result + owners;
+      result = 31 * result + posters;
+      result = 31 * result + criteria;
+      result = 31 * result + (point != null ? point.ordinal() + 1 : 0);
+      result = 31 * result + (from != null ? from.ordinal() + 1 : 0);
+      result = 31 * result + (to != null ? to.ordinal() + 1 : 0);
+      return result;
+    }
+  }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.exoplatform.social.core.chromattic.entity.ActivityEntity;
+import org.exoplatform.social.core.chromattic.entity.HidableEntity;
+import org.exoplatform.social.core.storage.api.ActivityStorage.TimestampType;
+import org.exoplatform.social.core.storage.impl.ActivityQuerySpec.Kind;
+import org.exoplatform.social.core.storage.query.PropertyLiteralExpression;
+
+/**
+ * The where clause of an activity query shape: the literal parts of the clause between the slots of
+ * the identity ids and of the timestamps. The text is the one of the {@link org.exoplatform.social.core.storage.query.WhereExpression}
+ * built by the former {@link ActivityBuilderWhere}.
+ *
+ * @since 4.1.0
+ */
+final class ActivityQueryTemplate {
+
+  private static final int OWNER = 0;
+  private static final int POSTERS = 1;
+  private static final int POSTER = 2;
+  private static final int MENTIONER = 3;
+  private static final int LIKER = 4;
+  private static final int COMMENTER = 5;
+  private static final int POINT = 6;
+  private static final int FROM = 7;
+  private static final int TO = 8;
+
+  private final String[] texts;
+  private final int[] slots;
+  private final int[] indexes;
+  private final int length;
+
+  private ActivityQueryTemplate(String[] texts, int[] slots, int[] indexes) {
+    this.texts = texts;
+    this.slots = slots;
+    this.indexes = indexes;
+    int length = 0;
+    for (String text : texts) {
+      length += text.length();
+    }
+    this.length = length;
+  }
+
+  /**
+   * Fills the slots of this template.
+   * 
+   * @param spec the spec giving the identity ids
+   * @param point the updated point of the filter
+   * @param from the from updated point of the filter
+   * @param to the to updated point of the filter
+   * @return the where clause
+   */
+  String fill(ActivityQuerySpec spec, Long point, Long from, Long to) {
+    StringBuilder sb = new StringBuilder(length + slots.length * 40);
+    sb.append(texts[0]);
+    for (int i = 0; i < slots.length; ++i) {
+      switch (slots[i]) {
+        case OWNER:
+          appendEscaped(sb, spec.getOwnerIds().get(indexes[i]));
+          break;
+        case POSTERS:
+          appendEscaped(sb, spec.getPosterIds().get(indexes[i]));
+          break;
+        case POSTER:
+          appendEscaped(sb, spec.getPosterId());
+          break;
+        case MENTIONER:
+          appendEscaped(sb, spec.getMentionerId());
+          break;
+        case LIKER:
+          appendEscaped(sb, spec.getLikerId());
+          break;
+        case COMMENTER:
+          appendEscaped(sb, spec.getCommenterId());
+          break;
+        case POINT:
+          sb.append(point);
+          break;
+        case FROM:
+          sb.append(from);
+          break;
+        case TO:
+          sb.append(to);
+          break;
+      }
+      sb.append(texts[i + 1]);
+    }
+    return sb.toString();
+  }
+
+  private static void appendEscaped(StringBuilder sb, String value) {
+    if (value.indexOf('\'') < 0) {
+      sb.append(value);
+    } else {
+      sb.append(value.replace("'", "''"));
+    }
+  }
+
+  /**
+   * Compiles the template of the given shape.
+   */
+  static ActivityQueryTemplate compile(Kind kind, int owners, int posters, boolean poster, boolean mentioner, boolean mentions,
+                                       boolean liker, boolean commenter, TimestampType point, TimestampType from, TimestampType to) {
+    Builder where = new Builder();
+    switch (kind) {
+      case SPACE: {
+        if (owners > 0) {
+          where.startGroup();
+          ownerGroup(where, owners);
+          if (mentions) {
+            where.or().contains(ActivityEntity.mentioners, MENTIONER, 0);
+          }
+          where.endGroup();
+        }
+        where.and().equals(ActivityEntity.isComment, Boolean.FALSE);
+        notHidden(where.and());
+        timestamp(where, POINT, point);
+        break;
+      }
+      case UPDATED: {
+        boolean first = true;
+        where.startGroup();
+        for (int i = 0; i < owners; ++i) {
+          first = separate(where, first);
+          where.equals(ActivityEntity.identity, OWNER, i);
+        }
+        if (mentions) {
+          first = separate(where, first);
+          where.contains(ActivityEntity.mentioners, MENTIONER, 0);
+        }
+        //take care the case relationship add comment to owner
+        if (mentioner) {
+          for (int i = 0; i < posters; ++i) {
+            first = separate(where, first);
+            where.startGroup();
+            where.equals(ActivityEntity.identity, MENTIONER, 0);
+            where.and().equals(ActivityEntity.poster, POSTERS, i);
+            where.and().equals(ActivityEntity.isComment, Boolean.TRUE);
+            where.endGroup();
+          }
+        }
+        where.endGroup();
+        timestamp(where, POINT, point);
+        if (first == false) {
+          where.and();
+        }
+        where.equals(ActivityEntity.isComment, Boolean.FALSE);
+        break;
+      }
+      case VIEWED_RANGE: {
+        if (owners > 0) {
+          where.startGroup();
+          ownerGroup(where, owners);
+          if (mentions) {
+            where.or().contains(ActivityEntity.mentioners, MENTIONER, 0);
+          }
+          where.endGroup();
+        } else if (mentions) {
+          where.contains(ActivityEntity.mentioners, MENTIONER, 0);
+        }
+        timestamp(where, FROM, from);
+        timestamp(where, TO, to);
+        break;
+      }
+      case SIMPLE: {
+        if (owners > 0) {
+          where.startGroup();
+          ownerGroup(where, owners);
+          if (poster) {
+            where.or().equals(ActivityEntity.poster, POSTER, 0);
+          }
+          if (mentions) {
+            where.or().contains(ActivityEntity.mentioners, MENTIONER, 0);
+          }
+          if (commenter) {
+            where.or().contains(ActivityEntity.commenters, COMMENTER, 0);
+          }
+          if (liker) {
+            where.or().contains(ActivityEntity.likes, LIKER, 0);
+          }
+          where.endGroup();
+          where.and();
+        }
+        where.equals(ActivityEntity.isComment, Boolean.FALSE);
+        notHidden(where.and());
+        timestamp(where, POINT, point);
+        break;
+      }
+      case OWNER: {
+        if (owners > 0) {
+          where.startGroup();
+          ownerGroup(where, owners);
+          if (mentions) {
+            where.or().contains(ActivityEntity.mentioners, MENTIONER, 0);
+          }
+          if (poster) {
+            where.or().startGroup();
+            where.equals(ActivityEntity.poster, POSTER, 0);
+            where.and().equals(ActivityEntity.isComment, Boolean.TRUE);
+            where.endGroup();
+          }
+          where.endGroup();
+        }
+        break;
+      }
+      case VIEW_OWNER: {
+        if (posters > 0) {
+          where.startGroup();
+          for (int i = 0; i < posters; ++i) {
+            if (i > 0) {
+              where.or();
+            }
+            where.equals(ActivityEntity.poster, POSTERS, i);
+          }
+          where.endGroup();
+          where.and().equals(ActivityEntity.isComment, Boolean.FALSE);
+          notHidden(where.and());
+        }
+        break;
+      }
+    }
+    return where.build();
+  }
+
+  private static boolean separate(Builder where, boolean first) {
+    if (first == false) {
+      where.or();
+    }
+    return false;
+  }
+
+  private static void ownerGroup(Builder where, int owners) {
+    for (int i = 0; i < owners; ++i) {
+      if (i > 0) {
+        where.or();
+      }
+      where.equals(ActivityEntity.identity, OWNER, i);
+    }
+  }
+
+  private static void notHidden(Builder where) {
+    where.startGroup();
+    where.equals(HidableEntity.isHidden, Boolean.FALSE);
+    where.or().isNull(HidableEntity.isHidden);
+    where.endGroup();
+  }
+
+  private static void timestamp(Builder where, int slot, TimestampType type) {
+    if (type == TimestampType.NEWER) {
+      where.and().compare(ActivityEntity.lastUpdated, ">", slot);
+    } else if (type == TimestampType.OLDER) {
+      where.and().compare(ActivityEntity.lastUpdated, "<", slot);
+    }
+  }
+
+  /**
+   * Writes the literal parts and the slots of a template, with the syntax of the where expression.
+   */
+  private static class Builder {
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> texts = new ArrayList<String>();
+    private final List<Integer> slots = new ArrayList<Integer>();
+    private final List<Integer> indexes = new ArrayList<Integer>();
+
+    private Builder slot(int slot, int index) {
+      texts.add(text.toString());
+      text.setLength(0);
+      slots.add(slot);
+      indexes.add(index);
+      return this;
+    }
+
+    private Builder startGroup() {
+      text.append("(");
+      return this;
+    }
+
+    private Builder endGroup() {
+      text.append(") ");
+      return this;
+    }
+
+    private Builder or() {
+      text.append("OR ");
+      return this;
+    }
+
+    private Builder and() {
+      text.append("AND ");
+      return this;
+    }
+
+    private Builder isNull(PropertyLiteralExpression<?> property) {
+      text.append(property.getName()).append(" Is NULL ");
+      return this;
+    }
+
+    private Builder equals(PropertyLiteralExpression<Boolean> property, Boolean value) {
+      text.append(property.getName()).append(" = '").append(value).append("' ");
+      return this;
+    }
+
+    private Builder equals(PropertyLiteralExpression<String> property, int slot, int index) {
+      text.append(property.getName()).append(" = '");
+      slot(slot, index);
+      text.append("' ");
+      return this;
+    }
+
+    private Builder contains(PropertyLiteralExpression<String> property, int slot, int index) {
+      text.append("CONTAINS (").append(property.getName()).append(", '");
+      slot(slot, index);
+      text.append("') ");
+      return this;
+    }
+
+    private Builder compare(PropertyLiteralExpression<Long> property, String operator, int slot) {
+      text.append(property.getName()).append(' ').append(operator).append(' ');
+      slot(slot, 0);
+      text.append(' ');
+      return this;
+    }
+
+    private ActivityQueryTemplate build() {
+      texts.add(text.toString());
+      int[] slotArray = new int[slots.size()];
+      int[] indexArray = new int[indexes.size()];
+      for (int i = 0; i < slotArray.length; ++i) {
+        slotArray[i] = slots.get(i);
+        indexArray[i] = indexes.get(i);
+      }
+      return new ActivityQueryTemplate(texts.toArray(new String[texts.size()]), slotArray, indexArray);
+    }
+  }
+
+}
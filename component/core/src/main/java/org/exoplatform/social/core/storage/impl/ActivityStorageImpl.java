@@ -23,14 +23,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.jcr.InvalidItemStateException;
@@ -48,15 +51,21 @@ import org.chromattic.api.query.QueryBuilder;
 import org.chromattic.api.query.QueryResult;
 import org.chromattic.core.api.ChromatticSessionImpl;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.portal.application.PortalRequestContext;
+import org.exoplatform.portal.webui.util.Util;
+import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.ActivityProcessor;
-import org.exoplatform.social.core.activity.filter.ActivityCounter;
+import org.exoplatform.social.core.BaseActivityProcessorPlugin;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.activity.filter.ActivityIterator;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
+import org.exoplatform.social.core.activity.filter.CommentIndex;
 import org.exoplatform.social.core.activity.model.ActivityStream;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ActivityStreamImpl;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
@@ -74,6 +83,8 @@ import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
+import org.exoplatform.social.core.processor.MentionResolver;
+import org.exoplatform.social.core.processor.MentionScanner;
 import org.exoplatform.social.core.relationship.model.Relationship;
 import org.exoplatform.social.core.relationship.model.Relationship.Type;
 import org.exoplatform.social.core.service.LinkProvider;
@@ -84,9 +95,14 @@ import org.exoplatform.social.core.storage.api.ActivityStreamStorage;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
+import org.exoplatform.social.core.storage.cache.SocialStorageCacheService;
+import org.exoplatform.social.core.storage.cache.model.data.RenderedActivityData;
+import org.exoplatform.social.core.storage.cache.model.key.RenderedActivityKey;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
 import org.exoplatform.social.core.storage.query.WhereExpression;
 import org.exoplatform.social.core.storage.streams.StreamInvocationHelper;
+import org.exoplatform.social.core.storage.streams.UnreadCounterService;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -96,11 +112,18 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
   /** Logger */
   private static final Log LOG = ExoLogger.getLogger(ActivityStorageImpl.class);
-  private static final Pattern MENTION_PATTERN = Pattern.compile("@([^\\s]+)|@([^\\s]+)$");
   public static final Pattern USER_NAME_VALIDATOR_REGEX = Pattern.compile("^[\\p{L}][\\p{L}._\\-\\d]+$");
+
+  /** The streams whose view times the activity stream of a user sets together before polling its counters */
+  private static final ActivityFilterType[] USER_STREAM_TYPES = { ActivityFilterType.ACTIVITY_FEED,
+      ActivityFilterType.CONNECTIONS_ACTIVITIES, ActivityFilterType.USER_ACTIVITIES, ActivityFilterType.USER_SPACE_ACTIVITIES };
+
   private ActivityStorage activityStorage;
 
   private final SortedSet<ActivityProcessor> activityProcessors;
+  private ExoCache<RenderedActivityKey, RenderedActivityData> renderedActivityCache;
+  private MentionResolver mentionResolver;
+  private UnreadCounterService unreadCounterService;
 
   private final RelationshipStorage relationshipStorage;
   private final IdentityStorage identityStorage;
@@ -236,6 +259,9 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   private void fillActivityEntityFromActivity(ExoSocialActivity activity, ActivityEntity activityEntity) {
 
+    processActivityOnWrite(activity);
+
+    //
     activityEntity.setTitle(activity.getTitle());
     activityEntity.setTitleId(activity.getTitleId());
     activityEntity.setBody(activity.getBody());
@@ -447,17 +473,111 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     };
   }
 
+  /**
+   * Runs the read time processors on a loaded activity. Their output is cached for the version of the
+   * activity and the portal and locale of the request, so an unchanged activity is not processed again
+   * when it is reloaded. The identity storage removes the output when a mentioned profile changes.
+   */
   private void processActivity(ExoSocialActivity existingActivity) {
+
+    ExoCache<RenderedActivityKey, RenderedActivityData> cache = getRenderedActivityCache();
+    if (cache == null || existingActivity.getId() == null || existingActivity.getUpdated() == null) {
+      runProcessors(existingActivity, false);
+      return;
+    }
+
+    // the processors build links for the portal of the request and render for its locale
+    String portalOwner = LinkProvider.DEFAULT_PORTAL_OWNER;
+    String locale = null;
+    try {
+      PortalRequestContext context = Util.getPortalRequestContext();
+      portalOwner = context.getPortalOwner();
+      Locale requestLocale = context.getLocale();
+      locale = requestLocale != null ? requestLocale.toString() : null;
+    } catch (Exception e) {
+      // outside of a portal request, as the processors do
+    }
+
+    //
+    RenderedActivityKey key = new RenderedActivityKey(existingActivity.getId(), existingActivity.getUpdated().getTime(),
+                                                      portalOwner, locale);
+    int version = RenderedActivityData.version(existingActivity, getProcessorsVersion());
+    RenderedActivityData rendered = cache.get(key);
+    if (rendered != null && rendered.getVersion() == version) {
+      rendered.applyTo(existingActivity);
+      return;
+    }
+
+    //
+    runProcessors(existingActivity, false);
+    cache.put(key, new RenderedActivityData(version, existingActivity));
+  }
+
+  /**
+   * Runs the write time processors on an activity before it is stored.
+   */
+  private void processActivityOnWrite(ExoSocialActivity activity) {
+    runProcessors(activity, true);
+  }
+
+  private void runProcessors(ExoSocialActivity activity, boolean writeTime) {
     Iterator<ActivityProcessor> it = activityProcessors.iterator();
     while (it.hasNext()) {
+      ActivityProcessor processor = it.next();
+      if (isWriteTime(processor) != writeTime) {
+        continue;
+      }
       try {
-        it.next().processActivity(existingActivity);
+        processor.processActivity(activity);
       } catch (Exception e) {
         LOG.warn("activity processing failed " + e.getMessage());
       }
     }
   }
 
+  private static boolean isWriteTime(ActivityProcessor processor) {
+    return processor instanceof BaseActivityProcessorPlugin && ((BaseActivityProcessorPlugin) processor).isWriteTime();
+  }
+
+  /**
+   * Gets the version of the read time processors, so that the cached output of other processors is not reused.
+   */
+  private int getProcessorsVersion() {
+    int result = 0;
+    for (ActivityProcessor processor : activityProcessors) {
+      if (!isWriteTime(processor)) {
+        result = 31 * result + processor.getClass().getName().hashCode();
+        result = 31 * result + processor.getPriority();
+      }
+    }
+    return result;
+  }
+
+  private ExoCache<RenderedActivityKey, RenderedActivityData> getRenderedActivityCache() {
+    if (renderedActivityCache == null) {
+      SocialStorageCacheService cacheService = (SocialStorageCacheService)
+          PortalContainer.getInstance().getComponentInstanceOfType(SocialStorageCacheService.class);
+      if (cacheService != null) {
+        renderedActivityCache = cacheService.getRenderedActivityCache();
+      }
+    }
+    return renderedActivityCache;
+  }
+
+  private MentionResolver getMentionResolver() {
+    if (mentionResolver == null) {
+      mentionResolver = MentionResolver.getInstance();
+    }
+    return mentionResolver;
+  }
+
+  private UnreadCounterService getUnreadCounterService() {
+    if (unreadCounterService == null) {
+      unreadCounterService = (UnreadCounterService) PortalContainer.getInstance().getComponentInstanceOfType(UnreadCounterService.class);
+    }
+    return unreadCounterService;
+  }
+
   private ActivityStorage getStorage() {
     if (activityStorage == null) {
       activityStorage = (ActivityStorage) PortalContainer.getInstance().getComponentInstanceOfType(ActivityStorage.class);
@@ -499,6 +619,49 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivities(List<String> activityIds) throws ActivityStorageException {
+
+    //
+    List<ActivityEntity> entities = new ArrayList<ActivityEntity>(activityIds.size());
+    for (String activityId : activityIds) {
+      ActivityEntity activityEntity = activityId != null ? getSession().findById(ActivityEntity.class, activityId) : null;
+      if (activityEntity != null) {
+        entities.add(activityEntity);
+      }
+    }
+
+    //read the nodes in path order, activities posted close in time are siblings in the same buckets
+    Collections.sort(entities, new Comparator<ActivityEntity>() {
+      public int compare(ActivityEntity e1, ActivityEntity e2) {
+        return e1.getPath().compareTo(e2.getPath());
+      }
+    });
+
+    //
+    Map<String, ExoSocialActivity> loaded = new HashMap<String, ExoSocialActivity>();
+    for (ActivityEntity activityEntity : entities) {
+      ExoSocialActivity activity = new ExoSocialActivityImpl();
+      activity.setId(activityEntity.getId());
+      activity = fillActivityFromEntity(activityEntity, activity);
+
+      if (activity != null) {
+        processActivity(activity);
+        loaded.put(activityEntity.getId(), activity);
+      }
+    }
+
+    //
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>(activityIds.size());
+    for (String activityId : activityIds) {
+      activities.add(loaded.get(activityId));
+    }
+    return activities;
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -573,6 +736,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       long oldUpdated = getLastUpdatedTime(activityEntity);
       activityEntity.getComments().add(commentEntity);
       activityEntity.setLastUpdated(currentMillis);
+      processActivityOnWrite(comment);
       commentEntity.setTitle(comment.getTitle());
       commentEntity.setType(comment.getType());
       commentEntity.setTitleId(comment.getTitleId());
@@ -614,7 +778,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       if (mustInjectStreams) {
         Identity identity = identityStorage.findIdentityById(comment.getUserId());
         StreamInvocationHelper.updateCommenter(identity, activityEntity, commenters.toArray(new String[0]), oldUpdated);
-        StreamInvocationHelper.update(activityEntity, mentioners.toArray(new String[0]), oldUpdated);
+        StreamInvocationHelper.update(identity, activityEntity, mentioners.toArray(new String[0]), oldUpdated);
       }
     }  
     catch (NodeNotFoundException e) {
@@ -930,7 +1094,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(baseActivity.getPostedTime()));
     
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(ownerIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(ownerIdentity), filter);
 
   }
 
@@ -967,7 +1131,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(baseActivity.getUpdated().getTime()));
     
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(ownerIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(ownerIdentity), filter);
   }
 
   /**
@@ -1047,7 +1211,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter);
 
   }
   
@@ -1063,7 +1227,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery (ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(ownerIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(ownerIdentity), filter);
                                       
   }
 
@@ -1078,7 +1242,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(connectionList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(connectionList), filter);
   }
 
   @Override
@@ -1096,7 +1260,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceList), filter);
 
   }
   
@@ -1117,7 +1281,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter);
 
   }
 
@@ -1158,7 +1322,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter);
   }
 
   /**
@@ -1250,7 +1414,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(connectionList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(connectionList), filter);
     
   }
 
@@ -1287,7 +1451,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(connectionList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(connectionList), filter);
     
   }
 
@@ -1372,7 +1536,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(spaceList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(spaceList), filter);
     
   }
 
@@ -1415,7 +1579,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(spaceList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(spaceList), filter);
   }
 
   /**
@@ -1445,74 +1609,74 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public List<ExoSocialActivity> getComments(ExoSocialActivity existingActivity, int offset, int limit) {
 
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
-    String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
-    
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
+
     //
-    limit = (limit > commentIds.length ? commentIds.length : limit);
-    
-    for (int i = offset ; i < commentIds.length ; i++) {
-      if (isHidden(commentIds[i]) == false) {
-        ExoSocialActivity comment = getActivity(commentIds[i]);
-        if (comment == null) {
-          continue;
-        }
-        activities.add(comment);
-        //
-        if (activities.size() == limit) {
-          break;
-        }
-      }
-      
-      
-    }
-    return activities;
+    return loadComments(index.getVisibleIds(offset, index.size(), limit));
   }
-  
+
   /**
-   * Checks specified comment is hidden or not
-   * @param commentId
-   * @return TRUE hidden comment/ FALSE otherwise
+   * {@inheritDoc}
    */
-  private boolean isHidden(String commentId) {
+  public CommentIndex getCommentIndex(String activityId) {
 
     try {
-      ActivityEntity activityEntity = _findById(ActivityEntity.class, commentId);
-      if (activityEntity != null) {
-        HidableEntity hidable = _getMixin(activityEntity, HidableEntity.class, false);
-        if (hidable != null) {
-          return hidable.getHidden();
-        }
-      } else {
-        return true;
+
+      //
+      ActivityEntity activityEntity = _findById(ActivityEntity.class, activityId);
+      List<ActivityEntity> commentEntities = activityEntity.getComments();
+
+      //
+      int size = commentEntities.size();
+      String[] ids = new String[size];
+      long[] updated = new long[size];
+      boolean[] hidden = new boolean[size];
+      int i = 0;
+      for (ActivityEntity commentEntity : commentEntities) {
+        ids[i] = commentEntity.getId();
+        updated[i] = getLastUpdatedTime(commentEntity);
+        HidableEntity hidable = _getMixin(commentEntity, HidableEntity.class, false);
+        hidden[i] = hidable != null && Boolean.TRUE.equals(hidable.getHidden());
+        ++i;
       }
-      
-    } catch (NodeNotFoundException e) {
-      return true;
+
+      //
+      return new CommentIndex(ids, updated, hidden);
+
+    }
+    catch (NodeNotFoundException e) {
+      return CommentIndex.EMPTY;
     }
 
-    return false;
   }
 
   /**
-   * {@inheritDoc}
+   * Loads the given comments in one pass, skipping the ones which don't exist anymore.
+   *
+   * @param commentIds the comment ids
+   * @return the comments
    */
-  public int getNumberOfComments(ExoSocialActivity existingActivity) {
-    //return getStorage().getActivity(existingActivity.getId()).getReplyToId().length;
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+  private List<ExoSocialActivity> loadComments(List<String> commentIds) {
 
-    //
-    List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
+    List<ExoSocialActivity> comments = new ArrayList<ExoSocialActivity>(commentIds.size());
+    if (commentIds.isEmpty()) {
+      return comments;
+    }
 
     //
-    for(String commentId : commentIds) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (comment != null && !comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
+    for (ExoSocialActivity comment : getStorage().getActivities(commentIds)) {
+      if (comment != null) {
+        comments.add(comment);
+      }
     }
+    return comments;
+  }
 
-    //
-    return activities.size();
+  /**
+   * {@inheritDoc}
+   */
+  public int getNumberOfComments(ExoSocialActivity existingActivity) {
+    return getStorage().getCommentIndex(existingActivity.getId()).getVisibleCount();
   }
 
   /**
@@ -1520,27 +1684,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public int getNumberOfNewerComments(ExoSocialActivity existingActivity, ExoSocialActivity baseComment) {
 
-    //List<String> commentId = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-    //return commentId.indexOf(baseComment.getId());
-
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
-
-    //
-    List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-    int baseIndex = commentIds.indexOf(baseComment.getId());
-    if (baseIndex > commentIds.size()) {
-      baseIndex = commentIds.size();
-    }
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
 
     //
-    for(String commentId : commentIds.subList(0, baseIndex)) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
-    }
-
-    //
-    return activities.size();
+    return index.countVisible(0, index.indexOf(baseComment.getId()));
   }
 
   /**
@@ -1549,24 +1696,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public List<ExoSocialActivity> getNewerComments(ExoSocialActivity existingActivity, ExoSocialActivity baseComment,
                                            int limit) {
 
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
-
-    //
-    List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-    int baseIndex = commentIds.indexOf(baseComment.getId());
-    if (baseIndex > limit) {
-      baseIndex = limit;
-    }
-
-    //
-    for(String commentId : commentIds.subList(0, baseIndex)) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
-    }
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
 
     //
-    return activities;
+    return loadComments(index.getVisibleIds(0, index.indexOf(baseComment.getId()), limit));
 
   }
 
@@ -1575,26 +1708,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public int getNumberOfOlderComments(ExoSocialActivity existingActivity, ExoSocialActivity baseComment) {
 
-    /*List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-    int index = commentIds.indexOf(baseComment.getId());
-
-    return (commentIds.size() - index - 1);*/
-    
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
 
     //
-    List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-    int baseIndex = commentIds.indexOf(baseComment.getId());
-
-    //
-    for(String commentId : commentIds.subList(baseIndex + 1, commentIds.size())) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
-    }
-
-    //
-    return activities.size();
+    return index.countVisible(index.indexOf(baseComment.getId()) + 1, index.size());
 
   }
 
@@ -1604,21 +1721,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public List<ExoSocialActivity> getOlderComments(ExoSocialActivity existingActivity, ExoSocialActivity baseComment,
                                            int limit) {
 
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
 
     //
-    List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-    int baseIndex = commentIds.indexOf(baseComment.getId());
-
-    //
-    for(String commentId : commentIds.subList(baseIndex + 1, limit)) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
-    }
-
-    //
-    return activities;
+    return loadComments(index.getVisibleIds(index.indexOf(baseComment.getId()) + 1, index.size(), limit));
 
   }
 
@@ -1674,30 +1780,97 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public List<ExoSocialActivity> getActivitiesOfIdentities(ActivityBuilderWhere where, ActivityFilter filter,
                                                            long offset, long limit) throws ActivityStorageException {
-
-    QueryResult<ActivityEntity> results = getActivitiesOfIdentitiesQuery(where, filter).objects(offset, limit);
-
+    return findActivitiesOfIdentities(where, filter, offset, limit);
+  }
+  
+  /**
+   * Gets the activities matched by the where expression. When the expression is split in several
+   * queries, their results are merged in the order of the filter.
+   */
+  private List<ExoSocialActivity> findActivitiesOfIdentities(ActivityBuilderWhere where, JCRFilterLiteral filter,
+                                                             long offset, long limit) throws ActivityStorageException {
+    ActivityQuerySpec spec = where.spec();
+    List<Query<ActivityEntity>> queries = getActivitiesOfIdentitiesQueries(spec, filter);
     List<ExoSocialActivity> activities =  new ArrayList<ExoSocialActivity>();
-
-    while(results.hasNext()) {
-      activities.add(getStorage().getActivity(results.next().getId()));
+    
+    //
+    if (queries.size() == 1 && spec.getExcludedIds().isEmpty()) {
+      QueryResult<ActivityEntity> results = queries.get(0).objects(offset, limit);
+      while(results.hasNext()) {
+        activities.add(getStorage().getActivity(results.next().getId()));
+      }
+      return activities;
+    }
+    
+    //
+    List<ActivityEntity> entities = findActivityEntities(spec, queries, filter, limit > 0 ? offset + limit : -1, true);
+    for (int i = (int) offset; i < entities.size() && (limit <= 0 || activities.size() < limit); ++i) {
+      activities.add(getStorage().getActivity(entities.get(i).getId()));
     }
-
     return activities;
   }
   
   /**
-   * {@inheritDoc}
+   * Counts the activities matched by the where expression.
    */
-  private Query<ActivityEntity> getActivitiesOfIdentitiesQuery(ActivityBuilderWhere whereBuilder,
-                                                               JCRFilterLiteral filter) throws ActivityStorageException {
-
-    QueryBuilder<ActivityEntity> builder = getSession().createQueryBuilder(ActivityEntity.class);
-
-    builder.where(whereBuilder.build(filter));
-    whereBuilder.orderBy(builder, filter);
-
-    return builder.get();
+  private int countActivitiesOfIdentities(ActivityBuilderWhere where, JCRFilterLiteral filter) throws ActivityStorageException {
+    ActivityQuerySpec spec = where.spec();
+    List<Query<ActivityEntity>> queries = getActivitiesOfIdentitiesQueries(spec, filter);
+    if (queries.size() == 1 && spec.getExcludedIds().isEmpty()) {
+      return queries.get(0).objects().size();
+    }
+    return findActivityEntities(spec, queries, filter, -1, false).size();
+  }
+  
+  /**
+   * Reads the entities of the queries of a spec, without its excluded activities. An entity matched
+   * by several queries is returned once.
+   * 
+   * @param spec the spec
+   * @param queries the queries of the spec
+   * @param filter the filter giving the order
+   * @param max the number of entities to read from each query, -1 for all
+   * @param sorted whether the merged entities must be sorted in the order of the filter
+   * @return the entities
+   */
+  private List<ActivityEntity> findActivityEntities(ActivityQuerySpec spec, List<Query<ActivityEntity>> queries,
+                                                    JCRFilterLiteral filter, long max, boolean sorted) {
+    Set<String> excludedIds = spec.getExcludedIds();
+    Map<String, ActivityEntity> found = new LinkedHashMap<String, ActivityEntity>();
+    for (Query<ActivityEntity> query : queries) {
+      QueryResult<ActivityEntity> results = max < 0 ? query.objects() : query.objects(0L, max + excludedIds.size());
+      while (results.hasNext()) {
+        ActivityEntity entity = results.next();
+        if (!excludedIds.contains(entity.getId()) && !found.containsKey(entity.getId())) {
+          found.put(entity.getId(), entity);
+        }
+      }
+    }
+    
+    //
+    List<ActivityEntity> entities = new ArrayList<ActivityEntity>(found.values());
+    if (sorted && queries.size() > 1) {
+      Collections.sort(entities, ActivityQuerySpec.comparator(filter));
+    }
+    return entities;
+  }
+  
+  /**
+   * Creates the queries of a spec, one per chunk of its identities, so that the size of a query does
+   * not depend on the number of connections or spaces.
+   */
+  private List<Query<ActivityEntity>> getActivitiesOfIdentitiesQueries(ActivityQuerySpec spec,
+                                                                       JCRFilterLiteral filter) throws ActivityStorageException {
+    List<ActivityQuerySpec> chunks = spec.split(ActivityQuerySpec.CHUNK_SIZE);
+    List<Query<ActivityEntity>> queries = new ArrayList<Query<ActivityEntity>>(chunks.size());
+    for (ActivityQuerySpec chunk : chunks) {
+      QueryBuilder<ActivityEntity> builder = getSession().createQueryBuilder(ActivityEntity.class);
+      builder.where(chunk.compile(filter));
+      ActivityQuerySpec.orderBy(builder, filter);
+      queries.add(builder.get());
+    }
+    filter.destroy();
+    return queries;
   }
   
   
@@ -1722,16 +1895,16 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       return ArrayUtils.EMPTY_STRING_ARRAY;
     }
     
-    Matcher matcher = MENTION_PATTERN.matcher(title);
-    while (matcher.find()) {
-      String remoteId = matcher.group().substring(1);
-      if (!USER_NAME_VALIDATOR_REGEX.matcher(remoteId).matches()) {
+    MentionScanner scanner = new MentionScanner(title);
+    while (scanner.find()) {
+      String remoteId = scanner.getMention();
+      if (!MentionScanner.isValidUserName(remoteId)) {
         continue;
       }
-      Identity identity = identityStorage.findIdentity(OrganizationIdentityProvider.NAME, remoteId);
+      String identityId = getMentionResolver().getIdentityId(remoteId);
       // if not the right mention then ignore
-      if (identity != null) { 
-        String mentionStr = identity.getId() + MENTION_CHAR; // identityId@
+      if (identityId != null) { 
+        String mentionStr = identityId + MENTION_CHAR; // identityId@
         mentionerIds = isAdded ? add(mentionerIds, mentionStr, addedOrRemovedIds) : remove(mentionerIds, mentionStr, addedOrRemovedIds);
       }
     }
@@ -1805,7 +1978,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     ActivityFilter filter = ActivityFilter.space();
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceIdentity), filter);
   }
 
   @Override
@@ -1888,7 +2061,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceIdentity), filter);
   }
 
   @Override
@@ -1924,7 +2097,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(baseActivity.getUpdated().getTime()));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceIdentity), filter);
   }
 
   @Override
@@ -1939,44 +2112,37 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceIdentity), filter);
   }
   
   @Override
   public int getNumberOfMultiUpdated(Identity owner, Map<String, Long> sinceTimes) {
-    //
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
-    List<String> activityIds = new ArrayList<String>();
-    
-    if ( sinceTimes.get("CONNECTIONS") != null ) {
-      List<ExoSocialActivity> connectionsActivities =  getNewerActivitiesOfConnections(owner, sinceTimes.get("CONNECTIONS"), 100);
-      activities.addAll(connectionsActivities);
-      for ( ExoSocialActivity connectionsActivity : connectionsActivities ) {
-        activityIds.add(connectionsActivity.getId());
-      }
-    }
+    //only the ids are read from the streams, an activity found in several streams is counted once
+    Set<String> activityIds = new HashSet<String>();
+    addUpdatedIds(activityIds, ActivityRefType.CONNECTION, owner, sinceTimes.get("CONNECTIONS"));
+    addUpdatedIds(activityIds, ActivityRefType.MY_SPACES, owner, sinceTimes.get("MY_SPACE"));
+    addUpdatedIds(activityIds, ActivityRefType.MY_ACTIVITIES, owner, sinceTimes.get("MY_ACTIVITIES"));
     
-    if ( sinceTimes.get("MY_SPACE") != null ) {
-      List<ExoSocialActivity> mySpaceActivities = getNewerUserSpacesActivities(owner, sinceTimes.get("MY_SPACE"), 100);  
-      for ( ExoSocialActivity mySpaceActivity : mySpaceActivities ) {
-        if ( !activityIds.contains(mySpaceActivity.getId()) ) {
-          activities.add(mySpaceActivity);
-          activityIds.add(mySpaceActivity.getId());
-        }
-      }
+    return activityIds.size();
+  }
+  
+  @Override
+  public List<ExoSocialActivity> getStreamActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit) {
+    return streamStorage.getActivities(type, owner, cursor, limit);
+  }
+  
+  @Override
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners) {
+    return streamStorage.getLastUpdates(owners);
+  }
+  
+  private void addUpdatedIds(Set<String> activityIds, ActivityRefType type, Identity owner, Long sinceTime) {
+    if (sinceTime == null) {
+      return;
     }
-    
-    if ( sinceTimes.get("MY_ACTIVITIES") != null ) {
-      List<ExoSocialActivity> myActivities = getNewerUserActivities(owner, sinceTimes.get("MY_ACTIVITIES"), 100);
-      for ( ExoSocialActivity myActivity : myActivities ) {
-        if ( !activityIds.contains(myActivity.getId()) ) {
-          activities.add(myActivity);
-          activityIds.add(myActivity.getId());
-        }
-      }
+    for (ActivityUpdateRef ref : streamStorage.getNewerUpdates(type, owner, sinceTime, 100)) {
+      activityIds.add(ref.getActivityId());
     }
-    
-    return activities.size();
   }
   
   //
@@ -1997,8 +2163,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     JCRFilterLiteral filter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
     
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(ActivityBuilderWhere
-      .updated().owners(identities), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(ActivityBuilderWhere
+      .updated().owners(identities), filter, 0, limit);
   }
   
   //
@@ -2009,8 +2175,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(
-      ActivityBuilderWhere.updated().mentioner(owner).owners(owner), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(
+      ActivityBuilderWhere.updated().mentioner(owner).owners(owner), filter, 0, limit);
   }
   
   @Override
@@ -2025,8 +2191,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     JCRFilterLiteral filter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(
-      ActivityBuilderWhere.updated().owners(spaceList), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(
+      ActivityBuilderWhere.updated().owners(spaceList), filter, 0, limit);
   }
   
   @Override
@@ -2042,8 +2208,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(
-      ActivityBuilderWhere.updated().owners(connectionList), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(
+      ActivityBuilderWhere.updated().owners(connectionList), filter, 0, limit);
   }
   
   //
@@ -2054,18 +2220,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(sinceTime));
 
     //
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(ActivityBuilderWhere
-      .updated().owners(owner), filter).objects((long)0, (long)limit));
-  }
-  
-  private List<ExoSocialActivity> getActivitiesFromQueryResults(QueryResult<ActivityEntity> results) {
-    List<ExoSocialActivity> activities =  new LinkedList<ExoSocialActivity>();
-
-    while(results.hasNext()) {
-      activities.add(getStorage().getActivity(results.next().getId()));
-    }
-
-    return activities;
+    return findActivitiesOfIdentities(ActivityBuilderWhere
+      .updated().owners(owner), filter, 0, limit);
   }
   //
   
@@ -2133,55 +2289,61 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     ActivityFilter filter = new ActivityFilter(){};
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(posterIdentity).poster(posterIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(posterIdentity).poster(posterIdentity), filter);
   }
   
   @Override
   public int getNumberOfUpdatedOnActivityFeed(Identity owner, ActivityUpdateFilter filter) {
     
     //
-    List<Identity> identities = new ArrayList<Identity>();
+    long[] viewTimes = filter.viewTimes(USER_STREAM_TYPES);
+    Integer gotNumber = getUnreadCount(owner, filter.activityFeedType(), viewTimes);
     
-    List<Identity> relationships = relationshipStorage.getConnections(owner);
+    if (gotNumber == null) {
+      //
+      List<Identity> identities = new ArrayList<Identity>();
+      
+      List<Identity> relationships = relationshipStorage.getConnections(owner);
 
-    identities.addAll(relationships);
-    identities.addAll(getSpacesId(owner));
-    //identities.add(owner);
-    
-    if ( identities.size() == 0 ) {
-      return 0;
-    }
-    //
-    String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
-    filter.addExcludedActivities(excludedSpaceActivities);
-    
-    //
-    String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
-    filter.addExcludedActivities(excludedUserSpaceActivities);
-    
-    //
-    String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
-    filter.addExcludedActivities(excludedConnections);
-    
-    //
-    String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
-    filter.addExcludedActivities(excludedUserActivities);
-    
-    //
-    long compareTime = filter.activityFeedType().toSinceTime();
-    
-    //
-    JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
-    jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
+      identities.addAll(relationships);
+      identities.addAll(getSpacesId(owner));
+      //identities.add(owner);
+      
+      if ( identities.size() == 0 ) {
+        return 0;
+      }
+      //
+      String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
+      filter.addExcludedActivities(excludedSpaceActivities);
+      
+      //
+      String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
+      filter.addExcludedActivities(excludedUserSpaceActivities);
+      
+      //
+      String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
+      filter.addExcludedActivities(excludedConnections);
+      
+      //
+      String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
+      filter.addExcludedActivities(excludedUserActivities);
+      
+      //
+      long compareTime = filter.activityFeedType().toSinceTime();
+      
+      //
+      JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
+      jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
 
-    //
-    Query<ActivityEntity> query = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(identities).mentioner(owner)
-                                                                 .posters(relationships).excludedActivities(filter.excludedActivities()), jcrfilter);
-    
-    //calculate here
-    int gotNumber = counter(query);
+      //
+      ActivityBuilderWhere where = ActivityBuilderWhere.updated().owners(identities).mentioner(owner)
+          .posters(relationships).excludedActivities(filter.excludedActivities());
+      
+      //calculate here
+      gotNumber = counter(owner, filter.activityFeedType(), viewTimes, filter.excludedActivities(), where, jcrfilter);
+    }
     
-    if (filter.isRefreshTab() && gotNumber == filter.activityFeedType().lastNumberOfUpdated()) {
+    if (filter.isRefreshTab() && gotNumber.intValue() == filter.activityFeedType().lastNumberOfUpdated()) {
       gotNumber = 0;
     }
     
@@ -2189,62 +2351,93 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   }
   
   /**
-   * Counter of activies what is updated
-   * @param query
+   * Gets the number of updated activities of a stream from its unread counter.
+   * 
+   * @param owner the stream owner
+   * @param type the stream type
+   * @param viewTimes the current view times of the streams the counter is computed from
+   * @return the number of updated activities, null when it must be computed
+   */
+  private Integer getUnreadCount(Identity owner, ActivityFilterType type, long[] viewTimes) {
+    UnreadCounterService service = getUnreadCounterService();
+    return service != null ? service.getCount(owner.getId(), type, viewTimes) : null;
+  }
+  
+  /**
+   * Counter of activies what is updated. The comments are counted as their activity, and the ids
+   * are kept as the unread counter of the stream.
+   * @param owner the stream owner
+   * @param type the stream type
+   * @param viewTimes the view times of the streams
+   * @param excludedIds the ids of the activities viewed in the other streams, excluded by the where expression
+   * @param where the where expression of the updated activities
+   * @param filter the filter of the updated activities
    * @return
    */
-  private int counter(Query<ActivityEntity> query) {
+  private int counter(Identity owner, ActivityFilterType type, long[] viewTimes, String[] excludedIds,
+                      ActivityBuilderWhere where, JCRFilterLiteral filter) {
     
-    QueryResult<ActivityEntity> results = query.objects();
+    ActivityQuerySpec spec = where.spec();
+    List<ActivityEntity> entities = findActivityEntities(spec, getActivitiesOfIdentitiesQueries(spec, filter), filter, -1, false);
     
-    ActivityEntity entity = null;
-    ActivityCounter counter = new ActivityCounter();
+    Set<String> ids = new LinkedHashSet<String>();
     
     //
-    while (results.hasNext()) {
-      entity = results.next();
+    for (ActivityEntity entity : entities) {
 
       //
       if (entity.isComment()) {
         entity = entity.getParentActivity();
       }
 
-      counter.add(getStorage().getActivity(entity.getId()));
+      ids.add(entity.getId());
 
     }
     
-    return counter.size();
+    //
+    UnreadCounterService service = getUnreadCounterService();
+    if (service != null) {
+      service.setUpdated(owner.getId(), type, viewTimes, ids, excludedIds);
+    }
+    
+    return ids.size();
   }
   
   @Override
   public int getNumberOfUpdatedOnUserActivities(Identity owner, ActivityUpdateFilter filter) {
     
-    List<Identity> relationships = relationshipStorage.getConnections(owner);
     //
-    String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
-    filter.addExcludedActivities(excludedSpaceActivities);
+    long[] viewTimes = filter.viewTimes(USER_STREAM_TYPES);
+    Integer gotNumber = getUnreadCount(owner, filter.userActivitiesType(), viewTimes);
     
-    //
-    String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
-    filter.addExcludedActivities(excludedUserSpaceActivities);
-    
-    //
-    String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
-    filter.addExcludedActivities(excludedConnections);
-    
-    //
-    //long compareTime = filter.isRefreshTab() ? filter.userActivitiesType().fromSinceTime() : filter.userActivitiesType().toSinceTime();
-    long compareTime = filter.userActivitiesType().toSinceTime();
-    //
-    JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
-    jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
-    
-    //
-    Query<ActivityEntity> query = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().mentioner(owner)
-                                                                 .posters(relationships).excludedActivities(filter.excludedActivities()), jcrfilter);
-    int gotNumber = counter(query);
+    if (gotNumber == null) {
+      List<Identity> relationships = relationshipStorage.getConnections(owner);
+      //
+      String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
+      filter.addExcludedActivities(excludedSpaceActivities);
+      
+      //
+      String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
+      filter.addExcludedActivities(excludedUserSpaceActivities);
+      
+      //
+      String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
+      filter.addExcludedActivities(excludedConnections);
+      
+      //
+      //long compareTime = filter.isRefreshTab() ? filter.userActivitiesType().fromSinceTime() : filter.userActivitiesType().toSinceTime();
+      long compareTime = filter.userActivitiesType().toSinceTime();
+      //
+      JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
+      jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
+      
+      //
+      ActivityBuilderWhere where = ActivityBuilderWhere.updated().mentioner(owner)
+          .posters(relationships).excludedActivities(filter.excludedActivities());
+      gotNumber = counter(owner, filter.userActivitiesType(), viewTimes, filter.excludedActivities(), where, jcrfilter);
+    }
     
-    if (filter.isRefreshTab() && gotNumber == filter.userActivitiesType().lastNumberOfUpdated()) {
+    if (filter.isRefreshTab() && gotNumber.intValue() == filter.userActivitiesType().lastNumberOfUpdated()) {
       gotNumber = 0;
     }
     
@@ -2253,39 +2446,47 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   
   @Override
   public int getNumberOfUpdatedOnUserSpacesActivities(Identity owner, ActivityUpdateFilter filter) {
-    //
-    List<Identity> spaceList = getSpacesId(owner);
-    
-    if (spaceList.size() == 0) {
-      return 0;
-    }
-    
-    //
-    String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
-    filter.addExcludedActivities(excludedSpaceActivities);
-    
-    //
-    String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
-    filter.addExcludedActivities(excludedUserActivities);
-    
-    //
-    String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
-    filter.addExcludedActivities(excludedConnections);
-    
     
     //
-    //long compareTime = filter.isRefreshTab() ? filter.userSpaceActivitiesType().fromSinceTime() : filter.userSpaceActivitiesType().toSinceTime();
-    long compareTime = filter.userSpaceActivitiesType().toSinceTime();
+    long[] viewTimes = filter.viewTimes(USER_STREAM_TYPES);
+    Integer gotNumber = getUnreadCount(owner, filter.userSpaceActivitiesType(), viewTimes);
     
-    //
-    JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
-    jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
+    if (gotNumber == null) {
+      //
+      List<Identity> spaceList = getSpacesId(owner);
+      
+      if (spaceList.size() == 0) {
+        return 0;
+      }
+      
+      //
+      String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
+      filter.addExcludedActivities(excludedSpaceActivities);
+      
+      //
+      String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
+      filter.addExcludedActivities(excludedUserActivities);
+      
+      //
+      String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
+      filter.addExcludedActivities(excludedConnections);
+      
+      
+      //
+      //long compareTime = filter.isRefreshTab() ? filter.userSpaceActivitiesType().fromSinceTime() : filter.userSpaceActivitiesType().toSinceTime();
+      long compareTime = filter.userSpaceActivitiesType().toSinceTime();
+      
+      //
+      JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
+      jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
 
-    //
-    int gotNumber = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(spaceList)
-                                          .excludedActivities(filter.excludedActivities()), jcrfilter).objects().size();
+      //
+      ActivityBuilderWhere where = ActivityBuilderWhere.updated().owners(spaceList)
+          .excludedActivities(filter.excludedActivities());
+      gotNumber = counter(owner, filter.userSpaceActivitiesType(), viewTimes, filter.excludedActivities(), where, jcrfilter);
+    }
     
-    if (filter.isRefreshTab() && gotNumber == filter.userSpaceActivitiesType().lastNumberOfUpdated()) {
+    if (filter.isRefreshTab() && gotNumber.intValue() == filter.userSpaceActivitiesType().lastNumberOfUpdated()) {
       gotNumber = 0;
     }
     
@@ -2294,40 +2495,47 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   
   @Override
   public int getNumberOfUpdatedOnActivitiesOfConnections(Identity owner, ActivityUpdateFilter filter) {
-    List<Identity> relationships = relationshipStorage.getConnections(owner);
-
-    if (relationships.size() == 0) {
-      return 0;
-    }
-    
-    //
-    String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
-    filter.addExcludedActivities(excludedSpaceActivities);
     
     //
-    String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
-    filter.addExcludedActivities(excludedUserActivities);
+    long[] viewTimes = filter.viewTimes(USER_STREAM_TYPES);
+    Integer gotNumber = getUnreadCount(owner, filter.connectionType(), viewTimes);
     
-    //
-    String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
-    filter.addExcludedActivities(excludedUserSpaceActivities);
-    
-    
-    //
-    long compareTime = filter.connectionType().toSinceTime();
-    
-    //
-    JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
-    jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
+    if (gotNumber == null) {
+      List<Identity> relationships = relationshipStorage.getConnections(owner);
 
-    //
-    Query<ActivityEntity> query = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(relationships).posters(relationships)
-                                                                 .excludedActivities(filter.excludedActivities()), jcrfilter);
-    
-    //calculate here
-    int gotNumber = counter(query);
+      if (relationships.size() == 0) {
+        return 0;
+      }
+      
+      //
+      String[] excludedSpaceActivities = getNumberOfViewedOfActivities(owner, filter.spaceActivitiesType());
+      filter.addExcludedActivities(excludedSpaceActivities);
+      
+      //
+      String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
+      filter.addExcludedActivities(excludedUserActivities);
+      
+      //
+      String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
+      filter.addExcludedActivities(excludedUserSpaceActivities);
+      
+      
+      //
+      long compareTime = filter.connectionType().toSinceTime();
+      
+      //
+      JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
+      jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
+
+      //
+      ActivityBuilderWhere where = ActivityBuilderWhere.updated().owners(relationships).posters(relationships)
+          .excludedActivities(filter.excludedActivities());
+      
+      //calculate here
+      gotNumber = counter(owner, filter.connectionType(), viewTimes, filter.excludedActivities(), where, jcrfilter);
+    }
     
-    if (filter.isRefreshTab() && gotNumber == filter.connectionType().lastNumberOfUpdated()) {
+    if (filter.isRefreshTab() && gotNumber.intValue() == filter.connectionType().lastNumberOfUpdated()) {
       gotNumber = 0;
     }
     
@@ -2339,30 +2547,37 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public int getNumberOfUpdatedOnSpaceActivities(Identity owner, ActivityUpdateFilter filter) {
     
     //
-    String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
-    filter.addExcludedActivities(excludedConnections);
-    
-    //
-    String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
-    filter.addExcludedActivities(excludedUserActivities);
-    
-    //
-    String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
-    filter.addExcludedActivities(excludedUserSpaceActivities);
-    
-    //
-    //long compareTime = filter.isRefreshTab() ? filter.spaceActivitiesType().fromSinceTime() : filter.spaceActivitiesType().toSinceTime();
-    long compareTime = filter.spaceActivitiesType().toSinceTime();
+    long[] viewTimes = filter.viewTimes(filter.spaceActivitiesType());
+    Integer gotNumber = getUnreadCount(owner, filter.spaceActivitiesType(), viewTimes);
     
-    //
-    JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
-    jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
+    if (gotNumber == null) {
+      //
+      String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
+      filter.addExcludedActivities(excludedConnections);
+      
+      //
+      String[] excludedUserActivities = getNumberOfViewedOfActivities(owner, filter.userActivitiesType());
+      filter.addExcludedActivities(excludedUserActivities);
+      
+      //
+      String[] excludedUserSpaceActivities = getNumberOfViewedOfActivities(owner, filter.userSpaceActivitiesType());
+      filter.addExcludedActivities(excludedUserSpaceActivities);
+      
+      //
+      //long compareTime = filter.isRefreshTab() ? filter.spaceActivitiesType().fromSinceTime() : filter.spaceActivitiesType().toSinceTime();
+      long compareTime = filter.spaceActivitiesType().toSinceTime();
+      
+      //
+      JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
+      jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
 
-    //
-    int gotNumber = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(owner)
-                                                              .excludedActivities(filter.excludedActivities()), jcrfilter).objects().size();
+      //
+      ActivityBuilderWhere where = ActivityBuilderWhere.updated().owners(owner)
+          .excludedActivities(filter.excludedActivities());
+      gotNumber = counter(owner, filter.spaceActivitiesType(), viewTimes, filter.excludedActivities(), where, jcrfilter);
+    }
     
-    if (filter.isRefreshTab() && gotNumber == filter.spaceActivitiesType().lastNumberOfUpdated()) {
+    if (filter.isRefreshTab() && gotNumber.intValue() == filter.spaceActivitiesType().lastNumberOfUpdated()) {
       gotNumber = 0;
     }
     
@@ -2402,12 +2617,13 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     jcrfilter.with(ActivityFilter.ACTIVITY_TO_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(type.toSinceTime()));
 
     //
-    QueryResult<ActivityEntity> result = getActivitiesOfIdentitiesQuery(where.owners(identities), jcrfilter).objects();
-    String[] excludedActivities = new String[0];
+    ActivityQuerySpec spec = where.owners(identities).spec();
+    List<ActivityEntity> entities = findActivityEntities(spec, getActivitiesOfIdentitiesQueries(spec, jcrfilter), jcrfilter, -1, false);
+    String[] excludedActivities = new String[entities.size()];
     
     //
-    while(result.hasNext()) {
-      excludedActivities = (String[]) ArrayUtils.add(excludedActivities, result.next().getId());
+    for (int i = 0; i < excludedActivities.length; ++i) {
+      excludedActivities[i] = entities.get(i).getId();
     }
     
     return excludedActivities;
@@ -2497,18 +2713,15 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public List<ExoSocialActivity> getOwnerActivitiesOfIdentities(ActivityBuilderWhere where, ActivityFilter filter,
                                                            long offset, long limit) throws ActivityStorageException {
 
-    Query<ActivityEntity> query = getActivitiesOfIdentitiesQuery(where, filter);
-    
-    QueryResult<ActivityEntity> results = query.objects();
+    ActivityQuerySpec spec = where.spec();
+    List<ActivityEntity> entities = findActivityEntities(spec, getActivitiesOfIdentitiesQueries(spec, filter), filter, -1, true);
     
-    ActivityEntity entity = null;
-    long totalSize = results.size();
+    long totalSize = entities.size();
     
     ActivityIterator activityIt = new ActivityIterator(offset, limit, totalSize);
       
     //
-    while (results.hasNext()) {
-      entity = results.next();
+    for (ActivityEntity entity : entities) {
 
       //
       if (entity.isComment()) {
@@ -2557,8 +2770,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     JCRFilterLiteral filter = ActivityFilter.older();
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
     
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(ActivityBuilderWhere
-      .updated().owners(identities), filter).objects((long)offset, (long)limit));
+    return findActivitiesOfIdentities(ActivityBuilderWhere
+      .updated().owners(identities), filter, offset, limit);
   }
   
   //
@@ -2569,8 +2782,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(
-      ActivityBuilderWhere.updated().mentioner(owner).owners(owner), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(
+      ActivityBuilderWhere.updated().mentioner(owner).owners(owner), filter, 0, limit);
   }
   
   @Override
@@ -2585,8 +2798,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     JCRFilterLiteral filter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(
-      ActivityBuilderWhere.updated().owners(spaceList), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(
+      ActivityBuilderWhere.updated().owners(spaceList), filter, 0, limit);
   }
   
   @Override
@@ -2602,8 +2815,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(
-      ActivityBuilderWhere.updated().owners(connectionList), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(
+      ActivityBuilderWhere.updated().owners(connectionList), filter, 0, limit);
   }
   
   //
@@ -2614,8 +2827,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesFromQueryResults(getActivitiesOfIdentitiesQuery(ActivityBuilderWhere
-      .updated().owners(owner), filter).objects((long)0, (long)limit));
+    return findActivitiesOfIdentities(ActivityBuilderWhere
+      .updated().owners(owner), filter, 0, limit);
   }
   
   @Override
@@ -2632,7 +2845,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter);
 
   }
   
@@ -2648,7 +2861,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery (ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(ownerIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(ownerIdentity), filter);
                                       
   }
 
@@ -2663,7 +2876,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(connectionList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(connectionList), filter);
   }
 
   @Override
@@ -2681,7 +2894,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceList), filter);
   }
   
   @Override
@@ -2696,90 +2909,33 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(sinceTime));
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.space().owners(spaceIdentity), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.space().owners(spaceIdentity), filter);
   }
   
   @Override
   public List<ExoSocialActivity> getNewerComments(ExoSocialActivity existingActivity,
                                                   Long sinceTime,
                                                   int limit) {
-    
-    String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
-
-    long totalSize = commentIds.length;
-    
-    ActivityIterator activityIt = new ActivityIterator(0, limit, totalSize);
-    
-    int i = 0;
-    while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
-      if (!comment.isHidden() && comment.getUpdated().getTime() > sinceTime)
-        activityIt.add(comment);
-      if (activityIt.addMore() == false) {
-        break;
-      }
-      i++;
-    }
-    
-    return activityIt.result();
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
+    return loadComments(index.getNewerIds(sinceTime, limit));
   }
 
   @Override
   public List<ExoSocialActivity> getOlderComments(ExoSocialActivity existingActivity,
                                                   Long sinceTime,
                                                   int limit) {
-    String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
-
-    long totalSize = commentIds.length;
-    
-    ActivityIterator activityIt = new ActivityIterator(0, limit, totalSize);
-    
-    int i = 0;
-    while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
-      if (!comment.isHidden() && comment.getUpdated().getTime() < sinceTime)
-        activityIt.add(comment);
-      if (activityIt.addMore() == false) {
-        break;
-      }
-      i++;
-    }
-    
-    return activityIt.result();
+    CommentIndex index = getStorage().getCommentIndex(existingActivity.getId());
+    return loadComments(index.getOlderIds(sinceTime, limit));
   }
   
   @Override
   public int getNumberOfNewerComments(ExoSocialActivity existingActivity, Long sinceTime) {
-    String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
-    int nb = 0;
-    long totalSize = commentIds.length;
-    
-    int i = 0;
-    while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
-      if (!comment.isHidden() && comment.getUpdated().getTime() > sinceTime)
-        nb++;
-      i++;
-    }
-    
-    return nb;
+    return getStorage().getCommentIndex(existingActivity.getId()).countNewer(sinceTime);
   }
 
   @Override
   public int getNumberOfOlderComments(ExoSocialActivity existingActivity, Long sinceTime) {
-    String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
-    int nb = 0;
-    long totalSize = commentIds.length;
-    
-    int i = 0;
-    while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
-      if (!comment.isHidden() && comment.getUpdated().getTime() < sinceTime)
-        nb++;
-      i++;
-    }
-    
-    return nb;
+    return getStorage().getCommentIndex(existingActivity.getId()).countOlder(sinceTime);
   }
 
   @Override
@@ -2833,7 +2989,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     ActivityFilter filter = new ActivityFilter(){};
 
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().mentioner(ownerIdentity).owners(identities), filter);
   }
 
   @Override
@@ -2865,7 +3021,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     ActivityFilter filter = new ActivityFilter(){};
 
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(connectionList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(connectionList), filter);
   }
 
   @Override
@@ -2901,6 +3057,6 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     ActivityFilter filter = new ActivityFilter(){};
   
     //
-    return getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.simple().owners(spaceList), filter).objects().size();
+    return countActivitiesOfIdentities(ActivityBuilderWhere.simple().owners(spaceList), filter);
   }
 }
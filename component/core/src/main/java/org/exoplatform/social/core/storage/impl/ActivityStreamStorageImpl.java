@@ -18,9 +18,16 @@ package org.exoplatform.social.core.storage.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
@@ -36,11 +43,15 @@ import org.chromattic.api.query.Query;
 import org.chromattic.api.query.QueryBuilder;
 import org.chromattic.api.query.QueryResult;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.common.service.ProcessContext;
 import org.exoplatform.social.common.service.utils.ObjectHelper;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
+import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.chromattic.entity.ActivityEntity;
 import org.exoplatform.social.core.chromattic.entity.ActivityRef;
@@ -61,10 +72,17 @@ import org.exoplatform.social.core.storage.api.ActivityStorage;
 import org.exoplatform.social.core.storage.api.ActivityStreamStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
+import org.exoplatform.social.core.storage.cache.SocialStorageCacheService;
+import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityType;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
 import org.exoplatform.social.core.storage.query.JCRProperties;
 import org.exoplatform.social.core.storage.query.WhereExpression;
+import org.exoplatform.social.core.storage.streams.ActivityStreamListener;
+import org.exoplatform.social.core.storage.streams.StreamFanOutService;
 import org.exoplatform.social.core.storage.streams.StreamProcessContext;
+import org.exoplatform.social.core.storage.streams.UnreadCounterService;
 
 public class ActivityStreamStorageImpl extends AbstractStorage implements ActivityStreamStorage {
   
@@ -89,13 +107,48 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
    */
   private ActivityStorage activityStorage;
   
+  /**
+   * The fan-out service
+   */
+  private StreamFanOutService fanOutService;
+  
+  /**
+   * The unread counters
+   */
+  private UnreadCounterService unreadCounterService;
+  
+  /**
+   * The pulled streams read by the streams of each identity
+   */
+  private ExoCache<IdentityKey, ListIdentitiesData> pullSourcesCache;
+  
   /** Logger */
   private static final Log LOG = ExoLogger.getLogger(ActivityStreamStorageImpl.class);
+
+  /**
+   * The identity ids whose streams got a new reference during the current save, by stream type
+   */
+  private final ThreadLocal<Map<ActivityRefType, Set<String>>> pushedRefs = new ThreadLocal<Map<ActivityRefType, Set<String>>>();
+  
+  /**
+   * The listeners of the references written in the streams
+   */
+  private final List<ActivityStreamListener> streamListeners = new CopyOnWriteArrayList<ActivityStreamListener>();
   
   public ActivityStreamStorageImpl(IdentityStorageImpl identityStorage) {
     this.identityStorage = identityStorage;
   }
   
+  /**
+   * Registers a listener of the references written in the streams.
+   * 
+   * @param listener the listener
+   * @since 4.1.0
+   */
+  public void addStreamListener(ActivityStreamListener listener) {
+    streamListeners.add(listener);
+  }
+  
   private ActivityStorage getStorage() {
     if (activityStorage == null) {
       activityStorage = (ActivityStorage) PortalContainer.getInstance().getComponentInstanceOfType(ActivityStorage.class);
@@ -112,6 +165,22 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
     return this.spaceStorage;
   }
   
+  private StreamFanOutService getFanOutService() {
+    if (fanOutService == null) {
+      fanOutService = (StreamFanOutService) PortalContainer.getInstance().getComponentInstanceOfType(StreamFanOutService.class);
+    }
+    
+    return this.fanOutService;
+  }
+  
+  private UnreadCounterService getUnreadCounterService() {
+    if (unreadCounterService == null) {
+      unreadCounterService = (UnreadCounterService) PortalContainer.getInstance().getComponentInstanceOfType(UnreadCounterService.class);
+    }
+    
+    return this.unreadCounterService;
+  }
+  
   private RelationshipStorage getRelationshipStorage() {
     if (relationshipStorage == null) {
       relationshipStorage = (RelationshipStorage) PortalContainer.getInstance().getComponentInstanceOfType(RelationshipStorage.class);
@@ -123,6 +192,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
   @Override
   public void save(ProcessContext ctx) {
     //must call with asynchronous
+    beginPush();
     try {
       StreamProcessContext streamCtx = ObjectHelper.cast(StreamProcessContext.class, ctx);
       Identity owner = streamCtx.getIdentity();
@@ -142,12 +212,15 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
       ctx.setException(e);
       LOG.warn("Failed to add Activity references.");
       LOG.debug("Failed to add Activity references.", e);
+    } finally {
+      endPush(ctx);
     }
   }
   
   @Override
   public void savePoster(ProcessContext ctx) {
     //call synchronous
+    beginPush();
     try {
       StreamProcessContext streamCtx = ObjectHelper.cast(StreamProcessContext.class, ctx);
       Identity owner = streamCtx.getIdentity();
@@ -173,14 +246,303 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
       ctx.setException(e);
       LOG.warn("Failed to add Activity references.");
       LOG.debug("Failed to add Activity references.", e);
+    } finally {
+      endPush(ctx);
+    }
+  }
+
+  /**
+   * Starts to record the streams getting a new reference in the current thread.
+   */
+  private void beginPush() {
+    pushedRefs.set(new EnumMap<ActivityRefType, Set<String>>(ActivityRefType.class));
+  }
+
+  /**
+   * Records a new reference of the saved activity in the given stream.
+   * 
+   * @param identityId the stream owner
+   * @param type the stream type
+   */
+  private void recordPush(String identityId, ActivityRefType type) {
+    Map<ActivityRefType, Set<String>> pushed = pushedRefs.get();
+    if (pushed == null) return;
+    
+    Set<String> identityIds = pushed.get(type);
+    if (identityIds == null) {
+      identityIds = new HashSet<String>();
+      pushed.put(type, identityIds);
+    }
+    identityIds.add(identityId);
+  }
+
+  /**
+   * Notifies the stream listeners of the streams which got a reference of the saved activity, or of
+   * the streams whose references could not be saved.
+   * 
+   * @param ctx the save context
+   */
+  private void endPush(ProcessContext ctx) {
+    endPush(ObjectHelper.cast(StreamProcessContext.class, ctx).getActivityEntity().getId(), ctx.isFailed());
+  }
+
+  /**
+   * Notifies the stream listeners of the streams which got a reference of the given activity, or of
+   * the streams whose references could not be saved.
+   * 
+   * @param activityId the saved activity
+   * @param failed whether the references could not be saved
+   */
+  private void endPush(String activityId, boolean failed) {
+    Map<ActivityRefType, Set<String>> pushed = pushedRefs.get();
+    pushedRefs.remove();
+    
+    if (pushed == null || pushed.isEmpty()) return;
+    
+    if (!failed) {
+      countUnread(activityId, pushed);
+      pushLastUpdate(activityId, pushed.get(ActivityRefType.MY_ACTIVITIES));
+    }
+    
+    for (ActivityStreamListener listener : streamListeners) {
+      for (Map.Entry<ActivityRefType, Set<String>> entry : pushed.entrySet()) {
+        try {
+          if (failed) {
+            listener.pushFailed(entry.getKey(), entry.getValue());
+          } else {
+            listener.pushed(activityId, entry.getKey(), entry.getValue());
+          }
+        } catch (Exception e) {
+          LOG.warn("Failed to notify the stream listener " + listener, e);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Invalidates the unread counters of the streams which got the new activity, except the streams of
+   * the poster where its own activities are not counted.
+   * 
+   * @param activityId the new activity
+   * @param pushed the stream owners by stream type
+   */
+  private void countUnread(String activityId, Map<ActivityRefType, Set<String>> pushed) {
+    UnreadCounterService service = getUnreadCounterService();
+    if (service == null) return;
+    
+    ExoSocialActivity activity = getStorage().getActivity(activityId);
+    String posterId = activity != null ? activity.getPosterId() : null;
+    for (Map.Entry<ActivityRefType, Set<String>> entry : pushed.entrySet()) {
+      Set<String> identityIds = entry.getValue();
+      if (posterId != null && !countsOwnUpdates(entry.getKey()) && identityIds.contains(posterId)) {
+        identityIds = new HashSet<String>(identityIds);
+        identityIds.remove(posterId);
+      }
+      service.invalidate(identityIds, entry.getKey().getFilterType(), activityId);
+    }
+  }
+  
+  /**
+   * Invalidates the unread counters of the owners of the given streams for the updated activity, except
+   * the updater.
+   * 
+   * @param activityId the updated activity
+   * @param updated the owners of the streams of the activity by stream type
+   * @param updater the identity who updated the activity, may be null
+   */
+  private void countUnread(String activityId, Map<ActivityRefType, Set<String>> updated, Identity updater) {
+    UnreadCounterService service = getUnreadCounterService();
+    if (service == null) return;
+    
+    for (Map.Entry<ActivityRefType, Set<String>> entry : updated.entrySet()) {
+      Set<String> identityIds = entry.getValue();
+      if (updater != null && !countsOwnUpdates(entry.getKey()) && identityIds.contains(updater.getId())) {
+        identityIds = new HashSet<String>(identityIds);
+        identityIds.remove(updater.getId());
+      }
+      service.invalidate(identityIds, entry.getKey().getFilterType(), activityId);
+    }
+  }
+  
+  /**
+   * Gets the owners of the given streams.
+   * 
+   * @param refLists the streams
+   * @return the stream owners by stream type
+   */
+  private Map<ActivityRefType, Set<String>> streamOwners(Collection<ActivityRefListEntity> refLists) {
+    Map<ActivityRefType, Set<String>> owners = new EnumMap<ActivityRefType, Set<String>>(ActivityRefType.class);
+    for (ActivityRefListEntity refList : refLists) {
+      String path = refList.getPath();
+      String streamsPath = path.substring(0, path.lastIndexOf('/'));
+      ActivityRefType type = ActivityRefType.ofList(path.substring(path.lastIndexOf('/') + 1));
+      if (type == null) continue;
+      
+      try {
+        String identityId = _findByPath(IdentityEntity.class, streamsPath.substring(0, streamsPath.lastIndexOf('/'))).getId();
+        Set<String> identityIds = owners.get(type);
+        if (identityIds == null) {
+          identityIds = new HashSet<String>();
+          owners.put(type, identityIds);
+        }
+        identityIds.add(identityId);
+      } catch (NodeNotFoundException e) {
+        LOG.debug("No identity for the stream " + path);
+      }
+    }
+    return owners;
+  }
+  
+  /**
+   * Notifies the stream listeners that the activity just got a reference on top of the own streams of
+   * the given identities.
+   * 
+   * @param activityId the activity
+   * @param identityIds the stream owners, may be null
+   */
+  private void pushLastUpdate(String activityId, Set<String> identityIds) {
+    if (identityIds == null || identityIds.isEmpty() || streamListeners.isEmpty()) return;
+    
+    try {
+      ActivityEntity activityEntity = _findById(ActivityEntity.class, activityId);
+      ActivityUpdateRef ref = new ActivityUpdateRef(activityId, activityEntity.getLastUpdated());
+      for (ActivityStreamListener listener : streamListeners) {
+        listener.lastUpdated(ref, identityIds);
+      }
+    } catch (NodeNotFoundException e) {
+      LOG.debug("No activity " + activityId);
     }
   }
   
+  /**
+   * The space streams count the activities of the owner, the other streams count the activities
+   * of the connections only.
+   */
+  private static boolean countsOwnUpdates(ActivityRefType type) {
+    return type == ActivityRefType.MY_SPACES || type == ActivityRefType.SPACE_STREAM;
+  }
+  
   private void user(Identity owner, ActivityEntity activityEntity) throws NodeNotFoundException {
     //
     List<Identity> got = getRelationshipStorage().getConnections(owner);
+    if (isPulled(ActivityRefType.MY_ACTIVITIES, owner, got)) {
+      //the connections pull the activity from the stream of the owner
+      recordPull(got, ActivityRefType.FEED, ActivityRefType.CONNECTION);
+      return;
+    }
     if (got.size() > 0) {
-      createConnectionsRefs(got, activityEntity);
+      fanOut(got, activityEntity, false);
+    }
+  }
+  
+  private boolean isPullSource(int recipients) {
+    StreamFanOutService service = getFanOutService();
+    return service != null && service.isPullSource(recipients);
+  }
+  
+  /**
+   * Tells whether the recipients pull the activities of the given stream. The decision is made when the
+   * first activity above the pull threshold is posted, and kept on the stream, so that its activities
+   * stay readable whatever the threshold or the number of recipients later become.
+   * 
+   * @param type the stream of the poster or of the space
+   * @param owner the poster or the space identity
+   * @param recipients the connections of the poster or the members of the space
+   * @return true when the activities of the stream are pulled
+   * @throws NodeNotFoundException
+   */
+  private boolean isPulled(ActivityRefType type, Identity owner, List<Identity> recipients) throws NodeNotFoundException {
+    IdentityEntity identityEntity = identityStorage._findIdentityEntity(owner.getProviderId(), owner.getRemoteId());
+    ActivityRefListEntity refList = type.refsOf(identityEntity);
+    if (Boolean.TRUE.equals(refList.getPulled())) {
+      return true;
+    }
+    if (!isPullSource(recipients.size())) {
+      return false;
+    }
+    
+    //
+    refList.setPulled(Boolean.TRUE);
+    StorageUtils.persist();
+    ExoCache<IdentityKey, ListIdentitiesData> cache = getPullSourcesCache();
+    if (cache != null) {
+      for (Identity identity : recipients) {
+        cache.remove(new IdentityKey(identity));
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Records the activity as new in the given streams of the recipients, without writing any reference,
+   * so that their cached streams stay up to date.
+   * 
+   * @param recipients the connections of the poster or the members of the space
+   * @param types the stream types
+   */
+  private void recordPull(List<Identity> recipients, ActivityRefType... types) {
+    for (Identity identity : recipients) {
+      for (ActivityRefType type : types) {
+        recordPush(identity.getId(), type);
+      }
+    }
+  }
+  
+  /**
+   * Creates the references of the activity in the streams of the recipients, batch by batch when
+   * the fan-out service is available.
+   * 
+   * @param recipients the connections of the poster or the members of the space
+   * @param activityEntity the new activity
+   * @param space true for the members of a space
+   * @throws NodeNotFoundException
+   */
+  private void fanOut(List<Identity> recipients, ActivityEntity activityEntity, final boolean space) throws NodeNotFoundException {
+    StreamFanOutService service = getFanOutService();
+    if (service == null) {
+      if (space) {
+        createSpaceMembersRefs(recipients, activityEntity);
+      } else {
+        createConnectionsRefs(recipients, activityEntity);
+      }
+      return;
+    }
+    
+    //
+    final String activityId = activityEntity.getId();
+    service.fanOut(recipients, new StreamFanOutService.BatchWriter() {
+      @Override
+      public void write(List<Identity> batch) throws Exception {
+        writeBatch(activityId, batch, space);
+      }
+    });
+  }
+  
+  /**
+   * Creates the references of the activity for one batch of recipients. The activity is loaded
+   * in the session of the batch.
+   * 
+   * @param activityId the new activity
+   * @param batch the recipients
+   * @param space true for the members of a space
+   * @throws NodeNotFoundException
+   */
+  private void writeBatch(String activityId, List<Identity> batch, boolean space) throws NodeNotFoundException {
+    //the batch run in the thread of the save is pushed with the save
+    boolean pushing = pushedRefs.get() == null;
+    if (pushing) beginPush();
+    
+    boolean failed = true;
+    try {
+      ActivityEntity activityEntity = _findById(ActivityEntity.class, activityId);
+      if (space) {
+        createSpaceMembersRefs(batch, activityEntity);
+      } else {
+        createConnectionsRefs(batch, activityEntity);
+      }
+      failed = false;
+    } finally {
+      if (pushing) endPush(activityId, failed);
     }
   }
   
@@ -217,7 +579,12 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
     if (space == null) return;
     //Don't create ActivityRef on space stream for given SpaceIdentity
     List<Identity> identities = getMemberIdentities(space);
-    createSpaceMembersRefs(identities, activityEntity);
+    if (isPulled(ActivityRefType.SPACE_STREAM, owner, identities)) {
+      //the members pull the activity from the space stream
+      recordPull(identities, ActivityRefType.FEED, ActivityRefType.MY_SPACES);
+      return;
+    }
+    fanOut(identities, activityEntity, true);
   }
 
   private List<Identity> getMemberIdentities(Space space) {
@@ -312,6 +679,9 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
       //activity's poster != comment's poster
       //don't have on My Activity stream
       updateCommenterActivityRefs(commenter, activityEntity, ActivityRefType.MY_ACTIVITIES, oldUpdated);
+      if (!isHidden(activityEntity)) {
+        pushLastUpdate(activityEntity.getId(), Collections.singleton(commenter.getId()));
+      }
       
       //post comment also put the activity on feed if have not any
       updateCommenterActivityRefs(commenter, activityEntity, ActivityRefType.FEED, oldUpdated);
@@ -370,6 +740,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
       List<ActivityRef> references = new CopyOnWriteArrayList<ActivityRef>(activityEntity.getActivityRefs());
       long oldUpdated = streamCtx.getOldLastUpdated();
       ActivityRef newRef = null;
+      List<ActivityRefListEntity> updatedLists = new ArrayList<ActivityRefListEntity>();
       for (ActivityRef old : references) {
         if(Long.parseLong(old.getName()) > oldUpdated) {
           continue;
@@ -383,7 +754,15 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         newRef.setLastUpdated(activityEntity.getLastUpdated());
         newRef.setActivityEntity(activityEntity);
         refList.remove(Long.parseLong(old.getName()), hidableActivity.getHidden());
+        if (!hidableActivity.getHidden()) {
+          updatedLists.add(refList);
+        }
       }
+      
+      //
+      Map<ActivityRefType, Set<String>> updated = streamOwners(updatedLists);
+      countUnread(activityEntity.getId(), updated, streamCtx.getIdentity());
+      pushLastUpdate(activityEntity.getId(), updated.get(ActivityRefType.MY_ACTIVITIES));
 
       // mentioners
       addMentioner(streamCtx.getMentioners(), activityEntity);
@@ -414,14 +793,21 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         
       HidableEntity hidableActivity = _getMixin(activityEntity, HidableEntity.class, true);
       hidableActivity.setHidden(activity.isHidden());
-      for (ActivityRef ref : references) {
+      List<ActivityRefListEntity> shownLists = new ArrayList<ActivityRefListEntity>();
+      for (ActivityRef ref : activityEntity.getActivityRefs()) {
         if (hidableActivity.getHidden() == false) {
           ref.getDay().inc();
+          shownLists.add(ref.getDay().getMonth().getYear().getList());
         } else {
           ref.getDay().desc();
         }
       }
       
+      // a shown activity may come back on top of the own streams of its owners
+      if (!shownLists.isEmpty()) {
+        pushLastUpdate(activityEntity.getId(), streamOwners(shownLists).get(ActivityRefType.MY_ACTIVITIES));
+      }
+      
     } catch (Exception e) {
       LOG.warn("Failed to update Activity references when change the visibility of activity.", e);
       //turnOffLock to get increase perf
@@ -503,33 +889,33 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
 
   @Override
   public List<ExoSocialActivity> getFeed(Identity owner, int offset, int limit) {
-    return getActivitiesNotQuery(ActivityRefType.FEED, owner, offset, limit);
+    return getActivitiesNotQuery(ActivityRefType.FEED, owner, getPullSources(owner, true, true), offset, limit);
   }
 
   @Override
   public int getNumberOfFeed(Identity owner) {
-    return getNumberOfActivities(ActivityRefType.FEED, owner);
+    return getNumberOfActivities(ActivityRefType.FEED, owner, getPullSources(owner, true, true));
   }
 
   @Override
   public List<ExoSocialActivity> getConnections(Identity owner, int offset, int limit) {
     
-    return getActivitiesNotQuery(ActivityRefType.CONNECTION, owner, offset, limit);
+    return getActivitiesNotQuery(ActivityRefType.CONNECTION, owner, getPullSources(owner, true, false), offset, limit);
   }
 
   @Override
   public int getNumberOfConnections(Identity owner) {
-    return getNumberOfActivities(ActivityRefType.CONNECTION, owner);
+    return getNumberOfActivities(ActivityRefType.CONNECTION, owner, getPullSources(owner, true, false));
   }
 
   @Override
   public List<ExoSocialActivity> getMySpaces(Identity owner, int offset, int limit) {
-    return getActivitiesNotQuery(ActivityRefType.MY_SPACES, owner, offset, limit);
+    return getActivitiesNotQuery(ActivityRefType.MY_SPACES, owner, getPullSources(owner, false, true), offset, limit);
   }
 
   @Override
   public int getNumberOfMySpaces(Identity owner) {
-    return getNumberOfActivities(ActivityRefType.MY_SPACES, owner);
+    return getNumberOfActivities(ActivityRefType.MY_SPACES, owner, getPullSources(owner, false, true));
   }
   
   @Override
@@ -624,7 +1010,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
    * The reference types.
    */
   public enum ActivityRefType {
-    FEED() {
+    FEED(ActivityType.FEED, ActivityFilterType.ACTIVITY_FEED, "all") {
       @Override
       public ActivityRefListEntity refsOf(IdentityEntity identityEntity) {
         if (identityEntity.getStreams() == null) return create(identityEntity);
@@ -648,7 +1034,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
       }
 
     },
-    CONNECTION() {
+    CONNECTION(ActivityType.CONNECTION, ActivityFilterType.CONNECTIONS_ACTIVITIES, "connections") {
       @Override
       public ActivityRefListEntity refsOf(IdentityEntity identityEntity) {
         if (identityEntity.getStreams() == null) return create(identityEntity);
@@ -671,7 +1057,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         return refList;
       }
     },
-    MY_SPACES() {
+    MY_SPACES(ActivityType.SPACES, ActivityFilterType.USER_SPACE_ACTIVITIES, "myspaces") {
       @Override
       public ActivityRefListEntity refsOf(IdentityEntity identityEntity) {
         if (identityEntity.getStreams() == null) return create(identityEntity);
@@ -694,7 +1080,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         return refList;
       }
     },
-    SPACE_STREAM() {
+    SPACE_STREAM(ActivityType.SPACE, ActivityFilterType.SPACE_ACTIVITIES, "space") {
       @Override
       public ActivityRefListEntity refsOf(IdentityEntity identityEntity) {
         if (identityEntity.getStreams() == null) return create(identityEntity);
@@ -717,7 +1103,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         return refList;
       }
     },
-    MY_ACTIVITIES() {
+    MY_ACTIVITIES(ActivityType.USER, ActivityFilterType.USER_ACTIVITIES, "owner") {
       @Override
       public ActivityRefListEntity refsOf(IdentityEntity identityEntity) {
         if (identityEntity.getStreams() == null) return create(identityEntity);
@@ -742,6 +1128,51 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
       }
     };
 
+    /**
+     * The cached stream type
+     */
+    private final ActivityType cachedType;
+    
+    /**
+     * The type of the unread counter
+     */
+    private final ActivityFilterType filterType;
+    
+    /**
+     * The name of the stream node, without prefix
+     */
+    private final String listName;
+    
+    private ActivityRefType(ActivityType cachedType, ActivityFilterType filterType, String listName) {
+      this.cachedType = cachedType;
+      this.filterType = filterType;
+      this.listName = listName;
+    }
+    
+    public ActivityType getCachedType() {
+      return cachedType;
+    }
+    
+    public ActivityFilterType getFilterType() {
+      return filterType;
+    }
+    
+    /**
+     * Gets the type of the given stream node.
+     * 
+     * @param name the name of the stream node
+     * @return the stream type, null if unknown
+     */
+    public static ActivityRefType ofList(String name) {
+      String localName = name.substring(name.indexOf(':') + 1);
+      for (ActivityRefType type : values()) {
+        if (type.listName.equals(localName)) {
+          return type;
+        }
+      }
+      return null;
+    }
+
     public abstract ActivityRefListEntity refsOf(IdentityEntity identityEntity);
     
     public abstract ActivityRefListEntity create(IdentityEntity identityEntity);
@@ -814,14 +1245,376 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
   }
   
   
-  private int getNumberOfActivities(ActivityRefType type, Identity owner) {
+  /**
+   * Gets the streams whose activities were not written to the streams of the given owner because
+   * of their fan-out size: the own streams of its connections and the streams of its spaces marked as pulled.
+   * 
+   * @param owner the owner of the read stream
+   * @param connections whether to look at the connections of the owner
+   * @param spaces whether to look at the spaces of the owner
+   * @return the pull sources
+   */
+  private List<PullSource> getPullSources(Identity owner, boolean connections, boolean spaces) {
+    List<PullSource> sources = new ArrayList<PullSource>();
+    if (!OrganizationIdentityProvider.NAME.equals(owner.getProviderId())) {
+      return sources;
+    }
+    
+    //
+    for (IdentityKey key : getPullSourceKeys(owner)) {
+      try {
+        IdentityEntity identityEntity = _findById(IdentityEntity.class, key.getId());
+        boolean space = SpaceIdentityProvider.NAME.equals(identityEntity.getProviderId());
+        if (space ? spaces : connections) {
+          sources.add(new PullSource(identityEntity, space ? ActivityRefType.SPACE_STREAM : ActivityRefType.MY_ACTIVITIES));
+        }
+      } catch (NodeNotFoundException e) {
+        LOG.debug("No identity " + key.getId());
+      }
+    }
+    
+    return sources;
+  }
+  
+  /**
+   * Gets the identities whose streams are pulled by the given owner, from the cache when they were
+   * already looked up.
+   */
+  private List<IdentityKey> getPullSourceKeys(Identity owner) {
+    ExoCache<IdentityKey, ListIdentitiesData> cache = getPullSourcesCache();
+    IdentityKey key = new IdentityKey(owner);
+    ListIdentitiesData data = cache != null ? cache.get(key) : null;
+    if (data == null) {
+      List<IdentityKey> keys = new ArrayList<IdentityKey>();
+      for (Identity connection : getRelationshipStorage().getConnections(owner)) {
+        addPullSourceKey(keys, connection.getProviderId(), connection.getRemoteId());
+      }
+      for (Space space : getSpaceStorage().getMemberSpaces(owner.getRemoteId())) {
+        addPullSourceKey(keys, SpaceIdentityProvider.NAME, space.getPrettyName());
+      }
+      
+      //
+      data = new ListIdentitiesData(keys);
+      if (cache != null) {
+        cache.put(key, data);
+      }
+    }
+    return data.getIds();
+  }
+  
+  /**
+   * Adds the given identity when its own stream or its space stream is pulled. The stream is read
+   * without being created.
+   */
+  private void addPullSourceKey(List<IdentityKey> keys, String providerId, String remoteId) {
     try {
-      IdentityEntity identityEntity = identityStorage._findIdentityEntity(owner.getProviderId(), owner.getRemoteId());
-      ActivityRefListEntity refList = type.refsOf(identityEntity);
+      IdentityEntity identityEntity = identityStorage._findIdentityEntity(providerId, remoteId);
+      StreamsEntity streams = identityEntity.getStreams();
+      if (streams == null) {
+        return;
+      }
+      ActivityRefListEntity refList = SpaceIdentityProvider.NAME.equals(providerId) ? streams.getSpace() : streams.getOwner();
+      if (refList != null && Boolean.TRUE.equals(refList.getPulled())) {
+        keys.add(new IdentityKey(new Identity(identityEntity.getId())));
+      }
+    } catch (NodeNotFoundException e) {
+      LOG.debug("No identity " + providerId + "/" + remoteId);
+    }
+  }
+  
+  private ExoCache<IdentityKey, ListIdentitiesData> getPullSourcesCache() {
+    if (pullSourcesCache == null) {
+      SocialStorageCacheService cacheService = (SocialStorageCacheService)
+          PortalContainer.getInstance().getComponentInstanceOfType(SocialStorageCacheService.class);
+      if (cacheService != null) {
+        pullSourcesCache = cacheService.getPullSourcesCache();
+      }
+    }
+    return pullSourcesCache;
+  }
+  
+  /**
+   * Merges the pushed references of the owner with the pulled streams, from the most recent to the oldest.
+   * An activity found in several streams is returned once.
+   */
+  private List<ExoSocialActivity> getActivitiesNotQuery(ActivityRefType type, Identity owner, List<PullSource> sources, int offset, int limit) {
+    if (sources.isEmpty()) {
+      return getActivitiesNotQuery(type, owner, offset, limit);
+    }
+    
+    List<ExoSocialActivity> got = new LinkedList<ExoSocialActivity>();
+    try {
+      PriorityQueue<StreamCursor> cursors = new PriorityQueue<StreamCursor>();
+      addCursor(cursors, new StreamCursor(refsIterator(type, owner), null));
+      for (PullSource source : sources) {
+        addCursor(cursors, new StreamCursor(refsIterator(source.type, source.identityEntity), source.identityEntity.getId()));
+      }
       
-      if (refList == null || refList.getNumber() < 0) return 0;
+      //
+      Set<String> seen = new HashSet<String>();
+      int skipped = 0;
+      while (!cursors.isEmpty()) {
+        StreamCursor cursor = cursors.poll();
+        ActivityRef current = cursor.current;
+        addCursor(cursors, cursor);
+        
+        String activityId = current.getActivityEntity().getId();
+        if (!seen.add(activityId)) {
+          continue;
+        }
+        if (skipped < offset) {
+          ++skipped;
+          continue;
+        }
+        
+        ExoSocialActivity activity = getStorage().getActivity(activityId);
+        if (activity.isHidden() == true) {
+          continue;
+        }
+        got.add(activity);
+        if (got.size() == limit) {
+          break;
+        }
+      }
+    } catch (NodeNotFoundException e) {
+      LOG.warn("Failed to activities!");
+    }
+    return got;
+  }
+  
+  /**
+   * Gets the pull sources of the stream of the given type.
+   */
+  private List<PullSource> getPullSources(ActivityRefType type, Identity owner) {
+    switch (type) {
+      case FEED:
+        return getPullSources(owner, true, true);
+      case CONNECTION:
+        return getPullSources(owner, true, false);
+      case MY_SPACES:
+        return getPullSources(owner, false, true);
+      default:
+        return Collections.emptyList();
+    }
+  }
+  
+  @Override
+  public List<ExoSocialActivity> getActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit) {
+    long before = cursor != null ? cursor.getLastUpdated() : Long.MAX_VALUE;
+    
+    List<ExoSocialActivity> got = new LinkedList<ExoSocialActivity>();
+    try {
+      PriorityQueue<StreamCursor> cursors = new PriorityQueue<StreamCursor>();
+      addCursor(cursors, new StreamCursor(refsIterator(type, owner, before), null));
+      for (PullSource source : getPullSources(type, owner)) {
+        addCursor(cursors, new StreamCursor(refsIterator(source.type, source.identityEntity, before), source.identityEntity.getId()));
+      }
+      
+      //
+      Set<String> seen = new HashSet<String>();
+      while (!cursors.isEmpty()) {
+        StreamCursor streamCursor = cursors.poll();
+        long time = streamCursor.time;
+        String activityId = streamCursor.activityId;
+        addCursor(cursors, streamCursor);
+        
+        //the activities updated at the time of the cursor may come before it
+        if (cursor != null && !cursor.precedes(time, activityId)) {
+          continue;
+        }
+        if (!seen.add(activityId)) {
+          continue;
+        }
+        
+        ExoSocialActivity activity = getStorage().getActivity(activityId);
+        if (activity.isHidden() == true) {
+          continue;
+        }
+        got.add(activity);
+        if (got.size() == limit) {
+          break;
+        }
+      }
+    } catch (NodeNotFoundException e) {
+      LOG.warn("Failed to get the activities after the cursor.");
+    }
+    return got;
+  }
+  
+  @Override
+  public List<ActivityUpdateRef> getNewerUpdates(ActivityRefType type, Identity owner, long sinceTime, int limit) {
+    List<PullSource> sources = getPullSources(type, owner);
+    
+    List<ActivityUpdateRef> got = new ArrayList<ActivityUpdateRef>();
+    try {
+      PriorityQueue<StreamCursor> cursors = new PriorityQueue<StreamCursor>();
+      addCursor(cursors, new StreamCursor(refsIterator(type, owner), null));
+      for (PullSource source : sources) {
+        addCursor(cursors, new StreamCursor(refsIterator(source.type, source.identityEntity), source.identityEntity.getId()));
+      }
       
-      return refList.getNumber().intValue();
+      //
+      Set<String> seen = new HashSet<String>();
+      while (!cursors.isEmpty() && got.size() < limit) {
+        StreamCursor cursor = cursors.poll();
+        long time = cursor.time;
+        if (time <= sinceTime) {
+          break;
+        }
+        ActivityEntity activityEntity = cursor.current.getActivityEntity();
+        addCursor(cursors, cursor);
+        
+        if (!seen.add(activityEntity.getId())) {
+          continue;
+        }
+        HidableEntity hidable = _getMixin(activityEntity, HidableEntity.class, false);
+        if (hidable != null && Boolean.TRUE.equals(hidable.getHidden())) {
+          continue;
+        }
+        got.add(new ActivityUpdateRef(activityEntity.getId(), time));
+      }
+    } catch (NodeNotFoundException e) {
+      LOG.warn("Failed to get the updated activities.");
+    }
+    return got;
+  }
+  
+  @Override
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners) {
+    Map<String, ActivityUpdateRef> got = new HashMap<String, ActivityUpdateRef>();
+    for (Identity owner : owners) {
+      try {
+        ActivityRefIterator it = refsIterator(ActivityRefType.MY_ACTIVITIES, owner);
+        while (it.hasNext()) {
+          ActivityRef ref = it.next();
+          ActivityEntity activityEntity = ref.getActivityEntity();
+          if (activityEntity != null && !isHidden(activityEntity)) {
+            got.put(owner.getId(), new ActivityUpdateRef(activityEntity.getId(), Long.parseLong(ref.getName())));
+            break;
+          }
+        }
+      } catch (NodeNotFoundException e) {
+        LOG.debug("No activity stream for the identity " + owner.getId());
+      }
+    }
+    return got;
+  }
+  
+  private boolean isHidden(ActivityEntity activityEntity) {
+    HidableEntity hidable = _getMixin(activityEntity, HidableEntity.class, false);
+    return hidable != null && Boolean.TRUE.equals(hidable.getHidden());
+  }
+  
+  private ActivityRefIterator refsIterator(ActivityRefType type, Identity identity) throws NodeNotFoundException {
+    return refsIterator(type, identityStorage._findIdentityEntity(identity.getProviderId(), identity.getRemoteId()));
+  }
+  
+  private ActivityRefIterator refsIterator(ActivityRefType type, IdentityEntity identityEntity) {
+    return new ActivityRefList(type.refsOf(identityEntity)).iterator();
+  }
+  
+  private ActivityRefIterator refsIterator(ActivityRefType type, Identity identity, long before) throws NodeNotFoundException {
+    return refsIterator(type, identityStorage._findIdentityEntity(identity.getProviderId(), identity.getRemoteId()), before);
+  }
+  
+  private ActivityRefIterator refsIterator(ActivityRefType type, IdentityEntity identityEntity, long before) {
+    return new ActivityRefList(type.refsOf(identityEntity)).iterator(before);
+  }
+  
+  /**
+   * Moves the cursor to its next reference, and queues it again when there is one.
+   */
+  private void addCursor(PriorityQueue<StreamCursor> cursors, StreamCursor cursor) {
+    if (cursor.next()) {
+      cursors.add(cursor);
+    }
+  }
+  
+  /**
+   * The stream of a connection or a space whose activities are pulled at read time.
+   */
+  private static class PullSource {
+    
+    private final IdentityEntity identityEntity;
+    
+    private final ActivityRefType type;
+    
+    private PullSource(IdentityEntity identityEntity, ActivityRefType type) {
+      this.identityEntity = identityEntity;
+      this.type = type;
+    }
+  }
+  
+  /**
+   * The current reference of one of the merged streams. The most recent reference comes first, then the
+   * highest activity id for the references updated at the same time.
+   */
+  private static class StreamCursor implements Comparable<StreamCursor> {
+    
+    private final ActivityRefIterator it;
+    
+    /**
+     * The stream owner of the kept activities, null to keep them all
+     */
+    private final String streamOwnerId;
+    
+    private ActivityRef current;
+    
+    private long time;
+    
+    private String activityId;
+    
+    private StreamCursor(ActivityRefIterator it, String streamOwnerId) {
+      this.it = it;
+      this.streamOwnerId = streamOwnerId;
+    }
+    
+    private boolean next() {
+      while (it.hasNext()) {
+        ActivityRef ref = it.next();
+        // take care in the case, ref.getActivityEntity() = null the same
+        // SpaceRef, need to remove it out
+        if (ref.getActivityEntity() == null) {
+          ref.getDay().getActivityRefs().remove(ref.getName());
+          continue;
+        }
+        //the own stream of a connection also has the activities it commented, liked or was mentioned in
+        if (streamOwnerId != null && !streamOwnerId.equals(ref.getActivityEntity().getIdentity().getId())) {
+          continue;
+        }
+        current = ref;
+        time = Long.parseLong(ref.getName());
+        activityId = ref.getActivityEntity().getId();
+        return true;
+      }
+      current = null;
+      return false;
+    }
+    
+    @Override
+    public int compareTo(StreamCursor o) {
+      if (time != o.time) {
+        return time > o.time ? -1 : 1;
+      }
+      return o.activityId.compareTo(activityId);
+    }
+  }
+  
+  /**
+   * Counts the pushed references of the owner and the activities of the pulled streams. An activity found
+   * in several streams is counted for each of them.
+   */
+  private int getNumberOfActivities(ActivityRefType type, Identity owner, List<PullSource> sources) {
+    int number = getNumberOfActivities(type, owner);
+    for (PullSource source : sources) {
+      number += getNumberOfActivities(source.type, source.identityEntity);
+    }
+    return number;
+  }
+  
+  private int getNumberOfActivities(ActivityRefType type, Identity owner) {
+    try {
+      return getNumberOfActivities(type, identityStorage._findIdentityEntity(owner.getProviderId(), owner.getRemoteId()));
     } catch (NodeNotFoundException e) {
       LOG.warn("Failed to getNumberOfActivities()");
     }
@@ -829,6 +1622,14 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
     return 0;
   }
   
+  private int getNumberOfActivities(ActivityRefType type, IdentityEntity identityEntity) {
+    ActivityRefListEntity refList = type.refsOf(identityEntity);
+    
+    if (refList == null || refList.getNumber() < 0) return 0;
+    
+    return refList.getNumber().intValue();
+  }
+  
   
   private QueryResult<ActivityEntity> getActivitiesOfConnections(Identity ownerIdentity) {
 
@@ -988,6 +1789,7 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         ActivityRefListEntity listRef = type.refsOf(identityEntity);
         
         ActivityRef ref = listRef.getOrCreated(activityEntity, hidableActivity.getHidden());
+        boolean created = ref.getActivityEntity() == null;
         
         //LOG.info("manageRefList()::BEFORE");
         //printDebug(listRef, activityEntity.getLastUpdated());
@@ -1000,6 +1802,10 @@ public class ActivityStreamStorageImpl extends AbstractStorage implements Activi
         }
 
         ref.setActivityEntity(activityEntity);
+        
+        if (created && !hidableActivity.getHidden()) {
+          recordPush(identityEntity.getId(), type);
+        }
       }
     }
     
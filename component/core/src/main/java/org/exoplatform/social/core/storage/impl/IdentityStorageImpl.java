@@ -21,9 +21,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
@@ -55,6 +57,7 @@ import org.exoplatform.social.core.chromattic.entity.SpaceRef;
 import org.exoplatform.social.core.identity.IdentityResult;
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess.Type;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.model.Profile.AttachedActivityType;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
@@ -68,8 +71,11 @@ import org.exoplatform.social.core.storage.IdentityStorageException;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
+import org.exoplatform.social.core.storage.cache.CachedRelationshipStorage;
 import org.exoplatform.social.core.storage.exception.NodeAlreadyExistsException;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
+import org.exoplatform.social.core.storage.graph.IdentityNameIndex;
+import org.exoplatform.social.core.storage.graph.RelationshipGraph;
 import org.exoplatform.social.core.storage.query.JCRProperties;
 import org.exoplatform.social.core.storage.query.QueryFunction;
 import org.exoplatform.social.core.storage.query.WhereExpression;
@@ -89,6 +95,8 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
   private RelationshipStorage relationshipStorage;
   private SpaceStorage spaceStorage;
   private OrganizationService organizationService;
+  private RelationshipGraph relationshipGraph;
+  private IdentityNameIndex nameIndex;
   
 
   static enum PropNs {
@@ -198,6 +206,23 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
     return organizationService;
   }
 
+  private RelationshipGraph getRelationshipGraph() {
+    if (relationshipGraph == null) {
+      relationshipGraph = (RelationshipGraph) PortalContainer.getInstance().getComponentInstanceOfType(RelationshipGraph.class);
+    }
+
+    return relationshipGraph;
+  }
+
+  private IdentityNameIndex getNameIndex() {
+    if (nameIndex == null) {
+      IdentityNameIndex got = (IdentityNameIndex) PortalContainer.getInstance().getComponentInstanceOfType(IdentityNameIndex.class);
+      nameIndex = got != null ? got : new IdentityNameIndex(null);
+    }
+
+    return nameIndex;
+  }
+
   private SpaceStorage getSpaceStorage() {
     if (spaceStorage == null) {
       spaceStorage = (SpaceStorage) PortalContainer.getInstance().getComponentInstanceOfType(SpaceStorage.class);
@@ -357,6 +382,8 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
     //
     getSession().save();
 
+    //the remote id is indexed
+    getNameIndex().invalidate(identity.getId());
 
     //
     LOG.debug(String.format(
@@ -385,6 +412,12 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
     //
     getSession().save();
 
+    //
+    if (getRelationshipGraph() != null) {
+      getRelationshipGraph().removeIdentity(identity.getId());
+    }
+    getNameIndex().invalidate(identity.getId());
+
     //
     LOG.debug(String.format(
         "Identity %s:%s (%s) deleted",
@@ -647,6 +680,9 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
     
     getSession().save();
 
+    //indexed again from the storage before the next suggestion, once committed
+    getNameIndex().invalidate(profileEntity.getIdentity().getId());
+
     //
     LOG.debug(String.format(
         "Profile '%s' for %s:%s (%s) saved",
@@ -771,17 +807,9 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
       }
       
       //
-      NTFile avatar = profileEntity.getAvatar();
-      if (avatar != null) {
-        try {
-          String avatarPath = getSession().getPath(avatar);
-          long lastModified = avatar.getLastModified().getTime();
-          // workaround: as dot character (.) breaks generated url (Ref: SOC-2283)
-          String avatarUrl = StorageUtils.encodeUrl(avatarPath) + "/?upd=" + lastModified;
-          profile.setAvatarUrl(LinkProvider.escapeJCRSpecialCharacters(avatarUrl));
-        } catch (Exception e) {
-          LOG.warn("Failed to build file url from fileResource: " + e.getMessage());
-        }
+      String avatarUrl = avatarUrlOf(profileEntity);
+      if (avatarUrl != null) {
+        profile.setAvatarUrl(avatarUrl);
       }
 
     }
@@ -819,10 +847,158 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
     profile.setProperty(Profile.EXPERIENCES, xpData);
   }
 
+  private String avatarUrlOf(final ProfileEntity profileEntity) {
+    NTFile avatar = profileEntity.getAvatar();
+    if (avatar == null) {
+      return null;
+    }
+    try {
+      String avatarPath = getSession().getPath(avatar);
+      long lastModified = avatar.getLastModified().getTime();
+      // workaround: as dot character (.) breaks generated url (Ref: SOC-2283)
+      String avatarUrl = StorageUtils.encodeUrl(avatarPath) + "/?upd=" + lastModified;
+      return LinkProvider.escapeJCRSpecialCharacters(avatarUrl);
+    } catch (Exception e) {
+      LOG.warn("Failed to build file url from fileResource: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private String firstValueOf(final ProfileEntity profileEntity, final String key) {
+    List<String> values = profileEntity.getProperty(PropNs.VOID.nameOf(key));
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  /**
+   * Builds the summary of an identity from its entities, reading only the properties it needs. Unlike
+   * {@link #populateProfile(Profile, ProfileEntity)}, the space of a space identity is not looked up.
+   */
+  private IdentitySummary summaryOf(final IdentityEntity identityEntity, final ProfileEntity profileEntity) {
+    String providerId = identityEntity.getProviderId();
+    String remoteId = identityEntity.getRemoteId();
+    boolean internal = OrganizationIdentityProvider.NAME.equals(providerId) || SpaceIdentityProvider.NAME.equals(providerId);
+
+    //
+    String fullName = null;
+    String avatarUrl = null;
+    String url = null;
+    if (profileEntity != null) {
+      try {
+        String firstName = firstValueOf(profileEntity, Profile.FIRST_NAME);
+        String lastName = firstValueOf(profileEntity, Profile.LAST_NAME);
+        fullName = (firstName != null ? firstName : "") + (lastName != null ? " " + lastName : "");
+        if (fullName.length() == 0) {
+          fullName = firstValueOf(profileEntity, Profile.FULL_NAME);
+        }
+      } catch (UndeclaredRepositoryException e) {
+        LOG.warn(e.getMessage());
+      }
+      if (internal) {
+        avatarUrl = avatarUrlOf(profileEntity);
+      } else {
+        url = profileEntity.getExternalUrl();
+        avatarUrl = profileEntity.getExternalAvatarUrl();
+      }
+    }
+
+    //
+    if (OrganizationIdentityProvider.NAME.equals(providerId)) {
+      url = LinkProvider.getUserProfileUri(remoteId);
+    } else if (SpaceIdentityProvider.NAME.equals(providerId)) {
+      url = LinkProvider.getSpaceUri(remoteId);
+    }
+    return new IdentitySummary(identityEntity.getId(), providerId, remoteId, fullName != null ? fullName : "",
+                               avatarUrl, url, Boolean.TRUE.equals(identityEntity.isDeleted()));
+  }
+
+  /**
+   * Adds or updates the user identity of a profile in the name index, or removes it once deleted.
+   */
+  private void indexProfile(final IdentityNameIndex index, final ProfileEntity profileEntity) {
+    if (!index.isLoaded()) {
+      return;
+    }
+    IdentityEntity identityEntity = profileEntity.getIdentity();
+    if (!OrganizationIdentityProvider.NAME.equals(identityEntity.getProviderId())) {
+      return;
+    }
+    if (Boolean.TRUE.equals(identityEntity.isDeleted())) {
+      index.removeIdentity(identityEntity.getId());
+      return;
+    }
+
+    //
+    try {
+      index.saveIdentity(summaryOf(identityEntity, profileEntity), firstValueOf(profileEntity, Profile.FIRST_NAME),
+                         firstValueOf(profileEntity, Profile.LAST_NAME));
+    } catch (UndeclaredRepositoryException e) {
+      LOG.warn("Failed to index the profile of " + identityEntity.getRemoteId() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the name index, loaded with all the user identities of the storage.
+   */
+  private IdentityNameIndex getLoadedNameIndex() throws IdentityStorageException {
+    IdentityNameIndex index = getNameIndex();
+    if (index.isLoaded()) {
+      reindex(index, index.takeStaleIds());
+      return index;
+    }
+
+    try {
+      index.load(new IdentityNameIndex.Loader() {
+        @Override
+        public void load(IdentityNameIndex index) throws Exception {
+          ProviderEntity providerEntity = getProviderRoot().getProviders().get(OrganizationIdentityProvider.NAME);
+          if (providerEntity == null) {
+            return;
+          }
+          for (IdentityEntity identityEntity : providerEntity.getIdentities().values()) {
+            if (identityEntity.getProfile() != null) {
+              indexProfile(index, identityEntity.getProfile());
+            }
+          }
+        }
+      });
+    } catch (Exception e) {
+      throw new IdentityStorageException(IdentityStorageException.Type.FAIL_TO_FIND_IDENTITY, e.getMessage(), e);
+    }
+    return index;
+  }
+
+  /**
+   * Indexes the given identities again from the storage, the missing ones are removed from the index.
+   */
+  private void reindex(final IdentityNameIndex index, final Collection<String> identityIds) {
+    for (String identityId : identityIds) {
+      try {
+        IdentityEntity identityEntity = _findById(IdentityEntity.class, identityId);
+        if (identityEntity.getProfile() != null) {
+          indexProfile(index, identityEntity.getProfile());
+        }
+      }
+      catch (NodeNotFoundException e) {
+        index.removeIdentity(identityId);
+      }
+    }
+  }
+
   /*
    * Public
    */
 
+  /**
+   * Marks the identity as changed in the name index, it is indexed again from the storage before the next
+   * suggestion. Called when the name of the identity changed on another cluster node.
+   *
+   * @param identityId the changed identity
+   * @since 4.1.0
+   */
+  public void invalidateIndexedName(final String identityId) {
+    getNameIndex().invalidate(identityId);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -1099,6 +1275,70 @@ public class IdentityStorageImpl extends AbstractStorage implements IdentityStor
   }
   
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<IdentitySummary> getIdentitySummaries(final List<String> identityIds) throws IdentityStorageException {
+
+    List<IdentitySummary> summaries = new ArrayList<IdentitySummary>(identityIds.size());
+    for (String identityId : identityIds) {
+      try {
+        IdentityEntity identityEntity = _findById(IdentityEntity.class, identityId);
+        summaries.add(summaryOf(identityEntity, identityEntity.getProfile()));
+      }
+      catch (NodeNotFoundException e) {
+        LOG.debug(e.getMessage(), e);
+      }
+    }
+    return summaries;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<IdentitySummary> getIdentitySuggestions(final String providerId, final String name, final Identity viewer,
+                                                      final List<Identity> excludedIdentities, int limit)
+      throws IdentityStorageException {
+
+    //only the user identities are indexed
+    if (!OrganizationIdentityProvider.NAME.equals(providerId)) {
+      ProfileFilter profileFilter = new ProfileFilter();
+      profileFilter.setName(name != null ? name : "");
+      profileFilter.setExcludedIdentityList(excludedIdentities);
+      List<String> identityIds = new ArrayList<String>();
+      for (Identity identity : getIdentitiesForMentions(providerId, profileFilter, 0, limit, false)) {
+        identityIds.add(identity.getId());
+      }
+      return getStorage().getIdentitySummaries(identityIds);
+    }
+
+    //
+    Set<String> excludedIds = new HashSet<String>();
+    if (excludedIdentities != null) {
+      for (Identity identity : excludedIdentities) {
+        excludedIds.add(identity.getId());
+      }
+    }
+
+    //the connections are boosted
+    Set<String> connectionIds = null;
+    if (viewer != null && viewer.getId() != null) {
+      RelationshipStorage relationshipStorage = getRelationshipStorage();
+      if (relationshipStorage instanceof CachedRelationshipStorage) {
+        connectionIds = ((CachedRelationshipStorage) relationshipStorage).getConnectionIds(viewer);
+      }
+      else {
+        connectionIds = new HashSet<String>();
+        for (Identity connection : relationshipStorage.getConnections(viewer)) {
+          connectionIds.add(connection.getId());
+        }
+      }
+    }
+
+    //
+    return getLoadedNameIndex().search(providerId, name, connectionIds, excludedIds, limit);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -18,21 +18,16 @@
 package org.exoplatform.social.core.storage.impl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
+import java.util.Set;
 
-import javax.jcr.Node;
-import javax.jcr.NodeIterator;
-
-import org.apache.commons.lang.ArrayUtils;
 import org.chromattic.api.query.Ordering;
 import org.chromattic.api.query.QueryBuilder;
 import org.chromattic.api.query.QueryResult;
@@ -57,10 +52,10 @@ import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.core.storage.cache.CachedActivityStorage;
 import org.exoplatform.social.core.storage.cache.CachedActivityStreamStorage;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
+import org.exoplatform.social.core.storage.graph.RelationshipGraph;
 import org.exoplatform.social.core.storage.query.JCRProperties;
 import org.exoplatform.social.core.storage.query.WhereExpression;
 import org.exoplatform.social.core.storage.streams.StreamInvocationHelper;
-import org.exoplatform.social.core.storage.thread.SocialExecutorService;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -74,9 +69,8 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
   private final IdentityStorage identityStorage;
   private RelationshipStorage relationshipStorage;
   private CachedActivityStorage cachedActivityStorage;
-  private Object lock = new Object();
-  private SocialExecutorService<String[]> executorService = new SocialExecutorService<String[]>(10);
   private CachedActivityStreamStorage streamStorage;
+  private RelationshipGraph graph;
 
   public RelationshipStorageImpl(IdentityStorage identityStorage) {
    this.identityStorage = identityStorage;
@@ -104,49 +98,106 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
     return this.streamStorage;
   }
   
+  private RelationshipGraph getGraph() {
+    
+    if (this.graph == null) {
+      RelationshipGraph got = (RelationshipGraph) PortalContainer.getInstance().getComponentInstanceOfType(RelationshipGraph.class);
+      this.graph = got != null ? got : new RelationshipGraph(null);
+    }
+    
+    return this.graph;
+  }
+  
   private void putRelationshipToList(List<Relationship> relationships, RelationshipListEntity list) {
     if (list != null) {
       for (Map.Entry<String, RelationshipEntity> entry : list.getRelationships().entrySet()) {
-        Relationship relationship = new Relationship(entry.getValue().getId());
+        putRelationshipToList(relationships, entry.getValue());
+      }
+    }
+  }
 
-        RelationshipEntity relationshipEntity = entry.getValue();
-        IdentityEntity senderEntity = relationshipEntity.getFrom();
-        IdentityEntity receiverEntity = relationshipEntity.getTo();
+  /**
+   * Puts the relationships of the list with the checked identities only, found by their names in the list.
+   */
+  private void putRelationshipToList(List<Relationship> relationships, RelationshipListEntity list,
+                                     Collection<String> checkedNames) {
+    if (checkedNames == null) {
+      putRelationshipToList(relationships, list);
+    }
+    else if (list != null) {
+      for (String name : checkedNames) {
+        RelationshipEntity relationshipEntity = list.getRelationships().get(name);
+        if (relationshipEntity != null) {
+          putRelationshipToList(relationships, relationshipEntity);
+        }
+      }
+    }
+  }
 
-        Identity sender = new Identity(senderEntity.getId());
-        sender.setRemoteId(senderEntity.getRemoteId());
-        sender.setProviderId(senderEntity.getProviderId());
-        ProfileEntity senderProfileEntity = senderEntity.getProfile();
+  private void putRelationshipToList(List<Relationship> relationships, RelationshipEntity relationshipEntity) {
+    Relationship relationship = new Relationship(relationshipEntity.getId());
 
-        if (senderProfileEntity != null) {
-          loadProfile(sender);
-        }
+    IdentityEntity senderEntity = relationshipEntity.getFrom();
+    IdentityEntity receiverEntity = relationshipEntity.getTo();
 
-        Identity receiver = new Identity(receiverEntity.getId());
-        receiver.setRemoteId(receiverEntity.getRemoteId());
-        receiver.setProviderId(receiverEntity.getProviderId());
-        ProfileEntity receiverProfileEntity = receiverEntity.getProfile();
+    Identity sender = new Identity(senderEntity.getId());
+    sender.setRemoteId(senderEntity.getRemoteId());
+    sender.setProviderId(senderEntity.getProviderId());
+    ProfileEntity senderProfileEntity = senderEntity.getProfile();
 
-        if (receiverProfileEntity != null) {
-          loadProfile(receiver);
-        }
+    if (senderProfileEntity != null) {
+      loadProfile(sender);
+    }
 
-        relationship.setSender(sender);
-        relationship.setReceiver(receiver);
+    Identity receiver = new Identity(receiverEntity.getId());
+    receiver.setRemoteId(receiverEntity.getRemoteId());
+    receiver.setProviderId(receiverEntity.getProviderId());
+    ProfileEntity receiverProfileEntity = receiverEntity.getProfile();
 
-        if (SENDER.equals(entry.getValue().getParent().getName()) ||
-            RECEIVER.equals(entry.getValue().getParent().getName())) {
-          relationship.setStatus(Relationship.Type.PENDING);
-        }
-        else {
-          relationship.setStatus(Relationship.Type.CONFIRMED);
-        }
+    if (receiverProfileEntity != null) {
+      loadProfile(receiver);
+    }
 
-        // TODO : IGNORED
+    relationship.setSender(sender);
+    relationship.setReceiver(receiver);
+
+    if (SENDER.equals(relationshipEntity.getParent().getName()) ||
+        RECEIVER.equals(relationshipEntity.getParent().getName())) {
+      relationship.setStatus(Relationship.Type.PENDING);
+    }
+    else {
+      relationship.setStatus(Relationship.Type.CONFIRMED);
+    }
 
-        relationships.add(relationship);
+    // TODO : IGNORED
+
+    relationships.add(relationship);
+  }
+
+  /**
+   * Gets the names the relationships of an identity with the checked identities are stored under in its
+   * lists, null to get all its relationships.
+   */
+  private Collection<String> getCheckedNames(Identity identity, List<Identity> listCheckIdentity) {
+    if (listCheckIdentity == null) {
+      return null;
+    }
+
+    //
+    Set<String> names = new LinkedHashSet<String>();
+    for (Identity checked : listCheckIdentity) {
+      String remoteId = checked.getRemoteId();
+      if (remoteId == null) {
+        try {
+          remoteId = _findById(IdentityEntity.class, checked.getId()).getRemoteId();
+        }
+        catch (NodeNotFoundException e) {
+          continue;
+        }
       }
+      names.add(remoteId);
     }
+    return names;
   }
 
   private void loadProfile(Identity identity) {
@@ -431,26 +482,25 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
       final Identity sender, final Relationship.Type type, final List<Identity> listCheckIdentity)
       throws NodeNotFoundException {
 
-    // TODO : listCheckIdentity ?
-
     List<Relationship> relationships = new ArrayList<Relationship>();
 
     //
     IdentityEntity senderEntity = _findById(IdentityEntity.class, sender.getId());
+    Collection<String> checkedNames = getCheckedNames(sender, listCheckIdentity);
 
     if (type == null) {
-      putRelationshipToList(relationships, senderEntity.getRelationship());
-      putRelationshipToList(relationships, senderEntity.getSender());
+      putRelationshipToList(relationships, senderEntity.getRelationship(), checkedNames);
+      putRelationshipToList(relationships, senderEntity.getSender(), checkedNames);
     }
     else {
       switch (type) {
 
         case CONFIRMED:
-          putRelationshipToList(relationships, senderEntity.getRelationship());
+          putRelationshipToList(relationships, senderEntity.getRelationship(), checkedNames);
           break;
 
         case PENDING:
-          putRelationshipToList(relationships, senderEntity.getSender());
+          putRelationshipToList(relationships, senderEntity.getSender(), checkedNames);
           break;
 
         // TODO : IGNORED
@@ -469,20 +519,21 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
 
     //
     IdentityEntity receiverEntity = _findById(IdentityEntity.class, receiver.getId());
+    Collection<String> checkedNames = getCheckedNames(receiver, listCheckIdentity);
 
     if (type == null) {
-      putRelationshipToList(relationships, receiverEntity.getRelationship());
-      putRelationshipToList(relationships, receiverEntity.getReceiver());
+      putRelationshipToList(relationships, receiverEntity.getRelationship(), checkedNames);
+      putRelationshipToList(relationships, receiverEntity.getReceiver(), checkedNames);
     }
     else {
       switch (type) {
 
         case CONFIRMED:
-          putRelationshipToList(relationships, receiverEntity.getRelationship());
+          putRelationshipToList(relationships, receiverEntity.getRelationship(), checkedNames);
           break;
 
         case PENDING:
-          putRelationshipToList(relationships, receiverEntity.getReceiver());
+          putRelationshipToList(relationships, receiverEntity.getReceiver(), checkedNames);
           break;
 
         // TODO : IGNORED
@@ -584,6 +635,9 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
       else {
         _saveRelationship(relationship);
       }
+
+      //
+      getGraph().saveRelationship(relationship.getSender().getId(), relationship.getReceiver().getId());
     }
     catch (NodeNotFoundException e) {
       throw new RelationshipStorageException(
@@ -605,12 +659,15 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
 
       IdentityEntity from = toDeleteRelationship.getFrom();
       IdentityEntity to = toDeleteRelationship.getFrom();
+      String fromId = from.getId();
+      String toId = toDeleteRelationship.getTo().getId();
 
       _removeById(RelationshipEntity.class, symmetricalRelationship.getId());
       _removeById(RelationshipEntity.class, relationship.getId());
       
       //getSession().save();
       StorageUtils.persist();
+      getGraph().removeRelationship(fromId, toId);
       
       //getCachedActivityStreamStorage().deleteConnect(relationship.getSender(), relationship.getReceiver());
       StreamInvocationHelper.deleteConnect(relationship.getSender(), relationship.getReceiver());
@@ -724,26 +781,27 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
 
       //
       IdentityEntity receiverEntity = _findById(IdentityEntity.class, identity.getId());
+      Collection<String> checkedNames = getCheckedNames(identity, listCheckIdentity);
 
       if (type == null) {
-        putRelationshipToList(relationships, receiverEntity.getRelationship());
-        putRelationshipToList(relationships, receiverEntity.getReceiver());
-        putRelationshipToList(relationships, receiverEntity.getSender());
+        putRelationshipToList(relationships, receiverEntity.getRelationship(), checkedNames);
+        putRelationshipToList(relationships, receiverEntity.getReceiver(), checkedNames);
+        putRelationshipToList(relationships, receiverEntity.getSender(), checkedNames);
       }
       else {
         switch (type) {
 
           case CONFIRMED:
-            putRelationshipToList(relationships, receiverEntity.getRelationship());
+            putRelationshipToList(relationships, receiverEntity.getRelationship(), checkedNames);
             break;
 
           case PENDING:
-            putRelationshipToList(relationships, receiverEntity.getReceiver());
-            putRelationshipToList(relationships, receiverEntity.getSender());
+            putRelationshipToList(relationships, receiverEntity.getReceiver(), checkedNames);
+            putRelationshipToList(relationships, receiverEntity.getSender(), checkedNames);
             break;
 
           case IGNORED:
-            putRelationshipToList(relationships, receiverEntity.getIgnored());
+            putRelationshipToList(relationships, receiverEntity.getIgnored(), checkedNames);
             break;
 
         }
@@ -1042,172 +1100,130 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
 
   }
   
-  private String[] getRelationships(String id) {
-    ThreadLocal<String[]> identityIdsLocal = new ThreadLocal<String[]>();
-
-    String[] relationshipIds = new String[0];
-    identityIdsLocal.set(relationshipIds);
-
+  /**
+   * {@inheritDoc}
+   */
+  public Map<Identity, Integer> getSuggestions(Identity identity, int offset, int limit) throws RelationshipStorageException {
+    RelationshipGraph graph = getLoadedGraph();
+    Map<String, Integer> suggestionIdMap;
+    if (graph.getRelatedCount(identity.getId()) > 0) {
+      //friends of friends, the most common first
+      suggestionIdMap = graph.getSuggestions(identity.getId(), offset + limit + 1);
+    }
+    else {
+      //nobody in common with anyone, any user can be suggested
+      suggestionIdMap = getUserSuggestions(identity, offset + limit + 1);
+    }
+    //
+    if (offset > suggestionIdMap.size()) return Collections.emptyMap();
+    return buildSuggestions(suggestionIdMap, offset, limit);
+  }
+  
+  /**
+   * Gets the users to suggest to an identity which has no relationship, without common relationship.
+   */
+  private Map<String, Integer> getUserSuggestions(Identity identity, int size) throws RelationshipStorageException {
+    Map<String, Integer> suggestionIdMap = new LinkedHashMap<String, Integer>();
     try {
+      QueryBuilder<IdentityEntity> builder = getSession().createQueryBuilder(IdentityEntity.class);
 
-      IdentityEntity identityEntity = _findById(IdentityEntity.class, id);
-
-      StringBuffer sb = new StringBuffer().append("SELECT * FROM soc:relationshipdefinition WHERE ");
-      sb.append(JCRProperties.path.getName())
-        .append(" LIKE '")
-        .append(identityEntity.getPath() + StorageUtils.SLASH_STR + StorageUtils.PERCENT_STR)
-        .append("'");
-      //
-      sb.append(" ORDER BY ").append(RelationshipEntity.createdTime.getName()).append(" DESC ");
-
-      synchronized (lock) {
-
-        NodeIterator it = nodes(sb.toString());
-
-        while (it.hasNext()) {
-          Node node = (Node) it.next();
+      WhereExpression whereExpression = new WhereExpression();
+      whereExpression.like(JCRProperties.path, getProviderRoot().getProviders().get(OrganizationIdentityProvider.NAME).getPath() + StorageUtils.SLASH_STR + StorageUtils.PERCENT_STR);
 
-          RelationshipEntity currentRelationshipEntity = _findById(RelationshipEntity.class,
-                                                                   node.getUUID());
+      builder.where(whereExpression.toString());
 
-          IdentityEntity gotIdentityEntity;
-          if (currentRelationshipEntity.isReceiver()) {
-            gotIdentityEntity = currentRelationshipEntity.getFrom();
-          } else {
-            gotIdentityEntity = currentRelationshipEntity.getTo();
-          }
-          identityIdsLocal.set((String[]) ArrayUtils.add(identityIdsLocal.get(),
-                                                         gotIdentityEntity.getId()));
+      QueryResult<IdentityEntity> results = builder.get().objects();
+      while (results.hasNext() && suggestionIdMap.size() < size) {
+        IdentityEntity identityEntity = results.next();
+        if (!identityEntity.getId().equals(identity.getId())) {
+          suggestionIdMap.put(identityEntity.getId(), 0);
         }
-
       }
     } catch (Exception e) {
       throw new RelationshipStorageException(RelationshipStorageException.Type.FAILED_TO_GET_RELATIONSHIP,
                                              e.getMessage());
     }
-
-    return identityIdsLocal.get();
+    return suggestionIdMap;
   }
   
-  private String[] getSuggestion(List<String> relationshipIds) {
-    String[] suggestions = new String[0];
-    
-    try {
-      int startIndex = 0;
-      int toIndex = 100;
-      //
-      List<String> excludeIdentities = StorageUtils.subList(relationshipIds, startIndex, toIndex); 
-      while (excludeIdentities.size() > 0) {
-        
-        StringBuffer sb = new StringBuffer().append("SELECT * FROM soc:identitydefinition WHERE ");
-        sb.append(JCRProperties.path.getName()).append(" LIKE '").append(getProviderRoot().getProviders().get(OrganizationIdentityProvider.NAME).getPath() + StorageUtils.SLASH_STR + StorageUtils.PERCENT_STR).append("'");
-        
-        for(String id : excludeIdentities) {
-          sb.append(" AND NOT ").append(JCRProperties.id.getName()).append(" = '").append(id).append("'");
-        }
-        
-        NodeIterator nodeIter = nodes(sb.toString()); 
-        while(nodeIter.hasNext()) {
-          Node node = (Node)nodeIter.next();
-          String id = node.getUUID();
-          //String remoteId = node.getProperty(IdentityEntity.remoteId.getName()).getString();
-          if (relationshipIds.contains(id) == false
-              && ArrayUtils.contains(suggestions, id) == false) {
-            suggestions = (String[]) ArrayUtils.add(suggestions, id);
-          }
-        }
-        
-        //
-        startIndex = toIndex;
-        toIndex += 100;
-        
-        excludeIdentities = StorageUtils.subList(relationshipIds, startIndex, toIndex); 
-      }//end filter identities
-      
-    } catch (Exception e) {
-      throw new RelationshipStorageException(RelationshipStorageException.Type.FAILED_TO_GET_RELATIONSHIP,
-                                             e.getMessage());
-    }
-    
-    return suggestions;
-  }
   /**
-   * Gets Suggestion list with relationship for each identity.
-   * @param suggestions
-   * @return
+   * Adds a relationship to the graph, from the list it is stored in under one of its identities.
    */
-  private Map<String, String[]> getSuggestionRelationships(final String[] suggestions) {
-    for (final String id : suggestions) {
-      //
-      Callable<String[]> task = new  Callable<String[]>() {
-        @Override
-        public String[] call() throws Exception {
-          return getRelationships(id);
-        }
-      };
-      executorService.submit(task, id);
+  private void loadRelationship(RelationshipGraph graph, RelationshipEntity relationshipEntity) {
+    IdentityEntity from = relationshipEntity.getFrom();
+    IdentityEntity to = relationshipEntity.getTo();
+    if (from != null && to != null) {
+      graph.saveRelationship(from.getId(), to.getId());
     }
-    
-    //Wait multiple threads finish work and push relationships to map
-    Map<String, String[]> suggestRelationships = new HashMap<String, String[]>();
-    copyFutureToMap(suggestRelationships, executorService.getFutureCollections());
-    
-    return suggestRelationships;
   }
+  
   /**
-   * Gets result from future task
-   * @param map
-   * @param futures
+   * Gets the ids of the identities related to an identity, whatever the status of their relationship.
    */
-  private void copyFutureToMap(Map<String, String[]> map, Map<String, Future<String[]>> futures) {
+  private Set<String> getRelatedIds(String identityId) {
+    Set<String> relatedIds = new LinkedHashSet<String>();
     try {
-      for (Entry<String, Future<String[]>> future : futures.entrySet()) {
-        map.put(future.getKey(), future.getValue().get());
+      IdentityEntity identityEntity = _findById(IdentityEntity.class, identityId);
+      RelationshipListEntity[] lists = new RelationshipListEntity[] {
+          identityEntity.getSender(), identityEntity.getReceiver(), identityEntity.getRelationship(),
+          identityEntity.getIgnore(), identityEntity.getIgnored()
+      };
+      for (RelationshipListEntity list : lists) {
+        if (list == null) {
+          continue;
+        }
+        for (RelationshipEntity relationshipEntity : list.getRelationships().values()) {
+          IdentityEntity from = relationshipEntity.getFrom();
+          IdentityEntity to = relationshipEntity.getTo();
+          if (from != null && to != null) {
+            relatedIds.add(identityId.equals(from.getId()) ? to.getId() : from.getId());
+          }
+        }
       }
-    } catch (Exception e) {
-      LOG.warn("Failed to get result from Future." + e);
+    } catch (NodeNotFoundException e) {
+      //deleted, no more relationships
     }
+    return relatedIds;
   }
+  
   /**
-   * Calculate and statistic suggestion.
-   * 
-   * @param relationshipIds
-   * @param suggestRelationships
-   * @return
+   * Marks the relationships of an identity as changed, here or on another cluster node, so that they are
+   * read again from the storage before the next use of the graph.
+   *
+   * @param identityId the identity whose relationships changed
    */
-  private Map<String, Integer> statisticSuggesstion(List<String> relationshipIds, Map<String, String[]> suggestRelationships) {
-    //Calculate the common users of current Identity with each suggestion.
-    Map<String, Integer> suggestionIdMap = new HashMap<String, Integer>();
-    for (Entry<String, String[]> friendOfIdentity : suggestRelationships.entrySet()) {
-      //
-      String identityId = friendOfIdentity.getKey();
-      suggestionIdMap.put(identityId, StorageUtils.getCommonItemNumber(relationshipIds, Arrays.asList(friendOfIdentity.getValue())));
-    }
-    
-    return suggestionIdMap;
+  public void invalidateRelationships(String identityId) {
+    getGraph().invalidate(identityId);
   }
   
   /**
-   * {@inheritDoc}
+   * Gets the relationship graph, loaded with all the relationships of the storage and up to date with
+   * the changes made on the other nodes.
    */
-  public Map<Identity, Integer> getSuggestions(Identity identity, int offset, int limit) throws RelationshipStorageException {
-    //get identities who have relationship
-    List<String> relationshipIds = new ArrayList<String>(); 
-    relationshipIds.add(identity.getId());
-    relationshipIds.addAll(Arrays.asList(getRelationships(identity.getId())));
-    
-    //store all identities who is not relationship with provided identity
-    String[] suggestions = getSuggestion(relationshipIds);
-
-    //Find relationships of the identities are filtered
-    //Wait multiple threads finish work and push relationships to map
-    Map<String, String[]> suggestRelationships = getSuggestionRelationships(suggestions);
+  private RelationshipGraph getLoadedGraph() throws RelationshipStorageException {
+    RelationshipGraph graph = getGraph();
+    try {
+      if (!graph.isLoaded()) {
+        graph.load(new RelationshipGraph.Loader() {
+          @Override
+          public void load(RelationshipGraph graph) throws Exception {
+            QueryResult<RelationshipEntity> it = getSession().createQueryBuilder(RelationshipEntity.class).get().objects();
+            while (it.hasNext()) {
+              loadRelationship(graph, it.next());
+            }
+          }
+        });
+      }
 
-    //statistic suggestion
-    Map<String, Integer> suggestionIdMap = statisticSuggesstion(relationshipIds, suggestRelationships);
-    //
-    if (offset > suggestionIdMap.size()) return Collections.emptyMap();
-    return buildSuggestions(StorageUtils.sortMapByValue(suggestionIdMap, false), offset, limit);
+      //changed on another node, or while the graph was loaded
+      for (String identityId : graph.takeStaleIds()) {
+        graph.setRelationships(identityId, getRelatedIds(identityId));
+      }
+    } catch (Exception e) {
+      throw new RelationshipStorageException(RelationshipStorageException.Type.FAILED_TO_GET_RELATIONSHIP,
+                                             e.getMessage());
+    }
+    return graph;
   }
   
   private Map<Identity, Integer> buildSuggestions(Map<String, Integer> mapIds,
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -128,7 +129,7 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     String[] managers = entity.getManagerMembersId();
 
     //
-    Set<String> membersList = new HashSet<String>();
+    Set<String> membersList = new LinkedHashSet<String>();
     if (members != null) membersList.addAll(Arrays.asList(members));
     if (managers != null) membersList.addAll(Arrays.asList(managers));
 
@@ -335,9 +336,14 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
       return l1;
     }
 
-    List<String> l = new ArrayList(Arrays.asList(l1));
-    l.removeAll(Arrays.asList(l2));
-    return l.toArray(new String[]{});
+    Set<String> excluded = new HashSet<String>(Arrays.asList(l2));
+    List<String> l = new ArrayList<String>(l1.length);
+    for (String id : l1) {
+      if (!excluded.contains(id)) {
+        l.add(id);
+      }
+    }
+    return l.toArray(new String[l.size()]);
   }
 
   private void createRefs(SpaceEntity spaceEntity, Space space) throws NodeNotFoundException {
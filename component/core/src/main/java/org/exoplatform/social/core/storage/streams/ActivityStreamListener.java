@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.streams;
+
+import java.util.Set;
+
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
+
+/**
+ * Listens to the references written in the activity streams, so that the layers above the storage
+ * can follow the streams without the storage knowing them. The listeners register themselves with
+ * {@link org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl#addStreamListener(ActivityStreamListener)}.
+ *
+ * @since 4.1.0
+ */
+public interface ActivityStreamListener {
+
+  /**
+   * Called once the references of a new activity were saved on top of the given streams.
+   *
+   * @param activityId the id of the new activity
+   * @param type the stream type
+   * @param ownerIds the identity ids of the stream owners
+   */
+  void pushed(String activityId, ActivityRefType type, Set<String> ownerIds);
+
+  /**
+   * Called when the references of a new activity could not all be saved in the given streams.
+   *
+   * @param type the stream type
+   * @param ownerIds the identity ids of the stream owners
+   */
+  void pushFailed(ActivityRefType type, Set<String> ownerIds);
+
+  /**
+   * Called when an activity got a reference on top of the own streams of the given identities, when
+   * it is saved, updated, commented or shown again.
+   *
+   * @param ref the activity and its last update time
+   * @param ownerIds the identity ids of the stream owners
+   */
+  void lastUpdated(ActivityUpdateRef ref, Set<String> ownerIds);
+
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.streams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.exoplatform.commons.chromattic.ChromatticManager;
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.common.service.impl.SocialServiceContextImpl;
+import org.exoplatform.social.common.service.thread.SocialThreadFactory;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.picocontainer.Startable;
+
+/**
+ * Writes the references of a new activity to the streams of its recipients.
+ *
+ * The recipients are split into batches of a fixed size. In async mode each batch is written in its own
+ * Chromattic session by a bounded thread pool, and retried after a growing delay when it fails. The tasks
+ * only hold ids, the entities are loaded again in the session of the worker. When the queue is full, the
+ * calling thread waits for room, which slows down the producers instead of piling up work, and a task
+ * submitted by a worker is written in the session of that worker, retried with its enclosing task.
+ * In sync mode the tasks are written in the session of the calling thread.
+ *
+ * Above the pull threshold, the activity is not written to the streams of the recipients: it stays in
+ * the stream of the poster or of the space, and the recipients pull it from there when their streams
+ * are read.
+ *
+ * @since 4.1.0
+ */
+@Managed
+@ManagedDescription("Social activity stream fan-out")
+@NameTemplate({@Property(key = "service", value = "social"), @Property(key = "view", value = "StreamFanOut")})
+public class StreamFanOutService implements Startable {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(StreamFanOutService.class);
+
+  private static final String BATCH_SIZE = "batch-size";
+  private static final String POOL_SIZE = "pool-size";
+  private static final String MAX_POOL_SIZE = "max-pool-size";
+  private static final String MAX_QUEUE_SIZE = "max-queue-size";
+  private static final String MAX_RETRIES = "max-retries";
+  private static final String RETRY_DELAY = "retry-delay";
+  private static final String PULL_THRESHOLD = "pull-threshold";
+
+  /**
+   * Writes one batch of recipients.
+   */
+  public interface BatchWriter {
+    void write(List<Identity> batch) throws Exception;
+  }
+
+  /**
+   * Writes references in the current session. It must only hold ids, since it may run in another session.
+   */
+  public interface Task {
+    void write() throws Exception;
+  }
+
+  private final ChromatticManager manager;
+
+  private final int batchSize;
+  private final int poolSize;
+  private final int maxPoolSize;
+  private final int maxQueueSize;
+  private final int maxRetries;
+  private final int retryDelay;
+
+  private volatile int pullThreshold;
+
+  private ThreadPoolExecutor executor;
+
+  /**
+   * The task written by the current worker
+   */
+  private final ThreadLocal<Job> currentJob = new ThreadLocal<Job>();
+
+  private final AtomicLong submittedBatches = new AtomicLong();
+  private final AtomicLong completedBatches = new AtomicLong();
+  private final AtomicLong failedBatches = new AtomicLong();
+  private final AtomicLong retriedBatches = new AtomicLong();
+  private final AtomicLong blockedBatches = new AtomicLong();
+  private final AtomicLong totalBatchTime = new AtomicLong();
+  private final AtomicLong maxBatchTime = new AtomicLong();
+
+  public StreamFanOutService(ChromatticManager manager, InitParams params) {
+    this.manager = manager;
+    this.batchSize = getValue(params, BATCH_SIZE, 100);
+    this.poolSize = getValue(params, POOL_SIZE, 2);
+    this.maxPoolSize = Math.max(poolSize, getValue(params, MAX_POOL_SIZE, 4));
+    this.maxQueueSize = getValue(params, MAX_QUEUE_SIZE, 200);
+    this.maxRetries = getValue(params, MAX_RETRIES, 2);
+    this.retryDelay = getValue(params, RETRY_DELAY, 100);
+    this.pullThreshold = getValue(params, PULL_THRESHOLD, 0);
+  }
+
+  private static int getValue(InitParams params, String name, int defaultValue) {
+    try {
+      int value = Integer.valueOf(params.getValueParam(name).getValue());
+      return value > 0 ? value : defaultValue;
+    } catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  @Override
+  public void start() {
+    executor = new ThreadPoolExecutor(poolSize, maxPoolSize, 60L, TimeUnit.SECONDS,
+                                      new ArrayBlockingQueue<Runnable>(maxQueueSize),
+                                      new SocialThreadFactory(null, "SocialFanOut", true, Thread.NORM_PRIORITY),
+                                      new BlockingHandler());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Writes the given recipients batch by batch.
+   *
+   * @param recipients the recipients of the activity
+   * @param writer writes one batch
+   */
+  public void fanOut(List<Identity> recipients, final BatchWriter writer) {
+    for (int from = 0; from < recipients.size(); from += batchSize) {
+      final List<Identity> batch = new ArrayList<Identity>(recipients.subList(from, Math.min(from + batchSize, recipients.size())));
+      execute(new Task() {
+        @Override
+        public void write() throws Exception {
+          writer.write(batch);
+        }
+      });
+    }
+  }
+
+  /**
+   * Writes the given task, by the pool in async mode.
+   *
+   * @param task the task
+   */
+  public void execute(Task task) {
+    execute(task, executor != null && SocialServiceContextImpl.getInstance().isAsync());
+  }
+
+  void execute(Task task, boolean async) {
+    Job job = new Job(task);
+    submittedBatches.incrementAndGet();
+    if (async) {
+      executor.execute(job);
+    } else {
+      job.run();
+    }
+  }
+
+  /**
+   * Tells whether the activities of a stream with the given number of recipients are pulled
+   * by the recipients instead of being written to their streams.
+   *
+   * @param recipients the number of connections of the poster or of members of the space
+   * @return true when the pull threshold is enabled and exceeded
+   */
+  public boolean isPullSource(int recipients) {
+    int threshold = pullThreshold;
+    return threshold > 0 && recipients > threshold;
+  }
+
+  /**
+   * Writes one task, in its own session when the current thread has none.
+   */
+  private class Job implements Runnable {
+
+    private final Task task;
+
+    private Job(Task task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      if (currentJob.get() != null) {
+        //rejected by the full queue, written with the enclosing task of the worker
+        writeNested();
+        return;
+      }
+
+      //
+      long start = System.currentTimeMillis();
+      try {
+        for (int attempt = 0; ; attempt++) {
+          try {
+            write();
+            completedBatches.incrementAndGet();
+            return;
+          } catch (Exception e) {
+            //a failed session of the caller can't be written again
+            if (attempt >= maxRetries || manager.getSynchronization() != null || !sleep(attempt)) {
+              failedBatches.incrementAndGet();
+              LOG.warn("Failed to write a batch of activity references.");
+              LOG.debug("Failed to write a batch of activity references.", e);
+              return;
+            }
+            retriedBatches.incrementAndGet();
+          }
+        }
+      } finally {
+        recordTime(System.currentTimeMillis() - start);
+      }
+    }
+
+    private void write() throws Exception {
+      if (manager.getSynchronization() != null) {
+        //written with the session of the caller
+        task.write();
+        return;
+      }
+
+      boolean done = false;
+      currentJob.set(this);
+      manager.beginRequest();
+      try {
+        task.write();
+        done = true;
+      } finally {
+        manager.endRequest(done);
+        currentJob.remove();
+      }
+    }
+
+    private void writeNested() {
+      try {
+        task.write();
+        completedBatches.incrementAndGet();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException("Failed to write a batch of activity references.", e);
+      }
+    }
+
+    /**
+     * Waits before the next attempt, twice longer after each failure.
+     *
+     * @return false when the worker was interrupted
+     */
+    private boolean sleep(int attempt) {
+      try {
+        Thread.sleep((long) retryDelay << attempt);
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+  }
+
+  /**
+   * Makes the calling thread wait for room in the queue when it is full, so that the task is still written
+   * in its own session and retried. The workers write it themselves, since they would otherwise wait
+   * for each other.
+   */
+  private class BlockingHandler implements RejectedExecutionHandler {
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+      if (e.isShutdown()) {
+        failedBatches.incrementAndGet();
+        return;
+      }
+      blockedBatches.incrementAndGet();
+      if (currentJob.get() != null) {
+        r.run();
+        return;
+      }
+      try {
+        e.getQueue().put(r);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        failedBatches.incrementAndGet();
+      }
+    }
+
+  }
+
+  private void recordTime(long time) {
+    totalBatchTime.addAndGet(time);
+    long max = maxBatchTime.get();
+    while (time > max && !maxBatchTime.compareAndSet(max, time)) {
+      max = maxBatchTime.get();
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Number of recipients written per batch")
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @Managed
+  @ManagedDescription("Number of recipients above which the activities are pulled at read time, 0 when disabled")
+  public int getPullThreshold() {
+    return pullThreshold;
+  }
+
+  @Managed
+  @ManagedDescription("Sets the number of recipients above which the activities are pulled at read time, 0 to disable")
+  public void setPullThreshold(int pullThreshold) {
+    this.pullThreshold = Math.max(0, pullThreshold);
+  }
+
+  @Managed
+  @ManagedDescription("Number of batches waiting in the queue")
+  public int getQueueDepth() {
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  @Managed
+  @ManagedDescription("Number of batches being written by the pool")
+  public int getActiveBatches() {
+    return executor == null ? 0 : executor.getActiveCount();
+  }
+
+  @Managed
+  @ManagedDescription("Number of submitted batches")
+  public long getSubmittedBatches() {
+    return submittedBatches.get();
+  }
+
+  @Managed
+  @ManagedDescription("Number of written batches")
+  public long getCompletedBatches() {
+    return completedBatches.get();
+  }
+
+  @Managed
+  @ManagedDescription("Number of batches given up after the retries")
+  public long getFailedBatches() {
+    return failedBatches.get();
+  }
+
+  @Managed
+  @ManagedDescription("Number of retries of failed batches")
+  public long getRetriedBatches() {
+    return retriedBatches.get();
+  }
+
+  @Managed
+  @ManagedDescription("Number of batches submitted while the queue was full")
+  public long getBlockedBatches() {
+    return blockedBatches.get();
+  }
+
+  @Managed
+  @ManagedDescription("Average time to write a batch, in milliseconds")
+  public long getAverageBatchTime() {
+    long count = completedBatches.get() + failedBatches.get();
+    return count == 0 ? 0 : totalBatchTime.get() / count;
+  }
+
+  @Managed
+  @ManagedDescription("Maximum time to write a batch, in milliseconds")
+  public long getMaxBatchTime() {
+    return maxBatchTime.get();
+  }
+
+}
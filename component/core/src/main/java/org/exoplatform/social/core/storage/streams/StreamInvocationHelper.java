@@ -18,6 +18,7 @@ package org.exoplatform.social.core.storage.streams;
 
 import java.util.List;
 
+import org.exoplatform.container.PortalContainer;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.common.service.ProcessContext;
@@ -26,6 +27,7 @@ import org.exoplatform.social.common.service.impl.SocialServiceContextImpl;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.chromattic.entity.ActivityEntity;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.storage.impl.AbstractStorage;
 import org.exoplatform.social.core.storage.impl.StorageUtils;
 
 public class StreamInvocationHelper {
@@ -42,16 +44,33 @@ public class StreamInvocationHelper {
    * @param mentioners NULL is empty mentioner.
    * @return
    */
-  public static ProcessContext save(Identity owner, ActivityEntity entity, String[] mentioners) {
+  public static ProcessContext save(final Identity owner, ActivityEntity entity, final String[] mentioners) {
     //
-    SocialServiceContext ctx = SocialServiceContextImpl.getInstance();
+    final SocialServiceContext ctx = SocialServiceContextImpl.getInstance();
     StreamProcessContext processCtx = StreamProcessContext.getIntance(StreamProcessContext.NEW_ACTIVITY_RELATIONS_PROCESS, ctx);
     processCtx.identity(owner).activityEntity(entity).mentioners(mentioners);
     
     try {
-      if (ctx.isAsync()) {
-        //
-        ctx.getServiceExecutor().async(StreamProcessorFactory.saveStream(), processCtx);
+      StreamFanOutService fanOutService = (StreamFanOutService) PortalContainer.getInstance().getComponentInstanceOfType(StreamFanOutService.class);
+      if (ctx.isAsync() && fanOutService != null) {
+        //doesn't wait for the fan-out, the worker loads the activity again in its own session
+        final String activityId = entity.getId();
+        fanOutService.execute(new StreamFanOutService.Task() {
+          @Override
+          public void write() throws Exception {
+            ActivityEntity activityEntity = AbstractStorage.lifecycleLookup().getSession().findById(ActivityEntity.class, activityId);
+            if (activityEntity == null) {
+              LOG.debug("The activity " + activityId + " has been removed before its fan-out.");
+              return;
+            }
+            StreamProcessContext workCtx = StreamProcessContext.getIntance(StreamProcessContext.NEW_ACTIVITY_RELATIONS_PROCESS, ctx);
+            workCtx.identity(owner).activityEntity(activityEntity).mentioners(mentioners);
+            ctx.getServiceExecutor().execute(StreamProcessorFactory.saveStream(), workCtx);
+            if (workCtx.isFailed()) {
+              throw workCtx.getException();
+            }
+          }
+        });
       } else {
         ctx.getServiceExecutor().execute(StreamProcessorFactory.saveStream(), processCtx);
       }
@@ -98,9 +117,22 @@ public class StreamInvocationHelper {
   }
   
   public static ProcessContext update(ActivityEntity entity, String[] mentioners, long oldUpdated) {
+    return update(null, entity, mentioners, oldUpdated);
+  }
+  
+  /**
+   * Moves the references of the updated activity on top of the streams.
+   * 
+   * @param updater the identity who updated the activity, its unread counters are not incremented
+   * @param entity the updated activity
+   * @param mentioners the mentioners
+   * @param oldUpdated the last updated time before the update
+   * @since 4.1.0
+   */
+  public static ProcessContext update(Identity updater, ActivityEntity entity, String[] mentioners, long oldUpdated) {
     //
     StreamProcessContext processCtx = StreamProcessContext.getIntance(StreamProcessContext.UPDATE_ACTIVITY_PROCESS, ctx);
-    processCtx.activityEntity(entity).mentioners(mentioners).oldLastUpdated(oldUpdated);
+    processCtx.identity(updater).activityEntity(entity).mentioners(mentioners).oldLastUpdated(oldUpdated);
     
     try {
       if (ctx.isAsync()) {
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.streams;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
+import org.exoplatform.social.core.storage.cache.SocialStorageCacheService;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndex;
+import org.exoplatform.social.core.storage.cache.model.data.UnreadCounterData;
+import org.exoplatform.social.core.storage.cache.model.key.UnreadCounterKey;
+import org.exoplatform.social.core.storage.cache.selector.ScopeCacheSelector;
+
+/**
+ * Keeps the number of activities updated since each activity stream of an identity was viewed.
+ *
+ * A counter is computed once from the storage for the current view times of the streams, so that the
+ * polls of the badges read it without query until the stream changes. The stream fan-out and the comments
+ * remove the counters their activity changes, and the cache has no atomic update shared by the nodes, so
+ * these counters are computed again on the next poll instead of being updated in place. When the user
+ * views a stream the view times change, and the counter is computed again on the next poll.
+ *
+ * @since 4.1.0
+ */
+@Managed
+@ManagedDescription("Social activity stream unread counters")
+@NameTemplate({@Property(key = "service", value = "social"), @Property(key = "view", value = "UnreadCounters")})
+public class UnreadCounterService {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(UnreadCounterService.class);
+
+  private final ExoCache<UnreadCounterKey, UnreadCounterData> counterCache;
+
+  private final CacheKeyIndex<UnreadCounterKey, UnreadCounterData> counterKeys;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public UnreadCounterService(SocialStorageCacheService cacheService) {
+    this.counterCache = cacheService.getUnreadCounterCache();
+    this.counterKeys = cacheService.getKeyIndex(counterCache);
+  }
+
+  /**
+   * Gets the number of updated activities of a stream.
+   *
+   * @param identityId the stream owner
+   * @param type the stream type
+   * @param viewTimes the current view times of the streams
+   * @return the number of updated activities, null when it must be computed
+   */
+  public Integer getCount(String identityId, ActivityFilterType type, long[] viewTimes) {
+    UnreadCounterData data = counterCache.get(new UnreadCounterKey(identityId, type));
+    if (data == null || !data.isViewedAt(viewTimes)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return data.size();
+  }
+
+  /**
+   * Sets the updated activities of a stream, as computed from the storage.
+   *
+   * @param identityId the stream owner
+   * @param type the stream type
+   * @param viewTimes the view times the activities were computed for
+   * @param activityIds the ids of the updated activities
+   * @param excludedIds the ids of the activities excluded from the count as they were viewed in another stream
+   */
+  public void setUpdated(String identityId, ActivityFilterType type, long[] viewTimes, Collection<String> activityIds,
+                         String[] excludedIds) {
+    counterCache.put(new UnreadCounterKey(identityId, type), new UnreadCounterData(viewTimes, activityIds, excludedIds));
+  }
+
+  /**
+   * Removes the counters of the given streams which do not count the updated activity yet, they are
+   * computed again on the next poll. The counters which already count the activity, or which exclude it,
+   * are left as is.
+   *
+   * @param identityIds the stream owners
+   * @param type the stream type
+   * @param activityId the id of the updated activity
+   */
+  public void invalidate(Collection<String> identityIds, ActivityFilterType type, String activityId) {
+    for (String identityId : identityIds) {
+      UnreadCounterKey key = new UnreadCounterKey(identityId, type);
+      UnreadCounterData data = counterCache.get(key);
+      if (data != null && !data.isCounted(activityId)) {
+        counterCache.remove(key);
+        invalidations.incrementAndGet();
+      }
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Removes all the unread counters")
+  public void clear() {
+    try {
+      counterKeys.select(new ScopeCacheSelector<UnreadCounterKey, UnreadCounterData>());
+    } catch (Exception e) {
+      LOG.error(e);
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Number of polls answered by a counter")
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Managed
+  @ManagedDescription("Number of polls which computed the counter from the storage")
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Managed
+  @ManagedDescription("Number of counters removed by the updated activities")
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+
+}
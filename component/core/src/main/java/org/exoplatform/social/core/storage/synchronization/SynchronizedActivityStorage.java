@@ -23,6 +23,9 @@ import java.util.SortedSet;
 
 import org.exoplatform.social.core.ActivityProcessor;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
+import org.exoplatform.social.core.activity.filter.CommentIndex;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.ActivityStorageException;
@@ -31,6 +34,7 @@ import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
 import org.exoplatform.social.core.storage.impl.ActivityStorageImpl;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -63,6 +67,38 @@ public class SynchronizedActivityStorage extends ActivityStorageImpl {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CommentIndex getCommentIndex(final String activityId) {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getCommentIndex(activityId);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ExoSocialActivity> getActivities(final List<String> activityIds) throws ActivityStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getActivities(activityIds);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -1090,6 +1126,28 @@ public class SynchronizedActivityStorage extends ActivityStorageImpl {
     }
   }
   
+  @Override
+  public List<ExoSocialActivity> getStreamActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit) {
+    boolean created = startSynchronization();
+    try {
+      return super.getStreamActivities(type, owner, cursor, limit);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+  }
+  
+  @Override
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners) {
+    boolean created = startSynchronization();
+    try {
+      return super.getLastUpdates(owners);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+  }
+  
   @Override
   public List<ExoSocialActivity> getNewerUserActivities(Identity owner, Long sinceTime, int limit) {
     boolean created = startSynchronization();
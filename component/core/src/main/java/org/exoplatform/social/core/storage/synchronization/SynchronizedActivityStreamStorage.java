@@ -17,8 +17,11 @@
 package org.exoplatform.social.core.storage.synchronization;
 
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.social.common.service.ProcessContext;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl;
@@ -115,6 +118,39 @@ public class SynchronizedActivityStreamStorage extends ActivityStreamStorageImpl
     }
   }
   
+  @Override
+  public List<ActivityUpdateRef> getNewerUpdates(ActivityRefType type, Identity owner, long sinceTime, int limit) {
+    boolean created = startSynchronization();
+    try {
+      return super.getNewerUpdates(type, owner, sinceTime, limit);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+  }
+  
+  @Override
+  public List<ExoSocialActivity> getActivities(ActivityRefType type, Identity owner, ActivityStreamCursor cursor, int limit) {
+    boolean created = startSynchronization();
+    try {
+      return super.getActivities(type, owner, cursor, limit);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+  }
+  
+  @Override
+  public Map<String, ActivityUpdateRef> getLastUpdates(List<Identity> owners) {
+    boolean created = startSynchronization();
+    try {
+      return super.getLastUpdates(owners);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+  }
+  
   @Override
   public List<ExoSocialActivity> getMySpaces(Identity owner, int offset, int limit) {
     boolean created = startSynchronization();
@@ -20,6 +20,7 @@ package org.exoplatform.social.core.storage.synchronization;
 import java.util.List;
 
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.profile.ProfileFilter;
 import org.exoplatform.social.core.storage.IdentityStorageException;
@@ -232,6 +233,40 @@ public class SynchronizedIdentityStorage extends IdentityStorageImpl {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<IdentitySummary> getIdentitySummaries(final List<String> identityIds) throws IdentityStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getIdentitySummaries(identityIds);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<IdentitySummary> getIdentitySuggestions(
+      final String providerId, final String name, final Identity viewer, final List<Identity> excludedIdentities,
+      final int limit) throws IdentityStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getIdentitySuggestions(providerId, name, viewer, excludedIdentities, limit);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -17,6 +17,7 @@
 package org.exoplatform.social.core.feature;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 
@@ -35,6 +36,7 @@ import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
 import org.exoplatform.social.core.storage.impl.ActivityStorageImpl;
 import org.exoplatform.social.core.storage.impl.RelationshipStorageImpl;
+import org.exoplatform.social.core.storage.streams.UnreadCounterService;
 import org.exoplatform.social.core.test.AbstractCoreTest;
 
 public class ActivityUpdateFilterTest extends AbstractCoreTest {
@@ -43,6 +45,7 @@ public class ActivityUpdateFilterTest extends AbstractCoreTest {
   private RelationshipStorageImpl relationshipStorage;
   private RelationshipManagerImpl relationshipManager;
   private SpaceStorage spaceStorage;
+  private UnreadCounterService counterService;
   
   private List<ExoSocialActivity> tearDownActivityList;
   private List<Relationship> tearDownRelationshipList;
@@ -51,6 +54,8 @@ public class ActivityUpdateFilterTest extends AbstractCoreTest {
   private Identity maryIdentity;
   private Identity demoIdentity;
 
+  private Long[][] filterTimes;
+
   @Override
   protected void setUp() throws Exception {
     super.setUp();
@@ -60,12 +65,22 @@ public class ActivityUpdateFilterTest extends AbstractCoreTest {
     relationshipStorage = (RelationshipStorageImpl) getContainer().getComponentInstanceOfType(RelationshipStorageImpl.class);
     relationshipManager = (RelationshipManagerImpl) getContainer().getComponentInstanceOfType(RelationshipManager.class);
     spaceStorage = (SpaceStorage) this.getContainer().getComponentInstanceOfType(SpaceStorage.class);
+    counterService = (UnreadCounterService) getContainer().getComponentInstanceOfType(UnreadCounterService.class);
     
     assertNotNull(identityStorage);
     assertNotNull(activityStorage);
     assertNotNull(relationshipManager);
     assertNotNull(relationshipStorage);
     assertNotNull(spaceStorage);
+    assertNotNull(counterService);
+    
+    // the view times are kept by the filter types, they are restored after each test
+    ActivityFilterType[] types = ActivityFilterType.values();
+    filterTimes = new Long[types.length][];
+    for (int i = 0; i < types.length; ++i) {
+      filterTimes[i] = new Long[] {types[i].oldFromSinceTime(), types[i].fromSinceTime(), types[i].toSinceTime(),
+                                   types[i].lastNumberOfUpdated()};
+    }
     
     maryIdentity = new Identity("organization", "mary");
     demoIdentity = new Identity("organization", "demo");
@@ -99,6 +114,14 @@ public class ActivityUpdateFilterTest extends AbstractCoreTest {
     identityStorage.deleteIdentity(maryIdentity);
     identityStorage.deleteIdentity(demoIdentity);
 
+    //
+    ActivityFilterType[] types = ActivityFilterType.values();
+    for (int i = 0; i < types.length; ++i) {
+      types[i].oldFromSinceTime(filterTimes[i][0]).fromSinceTime(filterTimes[i][1]).toSinceTime(filterTimes[i][2])
+              .lastNumberOfUpdated(filterTimes[i][3]);
+    }
+    counterService.clear();
+
     super.tearDown();
   }
 
@@ -151,6 +174,72 @@ public class ActivityUpdateFilterTest extends AbstractCoreTest {
     assertEquals(0, numberOfActivitiesUpdated);
   }
   
+  public void testUnreadCounter() throws Exception {
+    // make connection demo and mary
+    Relationship rel = relationshipManager.create(demoIdentity, maryIdentity);
+    relationshipManager.save(rel);
+    relationshipManager.confirm(rel);
+    tearDownRelationshipList.add(rel);
+    
+    // mary views the connections stream
+    Long viewTime = Calendar.getInstance().getTimeInMillis();
+    ActivityFilterType.CONNECTIONS_ACTIVITIES.fromSinceTime(viewTime).toSinceTime(viewTime);
+    
+    long misses = counterService.getMisses();
+    ActivityUpdateFilter filter = new ActivityUpdateFilter(false);
+    assertEquals(0, activityStorage.getNumberOfUpdatedOnActivitiesOfConnections(maryIdentity, filter));
+    assertEquals(misses + 1, counterService.getMisses());
+    
+    // demo posts 3 activities, the fan-out removes the counter
+    long invalidations = counterService.getInvalidations();
+    for (int i = 0; i < 3; ++i) {
+      ExoSocialActivity activity = new ExoSocialActivityImpl();
+      activity.setTitle("counted " + i);
+      activityStorage.saveActivity(demoIdentity, activity);
+      tearDownActivityList.add(activity);
+    }
+    assertEquals(invalidations + 1, counterService.getInvalidations());
+    
+    // the counter is computed again, then read by the next polls
+    filter = new ActivityUpdateFilter(false);
+    assertEquals(3, activityStorage.getNumberOfUpdatedOnActivitiesOfConnections(maryIdentity, filter));
+    assertEquals(misses + 2, counterService.getMisses());
+    long hits = counterService.getHits();
+    filter = new ActivityUpdateFilter(false);
+    assertEquals(3, activityStorage.getNumberOfUpdatedOnActivitiesOfConnections(maryIdentity, filter));
+    assertEquals(hits + 1, counterService.getHits());
+
+    // a space stream is viewed, the counter of the connections stream is kept
+    Long spaceViewTime = Calendar.getInstance().getTimeInMillis();
+    ActivityFilterType.SPACE_ACTIVITIES.fromSinceTime(spaceViewTime).toSinceTime(spaceViewTime);
+    filter = new ActivityUpdateFilter(false);
+    assertEquals(3, activityStorage.getNumberOfUpdatedOnActivitiesOfConnections(maryIdentity, filter));
+    assertEquals(hits + 2, counterService.getHits());
+
+    // mary views the stream again, the counter is computed again
+    viewTime = Calendar.getInstance().getTimeInMillis() + 1;
+    ActivityFilterType.CONNECTIONS_ACTIVITIES.fromSinceTime(viewTime).toSinceTime(viewTime);
+    filter = new ActivityUpdateFilter(false);
+    assertEquals(0, activityStorage.getNumberOfUpdatedOnActivitiesOfConnections(maryIdentity, filter));
+    assertEquals(misses + 3, counterService.getMisses());
+  }
+
+  public void testUnreadCounterInvalidation() throws Exception {
+    String ownerId = maryIdentity.getId();
+    ActivityFilterType type = ActivityFilterType.ACTIVITY_FEED;
+    long[] viewTimes = new ActivityUpdateFilter(false).viewTimes(type);
+    counterService.setUpdated(ownerId, type, viewTimes, Arrays.asList("counted"), new String[] {"viewed"});
+
+    // the counted and the excluded activities leave the counter as is
+    counterService.invalidate(Arrays.asList(ownerId), type, "counted");
+    counterService.invalidate(Arrays.asList(ownerId), type, "viewed");
+    assertEquals(Integer.valueOf(1), counterService.getCount(ownerId, type, viewTimes));
+
+    // a new activity removes it
+    counterService.invalidate(Arrays.asList(ownerId), type, "new");
+    assertNull(counterService.getCount(ownerId, type, viewTimes));
+  }
+  
   public void testUserActivities() throws Exception {
     Long fromSinceTime = Calendar.getInstance().getTimeInMillis();
     Long toSinceTime = fromSinceTime + 1000;
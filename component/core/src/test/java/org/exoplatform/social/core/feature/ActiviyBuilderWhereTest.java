@@ -17,6 +17,7 @@
 package org.exoplatform.social.core.feature;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 
@@ -27,6 +28,7 @@ import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.api.ActivityStorage.TimestampType;
 import org.exoplatform.social.core.storage.impl.ActivityBuilderWhere;
+import org.exoplatform.social.core.storage.impl.ActivityQuerySpec;
 import org.junit.FixMethodOrder;
 import org.junit.runners.MethodSorters;
 
@@ -338,4 +340,56 @@ public class ActiviyBuilderWhereTest extends TestCase {
     assertEquals(DIRECTION.DESC, filter.get(ActivityFilter.POSTED_TIME_ORDERBY).getDirection());
   }
 
+  public void testSameShapeOtherIdentities() throws Exception {
+    ActivityFilter filter = new ActivityFilter() {};
+    String demoWhere = ActivityBuilderWhere.simple().owners(demoIdentity).mentioner(demoIdentity).build(filter);
+    String maryWhere = ActivityBuilderWhere.simple().owners(maryIdentity).mentioner(maryIdentity).build(filter);
+    
+    assertEquals("(soc:identity = 'demo123456' OR CONTAINS (soc:mentioners, 'demo123456') ) AND soc:isComment = 'false' AND (soc:isHidden = 'false' OR soc:isHidden Is NULL ) ", demoWhere);
+    assertEquals("(soc:identity = 'mary123456' OR CONTAINS (soc:mentioners, 'mary123456') ) AND soc:isComment = 'false' AND (soc:isHidden = 'false' OR soc:isHidden Is NULL ) ", maryWhere);
+  }
+  
+  public void testUpdatedWithPosters() throws Exception {
+    ActivityFilter filter = ActivityFilter.newer();
+    long accessPoint = Calendar.getInstance().getTime().getTime();
+    filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(accessPoint));
+    
+    //the excluded activities are not part of the query
+    ActivityBuilderWhere where = ActivityBuilderWhere.updated().mentioner(demoIdentity).posters(Arrays.asList(maryIdentity))
+                                                     .excludedActivities("activity1");
+    String expectedWhere = "(CONTAINS (soc:mentioners, 'demo123456') OR (soc:identity = 'demo123456' AND soc:posterIdentity = 'mary123456' AND soc:isComment = 'true' ) ) AND soc:lastUpdated > " + accessPoint + " AND soc:isComment = 'false' ";
+    assertEquals(expectedWhere, where.build(filter));
+    assertTrue(where.spec().getExcludedIds().contains("activity1"));
+  }
+  
+  public void testSplit() throws Exception {
+    ActivityFilter filter = new ActivityFilter() {};
+    List<Identity> identities = new ArrayList<Identity>();
+    for (int i = 0; i < 120; ++i) {
+      identities.add(new Identity("id" + i));
+    }
+    ActivityQuerySpec spec = ActivityBuilderWhere.simple().owners(identities).mentioner(maryIdentity).spec();
+    
+    List<ActivityQuerySpec> chunks = spec.split(ActivityQuerySpec.CHUNK_SIZE);
+    assertEquals(3, chunks.size());
+    assertEquals(50, chunks.get(0).getOwnerIds().size());
+    assertEquals(20, chunks.get(2).getOwnerIds().size());
+    assertEquals("id100", chunks.get(2).getOwnerIds().get(0));
+    
+    //the mentions are in the first chunk only
+    assertTrue(chunks.get(0).compile(filter).contains("CONTAINS (soc:mentioners, 'mary123456')"));
+    assertFalse(chunks.get(1).compile(filter).contains("soc:mentioners"));
+    
+    //the comments of the posters on the stream of the mentioner are in each chunk
+    spec = ActivityBuilderWhere.updated().mentioner(demoIdentity).posters(identities).spec();
+    chunks = spec.split(ActivityQuerySpec.CHUNK_SIZE);
+    assertEquals(3, chunks.size());
+    String where = chunks.get(1).compile(filter);
+    assertFalse(where.contains("soc:mentioners"));
+    assertTrue(where.startsWith("((soc:identity = 'demo123456' AND soc:posterIdentity = 'id50' AND soc:isComment = 'true' ) "));
+    
+    //a small spec is not split
+    assertEquals(1, ActivityBuilderWhere.simple().owners(demoIdentity).spec().split(ActivityQuerySpec.CHUNK_SIZE).size());
+  }
+
 }
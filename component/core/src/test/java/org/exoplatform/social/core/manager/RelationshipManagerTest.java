@@ -1444,4 +1444,28 @@ public class RelationshipManagerTest extends AbstractCoreTest {
     tearDownRelationshipList.add(ghostToJohnRelationship);
     tearDownRelationshipList.add(paulToDemoRelationship);
   }
+
+  /**
+   * Test {@link RelationshipManager#getSuggestions(Identity, int, int)} for an identity without relationship
+   *
+   * @throws Exception
+   * @since 4.1.0
+   */
+  public void testGetSuggestionsWithoutRelationship() throws Exception {
+    Relationship maryToDemoRelationship = relationshipManager.inviteToConnect(demoIdentity, maryIdentity);
+
+    //any user is suggested, without common relationship
+    Map<Identity, Integer> suggestions = relationshipManager.getSuggestions(ghostIdentity, 0, 10);
+    assertFalse(suggestions.isEmpty());
+    for (Entry<Identity, Integer> suggestion : suggestions.entrySet()) {
+      assertFalse(ghostIdentity.getId().equals(suggestion.getKey().getId()));
+      assertEquals(0, suggestion.getValue().intValue());
+    }
+
+    //the related identities are suggested from their relationships
+    suggestions = relationshipManager.getSuggestions(demoIdentity, 0, 10);
+    assertTrue(suggestions.isEmpty());
+
+    tearDownRelationshipList.add(maryToDemoRelationship);
+  }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.storage.impl.ActivityStorageImpl;
+
+public class MentionScannerTestCase extends TestCase {
+
+  private static final Pattern MENTION_PATTERN = Pattern.compile("@([^\\s]+)|@([^\\s]+)$");
+
+  private static final String[] TEXTS = new String[] {
+    "",
+    "no mention",
+    "@root",
+    "hello @root and @john, see @mary.",
+    "@ @@ @root@john trailing @",
+    "tab\t@demo\nnew line @ghost\r\n",
+    "email root@exoplatform.com",
+    "<a href=\"@root\">@\u00C9lodie</a>"
+  };
+
+  public void testFind() throws Exception {
+    for (String text : TEXTS) {
+      assertEquals(text, regex(text), scan(text));
+    }
+  }
+
+  public void testPositions() throws Exception {
+    MentionScanner scanner = new MentionScanner("hi @root!");
+    assertTrue(scanner.find());
+    assertEquals(3, scanner.start());
+    assertEquals(9, scanner.end());
+    assertEquals("root!", scanner.getMention());
+    assertFalse(scanner.find());
+    assertFalse(new MentionScanner(null).find());
+  }
+
+  public void testIsValidUserName() throws Exception {
+    String[] names = new String[] {
+      "root", "john.smith", "mary_1", "a-b", "\u00C9lodie", "r", "1root", "root!", "root,", "_root", "ro ot", ""
+    };
+    for (String name : names) {
+      assertEquals(name, ActivityStorageImpl.USER_NAME_VALIDATOR_REGEX.matcher(name).matches(),
+                   MentionScanner.isValidUserName(name));
+    }
+    assertFalse(MentionScanner.isValidUserName(null));
+  }
+
+  private List<String> regex(String text) {
+    List<String> got = new ArrayList<String>();
+    Matcher matcher = MENTION_PATTERN.matcher(text);
+    while (matcher.find()) {
+      got.add(matcher.start() + ":" + matcher.group().substring(1));
+    }
+    return got;
+  }
+
+  private List<String> scan(String text) {
+    List<String> got = new ArrayList<String>();
+    MentionScanner scanner = new MentionScanner(text);
+    while (scanner.find()) {
+      got.add(scanner.start() + ":" + scanner.getMention());
+    }
+    return got;
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.space.model;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class SpaceMembershipTestCase extends TestCase {
+
+  private static String[] users(String prefix, int count) {
+    String[] users = new String[count];
+    for (int i = 0; i < count; i++) {
+      users[i] = prefix + i;
+    }
+    return users;
+  }
+
+  private Space space;
+
+  @Override
+  protected void setUp() throws Exception {
+    space = new Space();
+    space.setMembers(users("member", 20));
+    space.setManagers(new String[] {"member0"});
+    space.setInvitedUsers(users("invited", 3));
+  }
+
+  public void testRoles() throws Exception {
+    SpaceMembership membership = space.getMembership();
+    assertTrue(membership.isMember("member0"));
+    assertTrue(membership.isMember("member19"));
+    assertFalse(membership.isMember("member20"));
+    assertFalse(membership.isMember(null));
+    assertTrue(membership.isManager("member0"));
+    assertFalse(membership.isManager("member1"));
+    assertTrue(membership.isInvited("invited2"));
+    assertFalse(membership.isInvited("member0"));
+    assertFalse(membership.isPending("member0"));
+  }
+
+  public void testViewFollowsTheSpace() throws Exception {
+    SpaceMembership membership = space.getMembership();
+    assertSame(membership, space.getMembership());
+
+    //
+    space.setPendingUsers(new String[] {"pending"});
+    SpaceMembership updated = space.getMembership();
+    assertNotSame(membership, updated);
+    assertTrue(updated.isViewOf(space));
+    assertFalse(membership.isViewOf(space));
+    assertTrue(updated.isPending("pending"));
+    assertTrue(updated.isMember("member5"));
+  }
+
+  public void testSharedView() throws Exception {
+    SpaceMembership membership = new SpaceMembership(space.getMembers(), space.getManagers(),
+                                                     space.getInvitedUsers(), space.getPendingUsers());
+    space.setMembership(membership);
+    assertSame(membership, space.getMembership());
+
+    //
+    space.setMembers(users("member", 21));
+    assertTrue(space.getMembership().isMember("member20"));
+    assertFalse(membership.isMember("member20"));
+  }
+
+  public void testGetMembers() throws Exception {
+    SpaceMembership membership = space.getMembership();
+    assertEquals(20, membership.getMembersCount());
+    assertEquals(Arrays.asList("member0", "member1"), membership.getMembers(0, 2));
+    assertEquals(Arrays.asList("member18", "member19"), membership.getMembers(18, 10));
+    assertEquals(0, membership.getMembers(20, 10).size());
+    assertEquals(0, membership.getMembers(-1, 10).size());
+    assertEquals(0, membership.getMembers(0, 0).size());
+
+    //
+    space.setMembers(null);
+    assertEquals(0, space.getMembership().getMembersCount());
+    assertEquals(0, space.getMembership().getMembers(0, 10).size());
+  }
+
+}
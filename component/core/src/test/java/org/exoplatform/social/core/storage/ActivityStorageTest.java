@@ -1982,6 +1982,26 @@ public class ActivityStorageTest extends AbstractCoreTest {
     assertEquals(2, activityStorage.getNewerUserActivities(demoIdentity, sinceTime, 10).size());
   }
 
+  /**
+   * Tests {@link ActivityStorage#getNumberOfMultiUpdated(Identity, Map)}
+   */
+  @MaxQueryNumber(716)
+  public void testGetNumberOfMultiUpdated() {
+    checkCleanData();
+    createActivities(2, demoIdentity);
+    Long sinceTime = activityStorage.getUserActivities(demoIdentity, 0, 10).get(0).getUpdated().getTime();
+    Map<String, Long> sinceTimes = new HashMap<String, Long>();
+    sinceTimes.put("MY_ACTIVITIES", sinceTime);
+    assertEquals(0, activityStorage.getNumberOfMultiUpdated(demoIdentity, sinceTimes));
+    createActivities(2, demoIdentity);
+    assertEquals(2, activityStorage.getNumberOfMultiUpdated(demoIdentity, sinceTimes));
+    
+    //an activity found in several streams is counted once
+    sinceTimes.put("CONNECTIONS", sinceTime);
+    sinceTimes.put("MY_SPACE", sinceTime);
+    assertEquals(2, activityStorage.getNumberOfMultiUpdated(demoIdentity, sinceTimes));
+  }
+
   /**
    * Tests {@link ActivityStorage#getOlderOnUserActivities(Identity, Long, int)}
    */
@@ -17,10 +17,14 @@
 package org.exoplatform.social.core.storage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
 import org.exoplatform.social.core.application.RelationshipPublisher;
@@ -38,6 +42,8 @@ import org.exoplatform.social.core.space.spi.SpaceService;
 import org.exoplatform.social.core.storage.api.ActivityStorage;
 import org.exoplatform.social.core.storage.api.ActivityStreamStorage;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
+import org.exoplatform.social.core.storage.impl.ActivityStreamStorageImpl.ActivityRefType;
+import org.exoplatform.social.core.storage.streams.StreamFanOutService;
 import org.exoplatform.social.core.test.AbstractCoreTest;
 
 
@@ -367,6 +373,154 @@ public class ActivityStreamStorageTest extends AbstractCoreTest {
     assertEquals(0, got.size());
   }
   
+  public void testPulledConnectionsActivity() throws ActivityStorageException {
+    StreamFanOutService fanOutService = (StreamFanOutService) getContainer().getComponentInstanceOfType(StreamFanOutService.class);
+    
+    //the stream of the poster stays pulled, it is not shared with the other tests
+    Identity posterIdentity = new Identity(OrganizationIdentityProvider.NAME, "pulledposter");
+    identityStorage.saveIdentity(posterIdentity);
+    Relationship posterMaryConnection = relationshipManager.inviteToConnect(posterIdentity, maryIdentity);
+    relationshipManager.confirm(posterMaryConnection);
+    Relationship posterJohnConnection = relationshipManager.inviteToConnect(posterIdentity, johnIdentity);
+    relationshipManager.confirm(posterJohnConnection);
+    Relationship posterRootConnection = null;
+    
+    //the poster has more connections than the threshold
+    fanOutService.setPullThreshold(1);
+    try {
+      ExoSocialActivity activity = new ExoSocialActivityImpl();
+      activity.setTitle("pulled activity");
+      activityStorage.saveActivity(posterIdentity, activity);
+      tearDownActivityList.add(activity);
+      
+      ExoSocialActivity maryActivity = new ExoSocialActivityImpl();
+      maryActivity.setTitle("mary activity");
+      activityStorage.saveActivity(maryIdentity, maryActivity);
+      tearDownActivityList.add(maryActivity);
+      
+      List<ExoSocialActivity> got = streamStorage.getFeed(maryIdentity, 0, 10);
+      assertEquals(2, got.size());
+      assertEquals(maryActivity.getId(), got.get(0).getId());
+      assertEquals(activity.getId(), got.get(1).getId());
+      
+      got = streamStorage.getFeed(maryIdentity, 1, 10);
+      assertEquals(1, got.size());
+      assertEquals(activity.getId(), got.get(0).getId());
+      
+      got = streamStorage.getConnections(johnIdentity, 0, 10);
+      assertEquals(1, got.size());
+      assertEquals(activity.getId(), got.get(0).getId());
+      
+      //the decision is kept when the threshold changes
+      fanOutService.setPullThreshold(0);
+      got = streamStorage.getConnections(johnIdentity, 0, 10);
+      assertEquals(1, got.size());
+      assertEquals(activity.getId(), got.get(0).getId());
+      assertEquals(1, streamStorage.getNumberOfConnections(johnIdentity));
+      
+      ExoSocialActivity newActivity = new ExoSocialActivityImpl();
+      newActivity.setTitle("new pulled activity");
+      activityStorage.saveActivity(posterIdentity, newActivity);
+      tearDownActivityList.add(newActivity);
+      got = streamStorage.getConnections(johnIdentity, 0, 10);
+      assertEquals(2, got.size());
+      assertEquals(newActivity.getId(), got.get(0).getId());
+      
+      //a new connection pulls the stream too
+      posterRootConnection = relationshipManager.inviteToConnect(posterIdentity, rootIdentity);
+      relationshipManager.confirm(posterRootConnection);
+      got = streamStorage.getConnections(rootIdentity, 0, 10);
+      assertEquals(2, got.size());
+    } finally {
+      fanOutService.setPullThreshold(0);
+      relationshipManager.delete(posterMaryConnection);
+      relationshipManager.delete(posterJohnConnection);
+      if (posterRootConnection != null) {
+        relationshipManager.delete(posterRootConnection);
+      }
+      identityStorage.deleteIdentity(posterIdentity);
+    }
+  }
+  
+  public void testFeedCursor() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      ExoSocialActivity activity = new ExoSocialActivityImpl();
+      activity.setTitle("activity " + i);
+      activityStorage.saveActivity(rootIdentity, activity);
+      tearDownActivityList.add(activity);
+      //the activities of a stream are referenced by their time
+      Thread.sleep(2);
+    }
+    
+    //
+    List<ExoSocialActivity> expected = streamStorage.getFeed(rootIdentity, 0, 5);
+    assertEquals(5, expected.size());
+    
+    List<ExoSocialActivity> got = streamStorage.getActivities(ActivityRefType.FEED, rootIdentity, null, 2);
+    assertEquals(2, got.size());
+    assertEquals(expected.get(0).getId(), got.get(0).getId());
+    assertEquals(expected.get(1).getId(), got.get(1).getId());
+    
+    ActivityStreamCursor cursor = ActivityStreamCursor.valueOf(ActivityStreamCursor.of(got.get(1)).toString());
+    got = streamStorage.getActivities(ActivityRefType.FEED, rootIdentity, cursor, 2);
+    assertEquals(2, got.size());
+    assertEquals(expected.get(2).getId(), got.get(0).getId());
+    assertEquals(expected.get(3).getId(), got.get(1).getId());
+    
+    cursor = ActivityStreamCursor.of(got.get(1));
+    got = streamStorage.getActivities(ActivityRefType.FEED, rootIdentity, cursor, 2);
+    assertEquals(1, got.size());
+    assertEquals(expected.get(4).getId(), got.get(0).getId());
+    
+    cursor = ActivityStreamCursor.of(got.get(0));
+    assertEquals(0, streamStorage.getActivities(ActivityRefType.FEED, rootIdentity, cursor, 2).size());
+    assertNull(ActivityStreamCursor.valueOf("invalid"));
+  }
+
+  public void testMostRecentFirst() throws Exception {
+    List<ExoSocialActivity> saved = new ArrayList<ExoSocialActivity>();
+    for (int i = 0; i < 3; i++) {
+      ExoSocialActivity activity = new ExoSocialActivityImpl();
+      activity.setTitle("activity " + i);
+      activityStorage.saveActivity(rootIdentity, activity);
+      tearDownActivityList.add(activity);
+      saved.add(activity);
+      Thread.sleep(2);
+    }
+
+    //the references are listed from the most recent
+    List<ExoSocialActivity> got = streamStorage.getFeed(rootIdentity, 0, 3);
+    assertEquals(saved.get(2).getId(), got.get(0).getId());
+    assertEquals(saved.get(0).getId(), got.get(2).getId());
+  }
+  
+  public void testLastUpdates() throws Exception {
+    ExoSocialActivity first = new ExoSocialActivityImpl();
+    first.setTitle("first activity");
+    activityStorage.saveActivity(rootIdentity, first);
+    tearDownActivityList.add(first);
+
+    //
+    Map<String, ActivityUpdateRef> got = streamStorage.getLastUpdates(Arrays.asList(rootIdentity, johnIdentity));
+    assertEquals(1, got.size());
+    assertEquals(first.getId(), got.get(rootIdentity.getId()).getActivityId());
+
+    //the cached last activity follows the new activities
+    Thread.sleep(2);
+    ExoSocialActivity second = new ExoSocialActivityImpl();
+    second.setTitle("second activity");
+    activityStorage.saveActivity(rootIdentity, second);
+    got = streamStorage.getLastUpdates(Arrays.asList(rootIdentity, johnIdentity));
+    assertEquals(second.getId(), got.get(rootIdentity.getId()).getActivityId());
+    assertEquals(second.getUpdated().getTime(), got.get(rootIdentity.getId()).getLastUpdated());
+    assertNull(got.get(johnIdentity.getId()));
+
+    //and goes back to the previous one when the last is deleted
+    activityStorage.deleteActivity(second.getId());
+    got = streamStorage.getLastUpdates(Arrays.asList(rootIdentity));
+    assertEquals(first.getId(), got.get(rootIdentity.getId()).getActivityId());
+  }
+  
   public void testConnectionsExistActivities() throws ActivityStorageException {
     
     RelationshipPublisher relationshipPublisher = (RelationshipPublisher) getContainer().getComponentInstanceOfType(RelationshipPublisher.class);
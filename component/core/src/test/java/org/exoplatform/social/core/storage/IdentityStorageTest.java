@@ -2,6 +2,7 @@ package org.exoplatform.social.core.storage;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.chromattic.api.ChromatticSession;
@@ -11,6 +12,7 @@ import org.exoplatform.social.common.lifecycle.SocialChromatticLifeCycle;
 import org.exoplatform.social.core.chromattic.entity.ProviderRootEntity;
 import org.exoplatform.social.core.identity.SpaceMemberFilterListAccess.Type;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.model.AvatarAttachment;
@@ -20,6 +22,10 @@ import org.exoplatform.social.core.space.impl.DefaultSpaceApplicationHandler;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
+import org.exoplatform.social.core.storage.cache.SocialStorageCacheService;
+import org.exoplatform.social.core.storage.cache.model.data.ChangeData;
+import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
+import org.exoplatform.social.core.storage.graph.IdentityNameIndex;
 import org.exoplatform.social.core.storage.impl.IdentityStorageImpl;
 import org.exoplatform.social.core.storage.impl.SpaceStorageImpl;
 import org.exoplatform.social.core.storage.impl.StorageUtils;
@@ -437,6 +443,87 @@ public class IdentityStorageTest extends AbstractCoreTest {
     assertEquals("foundIdentities.size() must be 0", 0, foundIdentities.size());
   }
 
+  /**
+   * Tests {@link IdentityStorage#getIdentitySuggestions(String, String, Identity, List, int)}
+   *
+   */
+  @MaxQueryNumber(1000)
+  public void testGetIdentitySuggestions() throws Exception {
+    String providerId = "organization";
+    populateData("typeahead1");
+    populateData("typeahead2");
+
+    //prefix of the remote id, of the first name and of the last name
+    List<IdentitySummary> suggestions = identityStorage.getIdentitySuggestions(providerId, "typeah", null, null, 10);
+    assertEquals(2, suggestions.size());
+    assertEquals("typeahead1", suggestions.get(0).getRemoteId());
+    assertEquals("FirstName typeahead1 LastNametypeahead1", suggestions.get(0).getFullName());
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "LASTNAMETYPEAHEAD2", null, null, 10).size());
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "first typeahead2", null, null, 10).size());
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "typeahead", null, null, 1).size());
+
+    //the words of the names start with the text, their substrings are not matched
+    assertEquals(0, identityStorage.getIdentitySuggestions(providerId, "ahead", null, null, 10).size());
+
+    //excluded
+    Identity excluded = identityStorage.findIdentity(providerId, "typeahead1");
+    suggestions = identityStorage.getIdentitySuggestions(providerId, "typeahead", null, Arrays.asList(excluded), 10);
+    assertEquals(1, suggestions.size());
+    assertEquals("typeahead2", suggestions.get(0).getRemoteId());
+
+    //updated
+    Profile profile = identityStorage.loadProfile(new Profile(excluded));
+    profile.setProperty(Profile.LAST_NAME, "Renamed");
+    identityStorage.saveProfile(profile);
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "renamed", null, null, 10).size());
+    assertEquals(0, identityStorage.getIdentitySuggestions(providerId, "lastnametypeahead1", null, null, 10).size());
+
+    //deleted
+    identityStorage.deleteIdentity(excluded);
+    tearDownIdentityList.remove(excluded);
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "typeahead", null, null, 10).size());
+  }
+
+  /**
+   * Tests {@link IdentityStorage#getIdentitySuggestions(String, String, Identity, List, int)} when the
+   * identities are changed by another cluster node.
+   *
+   */
+  @MaxQueryNumber(1000)
+  public void testGetIdentitySuggestionsChangedElsewhere() throws Exception {
+    String providerId = "organization";
+    SocialStorageCacheService cacheService = (SocialStorageCacheService) getContainer().getComponentInstanceOfType(SocialStorageCacheService.class);
+    IdentityNameIndex nameIndex = (IdentityNameIndex) getContainer().getComponentInstanceOfType(IdentityNameIndex.class);
+    populateData("elsewhere1");
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "elsewhere1", null, null, 10).size());
+    Identity identity = identityStorage.findIdentity(providerId, "elsewhere1");
+
+    //created by another node, not indexed by this one until signaled
+    nameIndex.removeIdentity(identity.getId());
+    assertEquals(0, identityStorage.getIdentitySuggestions(providerId, "elsewhere1", null, null, 10).size());
+    signalElsewhere(cacheService, identity);
+    List<IdentitySummary> suggestions = identityStorage.getIdentitySuggestions(providerId, "elsewhere1", null, null, 10);
+    assertEquals(1, suggestions.size());
+    assertEquals(identity.getId(), suggestions.get(0).getId());
+
+    //renamed by another node
+    nameIndex.saveIdentity(new IdentitySummary(identity.getId(), providerId, "elsewhere1", "Outdated Name", null, null, false),
+                           "Outdated", "Name");
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "outdated", null, null, 10).size());
+    signalElsewhere(cacheService, identity);
+    assertEquals(0, identityStorage.getIdentitySuggestions(providerId, "outdated", null, null, 10).size());
+    assertEquals(1, identityStorage.getIdentitySuggestions(providerId, "lastnameelsewhere1", null, null, 10).size());
+  }
+
+  /**
+   * Signals the change of an identity as another node does when the cache is replicated by invalidation.
+   */
+  private void signalElsewhere(SocialStorageCacheService cacheService, Identity identity) {
+    IdentityKey key = new IdentityKey(identity);
+    cacheService.getProfileChangeCache().put(key, ChangeData.local());
+    cacheService.getProfileChangeCache().remove(key);
+  }
+
   /**
    * Tests {@link IdenityStorage#getIdentitiesByProfileFilter(String, ProfileFilter, int, int, boolean)}
    *
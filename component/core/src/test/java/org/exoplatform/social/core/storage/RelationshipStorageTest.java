@@ -18,6 +18,7 @@ package org.exoplatform.social.core.storage;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.exoplatform.services.log.ExoLogger;
@@ -286,7 +287,16 @@ public class RelationshipStorageTest extends AbstractCoreTest {
     List<Relationship> demoIgnoredRelationships = relationshipStorage.getRelationships(demoIdentity, Relationship.Type.IGNORED, listCheckIdentity);
     assertNotNull("demoIgnoredRelationships must not be null", demoIgnoredRelationships);
     assertEquals("demoIgnoredRelationships.size() must return: 1", 1, demoIgnoredRelationships.size());
-    
+
+    //only the relationships with the checked identities
+    assertEquals(0, relationshipStorage.getRelationships(rootIdentity, Relationship.Type.CONFIRMED, Arrays.asList(maryIdentity)).size());
+    assertEquals(1, relationshipStorage.getRelationships(rootIdentity, Relationship.Type.PENDING, Arrays.asList(maryIdentity)).size());
+    List<Relationship> rootRelationships = relationshipStorage.getRelationships(rootIdentity, null, Arrays.asList(johnIdentity, demoIdentity));
+    assertEquals(1, rootRelationships.size());
+    assertEquals(johnIdentity.getId(), rootRelationships.get(0).getPartner(rootIdentity).getId());
+    assertEquals(0, relationshipStorage.getSenderRelationships(maryIdentity, Relationship.Type.PENDING, Arrays.asList(johnIdentity)).size());
+    assertEquals(1, relationshipStorage.getReceiverRelationships(rootIdentity, Relationship.Type.PENDING, Arrays.asList(maryIdentity)).size());
+
     tearDownRelationshipList.add(rootToJohnRelationship);
     tearDownRelationshipList.add(maryToRootRelationship);
     tearDownRelationshipList.add(rootToDemoRelationship);
@@ -29,6 +29,7 @@ import org.exoplatform.social.core.test.MaxQueryNumber;
 import org.exoplatform.social.core.test.QueryNumberTest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -63,6 +64,7 @@ public class CachedActivityStorageTestCase extends AbstractCoreTest {
     cacheService.getActivitiesCache().clearCache();
     cacheService.getActivitiesCountCache().clearCache();
     cacheService.getActivityCache().clearCache();
+    cacheService.getCommentIndexCache().clearCache();
 
     //
     identity = new Identity(OrganizationIdentityProvider.NAME, "mary");
@@ -116,7 +118,49 @@ public class CachedActivityStorageTestCase extends AbstractCoreTest {
 
     //
     assertEquals(2, cacheService.getActivityCache().getCacheSize());
-    assertEquals(0, cacheService.getActivitiesCache().getCacheSize());
+    assertEquals(1, cacheService.getActivitiesCache().getCacheSize());
+
+    //
+    List<ExoSocialActivity> feed = activityStorage.getActivityFeed(identity, 0, 20);
+    assertEquals(2, feed.size());
+    assertEquals(activity2.getId(), feed.get(0).getId());
+    assertEquals(activity.getId(), feed.get(1).getId());
+
+  }
+
+  @MaxQueryNumber(260)
+  public void testSaveActivityKeepsOtherStreams() throws Exception {
+
+    //
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("hello");
+    activity.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity);
+
+    //
+    activityStorage.getStatistics().reset();
+    activityStorage.getActivityFeed(identity, 0, 20);
+    activityStorage.getActivityFeed(identity, 20, 20);
+    activityStorage.getActivityFeed(identity2, 0, 20);
+    assertEquals(1, activityStorage.getNumberOfActivitesOnActivityFeed(identity));
+    assertEquals(3, cacheService.getActivitiesCache().getCacheSize());
+    assertEquals(4, activityStorage.getStreamMissCount("FEED"));
+
+    //
+    ExoSocialActivity activity2 = new ExoSocialActivityImpl();
+    activity2.setTitle("hello 2");
+    activity2.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity2);
+
+    // the first page is updated, the deeper page is evicted
+    assertEquals(2, cacheService.getActivitiesCache().getCacheSize());
+    assertEquals(1, activityStorage.getStreamEvictionCount("FEED"));
+    assertEquals(2, activityStorage.getNumberOfActivitesOnActivityFeed(identity));
+
+    //
+    assertEquals(activity2.getId(), activityStorage.getActivityFeed(identity, 0, 20).get(0).getId());
+    activityStorage.getActivityFeed(identity2, 0, 20);
+    assertEquals(4, activityStorage.getStreamMissCount("FEED"));
 
   }
 
@@ -182,6 +226,35 @@ public class CachedActivityStorageTestCase extends AbstractCoreTest {
 
   }
 
+  @MaxQueryNumber(260)
+  public void testGetActivities() throws Exception {
+
+    //
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("hello");
+    activity.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity);
+    ExoSocialActivity activity2 = new ExoSocialActivityImpl();
+    activity2.setTitle("hello 2");
+    activity2.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity2);
+
+    //
+    cacheService.getActivityCache().clearCache();
+    cacheService.getCommentIndexCache().clearCache();
+    activityStorage.getActivity(activity.getId());
+    assertEquals(1, cacheService.getActivityCache().getCacheSize());
+
+    //
+    List<ExoSocialActivity> got = activityStorage.getActivities(Arrays.asList(activity2.getId(), "notexisting", activity.getId()));
+    assertEquals(3, got.size());
+    assertEquals("hello 2", got.get(0).getTitle());
+    assertNull(got.get(1));
+    assertEquals("hello", got.get(2).getTitle());
+    assertEquals(3, cacheService.getActivityCache().getCacheSize());
+
+  }
+
   @MaxQueryNumber(260)
   public void testSaveComment() throws Exception {
 
@@ -215,6 +288,46 @@ public class CachedActivityStorageTestCase extends AbstractCoreTest {
 
   }
 
+  @MaxQueryNumber(400)
+  public void testCommentIndex() throws Exception {
+
+    //
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("hello");
+    activity.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity);
+    for (int i = 0; i < 3; ++i) {
+      ExoSocialActivity comment = new ExoSocialActivityImpl();
+      comment.setTitle("comment " + i);
+      comment.setUserId(identity2.getId());
+      activityStorage.saveComment(activity, comment);
+    }
+
+    //
+    assertEquals(3, activityStorage.getNumberOfComments(activity));
+    assertEquals(1, cacheService.getCommentIndexCache().getCacheSize());
+    List<ExoSocialActivity> comments = activityStorage.getComments(activity, 0, 10);
+    assertEquals(3, comments.size());
+
+    //hiding a comment refreshes the index of its activity
+    ExoSocialActivity hidden = comments.get(1);
+    hidden.isHidden(true);
+    activityStorage.updateActivity(hidden);
+    assertEquals(0, cacheService.getCommentIndexCache().getCacheSize());
+    assertEquals(2, activityStorage.getNumberOfComments(activity));
+    assertEquals(2, activityStorage.getCommentIndex(activity.getId()).getVisibleCount());
+    assertEquals(3, activityStorage.getCommentIndex(activity.getId()).size());
+
+    //
+    comments = activityStorage.getComments(activity, 1, 1);
+    assertEquals(1, comments.size());
+    assertEquals("comment 2", comments.get(0).getTitle());
+    assertEquals(1, activityStorage.getNumberOfOlderComments(activity, hidden));
+    assertEquals("comment 0", activityStorage.getNewerComments(activity, hidden, 10).get(0).getTitle());
+    assertEquals(0, activityStorage.getComments(activity, 0, 0).size());
+
+  }
+
   @MaxQueryNumber(314)
   public void testRemoveComment() throws Exception {
     //
@@ -18,6 +18,7 @@
 package org.exoplatform.social.core.storage.cache;
 
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.profile.ProfileFilter;
@@ -27,6 +28,7 @@ import org.exoplatform.social.core.test.MaxQueryNumber;
 import org.exoplatform.social.core.test.QueryNumberTest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -53,6 +55,7 @@ public class CachedIdentityStorageTestCase extends AbstractCoreTest {
     cacheService.getCountIdentitiesCache().clearCache();
     cacheService.getIdentityIndexCache().clearCache();
     cacheService.getProfileCache().clearCache();
+    cacheService.getIdentitySummaryCache().clearCache();
 
     tearDownIdentityList = new ArrayList<String>();
   }
@@ -134,6 +137,40 @@ public class CachedIdentityStorageTestCase extends AbstractCoreTest {
 
   }
 
+  @MaxQueryNumber(120)
+  public void testGetIdentitySummaries() throws Exception {
+
+    Identity i = new Identity(OrganizationIdentityProvider.NAME, "id");
+    identityStorage.saveIdentity(i);
+    tearDownIdentityList.add(i.getId());
+    Profile profile = new Profile(i);
+    profile.setProperty(Profile.FIRST_NAME, "first");
+    profile.setProperty(Profile.LAST_NAME, "last");
+    identityStorage.saveProfile(profile);
+    assertEquals(0, cacheService.getIdentitySummaryCache().getCacheSize());
+
+    //the unknown ids are skipped
+    List<IdentitySummary> summaries = identityStorage.getIdentitySummaries(Arrays.asList("unknown", i.getId()));
+    assertEquals(1, summaries.size());
+    assertEquals(1, cacheService.getIdentitySummaryCache().getCacheSize());
+    IdentitySummary summary = summaries.get(0);
+    assertEquals(i.getId(), summary.getId());
+    assertEquals("id", summary.getRemoteId());
+    assertEquals("first last", summary.getFullName());
+    assertNotNull(summary.getProfileUrl());
+    assertFalse(summary.isDeleted());
+
+    //cached until the profile changes
+    assertEquals("first last", identityStorage.getIdentitySummaries(Arrays.asList(i.getId())).get(0).getFullName());
+    assertEquals(1, cacheService.getIdentitySummaryCache().getCacheSize());
+    profile = identityStorage.loadProfile(new Profile(i));
+    profile.setProperty(Profile.LAST_NAME, "renamed");
+    identityStorage.updateProfile(profile);
+    assertEquals(0, cacheService.getIdentitySummaryCache().getCacheSize());
+    assertEquals("first renamed", identityStorage.getIdentitySummaries(Arrays.asList(i.getId())).get(0).getFullName());
+
+  }
+
   @MaxQueryNumber(60)
   public void testUpdateIdentity() throws Exception {
 
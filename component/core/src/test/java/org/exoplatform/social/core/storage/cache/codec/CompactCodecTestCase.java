@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.activity.filter.CommentIndex;
+import org.exoplatform.social.core.activity.model.ActivityStream;
+import org.exoplatform.social.core.activity.model.ActivityUpdateRef;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.Profile;
+import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
+import org.exoplatform.social.core.storage.cache.model.data.CommentIndexData;
+import org.exoplatform.social.core.storage.cache.model.data.IdentityData;
+import org.exoplatform.social.core.storage.cache.model.data.ListActivitiesData;
+import org.exoplatform.social.core.storage.cache.model.data.ProfileData;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityKey;
+import org.exoplatform.social.core.storage.cache.model.key.ScopeContext;
+
+public class CompactCodecTestCase extends TestCase {
+
+  private static final String SCOPE = "repository";
+
+  /**
+   * Builds an activity key without container, reading it from the codec with the test scope.
+   */
+  static ActivityKey activityKey(String id) throws IOException {
+    CacheOutput out = new CacheOutput();
+    out.writeToken(SCOPE);
+    out.writeId(id);
+    return ActivityKey.readFrom(new CacheInput(out.toByteArray(), 0, CompactCodec.VERSION));
+  }
+
+  static String id(int i) {
+    return String.format("%032x", 0x5e1fc0de00000000L + i);
+  }
+
+  static ExoSocialActivity activity(int i) {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setId(id(i));
+    activity.setTitle("Activity title " + i + " with @mary");
+    activity.setBody("Activity body \u00e9t\u00e9 " + i);
+    activity.setType("DEFAULT_ACTIVITY");
+    activity.setUserId(id(1000 + i));
+    activity.setPosterId(id(1000 + i));
+    activity.setPostedTime(1400000000000L + i);
+    activity.setUpdated(new Date(1400000001000L + i));
+    activity.setLikeIdentityIds(new String[] {id(1), id(2)});
+    activity.setReplyToId(new String[] {id(5000 + i)});
+    activity.setMentionedIds(new String[] {id(2) + "@1"});
+    activity.setCommentedIds(new String[0]);
+    Map<String, String> params = new LinkedHashMap<String, String>();
+    params.put("MESSAGE", "hello");
+    params.put("link", "http://www.exoplatform.com");
+    activity.setTemplateParams(params);
+    ActivityStream stream = activity.getActivityStream();
+    stream.setId(id(2000 + i));
+    stream.setPrettyId("mary");
+    stream.setType(ActivityStream.Type.USER);
+    activity.setActivityStream(stream);
+    return activity;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T copy(T value) throws IOException {
+    return (T) CompactCodec.read(CompactCodec.write(value));
+  }
+
+  private static byte[] serialize(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(value);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws Exception {
+    return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+  }
+
+  public void testActivityData() throws Exception {
+    ExoSocialActivity activity = copy(new ActivityData(activity(1))).build();
+
+    assertEquals(id(1), activity.getId());
+    assertEquals("Activity title 1 with @mary", activity.getTitle());
+    assertEquals("Activity body \u00e9t\u00e9 1", activity.getBody());
+    assertEquals("DEFAULT_ACTIVITY", activity.getType());
+    assertEquals(id(1001), activity.getPosterId());
+    assertEquals(Long.valueOf(1400000000001L), activity.getPostedTime());
+    assertEquals(1400000001001L, activity.getUpdated().getTime());
+    assertTrue(Arrays.equals(new String[] {id(1), id(2)}, activity.getLikeIdentityIds()));
+    assertTrue(Arrays.equals(new String[] {id(2) + "@1"}, activity.getMentionedIds()));
+    assertEquals(0, activity.getCommentedIds().length);
+    assertEquals(Arrays.asList("MESSAGE", "link"), new ArrayList<String>(activity.getTemplateParams().keySet()));
+    assertEquals(id(2001), activity.getActivityStream().getId());
+    assertEquals(ActivityStream.Type.USER, activity.getActivityStream().getType());
+  }
+
+  public void testNullActivityData() throws Exception {
+    assertSame(ActivityData.NULL, copy(ActivityData.NULL));
+    assertSame(ActivityData.NULL, deserialize(serialize(ActivityData.NULL)));
+  }
+
+  public void testListActivitiesData() throws Exception {
+    List<ActivityKey> keys = new ArrayList<ActivityKey>();
+    for (int i = 0; i < 100; ++i) {
+      keys.add(activityKey(id(i)));
+    }
+    ListActivitiesData data = new ListActivitiesData(keys);
+
+    assertEquals(keys, copy(data).getIds());
+    assertEquals(keys, ((ListActivitiesData) deserialize(serialize(data))).getIds());
+
+    // the scope is written once and each id on 17 bytes
+    assertTrue(CompactCodec.write(data).length < 100 * 18 + 32);
+  }
+
+  public void testProfileData() throws Exception {
+    Identity identity = new Identity(id(7));
+    identity.setProviderId("organization");
+    identity.setRemoteId("mary");
+    Profile profile = new Profile(identity);
+    profile.setId(id(8));
+    profile.setProperty(Profile.FIRST_NAME, "Mary");
+    profile.setProperty(Profile.LAST_NAME, "Williams");
+    List<Map<String, String>> phones = new ArrayList<Map<String, String>>();
+    Map<String, String> phone = new HashMap<String, String>();
+    phone.put("key", "work");
+    phone.put("value", "+33 1 23 45 67 89");
+    phones.add(phone);
+    profile.setProperty(Profile.CONTACT_PHONES, phones);
+    profile.setCreatedTime(1400000000000L);
+
+    Profile copy = copy(new ProfileData(profile)).build();
+
+    assertEquals(id(8), copy.getId());
+    assertEquals(id(7), copy.getIdentity().getId());
+    assertEquals("organization", copy.getIdentity().getProviderId());
+    assertEquals("mary", copy.getIdentity().getRemoteId());
+    assertEquals("Mary", copy.getProperty(Profile.FIRST_NAME));
+    assertEquals(phones, copy.getProperty(Profile.CONTACT_PHONES));
+    assertEquals(Long.valueOf(1400000000000L), copy.getCreatedTime());
+  }
+
+  public void testIdentityData() throws Exception {
+    Identity identity = new Identity(id(3));
+    identity.setProviderId("space");
+    identity.setRemoteId("marketing");
+    identity.setDeleted(true);
+
+    Identity copy = ((IdentityData) deserialize(serialize(new IdentityData(identity)))).build();
+    assertEquals(id(3), copy.getId());
+    assertEquals("space", copy.getProviderId());
+    assertEquals("marketing", copy.getRemoteId());
+    assertTrue(copy.isDeleted());
+
+    // the data of a missing identity
+    assertNull(copy(new IdentityData(null)).build());
+  }
+
+  public void testActivityUpdateRef() throws Exception {
+    ActivityUpdateRef ref = copy(new ActivityUpdateRef(id(4), 1400000000004L));
+    assertEquals(id(4), ref.getActivityId());
+    assertEquals(1400000000004L, ref.getLastUpdated());
+
+    // the reference of an identity without activity
+    ref = (ActivityUpdateRef) deserialize(serialize(new ActivityUpdateRef(null, 0)));
+    assertNull(ref.getActivityId());
+    assertEquals(0L, ref.getLastUpdated());
+  }
+
+  public void testSerializedValue() throws Exception {
+    CommentIndex index = new CommentIndex(new String[] {id(1), id(2)}, new long[] {1L, 2L}, new boolean[] {false, true});
+    CommentIndex copy = copy(new CommentIndexData(index)).build();
+    assertEquals(2, copy.size());
+    assertEquals(1, copy.getVisibleCount());
+    assertEquals(Arrays.asList(id(1)), copy.getVisibleIds(0, 2, 10));
+  }
+
+  public void testInternedScope() throws Exception {
+    ActivityKey key = activityKey(id(1));
+    assertSame(ScopeContext.intern(new String(SCOPE)), key.getScope());
+    assertSame(key.getScope(), copy(key).getScope());
+    assertSame(key.getScope(), ((ActivityKey) deserialize(serialize(key))).getScope());
+  }
+
+  public void testUnknownVersion() throws Exception {
+    byte[] bytes = CompactCodec.write(new IdentityData(null));
+    bytes[0] = (byte) (CompactCodec.VERSION + 1);
+    try {
+      CompactCodec.read(bytes);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.services.cache.CachedObjectSelector;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.cache.ObjectCacheInfo;
+import org.exoplatform.services.cache.concurrent.ConcurrentFIFOExoCache;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+import org.exoplatform.social.core.storage.cache.codec.CacheInput;
+import org.exoplatform.social.core.storage.cache.codec.CacheOutput;
+import org.exoplatform.social.core.storage.cache.codec.CompactCodec;
+import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
+import org.exoplatform.social.core.storage.cache.model.key.ActivityKey;
+
+public class CacheKeyIndexTestCase extends TestCase {
+
+  private static final String SCOPE = "repository";
+  private static final String OTHER_SCOPE = "tenant";
+
+  private ExoCache<ActivityKey, ActivityData> cache;
+
+  private CacheKeyIndex<ActivityKey, ActivityData> index;
+
+  @Override
+  protected void setUp() throws Exception {
+    cache = new ConcurrentFIFOExoCache<ActivityKey, ActivityData>("activity", 100);
+    index = new ActivityOwnerKeyIndex(cache).register();
+    for (int i = 0; i < 10; ++i) {
+      cache.put(key(SCOPE, i), activity(i, i % 2 == 0 ? "mary" : "john"));
+    }
+    cache.put(key(OTHER_SCOPE, 0), activity(0, "mary"));
+  }
+
+  /**
+   * Builds an activity key without container, reading it from the codec with the given scope.
+   */
+  private static ActivityKey key(String scope, int i) throws IOException {
+    CacheOutput out = new CacheOutput();
+    out.writeToken(scope);
+    out.writeId("activity" + i);
+    return ActivityKey.readFrom(new CacheInput(out.toByteArray(), 0, CompactCodec.VERSION));
+  }
+
+  private static ActivityData activity(int i, String userId) {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setId("activity" + i);
+    activity.setUserId(userId);
+    return new ActivityData(activity);
+  }
+
+  private List<ActivityKey> select(String scope, String... partitions) throws Exception {
+    final List<ActivityKey> visited = new ArrayList<ActivityKey>();
+    index.select(scope, new CachedObjectSelector<ActivityKey, ActivityData>() {
+      public boolean select(ActivityKey key, ObjectCacheInfo<? extends ActivityData> ocinfo) {
+        visited.add(key);
+        return "mary".equals(ocinfo.get().getUserId());
+      }
+
+      public void onSelect(ExoCache<? extends ActivityKey, ? extends ActivityData> cache,
+                           ActivityKey key,
+                           ObjectCacheInfo<? extends ActivityData> ocinfo) throws Exception {
+        cache.remove(key);
+      }
+    }, partitions.length == 0 ? null : Arrays.asList(partitions));
+    return visited;
+  }
+
+  public void testSelectPartition() throws Exception {
+    assertEquals(11, index.getSize());
+
+    // only the activities of the owner are visited and removed
+    assertEquals(5, select(SCOPE, "mary").size());
+    assertEquals(6, index.getSize());
+    assertNull(cache.get(key(SCOPE, 0)));
+    assertNotNull(cache.get(key(SCOPE, 1)));
+    assertNotNull(cache.get(key(OTHER_SCOPE, 0)));
+
+    //
+    assertEquals(0, select(SCOPE, "mary").size());
+    assertEquals(0, select(SCOPE, "demo").size());
+  }
+
+  public void testSelectScope() throws Exception {
+    assertEquals(10, select(SCOPE).size());
+    assertEquals(1, select(OTHER_SCOPE).size());
+    assertEquals(5, index.getSize());
+    assertEquals(0, select("other").size());
+  }
+
+  public void testFollowCache() throws Exception {
+
+    // an activity moved to another owner
+    cache.put(key(SCOPE, 0), activity(0, "john"));
+    assertEquals(4, select(SCOPE, "mary").size());
+    assertNotNull(cache.get(key(SCOPE, 0)));
+
+    //
+    cache.remove(key(SCOPE, 1));
+    assertEquals(5, select(SCOPE, "john").size());
+    assertEquals(6, index.getSize());
+
+    //
+    cache.clearCache();
+    assertEquals(0, index.getSize());
+    assertEquals(0, select(SCOPE).size());
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.model.key;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.storage.cache.model.key.KeyGenerations.Group;
+
+public class KeyGenerationsTestCase extends TestCase {
+
+  private static final String SCOPE = "repository";
+
+  public void testNext() throws Exception {
+    long spaces = KeyGenerations.get(SCOPE, Group.SPACES, null);
+    KeyGenerations.next(SCOPE, Group.SPACES, null);
+    assertEquals(spaces + 1, KeyGenerations.get(SCOPE, Group.SPACES, null));
+    KeyGenerations.next(SCOPE, Group.SPACES, null);
+    assertEquals(spaces + 2, KeyGenerations.get(SCOPE, Group.SPACES, null));
+  }
+
+  public void testOwners() throws Exception {
+    long john = KeyGenerations.get(SCOPE, Group.RELATIONSHIPS, "john");
+    long mary = KeyGenerations.get(SCOPE, Group.RELATIONSHIPS, "mary");
+    long all = KeyGenerations.get(SCOPE, Group.RELATIONSHIPS, null);
+    long other = KeyGenerations.get("other", Group.RELATIONSHIPS, "john");
+
+    //only the stripe of the owner moves
+    KeyGenerations.next(SCOPE, Group.RELATIONSHIPS, "john");
+    assertEquals(john + 1, KeyGenerations.get(SCOPE, Group.RELATIONSHIPS, "john"));
+    assertEquals(mary, KeyGenerations.get(SCOPE, Group.RELATIONSHIPS, "mary"));
+    assertEquals(all, KeyGenerations.get(SCOPE, Group.RELATIONSHIPS, null));
+    assertEquals(other, KeyGenerations.get("other", Group.RELATIONSHIPS, "john"));
+  }
+
+  public void testGroups() throws Exception {
+    long identities = KeyGenerations.get(SCOPE, Group.IDENTITIES, null);
+    KeyGenerations.next(SCOPE, Group.SUGGESTIONS, null);
+    assertEquals(identities, KeyGenerations.get(SCOPE, Group.IDENTITIES, null));
+  }
+
+  public void testGetOwner() throws Exception {
+    assertNull(KeyGenerations.getOwner("john"));
+    assertNull(KeyGenerations.getOwner(null));
+  }
+
+}
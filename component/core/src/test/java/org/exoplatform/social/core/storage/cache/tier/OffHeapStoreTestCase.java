@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.cache.tier;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class OffHeapStoreTestCase extends TestCase {
+
+  private OffHeapStore store;
+
+  @Override
+  protected void setUp() throws Exception {
+    store = new OffHeapStore("test", 100);
+  }
+
+  private static byte[] bytes(int length, int value) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) value);
+    return bytes;
+  }
+
+  public void testPutAndGet() throws Exception {
+    assertTrue(store.put("a", bytes(10, 1)));
+    assertTrue(store.put("b", bytes(20, 2)));
+
+    assertTrue(Arrays.equals(bytes(10, 1), store.get("a")));
+    assertTrue(Arrays.equals(bytes(20, 2), store.get("b")));
+    assertNull(store.get("c"));
+
+    assertEquals(2, store.getSize());
+    assertEquals(30, store.getUsedBytes());
+    assertEquals(2, store.getHits());
+    assertEquals(1, store.getMisses());
+  }
+
+  public void testReplaceAndRemove() throws Exception {
+    store.put("a", bytes(10, 1));
+    store.put("a", bytes(30, 3));
+    assertTrue(Arrays.equals(bytes(30, 3), store.get("a")));
+    assertEquals(1, store.getSize());
+    assertEquals(30, store.getUsedBytes());
+
+    assertTrue(store.remove("a"));
+    assertFalse(store.remove("a"));
+    assertNull(store.get("a"));
+    assertEquals(0, store.getUsedBytes());
+  }
+
+  public void testEvictOldest() throws Exception {
+    for (int i = 0; i < 4; ++i) {
+      store.put("k" + i, bytes(30, i));
+    }
+
+    // k3 wraps to the start of the buffer and takes the place of k0
+    assertNull(store.get("k0"));
+    assertTrue(Arrays.equals(bytes(30, 1), store.get("k1")));
+    assertTrue(Arrays.equals(bytes(30, 2), store.get("k2")));
+    assertTrue(Arrays.equals(bytes(30, 3), store.get("k3")));
+    assertEquals(1, store.getEvictions());
+    assertEquals(90, store.getUsedBytes());
+
+    // k4 does not fit after k3 before k1, k1 then k2 go away
+    store.put("k4", bytes(50, 4));
+    assertEquals(Arrays.asList("k3", "k4"), store.keys());
+    assertTrue(Arrays.equals(bytes(30, 3), store.get("k3")));
+    assertTrue(Arrays.equals(bytes(50, 4), store.get("k4")));
+    assertEquals(3, store.getEvictions());
+    assertEquals(3d / 5, store.getEvictionRate(), 0.0001);
+  }
+
+  public void testTooLarge() throws Exception {
+    store.put("a", bytes(10, 1));
+    assertFalse(store.put("a", bytes(101, 1)));
+    assertNull(store.get("a"));
+    assertEquals(0, store.getSize());
+  }
+
+  public void testExpire() throws Exception {
+    store = new OffHeapStore("test", 100, 20);
+    store.put("a", bytes(10, 1));
+    assertTrue(Arrays.equals(bytes(10, 1), store.get("a")));
+
+    Thread.sleep(50);
+    assertNull(store.get("a"));
+    assertEquals(0, store.getSize());
+    assertEquals(0, store.getUsedBytes());
+  }
+
+  public void testClear() throws Exception {
+    store.put("a", bytes(60, 1));
+    store.put("b", bytes(30, 2));
+    store.clear();
+    assertEquals(0, store.getSize());
+    assertEquals(0, store.getUsedBytes());
+
+    store.put("c", bytes(100, 3));
+    assertTrue(Arrays.equals(bytes(100, 3), store.get("c")));
+    assertEquals(0, store.getEvictions());
+  }
+
+}
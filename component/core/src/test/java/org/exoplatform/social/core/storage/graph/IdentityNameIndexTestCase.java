@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.identity.model.IdentitySummary;
+
+public class IdentityNameIndexTestCase extends TestCase {
+
+  private static final String ORGANIZATION = "organization";
+
+  private IdentityNameIndex index;
+
+  @Override
+  protected void setUp() throws Exception {
+    index = new IdentityNameIndex(null);
+    index.load(new IdentityNameIndex.Loader() {
+      @Override
+      public void load(IdentityNameIndex index) throws Exception {
+        save(index, "1", "mary", "Mary", "Williams");
+        save(index, "2", "john", "John", "Anthony");
+        save(index, "3", "james", "James", "Davis");
+        save(index, "4", "demo", "Jack", "Miller");
+        save(index, "5", "root", "H\u00e9l\u00e8ne", "Marchand");
+      }
+    });
+  }
+
+  private static void save(IdentityNameIndex index, String id, String remoteId, String firstName, String lastName) {
+    IdentitySummary identity = new IdentitySummary(id, ORGANIZATION, remoteId, firstName + " " + lastName,
+                                                   "/avatar/" + remoteId, "/profile/" + remoteId, false);
+    index.saveIdentity(identity, firstName, lastName);
+  }
+
+  private static String remoteIds(List<IdentitySummary> identities) {
+    StringBuilder sb = new StringBuilder();
+    for (IdentitySummary identity : identities) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(identity.getRemoteId());
+    }
+    return sb.toString();
+  }
+
+  private String search(String text) {
+    return remoteIds(index.search(ORGANIZATION, text, null, null, 10));
+  }
+
+  public void testNotLoaded() throws Exception {
+    IdentityNameIndex notLoaded = new IdentityNameIndex(null);
+    save(notLoaded, "1", "mary", "Mary", "Williams");
+    assertFalse(notLoaded.isLoaded());
+    assertEquals(0, notLoaded.search(ORGANIZATION, "mary", null, null, 10).size());
+  }
+
+  public void testSearch() throws Exception {
+    assertEquals(5, index.getIdentityCount());
+
+    //the full names starting with the text first
+    assertEquals("demo,james", search("ja"));
+    assertEquals("mary,root", search("MAR"));
+    assertEquals("john", search("anth"));
+    assertEquals("demo", search("dem"));
+    assertEquals("", search("xyz"));
+    assertEquals("", search("  "));
+    assertEquals("", search(null));
+
+    //accents
+    assertEquals("root", search("hel"));
+    assertEquals("root", search("H\u00c9L\u00c8"));
+
+    //each word starts a token
+    assertEquals("demo", search("jack mil"));
+    assertEquals("demo", search("mil jack"));
+    assertEquals("", search("jack dav"));
+
+    //other provider
+    assertEquals(0, index.search("space", "mary", null, null, 10).size());
+
+    //projection
+    IdentitySummary mary = index.search(ORGANIZATION, "mary", null, null, 10).get(0);
+    assertEquals("1", mary.getId());
+    assertEquals("Mary Williams", mary.getFullName());
+    assertEquals("/avatar/mary", mary.getAvatarUrl());
+  }
+
+  public void testBoostAndExclude() throws Exception {
+    Set<String> connections = new HashSet<String>();
+    connections.add("3");
+    assertEquals("james,demo", remoteIds(index.search(ORGANIZATION, "ja", connections, null, 10)));
+    assertEquals("james", remoteIds(index.search(ORGANIZATION, "ja", connections, null, 1)));
+    assertEquals("demo", remoteIds(index.search(ORGANIZATION, "ja", null, null, 1)));
+    assertEquals("demo", remoteIds(index.search(ORGANIZATION, "ja", null, Collections.singleton("3"), 10)));
+  }
+
+  public void testUpdateAndRemove() throws Exception {
+    save(index, "6", "jane", "Jane", "Doe");
+    assertEquals("demo,james,jane", search("ja"));
+
+    //renamed
+    save(index, "4", "demo", "Paul", "Miller");
+    assertEquals("james,jane", search("ja"));
+    assertEquals("demo", search("paul"));
+    assertEquals(14, index.getTokenCount());
+
+    //removed
+    index.removeIdentity("3");
+    assertEquals("jane", search("ja"));
+    assertEquals(5, index.getIdentityCount());
+    assertTrue(index.getEstimatedMemory() > 0);
+  }
+
+  public void testInvalidate() throws Exception {
+    index.invalidate("1");
+    index.invalidate("4");
+    index.invalidate("1");
+    assertEquals(2, index.getStaleIdentityCount());
+
+    //the stale identities are still found until indexed again
+    assertEquals("mary", search("mary"));
+    assertEquals(new HashSet<String>(Arrays.asList("1", "4")), index.takeStaleIds());
+    assertEquals(0, index.takeStaleIds().size());
+
+    //ignored until loaded
+    IdentityNameIndex notLoaded = new IdentityNameIndex(null);
+    notLoaded.invalidate("1");
+    assertEquals(0, notLoaded.getStaleIdentityCount());
+  }
+
+  public void testLoadWhileChanged() throws Exception {
+    final IdentityNameIndex loading = new IdentityNameIndex(null);
+    loading.load(new IdentityNameIndex.Loader() {
+      @Override
+      public void load(IdentityNameIndex index) throws Exception {
+        save(index, "1", "mary", "Mary", "Williams");
+        //saved by another request meanwhile
+        save(loading, "2", "john", "John", "Anthony");
+        assertEquals(0, loading.search(ORGANIZATION, "mary", null, null, 10).size());
+      }
+    });
+    assertEquals("mary", remoteIds(loading.search(ORGANIZATION, "mary", null, null, 10)));
+    assertEquals(Collections.singleton("2"), loading.takeStaleIds());
+  }
+
+  public void testClear() throws Exception {
+    index.invalidate("1");
+    index.clear();
+    assertFalse(index.isLoaded());
+    assertEquals("", search("mary"));
+    assertEquals(0, index.getStaleIdentityCount());
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class RelationshipGraphTestCase extends TestCase {
+
+  private RelationshipGraph graph;
+
+  @Override
+  protected void setUp() throws Exception {
+    graph = new RelationshipGraph(null);
+    graph.load(new RelationshipGraph.Loader() {
+      @Override
+      public void load(RelationshipGraph graph) throws Exception {
+        graph.saveRelationship("ghost", "mary");
+        graph.saveRelationship("ghost", "john");
+        graph.saveRelationship("demo", "mary");
+      }
+    });
+  }
+
+  public void testNotLoaded() throws Exception {
+    RelationshipGraph notLoaded = new RelationshipGraph(null);
+    notLoaded.saveRelationship("ghost", "mary");
+    assertFalse(notLoaded.isLoaded());
+    assertEquals(0, notLoaded.getSuggestions("ghost", 10).size());
+  }
+
+  public void testGetSuggestions() throws Exception {
+    Map<String, Integer> suggestions = graph.getSuggestions("ghost", 10);
+    assertEquals(1, suggestions.size());
+    assertEquals(1, suggestions.get("demo").intValue());
+
+    //increase common relationships
+    graph.saveRelationship("demo", "john");
+    graph.saveRelationship("paul", "mary");
+
+    suggestions = graph.getSuggestions("ghost", 10);
+    assertEquals(2, suggestions.size());
+    assertEquals("demo", new ArrayList<String>(suggestions.keySet()).get(0));
+    assertEquals(2, suggestions.get("demo").intValue());
+    assertEquals(1, suggestions.get("paul").intValue());
+
+    //size
+    suggestions = graph.getSuggestions("ghost", 1);
+    assertEquals(1, suggestions.size());
+    assertTrue(suggestions.containsKey("demo"));
+  }
+
+  public void testRemoveRelationship() throws Exception {
+    assertEquals(1, graph.getSuggestions("ghost", 10).size());
+
+    //related identities are not suggested
+    graph.saveRelationship("ghost", "demo");
+    assertEquals(0, graph.getSuggestions("ghost", 10).size());
+
+    graph.removeRelationship("demo", "ghost");
+    assertEquals(1, graph.getSuggestions("ghost", 10).get("demo").intValue());
+
+    graph.removeRelationship("demo", "mary");
+    assertEquals(0, graph.getSuggestions("ghost", 10).size());
+  }
+
+  public void testRemoveIdentity() throws Exception {
+    assertEquals(1, graph.getSuggestions("ghost", 10).size());
+
+    graph.removeIdentity("mary");
+    assertEquals(0, graph.getSuggestions("ghost", 10).size());
+    assertEquals(0, graph.getSuggestions("demo", 10).size());
+  }
+
+  public void testSetRelationships() throws Exception {
+    assertEquals(1, graph.getSuggestions("ghost", 10).get("demo").intValue());
+
+    //as read again from the storage
+    graph.invalidate("mary");
+    assertEquals(Collections.singleton("mary"), graph.takeStaleIds());
+    assertTrue(graph.takeStaleIds().isEmpty());
+    graph.setRelationships("mary", Arrays.asList("ghost", "paul"));
+    assertEquals(2, graph.getRelatedCount("mary"));
+    assertEquals(0, graph.getRelatedCount("demo"));
+    assertEquals(1, graph.getSuggestions("ghost", 10).get("paul").intValue());
+    assertFalse(graph.getSuggestions("ghost", 10).containsKey("demo"));
+
+    graph.setRelationships("mary", Collections.<String>emptyList());
+    assertEquals(0, graph.getSuggestions("ghost", 10).size());
+    assertEquals(1, graph.getRelatedCount("ghost"));
+  }
+
+  public void testLoadWhileChanged() throws Exception {
+    final RelationshipGraph loading = new RelationshipGraph(null);
+    loading.load(new RelationshipGraph.Loader() {
+      @Override
+      public void load(RelationshipGraph graph) throws Exception {
+        graph.saveRelationship("ghost", "mary");
+        //saved by another request meanwhile
+        loading.saveRelationship("demo", "mary");
+      }
+    });
+    assertTrue(loading.isLoaded());
+    assertEquals(new HashSet<String>(Arrays.asList("demo", "mary")), loading.takeStaleIds());
+  }
+
+  public void testStatistics() throws Exception {
+    assertEquals(4, graph.getIdentityCount());
+    assertEquals(3, graph.getRelationshipCount());
+
+    //a confirmed invitation is the same relationship
+    graph.saveRelationship("mary", "ghost");
+    assertEquals(3, graph.getRelationshipCount());
+
+    graph.removeRelationship("mary", "ghost");
+    assertEquals(2, graph.getRelationshipCount());
+    assertTrue(graph.getEstimatedMemory() > 0);
+  }
+
+  public void testClear() throws Exception {
+    graph.clear();
+    assertFalse(graph.isLoaded());
+    assertEquals(0, graph.getSuggestions("ghost", 10).size());
+  }
+
+}
@@ -974,6 +974,40 @@ public class ActivityStorageImplTestCase extends AbstractCoreTest {
 
   }
   
+  @MaxQueryNumber(246)
+  public void testActivityProcessingPhases() throws Exception {
+
+    //
+    BaseActivityProcessorPlugin writeProcessor = new DummyProcessor(null);
+    writeProcessor.setWriteTime(true);
+    CountingProcessor readProcessor = new CountingProcessor(null);
+    activityStorage.getActivityProcessors().add(writeProcessor);
+    activityStorage.getActivityProcessors().add(readProcessor);
+
+    //the output of the write time processor is stored
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("activity");
+    activityStorage.saveActivity(rootIdentity, activity);
+    activityStorage.getActivityProcessors().remove(writeProcessor);
+    assertEquals("edited read", activityStorage.getActivity(activity.getId()).getTitle());
+    assertEquals(1, readProcessor.count);
+
+    //the read time output is reused until the activity changes
+    assertEquals("edited read", activityStorage.getActivity(activity.getId()).getTitle());
+    assertEquals(1, readProcessor.count);
+
+    //
+    ExoSocialActivity got = activityStorage.getActivity(activity.getId());
+    got.setTitle("changed");
+    activityStorage.updateActivity(got);
+    assertEquals("changed read", activityStorage.getActivity(activity.getId()).getTitle());
+    assertEquals(2, readProcessor.count);
+
+    //
+    activityStorage.getActivityProcessors().remove(readProcessor);
+
+  }
+
   /**
    * Gets an instance of Space.
    *
@@ -1026,6 +1060,22 @@ public class ActivityStorageImplTestCase extends AbstractCoreTest {
     }
   }
 
+  class CountingProcessor extends BaseActivityProcessorPlugin {
+
+    int count;
+
+    CountingProcessor(final InitParams params) {
+      super(params);
+      priority = 10;
+    }
+
+    @Override
+    public void processActivity(final ExoSocialActivity activity) {
+      activity.setTitle(activity.getTitle() + " read");
+      ++count;
+    }
+  }
+
   private Space getSpaceInstance(int number) {
     Space space = new Space();
     space.setApp("app");
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.core.storage.streams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.exoplatform.commons.chromattic.ChromatticManager;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.test.AbstractCoreTest;
+
+public class StreamFanOutServiceTestCase extends AbstractCoreTest {
+
+  private StreamFanOutService fanOutService;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    fanOutService = (StreamFanOutService) getContainer().getComponentInstanceOfType(StreamFanOutService.class);
+  }
+
+  public void testFanOutByBatches() throws Exception {
+    List<Identity> recipients = new ArrayList<Identity>();
+    for (int i = 0; i < 2 * fanOutService.getBatchSize() + 1; i++) {
+      recipients.add(new Identity("identity" + i));
+    }
+
+    //
+    long submitted = fanOutService.getSubmittedBatches();
+    long completed = fanOutService.getCompletedBatches();
+    final List<Integer> sizes = new ArrayList<Integer>();
+    fanOutService.fanOut(recipients, new StreamFanOutService.BatchWriter() {
+      @Override
+      public void write(List<Identity> batch) throws Exception {
+        sizes.add(batch.size());
+      }
+    });
+
+    //the test configuration is synchronous
+    assertEquals(3, sizes.size());
+    assertEquals(fanOutService.getBatchSize(), sizes.get(0).intValue());
+    assertEquals(fanOutService.getBatchSize(), sizes.get(1).intValue());
+    assertEquals(1, sizes.get(2).intValue());
+    assertEquals(submitted + 3, fanOutService.getSubmittedBatches());
+    assertEquals(completed + 3, fanOutService.getCompletedBatches());
+  }
+
+  public void testFailedBatch() throws Exception {
+    List<Identity> recipients = new ArrayList<Identity>();
+    recipients.add(new Identity("identity"));
+
+    //
+    long failed = fanOutService.getFailedBatches();
+    fanOutService.fanOut(recipients, new StreamFanOutService.BatchWriter() {
+      @Override
+      public void write(List<Identity> batch) throws Exception {
+        throw new IllegalStateException();
+      }
+    });
+
+    //
+    assertEquals(failed + 1, fanOutService.getFailedBatches());
+  }
+
+  public void testAsyncRetry() throws Exception {
+    final ChromatticManager manager = (ChromatticManager) getContainer().getComponentInstanceOfType(ChromatticManager.class);
+    final Thread caller = Thread.currentThread();
+    final Object callerSession = manager.getSynchronization();
+    final List<Object> sessions = Collections.synchronizedList(new ArrayList<Object>());
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+    final CountDownLatch done = new CountDownLatch(1);
+
+    //
+    long retried = fanOutService.getRetriedBatches();
+    fanOutService.execute(new StreamFanOutService.Task() {
+      @Override
+      public void write() throws Exception {
+        sessions.add(manager.getSynchronization());
+        threads.add(Thread.currentThread());
+        if (sessions.size() == 1) {
+          throw new IllegalStateException();
+        }
+        done.countDown();
+      }
+    }, true);
+
+    //each attempt is written by a worker in a new session
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(2, sessions.size());
+    assertNotNull(sessions.get(0));
+    assertNotNull(sessions.get(1));
+    assertNotSame(callerSession, sessions.get(0));
+    assertNotSame(sessions.get(0), sessions.get(1));
+    assertNotSame(caller, threads.get(0));
+    assertEquals(retried + 1, fanOutService.getRetriedBatches());
+  }
+
+}
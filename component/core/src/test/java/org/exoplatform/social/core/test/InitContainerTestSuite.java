@@ -47,6 +47,7 @@ import org.exoplatform.social.core.storage.cache.CachedSpaceStorageTestCase;
 import org.exoplatform.social.core.storage.impl.ActivityStorageImplTestCase;
 import org.exoplatform.social.core.storage.impl.IdentityStorageImplTestCase;
 import org.exoplatform.social.core.storage.impl.RelationshipStorageImplTestCase;
+import org.exoplatform.social.core.storage.streams.StreamFanOutServiceTestCase;
 import org.exoplatform.social.core.updater.ActivityStreamUpdaterTest;
 import org.exoplatform.social.core.updater.SpaceActivityStreamUpdaterTest;
 import org.junit.AfterClass;
@@ -76,6 +77,7 @@ import org.junit.runners.Suite.SuiteClasses;
   RelationshipStorageTest.class,
   RelationshipPublisherTest.class,
   RelationshipStorageImplTestCase.class,
+  StreamFanOutServiceTestCase.class,
   SpaceUtilsRestTest.class,
   SpaceActivityPublisherTest.class,
   SpaceLifeCycleTest.class,
@@ -24,9 +24,17 @@ import org.exoplatform.social.core.identity.model.IdentityTest;
 import org.exoplatform.social.core.image.ImageUtilsTest;
 import org.exoplatform.social.core.processor.ActivityResourceBundlePluginTest;
 import org.exoplatform.social.core.processor.I18NActivityProcessorTest;
+import org.exoplatform.social.core.processor.MentionScannerTestCase;
 import org.exoplatform.social.core.relationship.RelationshipTest;
 import org.exoplatform.social.core.space.SpaceUtilsTest;
+import org.exoplatform.social.core.space.model.SpaceMembershipTestCase;
 import org.exoplatform.social.core.storage.StorageUtilsTest;
+import org.exoplatform.social.core.storage.cache.codec.CompactCodecTestCase;
+import org.exoplatform.social.core.storage.cache.index.CacheKeyIndexTestCase;
+import org.exoplatform.social.core.storage.cache.model.key.KeyGenerationsTestCase;
+import org.exoplatform.social.core.storage.cache.tier.OffHeapStoreTestCase;
+import org.exoplatform.social.core.storage.graph.IdentityNameIndexTestCase;
+import org.exoplatform.social.core.storage.graph.RelationshipGraphTestCase;
 import org.exoplatform.social.core.storage.query.ExpressionConstructorTestCase;
 import org.exoplatform.social.core.storage.query.WhereExpressionTypesafetyTestCase;
 import org.exoplatform.social.core.storage.query.WhereExpressionValuesTestCase;
@@ -43,9 +51,17 @@ import org.junit.runners.Suite.SuiteClasses;
   ImageUtilsTest.class,
   ActivityResourceBundlePluginTest.class,
   I18NActivityProcessorTest.class,
+  MentionScannerTestCase.class,
   RelationshipTest.class,
   SpaceUtilsTest.class,
+  SpaceMembershipTestCase.class,
   StorageUtilsTest.class,
+  RelationshipGraphTestCase.class,
+  IdentityNameIndexTestCase.class,
+  OffHeapStoreTestCase.class,
+  CompactCodecTestCase.class,
+  CacheKeyIndexTestCase.class,
+  KeyGenerationsTestCase.class,
   ExpressionConstructorTestCase.class,
   WhereExpressionTypesafetyTestCase.class,
   WhereExpressionValuesTestCase.class,
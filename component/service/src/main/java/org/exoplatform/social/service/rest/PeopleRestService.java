@@ -31,6 +31,7 @@ import org.exoplatform.services.security.IdentityConstants;
 import org.exoplatform.social.common.RealtimeListAccess;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.model.IdentitySummary;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.manager.ActivityManager;
@@ -186,23 +187,22 @@ public class PeopleRestService implements ResourceContainer{
   public Response suggestUsernames(@Context UriInfo uriInfo,
                     @QueryParam("search") String query) throws Exception {
     MediaType mediaType = Util.getMediaType("json", new String[]{"json"});
-    List<Identity> excludedIdentityList = new ArrayList<Identity>();
-    ProfileFilter filter = new ProfileFilter();
     
-    filter.setName(query);
-    filter.setCompany("");
-    filter.setPosition("");
-    filter.setSkills("");
-    filter.setExcludedIdentityList(excludedIdentityList);
-    List<Identity> identities = Arrays.asList(getIdentityManager().getIdentitiesByProfileFilter(
-                                  OrganizationIdentityProvider.NAME, filter, false).load(0, (int)SUGGEST_LIMIT));
+    //the connections of the viewer are suggested first
+    Identity viewer = null;
+    String viewerId = getUserId(null, uriInfo);
+    if (viewerId != null && viewerId.length() > 0 && !IdentityConstants.ANONIM.equals(viewerId)) {
+      viewer = getIdentityManager().getOrCreateIdentity(OrganizationIdentityProvider.NAME, viewerId, false);
+    }
+    List<IdentitySummary> identities = getIdentityManager().getIdentitySuggestions(
+                                  OrganizationIdentityProvider.NAME, query, viewer, null, (int)SUGGEST_LIMIT);
     
     List<UserInfo> userInfos = new ArrayList<PeopleRestService.UserInfo>(identities.size());
     UserInfo userInfo;
-    for (Identity identity : identities) {
+    for (IdentitySummary identity : identities) {
       userInfo = new UserInfo(identity.getRemoteId());
-      userInfo.setName(identity.getProfile().getFullName());
-      userInfo.setAvatar(identity.getProfile().getAvatarUrl());
+      userInfo.setName(identity.getFullName());
+      userInfo.setAvatar(identity.getAvatarUrl());
       userInfo.setType("contact"); //hardcode for test
       userInfos.add(userInfo);
     }
@@ -264,10 +264,11 @@ public class PeopleRestService implements ResourceContainer{
       identities = relationshipManager.getConnectionsByFilter(currentUser, filter).load(offset, limit);
     }
     
+    Map<String, ExoSocialActivity> lastActivities = activityManager.getLastActivities(Arrays.asList(identities));
     for(Identity identity : identities){
-      HashMap<String, Object> temp = getIdentityInfo(identity, lang);
-      if(temp != null){
-        entitys.add(temp);
+      ExoSocialActivity lastestActivity = lastActivities.get(identity.getId());
+      if(lastestActivity != null){
+        entitys.add(new ConnectionInfoRestOut(identity, lastestActivity, lang));
       }
     }
     
@@ -741,16 +742,6 @@ public class PeopleRestService implements ResourceContainer{
     }
   }
   
-  private HashMap<String, Object> getIdentityInfo(Identity existingIdentity, String lang){
-    RealtimeListAccess<ExoSocialActivity>  activityRealtimeListAccess = 
-                                            activityManager.getActivitiesWithListAccess(existingIdentity);
-    if(activityRealtimeListAccess.getSize() == 0 ){
-      return null;
-    }
-    Activity lastestActivity =  activityRealtimeListAccess.load(0, 1)[0];
-    return new ConnectionInfoRestOut(existingIdentity, lastestActivity, lang);
-  }
-  
   /**
    * Gets type of relationship appropriate to each specific relationship.
    * 
@@ -21,6 +21,8 @@ import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.services.rest.resource.ResourceContainer;
 import org.exoplatform.social.common.RealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.manager.ActivityManager;
@@ -73,6 +75,9 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamps less than the specified *max\_id*'s
    *                            created timestamp. Note that *since\_id* and *max\_id* must not be defined in one
    *                            request, if they are, the *since\_id* query param is chosen.
+   * @param cursor              Returns the activities following the *next\_cursor* returned with the previous page,
+   *                            without counting the activities of the previous pages. It is only used when *since\_id*
+   *                            and *max\_id* are not defined.
    * @param numberOfComments    Specifies the number of latest comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number,
    *                            this number is considered as a limit number that must be equal or less than 100. If the
@@ -210,6 +215,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                 @QueryParam("limit") int limit,
                                                 @QueryParam("since_id") String sinceId,
                                                 @QueryParam("max_id") String maxId,
+                                                @QueryParam("cursor") String cursor,
                                                 @QueryParam("number_of_comments") int numberOfComments,
                                                 @QueryParam("number_of_likes") int numberOfLikes) {
     checkAuthenticatedRequest();
@@ -263,11 +269,12 @@ public class ActivityStreamResources implements ResourceContainer {
     } else if (sinceId != null) {
       activityList = rala.loadNewer(baseActivity, maxLimit);
     } else {
-      activityList = rala.loadAsList(0, maxLimit);
+      activityList = loadAsList(rala, cursor, maxLimit);
     }
 
     ActivityRestListOut arlo = new ActivityRestListOut(activityList, numberOfComments,
                                                        numberOfLikes, portalContainerName);
+    arlo.setNextCursor(getNextCursor(rala, activityList));
 
     return Util.getResponse(arlo, uriInfo, mediaType, Response.Status.OK);
   }
@@ -287,6 +294,9 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamp less than the specified *max\_id*'s created
    *                            timestamp. Note that *since\_id* and *max\_id* must not be defined in one request,
    *                            if they are defined, the *since\_id* query param is chosen.
+   * @param cursor              Returns the activities following the *next\_cursor* returned with the previous page,
+   *                            without counting the activities of the previous pages. It is only used when *since\_id*
+   *                            and *max\_id* are not defined.
    * @param numberOfComments    Specifies the latest number of comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number, this number is
    *                            considered as a limit number that must be equal or less than 100. If the actual number of
@@ -423,6 +433,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                  @QueryParam("limit") int limit,
                                                  @QueryParam("since_id") String sinceId,
                                                  @QueryParam("max_id") String maxId,
+                                                 @QueryParam("cursor") String cursor,
                                                  @QueryParam("number_of_comments") int numberOfComments,
                                                  @QueryParam("number_of_likes") int numberOfLikes) {
     checkAuthenticatedRequest();
@@ -468,13 +479,16 @@ public class ActivityStreamResources implements ResourceContainer {
       } else if (olderActivity != null) {
         activities = listAccess.loadOlder(olderActivity, maxLimit);
       } else {
-        activities = listAccess.loadAsList(0, maxLimit);
+        activities = loadAsList(listAccess, cursor, maxLimit);
       }
+    } catch (WebApplicationException e) {
+      throw e;
     } catch (Exception e) {
       throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
     }
     ActivityRestListOut activityRestListOut = new ActivityRestListOut(activities, numberOfComments,
                                                        numberOfLikes, portalContainerName);
+    activityRestListOut.setNextCursor(getNextCursor(listAccess, activities));
     return Util.getResponse(activityRestListOut, uriInfo, mediaType, Response.Status.OK);
   }
 
@@ -493,6 +507,9 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamp less than the specified *max\_id*'s created
    *                            timestamp. Note that *since\_id* and *max\_id* must not be defined in one request,
    *                            if they are defined, the *since\_id* query param is chosen.
+   * @param cursor              Returns the activities following the *next\_cursor* returned with the previous page,
+   *                            without counting the activities of the previous pages. It is only used when *since\_id*
+   *                            and *max\_id* are not defined.
    * @param numberOfComments    Specifies the latest number of comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number, this number is
    *                            considered as a limit number that must be equal or less than 100. If the actual number of
@@ -629,6 +646,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                    @QueryParam("limit") int limit,
                                                    @QueryParam("since_id") String sinceId,
                                                    @QueryParam("max_id") String maxId,
+                                                   @QueryParam("cursor") String cursor,
                                                    @QueryParam("number_of_comments") int numberOfComments,
                                                    @QueryParam("number_of_likes") int numberOfLikes) {
     checkAuthenticatedRequest();
@@ -673,10 +691,11 @@ public class ActivityStreamResources implements ResourceContainer {
     } else if (sinceId != null) {
       activityList = rala.loadNewer(baseActivity, maxLimit);
     } else {
-      activityList = rala.loadAsList(0, maxLimit);
+      activityList = loadAsList(rala, cursor, maxLimit);
     }
 
    ActivityRestListOut arlo = new ActivityRestListOut(activityList, numberOfComments, numberOfLikes, portalContainerName);
+   arlo.setNextCursor(getNextCursor(rala, activityList));
 
    return Util.getResponse(arlo, uriInfo, mediaType, Response.Status.OK);
   }
@@ -696,6 +715,9 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamp less than the specified *max\_id*'s created
    *                            timestamp. Note that *since\_id* and *max\_id* must not be defined in one request,
    *                            if they are defined, the *since\_id* query param is chosen.
+   * @param cursor              Returns the activities following the *next\_cursor* returned with the previous page,
+   *                            without counting the activities of the previous pages. It is only used when *since\_id*
+   *                            and *max\_id* are not defined.
    * @param numberOfComments    Specifies the latest number of comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number, this number is
    *                            considered as a limit number that must be equal or less than 100. If the actual number of
@@ -832,6 +854,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                         @QueryParam("limit") int limit,
                                                         @QueryParam("since_id") String sinceId,
                                                         @QueryParam("max_id") String maxId,
+                                                        @QueryParam("cursor") String cursor,
                                                         @QueryParam("number_of_comments") int numberOfComments,
                                                         @QueryParam("number_of_likes") int numberOfLikes) {
 
@@ -882,11 +905,12 @@ public class ActivityStreamResources implements ResourceContainer {
     } else if (sinceId != null) {
       activityList = realtimeListAccess.loadNewer(baseActivity, maxLimit);
     } else {
-      activityList = realtimeListAccess.loadAsList(0, maxLimit);
+      activityList = loadAsList(realtimeListAccess, cursor, maxLimit);
     }
 
     ActivityRestListOut activityRestListOut = new ActivityRestListOut(activityList, numberOfComments,
             numberOfLikes, portalContainerName);
+    activityRestListOut.setNextCursor(getNextCursor(realtimeListAccess, activityList));
 
     return Util.getResponse(activityRestListOut, uriInfo, mediaType, Response.Status.OK);
   }
@@ -1644,4 +1668,41 @@ public class ActivityStreamResources implements ResourceContainer {
 
     return Util.getResponse(activityRestListOut, uriInfo, mediaType, Response.Status.OK);
   }
+
+  /**
+   * Loads the first page of activities, or the page following the given cursor.
+   *
+   * @param listAccess the list access of the stream
+   * @param cursor the cursor token, null or empty for the first page
+   * @param limit the maximum number of activities
+   * @return the activities
+   * @throws WebApplicationException BAD_REQUEST when the cursor is invalid or not supported by the stream
+   */
+  private List<ExoSocialActivity> loadAsList(RealtimeListAccess<ExoSocialActivity> listAccess, String cursor, int limit) {
+    if (cursor == null || cursor.trim().length() == 0) {
+      return listAccess.loadAsList(0, limit);
+    }
+    ActivityStreamCursor streamCursor = ActivityStreamCursor.valueOf(cursor.trim());
+    if (streamCursor == null || !isCursorSupported(listAccess)) {
+      throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+    return ((ActivitiesRealtimeListAccess) listAccess).loadAsList(streamCursor, limit);
+  }
+
+  /**
+   * Gets the cursor token of the page following the loaded activities.
+   *
+   * @return the token, null when there is no activity or when the stream does not support the cursors
+   */
+  private String getNextCursor(RealtimeListAccess<ExoSocialActivity> listAccess, List<ExoSocialActivity> activities) {
+    if (activities == null || activities.isEmpty() || !isCursorSupported(listAccess)) {
+      return null;
+    }
+    return ActivityStreamCursor.of(activities.get(activities.size() - 1)).toString();
+  }
+
+  private boolean isCursorSupported(RealtimeListAccess<ExoSocialActivity> listAccess) {
+    return listAccess instanceof ActivitiesRealtimeListAccess && ((ActivitiesRealtimeListAccess) listAccess).isCursorSupported();
+  }
+
 }
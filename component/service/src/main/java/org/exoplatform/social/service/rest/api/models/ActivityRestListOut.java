@@ -38,7 +38,8 @@ public class ActivityRestListOut extends HashMap<String, Object> {
    * The enum fields as json keys
    */
   public static enum Field {
-    ACTIVITIES("activities");
+    ACTIVITIES("activities"),
+    NEXT_CURSOR("next_cursor");
 
     /**
      * field name
@@ -95,6 +96,18 @@ public class ActivityRestListOut extends HashMap<String, Object> {
   }
 
 
+  /**
+   * Sets the cursor token of the next page.
+   *
+   * @param nextCursor the token, null when the stream does not support the cursors
+   * @since 4.1.0
+   */
+  public void setNextCursor(String nextCursor) {
+    if (nextCursor != null) {
+      put(Field.NEXT_CURSOR.toString(), nextCursor);
+    }
+  }
+
   /**
    * Initializes default values
    */
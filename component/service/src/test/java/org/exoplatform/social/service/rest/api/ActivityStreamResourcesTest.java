@@ -636,7 +636,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
 
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(UriInfo, String, String, int, String, String, String, int, int)}
    *
    * @throws Exception
    */
@@ -655,7 +655,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -715,7 +715,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -776,7 +776,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -844,7 +844,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -899,7 +899,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -975,7 +975,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -1062,7 +1062,7 @@ public class ActivityStreamResourcesTest extends AbstractResourceTest {
   }
   
   /**
-   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, int, int)}
+   * Test {@link ActivityStreamResources#getActivityFeedOfAuthenticated(javax.ws.rs.core.UriInfo, String, String, int, String, String, String, int, int)}
    * 
    * @throws Exception
    */
@@ -26,6 +26,7 @@ import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.model.ActivityStreamCursor;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.webui.Utils;
@@ -50,6 +51,7 @@ public class UIActivitiesLoader extends UIContainer {
   private static final Log LOG = ExoLogger.getLogger(UIActivitiesLoader.class);
 
   private int currentLoadIndex;
+  private ActivityStreamCursor cursor;
   private boolean hasMore;
   private UIActivitiesLoader lastActivitiesLoader;
   private ListAccess<ExoSocialActivity> activityListAccess;
@@ -84,6 +86,7 @@ public class UIActivitiesLoader extends UIContainer {
 
   public void setActivityListAccess(ListAccess<ExoSocialActivity> activityListAccess) {
     this.activityListAccess = activityListAccess;
+    this.cursor = null;
   }
 
   public void setSpace(Space space) {
@@ -154,6 +157,7 @@ public class UIActivitiesLoader extends UIContainer {
     try {
       hasMore = false;
       currentLoadIndex = 0;
+      cursor = null;
       activitiesCounter = 0;
       isExtendLoader = false;
       
@@ -206,10 +210,21 @@ public class UIActivitiesLoader extends UIContainer {
 
   private List<ExoSocialActivity> loadActivities(int index, int length) throws Exception {
     if (activityListAccess != null) {
-      ExoSocialActivity[] activities = activityListAccess.load(index, length);
+      ExoSocialActivity[] activities;
+      //the next pages start after the last loaded activity instead of skipping the previous pages
+      if (index > 0 && cursor != null) {
+        List<ExoSocialActivity> got = ((ActivitiesRealtimeListAccess) activityListAccess).loadAsList(cursor, length);
+        activities = got.toArray(new ExoSocialActivity[got.size()]);
+      } else {
+        activities = activityListAccess.load(index, length);
+      }
       if (activities != null) {
         activitiesCounter += activities.length;
         setHasMore(activityListAccess.getSize() > activitiesCounter);
+        if (activities.length > 0 && activityListAccess instanceof ActivitiesRealtimeListAccess
+            && ((ActivitiesRealtimeListAccess) activityListAccess).isCursorSupported()) {
+          cursor = ActivityStreamCursor.of(activities[activities.length - 1]);
+        }
 
         return new ArrayList<ExoSocialActivity>(Arrays.asList(activities));
       }